@@ -0,0 +1,43 @@
+package com.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Ponto de entrada do {@code benchmarks.jar}. Aceita as opções de linha de comando do JMH
+ * e, se elas não disserem outra coisa, grava o resultado em JSON ({@code -Djmh.result},
+ * padrão {@code jmh-result.json}) e liga os profilers de {@code -Djmh.profilers}
+ * (separados por vírgula, ex.: {@code gc}).
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()) {
+            // a ajuda e as listagens ficam com o próprio JMH
+            Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(System.getProperty("jmh.result", "jmh-result.json"));
+        }
+        for (String profiler : System.getProperty("jmh.profilers", "").split(",")) {
+            if (!profiler.isBlank()) {
+                options.addProfiler(profiler.trim());
+            }
+        }
+        new Runner(options.build()).run();
+    }
+}
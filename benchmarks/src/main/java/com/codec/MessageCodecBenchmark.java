@@ -0,0 +1,124 @@
+package com.codec;
+
+import com.model.OrderAction;
+import com.model.OrderType;
+import com.patterns.AppendAck;
+import com.patterns.AppendEntries;
+import com.patterns.Message;
+import com.patterns.MessageType;
+import com.patterns.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialização das mensagens entre nós em cada codec, com o enquadramento que cada
+ * transporte faz em volta dele:
+ * <ul>
+ *     <li>{@code udp}: a mensagem ocupa o datagrama inteiro;</li>
+ *     <li>{@code tcp}: prefixo de tamanho de 4 bytes (o NIO usa o mesmo quadro);</li>
+ *     <li>{@code http}: o corpo é copiado para um array próprio antes do envio.</li>
+ * </ul>
+ * Os lotes de {@code appendEntries} levam 32 ordens no formato binário de entrada, como
+ * a replicação sob carga.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageCodecBenchmark {
+    private static final int BATCH_SIZE = 32;
+
+    @Param({"binary", "java"})
+    public String codec;
+
+    @Param({"udp", "tcp", "http"})
+    public String transport;
+
+    @Param({"heartbeat", "appendEntries", "appendAck", "response"})
+    public String message;
+
+    private MessageCodec messageCodec;
+    private Message sample;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(64 * 1024);
+    // a mensagem já enquadrada, como chega ao receptor
+    private byte[] frame;
+    private int frameLength;
+
+    @Setup
+    public void setUp() {
+        messageCodec = MessageCodecs.forName(codec);
+        sample = switch (message) {
+            case "heartbeat" -> new Message(MessageType.HEARTBEAT, 7, 0, 0);
+            case "appendEntries" -> appendEntries();
+            case "appendAck" -> new AppendAck(7, 1, 0, true, 1_000_032);
+            case "response" -> new Response(MessageType.RESPONSE, "Order processed: ExecutionReport{orderId=1000001, "
+                    + "symbol=PETR4, type=BUY, status=PARTIALLY_FILLED, filled=60, leaves=40, fills=2, avgPrice=32.15}", 42);
+            default -> throw new IllegalArgumentException("Mensagem não suportada: " + message);
+        };
+        frameLength = encode();
+        frame = Arrays.copyOf(sendBuffer.array(), frameLength);
+    }
+
+    private static AppendEntries appendEntries() {
+        int[] generations = new int[BATCH_SIZE];
+        byte[][] entries = new byte[BATCH_SIZE][];
+        OrderCommand command = new OrderCommand();
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            command.set(OrderAction.NEW, i % 2 == 0 ? OrderType.BUY : OrderType.SELL,
+                    "PETR4", 100, 321_500 + i, 1_000_000 + i);
+            buffer.clear();
+            OrderEntryEncoder.encodeBinary(command, buffer);
+            generations[i] = 7;
+            entries[i] = Arrays.copyOf(buffer.array(), buffer.position());
+        }
+        return new AppendEntries(7, 0, 1_000_000, 7, 999_990, generations, entries);
+    }
+
+    @Benchmark
+    public int encode() {
+        ByteBuffer buffer = sendBuffer;
+        buffer.clear();
+        switch (transport) {
+            case "tcp" -> {
+                buffer.position(4);
+                messageCodec.encode(sample, buffer);
+                buffer.putInt(0, buffer.position() - 4);
+            }
+            case "http" -> {
+                messageCodec.encode(sample, buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position()).length;
+            }
+            default -> messageCodec.encode(sample, buffer);
+        }
+        return buffer.position();
+    }
+
+    @Benchmark
+    public Message decode() {
+        return switch (transport) {
+            case "tcp" -> {
+                ByteBuffer view = ByteBuffer.wrap(frame);
+                int length = view.getInt(0);
+                view.limit(4 + length).position(4);
+                yield MessageCodecs.decode(messageCodec, view);
+            }
+            default -> MessageCodecs.decode(messageCodec, ByteBuffer.wrap(frame, 0, frameLength));
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package com.codec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leitura das ordens que chegam dos clientes pelo {@link OrderEntryDecoder}, que substituiu
+ * o antigo {@code Server.parseOrder}: o mesmo pedido em texto e no formato binário, com um
+ * {@link OrderCommand} reaproveitado, como nas threads de recepção.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderEntryBenchmark {
+
+    @Param({"text", "binary"})
+    public String format;
+
+    @Param({"ORDER:BUY;PETR4;100;32.15", "ORDER:AMEND;PETR4;1000001;50;32.2", "QUERY:DEPTH;PETR4;10;50MS"})
+    public String entry;
+
+    private final OrderEntryDecoder decoder = new OrderEntryDecoder();
+    private final OrderCommand command = new OrderCommand();
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocate(128);
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        byte[] text = entry.getBytes(StandardCharsets.US_ASCII);
+        if (!decoder.decode(text, 0, text.length, command)) {
+            throw new IllegalArgumentException("Entrada inválida: " + entry);
+        }
+        if (format.equals("text")) {
+            data = text;
+            return;
+        }
+        encodeBuffer.clear();
+        OrderEntryEncoder.encodeBinary(command, encodeBuffer);
+        data = Arrays.copyOf(encodeBuffer.array(), encodeBuffer.position());
+    }
+
+    @Benchmark
+    public OrderCommand decode() {
+        if (!decoder.decode(data, 0, data.length, command)) {
+            throw new IllegalStateException("Entrada inválida: " + entry);
+        }
+        return command;
+    }
+
+    @Benchmark
+    public int encodeBinary() {
+        encodeBuffer.clear();
+        OrderEntryEncoder.encodeBinary(command, encodeBuffer);
+        return encodeBuffer.position();
+    }
+}
@@ -0,0 +1,47 @@
+package com.loadgen;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ordens em texto por {@code POST /order}, no gateway ou direto em um servidor HTTP. O
+ * cliente mantém as conexões e casa cada resposta com o seu pedido.
+ */
+final class HttpTransport implements OrderTransport {
+    private final URI uri;
+    private final Duration timeout;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client;
+
+    HttpTransport(InetSocketAddress target, long timeoutMillis) {
+        this.uri = URI.create("http://" + target.getHostString() + ":" + target.getPort() + "/order");
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public void send(LoadRequest request) {
+        request.sentNanos = System.nanoTime();
+        client.sendAsync(HttpRequest.newBuilder(uri)
+                                .timeout(timeout)
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(request.entry))
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> request.complete(error == null ? response.body() : null));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
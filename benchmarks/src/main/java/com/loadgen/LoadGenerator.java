@@ -0,0 +1,253 @@
+package com.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gerador de carga em malha aberta para o gateway ou para um servidor. As ordens saem numa
+ * agenda fixa de {@code loadgen.rate} por segundo, sem esperar pelas respostas; se o envio
+ * atrasar, os pedidos seguintes saem em seguida, mas a latência de cada um continua contada
+ * a partir do instante agendado. Assim uma parada do sistema aparece em todos os pedidos que
+ * deveriam ter saído durante ela, e não só no que estava em voo (omissão coordenada).
+ * <p>
+ * São dois histogramas HDR: <b>resposta</b>, do instante agendado até a resposta (o que um
+ * cliente vê), e <b>serviço</b>, do envio efetivo até a resposta. Os pedidos da fase de
+ * aquecimento só entram nas linhas por segundo.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.loadgen.LoadGenerator udp://localhost:8080
+ *   -Dloadgen.rate=10000        ordens por segundo
+ *   -Dloadgen.duration=30       segundos medidos, depois de -Dloadgen.warmup=5
+ *   -Dloadgen.symbols=100       símbolos SYM0..SYMn-1, sorteados uniformemente
+ *   -Dloadgen.prices=uniform    uniform: mid ± spread; normal: mid + N(0, spread)
+ *   -Dloadgen.mid=100 -Dloadgen.spread=1
+ *   -Dloadgen.buyRatio=0.5      fração de compras
+ *   -Dloadgen.maxQuantity=100   quantidade sorteada entre 1 e este valor
+ *   -Dloadgen.timeout=5000      ms até um pedido sem resposta contar como falha
+ *   -Dloadgen.channels=64       canais UDP/TCP abertos antes da agenda começar
+ *   -Dloadgen.histogram=arquivo distribuição completa da latência de resposta (.hgrm)
+ * </pre>
+ * O alvo pode ser {@code udp://}, {@code tcp://} ou {@code http://}; o gateway escuta na 8080 e
+ * o primeiro servidor de cada grupo na 9001.
+ */
+public class LoadGenerator {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // abaixo disso o envio espera girando, para não perder a agenda no parkNanos
+    private static final long SPIN_NANOS = 100_000;
+
+    /**
+     * Latências e contadores, alimentados pelas threads que recebem as respostas.
+     */
+    static final class Results {
+        private final long measureFromNanos;
+        private final Recorder intervalResponse = new Recorder(3);
+        private final Recorder totalResponse = new Recorder(3);
+        private final Recorder totalService = new Recorder(3);
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder intervalCompleted = new LongAdder();
+        private final LongAdder measured = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        Results(long measureFromNanos) {
+            this.measureFromNanos = measureFromNanos;
+        }
+
+        void record(LoadRequest request, String response, long now) {
+            long responseTime = now - request.intendedNanos;
+            intervalResponse.recordValue(responseTime);
+            intervalCompleted.increment();
+            if (request.intendedNanos - measureFromNanos >= 0) {
+                totalResponse.recordValue(responseTime);
+                totalService.recordValue(now - request.sentNanos);
+                measured.increment();
+                if (response == null) {
+                    failed.increment();
+                } else if (response.startsWith("Erro") || response.contains("Redirecionar")) {
+                    rejected.increment();
+                }
+            }
+            completed.increment();
+        }
+    }
+
+    /**
+     * Ordens em texto sorteadas conforme as propriedades {@code loadgen.*}.
+     */
+    private static final class OrderSource {
+        private final SplittableRandom random = new SplittableRandom(42);
+        private final String[] symbols;
+        private final boolean normal;
+        private final double mid;
+        private final double spread;
+        private final double buyRatio;
+        private final int maxQuantity;
+        private final boolean lineTerminated;
+
+        OrderSource(boolean lineTerminated) {
+            this.symbols = new String[Integer.getInteger("loadgen.symbols", 100)];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = "SYM" + i;
+            }
+            this.normal = System.getProperty("loadgen.prices", "uniform").equalsIgnoreCase("normal");
+            this.mid = Double.parseDouble(System.getProperty("loadgen.mid", "100"));
+            this.spread = Double.parseDouble(System.getProperty("loadgen.spread", "1"));
+            this.buyRatio = Double.parseDouble(System.getProperty("loadgen.buyRatio", "0.5"));
+            this.maxQuantity = Integer.getInteger("loadgen.maxQuantity", 100);
+            this.lineTerminated = lineTerminated;
+        }
+
+        byte[] next() {
+            boolean buy = random.nextDouble() < buyRatio;
+            double price = normal ? mid + nextGaussian() * spread : mid - spread + 2 * spread * random.nextDouble();
+            long cents = Math.max(1, Math.round(price * 100));
+            StringBuilder entry = new StringBuilder(48)
+                    .append(buy ? "ORDER:BUY;" : "ORDER:SELL;")
+                    .append(symbols[random.nextInt(symbols.length)]).append(';')
+                    .append(1 + random.nextInt(maxQuantity)).append(';')
+                    .append(cents / 100).append('.').append(cents % 100 < 10 ? "0" : "").append(cents % 100);
+            if (lineTerminated) {
+                entry.append('\n');
+            }
+            return entry.toString().getBytes();
+        }
+
+        // Box-Muller: SplittableRandom não tem nextGaussian
+        private double nextGaussian() {
+            return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Uso: java LoadGenerator <udp|tcp|http>://host:porta (opções em -Dloadgen.*)");
+            return;
+        }
+        URI target = URI.create(args[0]);
+        InetSocketAddress address = new InetSocketAddress(target.getHost(), target.getPort());
+        int rate = Integer.getInteger("loadgen.rate", 10_000);
+        long duration = Long.getLong("loadgen.duration", 30);
+        long warmup = Long.getLong("loadgen.warmup", 5);
+        long timeoutMillis = Long.getLong("loadgen.timeout", 5000);
+        int channels = Integer.getInteger("loadgen.channels", 64);
+        String scheme = target.getScheme().toLowerCase();
+
+        OrderTransport transport = switch (scheme) {
+            case "udp" -> new SocketTransport(address, true, timeoutMillis, channels);
+            case "tcp" -> new SocketTransport(address, false, timeoutMillis, channels);
+            case "http" -> new HttpTransport(address, timeoutMillis);
+            default -> throw new IllegalArgumentException("Transporte não suportado: " + scheme);
+        };
+        OrderSource source = new OrderSource(scheme.equals("tcp"));
+
+        System.out.printf(Locale.ROOT, "Alvo %s: %d ordens/s por %d s, depois de %d s de aquecimento%n",
+                target, rate, duration, warmup);
+
+        long start = System.nanoTime() + 100_000_000;
+        long measureFrom = start + warmup * NANOS_PER_SECOND;
+        long end = measureFrom + duration * NANOS_PER_SECOND;
+        Results results = new Results(measureFrom);
+        AtomicLong sent = new AtomicLong();
+        AtomicLong maxLag = new AtomicLong();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "loadgen-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] second = {0};
+        long[] lastSent = {0};
+        reporter.scheduleAtFixedRate(() -> {
+            Histogram interval = results.intervalResponse.getIntervalHistogram();
+            long nowSent = sent.get();
+            second[0]++;
+            System.out.printf(Locale.ROOT, "%4d s%s: %d enviadas, %d respostas, p50 %.1f µs, p99 %.1f µs, max %.1f µs%n",
+                    second[0], second[0] <= warmup ? " (aquecimento)" : "", nowSent - lastSent[0],
+                    results.intervalCompleted.sumThenReset(), micros(interval.getValueAtPercentile(50)),
+                    micros(interval.getValueAtPercentile(99)), micros(interval.getMaxValue()));
+            lastSent[0] = nowSent;
+        }, start - System.nanoTime() + NANOS_PER_SECOND, NANOS_PER_SECOND, TimeUnit.NANOSECONDS);
+
+        double intervalNanos = (double) NANOS_PER_SECOND / rate;
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended - end >= 0) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) - intended < 0) {
+                if (intended - now > SPIN_NANOS) {
+                    LockSupport.parkNanos(intended - now - SPIN_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+            if (now - intended > maxLag.get()) {
+                maxLag.set(now - intended);
+            }
+            transport.send(new LoadRequest(source.next(), intended, results));
+            sent.incrementAndGet();
+        }
+
+        // espera as respostas em voo; o que não chegar até o timeout já foi contado como falha
+        long drainUntil = System.nanoTime() + (timeoutMillis + 1000) * 1_000_000;
+        while (results.completed.sum() < sent.get() && System.nanoTime() - drainUntil < 0) {
+            Thread.sleep(10);
+        }
+        reporter.shutdownNow();
+        int openChannels = transport instanceof SocketTransport socket ? socket.channelCount() : -1;
+        transport.close();
+
+        // os Recorders totais ainda não foram lidos: a primeira leitura devolve tudo o que foi medido
+        Histogram response = results.totalResponse.getIntervalHistogram();
+        Histogram service = results.totalService.getIntervalHistogram();
+        report(results, response, service, sent.get(), duration, maxLag.get(), openChannels, System.out);
+        String histogramFile = System.getProperty("loadgen.histogram");
+        if (histogramFile != null) {
+            try (PrintStream out = new PrintStream(histogramFile)) {
+                response.outputPercentileDistribution(out, 1000.0);
+            }
+            System.out.println("Distribuição da latência de resposta (µs) gravada em " + histogramFile);
+        }
+    }
+
+    private static void report(Results results, Histogram response, Histogram service, long sent, long duration,
+                               long maxLag, int channels, PrintStream out) {
+        long measured = results.measured.sum();
+        out.println();
+        out.printf(Locale.ROOT, "Enviadas %d; medidas %d, das quais %d recusadas e %d sem resposta%n",
+                sent, measured, results.rejected.sum(), results.failed.sum());
+        out.printf(Locale.ROOT, "Vazão %.1f respostas/s; maior atraso do envio em relação à agenda %.1f µs%n",
+                (double) (measured - results.failed.sum()) / duration, micros(maxLag));
+        if (channels >= 0) {
+            out.println("Canais abertos: " + channels);
+        }
+        out.println("Latência (µs)        p50        p90        p99      p99.9     p99.99        max");
+        printLatency(out, "  resposta", response);
+        printLatency(out, "  serviço ", service);
+    }
+
+    private static void printLatency(PrintStream out, String name, Histogram histogram) {
+        out.printf(Locale.ROOT, "%s %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", name,
+                micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(90)),
+                micros(histogram.getValueAtPercentile(99)), micros(histogram.getValueAtPercentile(99.9)),
+                micros(histogram.getValueAtPercentile(99.99)), micros(histogram.getMaxValue()));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.loadgen;
+
+/**
+ * Uma ordem do gerador de carga. {@code intendedNanos} é o instante da agenda de envio, não
+ * o envio efetivo: medir a partir dele é o que corrige a omissão coordenada, porque um
+ * atraso do próprio sistema em aceitar pedidos entra na latência de todos os que esperaram.
+ */
+final class LoadRequest {
+    final byte[] entry;
+    final long intendedNanos;
+    long sentNanos;
+    private final LoadGenerator.Results results;
+
+    LoadRequest(byte[] entry, long intendedNanos, LoadGenerator.Results results) {
+        this.entry = entry;
+        this.intendedNanos = intendedNanos;
+        this.results = results;
+    }
+
+    void complete(String response) {
+        results.record(this, response, System.nanoTime());
+    }
+}
@@ -0,0 +1,17 @@
+package com.loadgen;
+
+/**
+ * Envio das ordens do gerador de carga. O gerador nunca espera pelo transporte: cada
+ * {@link #send} volta logo e a resposta chega depois, em outra thread, por {@link LoadRequest#complete}.
+ */
+interface OrderTransport extends AutoCloseable {
+
+    /**
+     * Envia {@code request.entry}. Chama {@link LoadRequest#complete} exatamente uma vez: com
+     * o texto da resposta, ou com {@code null} se o pedido falhou ou passou do timeout.
+     */
+    void send(LoadRequest request);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,238 @@
+package com.loadgen;
+
+import com.codec.MessageCodecs;
+import com.codec.MessageFlyweight;
+import com.patterns.Message;
+import com.patterns.Response;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Ordens em texto por UDP ou TCP, para o gateway ou direto para um servidor. As respostas
+ * do gateway não dizem a que pedido respondem, então cada canal leva um pedido por vez e a
+ * resposta é reconhecida pelo canal em que chega. Sem canal livre o envio abre mais um: o
+ * gerador nunca espera por uma resposta para mandar o próximo pedido.
+ * <p>
+ * Uma thread de I/O recebe as respostas de todos os canais e expira os pedidos sem resposta;
+ * o canal de um pedido expirado é fechado, para uma resposta atrasada não ser tomada pela
+ * do pedido seguinte.
+ */
+final class SocketTransport implements OrderTransport {
+    private static final byte JAVA_SERIALIZATION_MAGIC = (byte) 0xAC;
+    private static final long TIMEOUT_SCAN_MILLIS = 10;
+
+    private final InetSocketAddress target;
+    private final boolean datagram;
+    private final long timeoutNanos;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Slot> idle = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Slot> slots = new ConcurrentLinkedQueue<>();
+    private final Thread io;
+    private volatile boolean running = true;
+
+    private static final class Slot {
+        final SelectableChannel channel;
+        // pedido em curso neste canal; só a thread de I/O o tira
+        volatile LoadRequest request;
+        volatile long deadline;
+        // resposta TCP parcial, até o fim da linha
+        final ByteBuffer received = ByteBuffer.allocate(64 * 1024);
+
+        Slot(SelectableChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * @param channels canais abertos já na criação, para a abertura (e o handshake TCP) não
+     *                 pesar nos primeiros pedidos
+     */
+    SocketTransport(InetSocketAddress target, boolean datagram, long timeoutMillis, int channels) throws IOException {
+        this.target = target;
+        this.datagram = datagram;
+        this.timeoutNanos = timeoutMillis * 1_000_000;
+        this.selector = Selector.open();
+        for (int i = 0; i < channels; i++) {
+            idle.add(open());
+        }
+        this.io = new Thread(this::receive, "loadgen-io");
+        this.io.setDaemon(true);
+        this.io.start();
+    }
+
+    @Override
+    public void send(LoadRequest request) {
+        Slot slot = idle.poll();
+        try {
+            if (slot == null) {
+                slot = open();
+            }
+            request.sentNanos = System.nanoTime();
+            slot.deadline = request.sentNanos + timeoutNanos;
+            slot.request = request;
+            ByteBuffer data = ByteBuffer.wrap(request.entry);
+            if (datagram) {
+                ((DatagramChannel) slot.channel).write(data);
+            } else {
+                SocketChannel channel = (SocketChannel) slot.channel;
+                // uma linha curta cabe no buffer do socket; se não couber, o pedido expira
+                channel.write(data);
+            }
+        } catch (IOException e) {
+            if (slot != null) {
+                slot.request = null;
+                discard(slot);
+            }
+            request.complete(null);
+        }
+    }
+
+    private Slot open() throws IOException {
+        SelectableChannel channel;
+        if (datagram) {
+            DatagramChannel datagramChannel = DatagramChannel.open();
+            datagramChannel.connect(target);
+            channel = datagramChannel;
+        } else {
+            SocketChannel socketChannel = SocketChannel.open(target);
+            socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel = socketChannel;
+        }
+        channel.configureBlocking(false);
+        Slot slot = new Slot(channel);
+        channel.register(selector, SelectionKey.OP_READ, slot);
+        slots.add(slot);
+        return slot;
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long nextScan = System.nanoTime();
+        try {
+            while (running) {
+                selector.select(TIMEOUT_SCAN_MILLIS);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Slot slot = (Slot) key.attachment();
+                    try {
+                        if (datagram) {
+                            buffer.clear();
+                            ((DatagramChannel) slot.channel).read(buffer);
+                            buffer.flip();
+                            deliver(slot, decode(buffer));
+                        } else {
+                            readLine(slot);
+                        }
+                    } catch (IOException e) {
+                        fail(slot);
+                    }
+                }
+                selector.selectedKeys().clear();
+                long now = System.nanoTime();
+                if (now - nextScan >= 0) {
+                    expire(now);
+                    nextScan = now + TIMEOUT_SCAN_MILLIS * 1_000_000;
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                System.err.println("Erro no I/O do gerador de carga: " + e.getMessage());
+            }
+        }
+    }
+
+    private void readLine(Slot slot) throws IOException {
+        ByteBuffer received = slot.received;
+        if (((SocketChannel) slot.channel).read(received) < 0) {
+            throw new IOException("conexão encerrada");
+        }
+        for (int i = 0; i < received.position(); i++) {
+            if (received.get(i) == '\n') {
+                String line = new String(received.array(), 0, i, StandardCharsets.UTF_8);
+                received.flip().position(i + 1);
+                received.compact();
+                deliver(slot, line);
+                return;
+            }
+        }
+    }
+
+    // o servidor responde com uma Message; o gateway, com texto
+    private static String decode(ByteBuffer buffer) {
+        if (buffer.hasRemaining() && (buffer.get(0) == MessageFlyweight.MAGIC || buffer.get(0) == JAVA_SERIALIZATION_MAGIC)) {
+            Message message = MessageCodecs.decode(buffer);
+            return message instanceof Response response ? response.getResponseContent() : message.toString();
+        }
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private void deliver(Slot slot, String response) {
+        LoadRequest request = slot.request;
+        if (request == null) {
+            return;
+        }
+        slot.request = null;
+        idle.add(slot);
+        request.complete(response);
+    }
+
+    private void fail(Slot slot) {
+        LoadRequest request = slot.request;
+        slot.request = null;
+        discard(slot);
+        if (request != null) {
+            request.complete(null);
+        }
+    }
+
+    private void expire(long now) {
+        List<Slot> expired = new ArrayList<>();
+        for (Slot slot : slots) {
+            if (slot.request != null && now - slot.deadline >= 0) {
+                expired.add(slot);
+            }
+        }
+        expired.forEach(this::fail);
+    }
+
+    private void discard(Slot slot) {
+        slots.remove(slot);
+        try {
+            slot.channel.close();
+        } catch (IOException e) {
+            // o canal já não serve para mais nada
+        }
+    }
+
+    /**
+     * @return canais abertos; sem falhas, é o maior número de pedidos que estiveram em voo ao mesmo tempo
+     */
+    int channelCount() {
+        return slots.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar o selector: " + e.getMessage());
+        }
+        for (Slot slot : slots) {
+            discard(slot);
+        }
+    }
+}
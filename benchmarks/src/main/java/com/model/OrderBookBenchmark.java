@@ -0,0 +1,89 @@
+package com.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OrderBook#addOrder} em uma thread, com o livro já preenchido com {@code depth}
+ * níveis de cada lado. Os níveis têm quantidade suficiente para nunca se esgotarem, então
+ * o livro fica do mesmo tamanho durante toda a medição:
+ * <ul>
+ *     <li>{@code crossing}: alterna compra e venda de 1 lote no melhor preço do outro lado,
+ *     sempre executando contra o topo;</li>
+ *     <li>{@code resting}: insere 1 lote em um dos níveis existentes, sem executar, e o
+ *     cancela em seguida.</li>
+ * </ul>
+ * Throughput em operações por microssegundo; o modo {@code SampleTime} dá os percentis de latência.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class OrderBookBenchmark {
+    private static final String SYMBOL = "PETR4";
+    // preços em centavos em torno de 100,00
+    private static final int MID_CENTS = 10_000;
+    private static final int LIQUIDITY = Integer.MAX_VALUE / 2;
+
+    @Param({"ladder", "heap"})
+    public String book;
+
+    @Param({"1", "100", "5000"})
+    public int depth;
+
+    private OrderBook orderBook;
+    private double bestBid;
+    private double bestAsk;
+    private double[] restingPrices;
+    private long nextOrderId;
+    private int nextLevel;
+    private boolean buy;
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        orderBook = book.equals("heap") ? new PriorityQueueOrderBook() : new LadderOrderBook();
+        restingPrices = new double[depth];
+        for (int i = 1; i <= depth; i++) {
+            add(OrderType.BUY, LIQUIDITY, (MID_CENTS - i) / 100.0);
+            add(OrderType.SELL, LIQUIDITY, (MID_CENTS + i) / 100.0);
+            restingPrices[i - 1] = (MID_CENTS - i) / 100.0;
+        }
+        bestBid = (MID_CENTS - 1) / 100.0;
+        bestAsk = (MID_CENTS + 1) / 100.0;
+    }
+
+    private Order add(OrderType side, int quantity, double price) {
+        Order order = new Order(SYMBOL, side, quantity, price);
+        order.setOrderId(++nextOrderId);
+        orderBook.addOrder(order);
+        return order;
+    }
+
+    @Benchmark
+    public Order crossing() {
+        buy = !buy;
+        return buy ? add(OrderType.BUY, 1, bestAsk) : add(OrderType.SELL, 1, bestBid);
+    }
+
+    @Benchmark
+    public Order resting() {
+        double price = restingPrices[nextLevel];
+        nextLevel = nextLevel + 1 == restingPrices.length ? 0 : nextLevel + 1;
+        Order order = add(OrderType.BUY, 1, price);
+        return orderBook.cancelOrder(order.getOrderId());
+    }
+}
@@ -0,0 +1,77 @@
+package com.service;
+
+import com.model.ExecutionReport;
+import com.model.LadderOrderBook;
+import com.model.Order;
+import com.model.OrderType;
+import com.model.PriorityQueueOrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link OrderBookService} compartilhado por várias threads ({@code -t} muda o número),
+ * como no modo direto do servidor: cada escrita toma o monitor do livro do símbolo. Com
+ * poucos símbolos as threads disputam os mesmos livros; com muitos, quase não se cruzam.
+ * <p>
+ * Cada thread alterna compra e venda no mesmo preço em símbolos sorteados, então boa parte
+ * das ordens executa e os livros não crescem durante a medição.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(4)
+public class OrderBookServiceBenchmark {
+
+    @Param({"ladder", "heap"})
+    public String book;
+
+    @Param({"1", "16", "1024"})
+    public int symbols;
+
+    private OrderBookService service;
+    private String[] symbolNames;
+
+    @State(Scope.Thread)
+    public static class Sender {
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        boolean buy;
+        // ids distintos por thread sem um contador compartilhado entre elas
+        long nextOrderId = (long) threads.incrementAndGet() << 40;
+    }
+
+    @Setup
+    public void setUp() {
+        service = new OrderBookService(book.equals("heap") ? PriorityQueueOrderBook::new : LadderOrderBook::new, true);
+        symbolNames = new String[symbols];
+        for (int i = 0; i < symbols; i++) {
+            symbolNames[i] = "SYM" + i;
+        }
+    }
+
+    @Benchmark
+    public ExecutionReport addOrder(Sender sender) {
+        sender.buy = !sender.buy;
+        String symbol = symbolNames[ThreadLocalRandom.current().nextInt(symbols)];
+        Order order = new Order(symbol, sender.buy ? OrderType.BUY : OrderType.SELL, 1, 100.0);
+        order.setOrderId(++sender.nextOrderId);
+        return service.addOrder(order);
+    }
+}
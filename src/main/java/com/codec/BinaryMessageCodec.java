@@ -0,0 +1,167 @@
+package com.codec;
+
+import com.patterns.AppendAck;
+import com.patterns.AppendEntries;
+import com.patterns.InstallSnapshot;
+import com.patterns.Message;
+import com.patterns.MessageType;
+import com.patterns.Response;
+import com.patterns.VoteRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formato binário de layout fixo (ver {@link MessageFlyweight}), sem reflexão.
+ * Novos tipos de mensagem acrescentam um caso em {@link #encodeBody} e {@link #decodeBody}.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    @Override
+    public void encode(Message message, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.put(MessageFlyweight.MAGIC)
+                .put(MessageFlyweight.VERSION)
+                .put((byte) message.getType().getCode())
+                .put((byte) message.getShard())
+                .putInt(0)
+                .putInt(message.getGeneration())
+                .putInt(message.getSenderId())
+                .putInt(message.getLeaderId());
+        encodeBody(message, buffer);
+        buffer.putInt(start + MessageFlyweight.LENGTH_OFFSET, buffer.position() - start);
+    }
+
+    private void encodeBody(Message message, ByteBuffer buffer) {
+        if (message instanceof Response response) {
+            buffer.putLong(response.getCorrelationId());
+            putString(buffer, response.getResponseContent());
+        } else if (message instanceof VoteRequest request) {
+            buffer.putLong(request.getLastLogIndex()).putInt(request.getLastLogGeneration());
+        } else if (message instanceof AppendEntries append) {
+            // prevIndex long, prevGeneration int, leaderCommit long, count int, [generation int, length int, bytes]*
+            buffer.putLong(append.getPrevLogIndex())
+                    .putInt(append.getPrevLogGeneration())
+                    .putLong(append.getLeaderCommit())
+                    .putInt(append.getEntryCount());
+            for (int i = 0; i < append.getEntryCount(); i++) {
+                byte[] entry = append.getEntry(i);
+                buffer.putInt(append.getEntryGeneration(i)).putInt(entry.length).put(entry);
+            }
+        } else if (message instanceof AppendAck ack) {
+            buffer.put((byte) (ack.isSuccess() ? 1 : 0)).putLong(ack.getMatchIndex());
+        } else if (message instanceof InstallSnapshot install) {
+            buffer.putLong(install.getSnapshotIndex());
+        }
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        MessageFlyweight header = new MessageFlyweight().wrap(buffer, start);
+        if (!header.isValid()) {
+            throw new IllegalArgumentException("Frame binário inválido (magic/versão)");
+        }
+        MessageType type = header.type();
+        int frameLength = header.frameLength();
+        if (frameLength < MessageFlyweight.HEADER_LENGTH || frameLength > buffer.limit() - start) {
+            throw new IllegalArgumentException("Frame binário com tamanho inválido: " + frameLength);
+        }
+
+        buffer.position(header.bodyOffset());
+        Message message = decodeBody(type, header, buffer, start + frameLength);
+        message.setShard(header.shard());
+        buffer.position(start + frameLength);
+        return message;
+    }
+
+    // contagens e tamanhos vêm da rede: conferidos contra o fim do frame antes de alocar
+    private Message decodeBody(MessageType type, MessageFlyweight header, ByteBuffer buffer, int end) {
+        return switch (type) {
+            case RESPONSE, REDIRECT -> {
+                long correlationId = buffer.getLong();
+                yield new Response(type, header.generation(), header.senderId(), header.leaderId(),
+                        getString(buffer, end), correlationId);
+            }
+            // pedidos de voto sem corpo vêm de nós sem log replicado
+            case REQUEST_VOTE -> header.frameLength() > MessageFlyweight.HEADER_LENGTH
+                    ? new VoteRequest(header.generation(), header.senderId(), buffer.getLong(), buffer.getInt())
+                    : new Message(type, header.generation(), header.senderId(), header.leaderId());
+            case APPEND_ENTRIES -> {
+                long prevIndex = buffer.getLong();
+                int prevGeneration = buffer.getInt();
+                long leaderCommit = buffer.getLong();
+                int count = buffer.getInt();
+                // cada entrada ocupa ao menos geração e tamanho
+                if (count < 0 || count > (end - buffer.position()) / 8) {
+                    throw new IllegalArgumentException("AppendEntries com contagem inválida: " + count);
+                }
+                int[] generations = new int[count];
+                byte[][] entries = new byte[count][];
+                for (int i = 0; i < count; i++) {
+                    generations[i] = buffer.getInt();
+                    int length = buffer.getInt();
+                    if (length < 0 || length > end - buffer.position()) {
+                        throw new IllegalArgumentException("Entrada " + i + " do AppendEntries com tamanho inválido: " + length);
+                    }
+                    entries[i] = new byte[length];
+                    buffer.get(entries[i]);
+                }
+                yield new AppendEntries(header.generation(), header.senderId(), prevIndex, prevGeneration,
+                        leaderCommit, generations, entries);
+            }
+            case APPEND_ACK -> new AppendAck(header.generation(), header.senderId(), header.leaderId(),
+                    buffer.get() != 0, buffer.getLong());
+            case INSTALL_SNAPSHOT -> new InstallSnapshot(header.generation(), header.senderId(), buffer.getLong());
+            default -> new Message(type, header.generation(), header.senderId(), header.leaderId());
+        };
+    }
+
+    @Override
+    public boolean accepts(ByteBuffer buffer) {
+        return buffer.remaining() > 0 && buffer.get(buffer.position()) == MessageFlyweight.MAGIC;
+    }
+
+    // int de tamanho + bytes UTF-8; caminho rápido sem alocação para ASCII
+    static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(lengthPosition + 4);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                buffer.put(bytes);
+                buffer.putInt(lengthPosition, bytes.length);
+                return;
+            }
+            buffer.put((byte) c);
+        }
+        buffer.putInt(lengthPosition, length);
+    }
+
+    static String getString(ByteBuffer buffer, int end) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > end - buffer.position()) {
+            throw new IllegalArgumentException("Texto com tamanho inválido: " + length);
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
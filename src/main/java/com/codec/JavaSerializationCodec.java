@@ -0,0 +1,52 @@
+package com.codec;
+
+import com.patterns.Message;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Serialização Java padrão, mantida para comparação com o formato binário.
+ */
+public class JavaSerializationCodec implements MessageCodec {
+    private static final byte STREAM_MAGIC_HIGH = (byte) 0xAC;
+
+    @Override
+    public void encode(Message message, ByteBuffer buffer) {
+        try {
+            ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(byteOut);
+            out.writeObject(message);
+            out.flush();
+            buffer.put(byteOut.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) {
+        try {
+            ByteArrayInputStream byteIn = buffer.hasArray()
+                    ? new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining())
+                    : new ByteArrayInputStream(copyRemaining(buffer));
+            Message message = (Message) new ObjectInputStream(byteIn).readObject();
+            // o stream não tem framing próprio: consome o restante do buffer
+            buffer.position(buffer.limit());
+            return message;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalArgumentException("Erro ao desserializar mensagem: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] copyRemaining(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public boolean accepts(ByteBuffer buffer) {
+        return buffer.remaining() > 0 && buffer.get(buffer.position()) == STREAM_MAGIC_HIGH;
+    }
+}
@@ -0,0 +1,26 @@
+package com.codec;
+
+import com.patterns.Message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serialização das mensagens entre nós. Cada estratégia de comunicação recebe o codec
+ * usado no envio; na recepção o formato é detectado pelo primeiro byte (ver {@link MessageCodecs}).
+ */
+public interface MessageCodec {
+    /**
+     * Escreve a mensagem a partir da posição atual do buffer e avança a posição.
+     */
+    void encode(Message message, ByteBuffer buffer);
+
+    /**
+     * Lê uma mensagem a partir da posição atual do buffer e avança a posição.
+     */
+    Message decode(ByteBuffer buffer);
+
+    /**
+     * @return {@code true} se o conteúdo a partir da posição atual está neste formato
+     */
+    boolean accepts(ByteBuffer buffer);
+}
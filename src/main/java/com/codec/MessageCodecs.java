@@ -0,0 +1,42 @@
+package com.codec;
+
+import com.patterns.Message;
+
+import java.nio.ByteBuffer;
+
+public final class MessageCodecs {
+    private static final MessageCodec JAVA = new JavaSerializationCodec();
+    private static final MessageCodec BINARY = new BinaryMessageCodec();
+
+    private MessageCodecs() {
+    }
+
+    /**
+     * Codec de envio pelo nome ({@code binary} ou {@code java}).
+     */
+    public static MessageCodec forName(String name) {
+        return switch (name.toLowerCase()) {
+            case "java" -> new JavaSerializationCodec();
+            case "binary" -> new BinaryMessageCodec();
+            default -> throw new IllegalArgumentException("Codec não suportado: " + name);
+        };
+    }
+
+    public static Message decode(ByteBuffer buffer) {
+        return decode(BINARY, buffer);
+    }
+
+    /**
+     * Decodifica detectando o formato pelo primeiro byte, para que nós com codecs
+     * de envio diferentes continuem se entendendo.
+     */
+    public static Message decode(MessageCodec preferred, ByteBuffer buffer) {
+        if (preferred.accepts(buffer)) {
+            return preferred.decode(buffer);
+        }
+        if (BINARY.accepts(buffer)) {
+            return BINARY.decode(buffer);
+        }
+        return JAVA.decode(buffer);
+    }
+}
@@ -0,0 +1,82 @@
+package com.codec;
+
+import com.patterns.MessageType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Leitura direta do cabeçalho binário sem materializar a mensagem.
+ *
+ * <pre>
+ * 0  magic      byte
+ * 1  version    byte
+ * 2  type       byte  (MessageType.getCode)
+ * 3  shard      byte  (grupo de replicação do remetente; 0 sem particionamento)
+ * 4  length     int   (tamanho total do frame, cabeçalho incluído)
+ * 8  generation int
+ * 12 senderId   int
+ * 16 leaderId   int
+ * 20 corpo específico do tipo
+ * </pre>
+ */
+public final class MessageFlyweight {
+    public static final byte MAGIC = (byte) 0xB7;
+    public static final byte VERSION = 1;
+    public static final int HEADER_LENGTH = 20;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 1;
+    static final int TYPE_OFFSET = 2;
+    static final int SHARD_OFFSET = 3;
+    static final int LENGTH_OFFSET = 4;
+    static final int GENERATION_OFFSET = 8;
+    static final int SENDER_OFFSET = 12;
+    static final int LEADER_OFFSET = 16;
+
+    private ByteBuffer buffer;
+    private int offset;
+
+    public MessageFlyweight wrap(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    public boolean isValid() {
+        return buffer.limit() - offset >= HEADER_LENGTH
+                && buffer.get(offset + MAGIC_OFFSET) == MAGIC
+                && buffer.get(offset + VERSION_OFFSET) == VERSION;
+    }
+
+    public int version() {
+        return buffer.get(offset + VERSION_OFFSET);
+    }
+
+    public MessageType type() {
+        return MessageType.fromCode(buffer.get(offset + TYPE_OFFSET) & 0xFF);
+    }
+
+    public int shard() {
+        return buffer.get(offset + SHARD_OFFSET) & 0xFF;
+    }
+
+    public int frameLength() {
+        return buffer.getInt(offset + LENGTH_OFFSET);
+    }
+
+    public int generation() {
+        return buffer.getInt(offset + GENERATION_OFFSET);
+    }
+
+    public int senderId() {
+        return buffer.getInt(offset + SENDER_OFFSET);
+    }
+
+    public int leaderId() {
+        return buffer.getInt(offset + LEADER_OFFSET);
+    }
+
+    public int bodyOffset() {
+        return offset + HEADER_LENGTH;
+    }
+}
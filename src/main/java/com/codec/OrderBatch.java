@@ -0,0 +1,110 @@
+package com.codec;
+
+/**
+ * Lote de ordens decodificado de um único frame. Como o {@link OrderCommand}, a instância
+ * é reutilizada pelo decodificador a cada frame; quem precisar dos comandos depois deve
+ * copiá-los.
+ * <p>
+ * Só entram em lote ordens novas, cancelamentos e alterações; uma entrada inválida (ou
+ * uma consulta) não derruba o lote, fica marcada e recebe um erro na sua linha da resposta.
+ * A resposta de um lote é um texto com uma linha {@code índice\tresultado} por entrada,
+ * na ordem do frame.
+ */
+public final class OrderBatch {
+    public static final int MAX_ORDERS = 256;
+
+    private final OrderCommand[] commands = new OrderCommand[MAX_ORDERS];
+    private final boolean[] valid = new boolean[MAX_ORDERS];
+    private int size;
+    private long correlationId;
+
+    public OrderBatch() {
+        for (int i = 0; i < MAX_ORDERS; i++) {
+            commands[i] = new OrderCommand();
+        }
+    }
+
+    void reset() {
+        size = 0;
+        correlationId = 0;
+    }
+
+    // próximo comando livre, preenchido pelo decodificador
+    OrderCommand next() {
+        return commands[size++];
+    }
+
+    void setValid(int index, boolean valid) {
+        this.valid[index] = valid;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public OrderCommand get(int index) {
+        return commands[index];
+    }
+
+    public boolean isValid(int index) {
+        return valid[index];
+    }
+
+    public int validCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (valid[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(long correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * Monta a resposta de um lote a partir do resultado de cada entrada.
+     */
+    public static String formatResults(String[] results) {
+        StringBuilder text = new StringBuilder(results.length * 128);
+        for (int i = 0; i < results.length; i++) {
+            if (i > 0) {
+                text.append('\n');
+            }
+            text.append(i).append('\t').append(results[i]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Lê a resposta de um lote de {@code count} entradas.
+     *
+     * @return o resultado de cada entrada, ou {@code null} se o texto não for uma resposta
+     * de lote (um erro que vale para o lote inteiro, por exemplo)
+     */
+    public static String[] parseResults(String text, int count) {
+        String[] results = new String[count];
+        int seen = 0;
+        for (String line : text.split("\n")) {
+            int tab = line.indexOf('\t');
+            int index;
+            try {
+                index = tab > 0 ? Integer.parseInt(line, 0, tab, 10) : -1;
+            } catch (NumberFormatException e) {
+                index = -1;
+            }
+            if (index < 0 || index >= count) {
+                return null;
+            }
+            results[index] = line.substring(tab + 1);
+            seen++;
+        }
+        return seen == count ? results : null;
+    }
+}
@@ -0,0 +1,172 @@
+package com.codec;
+
+import com.model.Order;
+import com.model.OrderAction;
+import com.model.OrderType;
+import com.model.SymbolDirectory;
+
+/**
+ * Comando de entrada de ordem decodificado. A instância é reutilizada pelo
+ * decodificador a cada mensagem; quem precisar dos dados depois deve copiá-los.
+ */
+public final class OrderCommand {
+    private OrderAction action;
+    private OrderType side;
+    private String symbol;
+    // id do símbolo no SymbolDirectory deste processo
+    private int symbolId = SymbolDirectory.NO_SYMBOL;
+    private int quantity;
+    private long priceTicks;
+    private long orderId;
+    private long correlationId;
+    // só em consultas: 0 = linearizável, > 0 = milissegundos, < 0 = entradas de atraso aceitas
+    private long readBound;
+
+    void reset() {
+        action = null;
+        side = null;
+        symbol = null;
+        symbolId = SymbolDirectory.NO_SYMBOL;
+        quantity = 0;
+        priceTicks = 0;
+        orderId = 0;
+        correlationId = 0;
+        readBound = 0;
+    }
+
+    public OrderCommand set(OrderAction action, OrderType side, String symbol, int quantity, long priceTicks, long orderId) {
+        this.action = action;
+        this.side = side;
+        this.symbol = symbol;
+        this.symbolId = SymbolDirectory.id(symbol);
+        this.quantity = quantity;
+        this.priceTicks = priceTicks;
+        this.orderId = orderId;
+        return this;
+    }
+
+    /**
+     * Prepara uma consulta; {@code quantity} é o número de níveis em {@link OrderAction#DEPTH}.
+     *
+     * @param readBound ver {@link #getReadBound()}
+     */
+    public OrderCommand setQuery(OrderAction action, String symbol, int quantity, long orderId, long readBound) {
+        set(action, null, symbol, quantity, 0, orderId);
+        this.readBound = readBound;
+        return this;
+    }
+
+    public void setCorrelationId(long correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    void setAction(OrderAction action) {
+        this.action = action;
+    }
+
+    void setSide(OrderType side) {
+        this.side = side;
+    }
+
+    void setSymbol(int symbolId) {
+        this.symbolId = symbolId;
+        this.symbol = SymbolDirectory.symbol(symbolId);
+    }
+
+    void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    void setReadBound(long readBound) {
+        this.readBound = readBound;
+    }
+
+    void setPriceTicks(long priceTicks) {
+        this.priceTicks = priceTicks;
+    }
+
+    void setOrderId(long orderId) {
+        this.orderId = orderId;
+    }
+
+    public OrderAction getAction() {
+        return action;
+    }
+
+    public OrderType getSide() {
+        return side;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public double getPrice() {
+        return Order.fromTicks(priceTicks);
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
+    /**
+     * Atraso que a consulta aceita: 0 exige leitura linearizável (líder com lease),
+     * um valor positivo é o máximo em milissegundos e um negativo, em entradas do log.
+     */
+    public long getReadBound() {
+        return readBound;
+    }
+
+    public boolean isLinearizableRead() {
+        return readBound == 0;
+    }
+
+    // -1 quando o limite não é em milissegundos
+    public long getMaxLagMillis() {
+        return readBound > 0 ? readBound : -1;
+    }
+
+    // -1 quando o limite não é em entradas
+    public long getMaxLagEntries() {
+        return readBound < 0 ? -readBound : -1;
+    }
+
+    public Order toOrder() {
+        return new Order(symbolId, side, quantity, getPrice());
+    }
+
+    @Override
+    public String toString() {
+        return switch (action) {
+            case NEW -> "ORDER:" + side + ";" + symbol + ";" + quantity + ";" + getPrice();
+            case CANCEL -> "ORDER:CANCEL;" + symbol + ";" + orderId;
+            case AMEND -> "ORDER:AMEND;" + symbol + ";" + orderId + ";" + quantity + ";" + getPrice();
+            case TOP_OF_BOOK -> "QUERY:TOP;" + symbol + boundText();
+            case DEPTH -> "QUERY:DEPTH;" + symbol + ";" + quantity + boundText();
+            case ORDER_STATUS -> "QUERY:STATUS;" + symbol + ";" + orderId + boundText();
+        };
+    }
+
+    private String boundText() {
+        if (readBound == 0) {
+            return ";LEASE";
+        }
+        return readBound > 0 ? ";" + readBound + "MS" : ";" + -readBound + "ENTRIES";
+    }
+}
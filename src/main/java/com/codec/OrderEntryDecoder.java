@@ -0,0 +1,476 @@
+package com.codec;
+
+import com.model.Order;
+import com.model.OrderAction;
+import com.model.OrderType;
+import com.model.SymbolDirectory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodificador único da entrada de ordens, usado pelo gateway e pelos servidores.
+ * Lê os bytes no lugar, sem criar Strings intermediárias, e aceita dois formatos:
+ *
+ * <pre>
+ * texto:   ORDER:BUY|SELL;SYMBOL;qty;price
+ *          ORDER:CANCEL;SYMBOL;orderId
+ *          ORDER:AMEND;SYMBOL;orderId;qty;price
+ *          QUERY:TOP;SYMBOL[;bound]
+ *          QUERY:DEPTH;SYMBOL;levels[;bound]
+ *          QUERY:STATUS;SYMBOL;orderId[;bound]
+ *          bound: LEASE (padrão, leitura linearizável no líder), &lt;n&gt;MS ou &lt;n&gt;ENTRIES
+ *
+ * binário: 0  magic      byte (0xB8)
+ *          1  version    byte
+ *          2  action     byte (OrderAction.ordinal)
+ *          3  side       byte (OrderType.ordinal)
+ *          4  quantity   int  (níveis, em DEPTH)
+ *          8  priceTicks long (em consultas, o limite de atraso: 0 = lease,
+ *                              &gt; 0 = milissegundos, &lt; 0 = entradas do log)
+ *          16 orderId    long
+ *          24 correlationId long (ecoado na resposta; 0 quando não usado)
+ *          32 symbolLen  byte
+ *          33 symbol     ASCII
+ * </pre>
+ *
+ * Um lote ({@link OrderBatch}) leva várias ordens num só frame:
+ *
+ * <pre>
+ * texto:   BATCH:n seguido de n linhas de ordem, separadas por \n
+ *
+ * binário: 0  magic         byte (0xB9)
+ *          1  version       byte
+ *          2  count         short
+ *          4  correlationId long (ecoado na resposta; 0 quando não usado)
+ *          12 count registros binários de ordem, cada um com o seu tamanho
+ * </pre>
+ *
+ * O símbolo é resolvido direto dos bytes no {@link SymbolDirectory}: o comando recebe o
+ * id e a String única do símbolo. Um símbolo fora do ASCII visível, ou novo com o
+ * diretório cheio, torna a entrada inválida.
+ * <p>
+ * Não é thread-safe: cada thread de recepção usa a sua instância.
+ */
+public final class OrderEntryDecoder {
+    public static final byte BINARY_MAGIC = (byte) 0xB8;
+    public static final byte BINARY_VERSION = 2;
+    public static final int SYMBOL_LENGTH_OFFSET = 32;
+    public static final int BINARY_HEADER_LENGTH = 33;
+    public static final int MAX_SYMBOL_LENGTH = 32;
+    public static final int MAX_DEPTH_LEVELS = 100;
+    public static final byte BATCH_MAGIC = (byte) 0xB9;
+    public static final byte BATCH_VERSION = 1;
+    public static final int BATCH_HEADER_LENGTH = 12;
+
+    private static final byte[] PREFIX = {'O', 'R', 'D', 'E', 'R', ':'};
+    private static final byte[] BUY = {'B', 'U', 'Y'};
+    private static final byte[] SELL = {'S', 'E', 'L', 'L'};
+    private static final byte[] CANCEL = {'C', 'A', 'N', 'C', 'E', 'L'};
+    private static final byte[] AMEND = {'A', 'M', 'E', 'N', 'D'};
+    private static final byte[] BATCH_PREFIX = {'B', 'A', 'T', 'C', 'H', ':'};
+    private static final byte[] QUERY_PREFIX = {'Q', 'U', 'E', 'R', 'Y', ':'};
+    private static final byte[] TOP = {'T', 'O', 'P'};
+    private static final byte[] DEPTH = {'D', 'E', 'P', 'T', 'H'};
+    private static final byte[] STATUS = {'S', 'T', 'A', 'T', 'U', 'S'};
+    private static final byte[] LEASE = {'L', 'E', 'A', 'S', 'E'};
+    private static final byte[] MILLIS = {'M', 'S'};
+    private static final byte[] ENTRIES = {'E', 'N', 'T', 'R', 'I', 'E', 'S'};
+    private static final OrderAction[] ACTIONS = OrderAction.values();
+    private static final OrderType[] SIDES = OrderType.values();
+
+    private byte[] data;
+    private int position;
+    private int end;
+
+    /**
+     * Tamanho total de um registro binário a partir do byte de tamanho do símbolo.
+     */
+    public static int binaryLength(int symbolLengthByte) {
+        return BINARY_HEADER_LENGTH + Math.min(symbolLengthByte & 0xFF, MAX_SYMBOL_LENGTH);
+    }
+
+    public static boolean isOrderEntry(byte[] data, int offset, int length) {
+        if (length > 0 && data[offset] == BINARY_MAGIC) {
+            return true;
+        }
+        if (length < PREFIX.length - 1) {
+            return false;
+        }
+        return data[offset] == 'O' && data[offset + 1] == 'R' && data[offset + 2] == 'D'
+                && data[offset + 3] == 'E' && data[offset + 4] == 'R'
+                || data[offset] == 'Q' && data[offset + 1] == 'U' && data[offset + 2] == 'E'
+                && data[offset + 3] == 'R' && data[offset + 4] == 'Y';
+    }
+
+    public static boolean isBatch(byte[] data, int offset, int length) {
+        if (length > 0 && data[offset] == BATCH_MAGIC) {
+            return true;
+        }
+        if (length < BATCH_PREFIX.length) {
+            return false;
+        }
+        for (int i = 0; i < BATCH_PREFIX.length; i++) {
+            if (data[offset + i] != BATCH_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean decode(ByteBuffer buffer, OrderCommand command) {
+        if (!buffer.hasArray()) {
+            throw new IllegalArgumentException("OrderEntryDecoder requer buffer com array");
+        }
+        return decode(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), command);
+    }
+
+    /**
+     * @return {@code false} se a mensagem for inválida; o comando fica em estado indefinido
+     */
+    public boolean decode(byte[] data, int offset, int length, OrderCommand command) {
+        command.reset();
+        if (length <= 0) {
+            return false;
+        }
+        return data[offset] == BINARY_MAGIC
+                ? decodeBinary(data, offset, length, command)
+                : decodeText(data, offset, length, command);
+    }
+
+    /**
+     * Decodifica um lote validando cada entrada; as inválidas ficam marcadas no lote.
+     *
+     * @return {@code false} se o próprio frame for inválido (cabeçalho, contagem ou
+     * entradas truncadas); o lote fica em estado indefinido
+     */
+    public boolean decodeBatch(byte[] data, int offset, int length, OrderBatch batch) {
+        batch.reset();
+        if (length <= 0) {
+            return false;
+        }
+        return data[offset] == BATCH_MAGIC
+                ? decodeBinaryBatch(data, offset, length, batch)
+                : decodeTextBatch(data, offset, length, batch);
+    }
+
+    private boolean decodeBinaryBatch(byte[] data, int offset, int length, OrderBatch batch) {
+        if (length < BATCH_HEADER_LENGTH || data[offset + 1] != BATCH_VERSION) {
+            return false;
+        }
+        int count = ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+        if (count == 0 || count > OrderBatch.MAX_ORDERS) {
+            return false;
+        }
+        batch.setCorrelationId(getLong(data, offset + 4));
+        int position = offset + BATCH_HEADER_LENGTH;
+        int end = offset + length;
+        for (int i = 0; i < count; i++) {
+            if (end - position < BINARY_HEADER_LENGTH || data[position] != BINARY_MAGIC) {
+                return false;
+            }
+            int recordLength = binaryLength(data[position + SYMBOL_LENGTH_OFFSET]);
+            if (end - position < recordLength) {
+                return false;
+            }
+            addToBatch(data, position, recordLength, batch);
+            position += recordLength;
+        }
+        return position == end;
+    }
+
+    private boolean decodeTextBatch(byte[] data, int offset, int length, OrderBatch batch) {
+        int end = offset + length;
+        int lineEnd = indexOf(data, offset, end, (byte) '\n');
+        this.data = data;
+        this.position = offset;
+        this.end = trimEnd(data, offset, lineEnd);
+        long count;
+        try {
+            if (!consume(BATCH_PREFIX)) {
+                return false;
+            }
+            count = digits(4);
+            if (!atEnd()) {
+                return false;
+            }
+        } finally {
+            this.data = null;
+        }
+        if (count <= 0 || count > OrderBatch.MAX_ORDERS) {
+            return false;
+        }
+        int start = lineEnd + 1;
+        while (start < end && batch.size() < count) {
+            lineEnd = indexOf(data, start, end, (byte) '\n');
+            if (lineEnd > start) {
+                addToBatch(data, start, lineEnd - start, batch);
+            }
+            start = lineEnd + 1;
+        }
+        return batch.size() == count;
+    }
+
+    // só ordens que mudam o livro entram num lote
+    private void addToBatch(byte[] data, int offset, int length, OrderBatch batch) {
+        int index = batch.size();
+        OrderCommand command = batch.next();
+        batch.setValid(index, decode(data, offset, length, command) && !command.getAction().isQuery());
+    }
+
+    private static int indexOf(byte[] data, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private boolean decodeBinary(byte[] data, int offset, int length, OrderCommand command) {
+        if (length < BINARY_HEADER_LENGTH || data[offset + 1] != BINARY_VERSION) {
+            return false;
+        }
+        int action = data[offset + 2];
+        int side = data[offset + 3];
+        int symbolLength = data[offset + SYMBOL_LENGTH_OFFSET];
+        if (action < 0 || action >= ACTIONS.length || side < 0 || side >= SIDES.length
+                || symbolLength <= 0 || symbolLength > MAX_SYMBOL_LENGTH
+                || length < BINARY_HEADER_LENGTH + symbolLength) {
+            return false;
+        }
+        command.setAction(ACTIONS[action]);
+        command.setSide(SIDES[side]);
+        command.setQuantity(getInt(data, offset + 4));
+        if (command.getAction().isQuery()) {
+            command.setReadBound(getLong(data, offset + 8));
+        } else {
+            command.setPriceTicks(getLong(data, offset + 8));
+        }
+        command.setOrderId(getLong(data, offset + 16));
+        command.setCorrelationId(getLong(data, offset + 24));
+        int symbolId = SymbolDirectory.id(data, offset + BINARY_HEADER_LENGTH, symbolLength);
+        if (symbolId == SymbolDirectory.NO_SYMBOL) {
+            return false;
+        }
+        command.setSymbol(symbolId);
+        return validate(command);
+    }
+
+    private boolean decodeText(byte[] data, int offset, int length, OrderCommand command) {
+        this.data = data;
+        this.position = offset;
+        this.end = trimEnd(data, offset, offset + length);
+        try {
+            if (consume(QUERY_PREFIX)) {
+                return decodeQuery(command);
+            }
+            if (!consume(PREFIX)) {
+                return false;
+            }
+            skipSpaces();
+            if (consume(BUY)) {
+                return decodeNew(OrderType.BUY, command);
+            } else if (consume(SELL)) {
+                return decodeNew(OrderType.SELL, command);
+            } else if (consume(CANCEL)) {
+                command.setAction(OrderAction.CANCEL);
+                return separator() && symbol(command) && separator() && orderId(command)
+                        && atEnd() && validate(command);
+            } else if (consume(AMEND)) {
+                command.setAction(OrderAction.AMEND);
+                return separator() && symbol(command) && separator() && orderId(command)
+                        && separator() && quantity(command) && separator() && price(command)
+                        && atEnd() && validate(command);
+            }
+            return false;
+        } finally {
+            this.data = null;
+        }
+    }
+
+    private boolean decodeNew(OrderType side, OrderCommand command) {
+        command.setAction(OrderAction.NEW);
+        command.setSide(side);
+        return separator() && symbol(command) && separator() && quantity(command)
+                && separator() && price(command) && atEnd() && validate(command);
+    }
+
+    private boolean decodeQuery(OrderCommand command) {
+        skipSpaces();
+        if (consume(TOP)) {
+            command.setAction(OrderAction.TOP_OF_BOOK);
+            command.setQuantity(1);
+            return separator() && symbol(command) && readBound(command) && validate(command);
+        } else if (consume(DEPTH)) {
+            command.setAction(OrderAction.DEPTH);
+            return separator() && symbol(command) && separator() && quantity(command)
+                    && readBound(command) && validate(command);
+        } else if (consume(STATUS)) {
+            command.setAction(OrderAction.ORDER_STATUS);
+            return separator() && symbol(command) && separator() && orderId(command)
+                    && readBound(command) && validate(command);
+        }
+        return false;
+    }
+
+    // limite de atraso opcional no fim da consulta; sem ele a leitura é linearizável
+    private boolean readBound(OrderCommand command) {
+        if (atEnd()) {
+            return true;
+        }
+        if (!separator()) {
+            return false;
+        }
+        if (consume(LEASE)) {
+            command.setReadBound(0);
+            return atEnd();
+        }
+        long value = digits(12);
+        if (value <= 0) {
+            return false;
+        }
+        if (consume(MILLIS)) {
+            command.setReadBound(value);
+        } else if (consume(ENTRIES)) {
+            command.setReadBound(-value);
+        } else {
+            return false;
+        }
+        return atEnd();
+    }
+
+    private static boolean validate(OrderCommand command) {
+        return switch (command.getAction()) {
+            case NEW -> command.getQuantity() > 0 && command.getPriceTicks() > 0;
+            case CANCEL -> command.getOrderId() > 0;
+            case AMEND -> command.getOrderId() > 0 && command.getQuantity() >= 0 && command.getPriceTicks() > 0;
+            case TOP_OF_BOOK -> true;
+            case DEPTH -> command.getQuantity() > 0 && command.getQuantity() <= MAX_DEPTH_LEVELS;
+            case ORDER_STATUS -> command.getOrderId() > 0;
+        };
+    }
+
+    private boolean consume(byte[] token) {
+        if (end - position < token.length) {
+            return false;
+        }
+        for (int i = 0; i < token.length; i++) {
+            if (data[position + i] != token[i]) {
+                return false;
+            }
+        }
+        position += token.length;
+        return true;
+    }
+
+    private void skipSpaces() {
+        while (position < end && data[position] == ' ') {
+            position++;
+        }
+    }
+
+    private boolean separator() {
+        skipSpaces();
+        if (position < end && data[position] == ';') {
+            position++;
+            skipSpaces();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean atEnd() {
+        skipSpaces();
+        return position == end;
+    }
+
+    private boolean symbol(OrderCommand command) {
+        int start = position;
+        while (position < end && data[position] != ';' && data[position] != ' ') {
+            position++;
+        }
+        int length = position - start;
+        if (length == 0 || length > MAX_SYMBOL_LENGTH) {
+            return false;
+        }
+        int symbolId = SymbolDirectory.id(data, start, length);
+        if (symbolId == SymbolDirectory.NO_SYMBOL) {
+            return false;
+        }
+        command.setSymbol(symbolId);
+        return true;
+    }
+
+    private boolean quantity(OrderCommand command) {
+        long value = digits(9);
+        if (value < 0) {
+            return false;
+        }
+        command.setQuantity((int) value);
+        return true;
+    }
+
+    private boolean orderId(OrderCommand command) {
+        long value = digits(18);
+        if (value < 0) {
+            return false;
+        }
+        command.setOrderId(value);
+        return true;
+    }
+
+    // inteiro decimal sem sinal; -1 se vazio ou com dígitos demais
+    private long digits(int maxDigits) {
+        int start = position;
+        long value = 0;
+        while (position < end && data[position] >= '0' && data[position] <= '9') {
+            value = value * 10 + (data[position] - '0');
+            position++;
+        }
+        int count = position - start;
+        return count == 0 || count > maxDigits ? -1 : value;
+    }
+
+    // preço decimal convertido direto em ticks (Order.TICKS_PER_UNIT), arredondando casas extras
+    private boolean price(OrderCommand command) {
+        long units = digits(12);
+        if (units < 0) {
+            return false;
+        }
+        long ticks = units * Order.TICKS_PER_UNIT;
+        if (position < end && data[position] == '.') {
+            position++;
+            long scale = Order.TICKS_PER_UNIT;
+            boolean rounded = false;
+            while (position < end && data[position] >= '0' && data[position] <= '9') {
+                int digit = data[position] - '0';
+                if (scale > 1) {
+                    scale /= 10;
+                    ticks += digit * scale;
+                } else if (!rounded) {
+                    ticks += digit >= 5 ? 1 : 0;
+                    rounded = true;
+                }
+                position++;
+            }
+        }
+        command.setPriceTicks(ticks);
+        return true;
+    }
+
+    private static int trimEnd(byte[] data, int start, int end) {
+        while (end > start && (data[end - 1] == '\n' || data[end - 1] == '\r' || data[end - 1] == ' ' || data[end - 1] == 0)) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        return ((long) getInt(data, offset) << 32) | (getInt(data, offset + 4) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,50 @@
+package com.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Escreve o formato binário de entrada de ordens (layout em {@link OrderEntryDecoder}).
+ */
+public final class OrderEntryEncoder {
+
+    private OrderEntryEncoder() {
+    }
+
+    public static void encodeBinary(OrderCommand command, ByteBuffer buffer) {
+        String symbol = command.getSymbol();
+        buffer.put(OrderEntryDecoder.BINARY_MAGIC)
+                .put(OrderEntryDecoder.BINARY_VERSION)
+                .put((byte) command.getAction().ordinal())
+                .put((byte) (command.getSide() == null ? 0 : command.getSide().ordinal()))
+                .putInt(command.getQuantity())
+                .putLong(command.getAction().isQuery() ? command.getReadBound() : command.getPriceTicks())
+                .putLong(command.getOrderId())
+                .putLong(command.getCorrelationId())
+                .put((byte) symbol.length());
+        for (int i = 0; i < symbol.length(); i++) {
+            buffer.put((byte) symbol.charAt(i));
+        }
+    }
+
+    /**
+     * Escreve um lote binário com os {@code count} primeiros comandos de {@code commands}.
+     * Só o correlationId do lote é ecoado na resposta.
+     */
+    public static void encodeBatch(OrderCommand[] commands, int count, long correlationId, ByteBuffer buffer) {
+        buffer.put(OrderEntryDecoder.BATCH_MAGIC)
+                .put(OrderEntryDecoder.BATCH_VERSION)
+                .putShort((short) count)
+                .putLong(correlationId);
+        for (int i = 0; i < count; i++) {
+            encodeBinary(commands[i], buffer);
+        }
+    }
+
+    /**
+     * Tamanho máximo de um lote binário de {@code count} comandos.
+     */
+    public static int maxBatchLength(int count) {
+        return OrderEntryDecoder.BATCH_HEADER_LENGTH
+                + count * (OrderEntryDecoder.BINARY_HEADER_LENGTH + OrderEntryDecoder.MAX_SYMBOL_LENGTH);
+    }
+}
@@ -0,0 +1,141 @@
+package com.eventlog;
+
+import com.model.Order;
+import com.model.OrderAction;
+import com.model.OrderType;
+import com.patterns.MessageType;
+
+/**
+ * Catálogo dos eventos gravados pelo {@link EventLog}. O registro só guarda o ordinal do
+ * evento e até {@link EventLog#MAX_ARGS} argumentos {@code long}; o texto é montado por
+ * {@link #format} na leitura, a partir do modelo e do tipo de cada argumento.
+ * <p>
+ * Novos eventos entram no fim da lista: o ordinal é o que vai para o arquivo.
+ */
+public enum Event {
+    EVENTS_DROPPED(EventCategory.LOG, EventLevel.WARN, "{0} eventos descartados com o buffer cheio",
+            Arg.NUMBER),
+
+    ORDER_RECEIVED(EventCategory.ORDER, EventLevel.DEBUG, "Ordem recebida: {0} {1} {2} {3}@{4} (ordem {5})",
+            Arg.ACTION, Arg.SIDE, Arg.SYMBOL, Arg.NUMBER, Arg.PRICE, Arg.NUMBER),
+
+    MESSAGE_RECEIVED(EventCategory.CLUSTER, EventLevel.DEBUG, "{0} recebido de {1} na geração {2}",
+            Arg.MESSAGE_TYPE, Arg.NUMBER, Arg.NUMBER),
+    UNKNOWN_MESSAGE(EventCategory.CLUSTER, EventLevel.WARN, "Tipo de mensagem desconhecido: {0} de {1}",
+            Arg.MESSAGE_TYPE, Arg.NUMBER),
+    HEARTBEAT_SENT(EventCategory.CLUSTER, EventLevel.DEBUG, "Heartbeat da geração {0} para: {1}",
+            Arg.NUMBER, Arg.NUMBER),
+    NODE_FAILED(EventCategory.CLUSTER, EventLevel.WARN, "Servidor {0} considerado falho.",
+            Arg.NUMBER),
+    LEADER_RECOGNIZED(EventCategory.CLUSTER, EventLevel.INFO, "Node {0} reconhece o líder {1} no termo {2}",
+            Arg.NUMBER, Arg.NUMBER, Arg.NUMBER),
+    ELECTION_STARTED(EventCategory.CLUSTER, EventLevel.INFO, "Node {0} iniciando Election... Generation: {1}",
+            Arg.NUMBER, Arg.NUMBER),
+    ELECTION_FAILED(EventCategory.CLUSTER, EventLevel.INFO, "Nenhuma resposta de outros nós. Node {0} voltando a follower.",
+            Arg.NUMBER),
+    VOTE_REFUSED(EventCategory.CLUSTER, EventLevel.INFO, "{0} recusou voto para {1}: log desatualizado.",
+            Arg.NUMBER, Arg.NUMBER),
+    VOTE_GRANTED(EventCategory.CLUSTER, EventLevel.INFO, "{0} votou para {1} na geração {2}.",
+            Arg.NUMBER, Arg.NUMBER, Arg.NUMBER),
+    VOTE_RECEIVED(EventCategory.CLUSTER, EventLevel.DEBUG, "Node {0} recebeu um voto. Total: {1}",
+            Arg.NUMBER, Arg.NUMBER),
+    LEADER_ELECTED(EventCategory.CLUSTER, EventLevel.INFO, "Node {0} se tornou o líder no termo {1}",
+            Arg.NUMBER, Arg.NUMBER),
+
+    LEADERSHIP_LOST(EventCategory.REPLICATION, EventLevel.INFO, "Node {0} deixa a liderança: geração {1} em {2}",
+            Arg.NUMBER, Arg.NUMBER, Arg.NUMBER),
+
+    GATEWAY_REQUEST(EventCategory.GATEWAY, EventLevel.DEBUG, "Pacote recebido: {0} {1} {2} {3}@{4} (ordem {5})",
+            Arg.ACTION, Arg.SIDE, Arg.SYMBOL, Arg.NUMBER, Arg.PRICE, Arg.NUMBER),
+    GATEWAY_FORWARDED(EventCategory.GATEWAY, EventLevel.DEBUG, "Pacote redirecionado para {0} (correlação {1})",
+            Arg.ADDRESS, Arg.NUMBER),
+    GATEWAY_REPLIED(EventCategory.GATEWAY, EventLevel.DEBUG, "Resposta enviada de volta para {0}",
+            Arg.ADDRESS),
+    GATEWAY_TIMEOUT(EventCategory.GATEWAY, EventLevel.WARN, "Timeout ao esperar pela resposta da instância {0}",
+            Arg.ADDRESS),
+    GATEWAY_LEADER(EventCategory.GATEWAY, EventLevel.INFO, "Gateway reconhece o líder {0} do shard {1} na geração {2}",
+            Arg.NUMBER, Arg.NUMBER, Arg.NUMBER),
+
+    BATCH_RECEIVED(EventCategory.ORDER, EventLevel.DEBUG, "Lote recebido: {0} ordens, {1} válidas",
+            Arg.NUMBER, Arg.NUMBER),
+    GATEWAY_BATCH(EventCategory.GATEWAY, EventLevel.DEBUG, "Lote recebido: {0} ordens, {1} válidas, {2} shards",
+            Arg.NUMBER, Arg.NUMBER, Arg.NUMBER),
+    GATEWAY_MESSAGE_IGNORED(EventCategory.GATEWAY, EventLevel.DEBUG, "Gateway: mensagem {0} de {1} ignorada",
+            Arg.MESSAGE_TYPE, Arg.ADDRESS),
+    GATEWAY_UNKNOWN_SHARD(EventCategory.GATEWAY, EventLevel.WARN, "Gateway: heartbeat do shard desconhecido {0} de {1}",
+            Arg.NUMBER, Arg.ADDRESS),
+    LEADER_CONFLICT(EventCategory.REPLICATION, EventLevel.ERROR, "Node {0}, líder da geração {1}, recusou o contato do líder {2}",
+            Arg.NUMBER, Arg.NUMBER, Arg.NUMBER);
+
+    /**
+     * Como um argumento {@code long} é codificado na gravação e decodificado na leitura.
+     */
+    public enum Arg {
+        NUMBER,
+        // preço em ticks, como em Order.getPriceTicks
+        PRICE,
+        // até 8 caracteres ASCII, ver EventLog.symbol
+        SYMBOL,
+        ACTION,
+        SIDE,
+        MESSAGE_TYPE,
+        // IPv4 e porta, ver EventLog.address
+        ADDRESS;
+
+        private static final OrderAction[] ACTIONS = OrderAction.values();
+        private static final OrderType[] SIDES = OrderType.values();
+        private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+
+        String format(long value) {
+            return switch (this) {
+                case NUMBER -> Long.toString(value);
+                case PRICE -> Double.toString(Order.fromTicks(value));
+                case SYMBOL -> EventLog.symbol(value);
+                case ACTION -> value >= 0 && value < ACTIONS.length ? ACTIONS[(int) value].name() : "?" + value;
+                case SIDE -> value >= 0 && value < SIDES.length ? SIDES[(int) value].name() : "-";
+                case MESSAGE_TYPE -> value >= 0 && value < MESSAGE_TYPES.length
+                        ? MESSAGE_TYPES[(int) value].name() : "?" + value;
+                case ADDRESS -> (value >>> 40 & 0xFF) + "." + (value >>> 32 & 0xFF) + "." + (value >>> 24 & 0xFF)
+                        + "." + (value >>> 16 & 0xFF) + ":" + (value & 0xFFFF);
+            };
+        }
+    }
+
+    private final EventCategory category;
+    private final EventLevel level;
+    private final String template;
+    private final Arg[] args;
+
+    Event(EventCategory category, EventLevel level, String template, Arg... args) {
+        this.category = category;
+        this.level = level;
+        this.template = template;
+        this.args = args;
+    }
+
+    public EventCategory getCategory() {
+        return category;
+    }
+
+    public EventLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Monta o texto do evento; {@code {n}} no modelo é o argumento {@code n}.
+     */
+    public String format(long[] values) {
+        StringBuilder text = new StringBuilder(template.length() + 32);
+        for (int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == '{' && i + 2 < template.length() && template.charAt(i + 2) == '}') {
+                int arg = template.charAt(i + 1) - '0';
+                text.append(arg < args.length ? args[arg].format(values[arg]) : "?");
+                i += 2;
+            } else {
+                text.append(c);
+            }
+        }
+        return text.toString();
+    }
+}
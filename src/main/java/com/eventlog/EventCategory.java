@@ -0,0 +1,26 @@
+package com.eventlog;
+
+/**
+ * Grupos de eventos com nível próprio, ajustável em execução por
+ * {@link EventLog#setLevel} ou na partida por {@code -Deventlog.level.<CATEGORIA>}.
+ */
+public enum EventCategory {
+    // auditoria das ordens recebidas pelos servidores
+    ORDER(EventLevel.DEBUG),
+    // eleição, votos e heartbeats
+    CLUSTER(EventLevel.INFO),
+    REPLICATION(EventLevel.INFO),
+    GATEWAY(EventLevel.INFO),
+    // avisos do próprio log de eventos
+    LOG(EventLevel.INFO);
+
+    private final EventLevel defaultLevel;
+
+    EventCategory(EventLevel defaultLevel) {
+        this.defaultLevel = defaultLevel;
+    }
+
+    public EventLevel getDefaultLevel() {
+        return defaultLevel;
+    }
+}
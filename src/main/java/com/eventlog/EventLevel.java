@@ -0,0 +1,10 @@
+package com.eventlog;
+
+public enum EventLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    // só como nível de categoria: desliga todos os eventos dela
+    OFF
+}
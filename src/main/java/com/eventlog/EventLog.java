@@ -0,0 +1,355 @@
+package com.eventlog;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Log de eventos binário e assíncrono, no lugar do {@code System.out} nos caminhos quentes.
+ * <p>
+ * Quem registra um evento só copia o ordinal dele e até {@link #MAX_ARGS} argumentos
+ * {@code long} para um slot de um buffer circular pré-alocado: não monta texto, não aloca
+ * e não bloqueia. Com o buffer cheio o evento é descartado e contado; a thread
+ * {@code event-log} grava um {@link Event#EVENTS_DROPPED} com o total. Essa thread esvazia
+ * o buffer em arquivos {@code events-NNNNNNNNN.bin} de registros de {@link #RECORD_LENGTH}
+ * bytes, trocando de arquivo ao passar de {@code maxFileBytes}; o texto só é montado por
+ * {@link EventLogReader}.
+ *
+ * <pre>
+ * arquivo: magic int, versão short, tamanho do registro short, criação long (ms)
+ * registro: instante long (ms), thread &lt;&lt; 16 | ordinal do evento long, 6 argumentos long
+ * </pre>
+ * Antes de {@link #start} nada é registrado.
+ */
+public final class EventLog {
+    public static final int MAX_ARGS = 6;
+    static final int RECORD_LONGS = 2 + MAX_ARGS;
+    static final int RECORD_LENGTH = RECORD_LONGS * Long.BYTES;
+    static final int MAGIC = 0x45564C47;
+    static final short VERSION = 1;
+    static final int FILE_HEADER_LENGTH = 16;
+    static final String FILE_PREFIX = "events-";
+    static final String FILE_SUFFIX = ".bin";
+    private static final int WRITE_BUFFER_RECORDS = 1024;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    // -Deventlog.capacity: registros no buffer, arredondado para potência de 2
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(64, Integer.getInteger("eventlog.capacity", 16384) - 1)) << 1;
+    private static final int MASK = CAPACITY - 1;
+    private static final long[] records = new long[CAPACITY * RECORD_LONGS];
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong claimSequence = new AtomicLong();
+    private static final AtomicLong consumeSequence = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    // nível mínimo por categoria, trocado inteiro a cada ajuste
+    private static volatile int[] thresholds = initialThresholds();
+    private static volatile boolean started;
+    private static volatile boolean running;
+    private static Thread writerThread;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    private EventLog() {
+    }
+
+    /**
+     * Inicia a gravação em {@code directory} com os limites de {@code -Deventlog.maxFileBytes}
+     * (64 MB) e {@code -Deventlog.maxFiles} (10 arquivos; os mais antigos são apagados).
+     */
+    public static void start(Path directory) throws IOException {
+        start(directory, Long.getLong("eventlog.maxFileBytes", 64L * 1024 * 1024),
+                Integer.getInteger("eventlog.maxFiles", 10));
+    }
+
+    public static synchronized void start(Path directory, long maxFileBytes, int maxFiles) throws IOException {
+        if (started) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Writer writer = new Writer(directory, maxFileBytes, maxFiles);
+        writer.roll();
+        running = true;
+        writerThread = new Thread(writer::run, "event-log");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(EventLog::stop, "event-log-shutdown"));
+        started = true;
+    }
+
+    /**
+     * Grava o que ainda estiver no buffer e para a thread de gravação.
+     */
+    public static void stop() {
+        Thread thread;
+        synchronized (EventLog.class) {
+            if (!started) {
+                return;
+            }
+            started = false;
+            running = false;
+            thread = writerThread;
+        }
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static boolean isEnabled(Event event) {
+        return started && event.getLevel().ordinal() >= thresholds[event.getCategory().ordinal()];
+    }
+
+    public static EventLevel getLevel(EventCategory category) {
+        return EventLevel.values()[thresholds[category.ordinal()]];
+    }
+
+    /**
+     * Passa a registrar só os eventos de {@code category} com nível {@code level} ou acima;
+     * vale para as próximas chamadas de qualquer thread.
+     */
+    public static synchronized void setLevel(EventCategory category, EventLevel level) {
+        int[] updated = thresholds.clone();
+        updated[category.ordinal()] = level.ordinal();
+        thresholds = updated;
+    }
+
+    // -Deventlog.level vale para todas as categorias; -Deventlog.level.<CATEGORIA> só para uma
+    private static int[] initialThresholds() {
+        EventCategory[] categories = EventCategory.values();
+        String global = System.getProperty("eventlog.level");
+        int[] levels = new int[categories.length];
+        for (EventCategory category : categories) {
+            String level = System.getProperty("eventlog.level." + category.name(), global);
+            levels[category.ordinal()] = level == null ? category.getDefaultLevel().ordinal()
+                    : EventLevel.valueOf(level.toUpperCase()).ordinal();
+        }
+        return levels;
+    }
+
+    public static void log(Event event, long a) {
+        log(event, a, 0, 0, 0, 0, 0);
+    }
+
+    public static void log(Event event, long a, long b) {
+        log(event, a, b, 0, 0, 0, 0);
+    }
+
+    public static void log(Event event, long a, long b, long c) {
+        log(event, a, b, c, 0, 0, 0);
+    }
+
+    public static void log(Event event, long a, long b, long c, long d, long e, long f) {
+        if (!isEnabled(event)) {
+            return;
+        }
+        long sequence = tryClaim();
+        if (sequence < 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        int index = (int) (sequence & MASK);
+        int base = index * RECORD_LONGS;
+        records[base] = System.currentTimeMillis();
+        records[base + 1] = Thread.currentThread().threadId() << 16 | event.ordinal();
+        records[base + 2] = a;
+        records[base + 3] = b;
+        records[base + 4] = c;
+        records[base + 5] = d;
+        records[base + 6] = e;
+        records[base + 7] = f;
+        published.set(index, sequence);
+    }
+
+    private static long tryClaim() {
+        while (true) {
+            long sequence = claimSequence.get();
+            if (sequence - consumeSequence.get() >= CAPACITY) {
+                return -1;
+            }
+            if (claimSequence.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Até 8 caracteres ASCII de {@code symbol} num argumento {@link Event.Arg#SYMBOL}.
+     * Símbolos mais longos são truncados.
+     */
+    public static long symbol(String symbol) {
+        long packed = 0;
+        int length = Math.min(8, symbol.length());
+        for (int i = 0; i < 8; i++) {
+            packed = packed << 8 | (i < length ? symbol.charAt(i) & 0xFF : 0);
+        }
+        return packed;
+    }
+
+    static String symbol(long packed) {
+        StringBuilder symbol = new StringBuilder(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            char c = (char) (packed >>> shift & 0xFF);
+            if (c == 0) {
+                break;
+            }
+            symbol.append(c);
+        }
+        return symbol.toString();
+    }
+
+    /**
+     * IPv4 e porta de {@code address} num argumento {@link Event.Arg#ADDRESS}; o endereço
+     * fica zerado para IPv6.
+     */
+    public static long address(InetSocketAddress address) {
+        InetAddress inet = address.getAddress();
+        // o hashCode de Inet4Address é o próprio endereço, sem copiar os bytes
+        long ip = inet instanceof Inet4Address ? inet.hashCode() & 0xFFFFFFFFL : 0;
+        return ip << 16 | address.getPort();
+    }
+
+    private static final class Writer {
+        private final Path directory;
+        private final long maxFileBytes;
+        private final int maxFiles;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_RECORDS * RECORD_LENGTH);
+        private FileChannel channel;
+        private long fileNumber;
+
+        Writer(Path directory, long maxFileBytes, int maxFiles) throws IOException {
+            this.directory = directory;
+            this.maxFileBytes = maxFileBytes;
+            this.maxFiles = Math.max(1, maxFiles);
+            this.fileNumber = lastFileNumber();
+        }
+
+        void run() {
+            try {
+                while (true) {
+                    boolean stopping = !running;
+                    long lost = dropped.getAndSet(0);
+                    if (lost > 0) {
+                        put(System.currentTimeMillis(), Thread.currentThread().threadId() << 16
+                                | Event.EVENTS_DROPPED.ordinal(), lost);
+                    }
+                    int drained = drain();
+                    if (buffer.position() > 0) {
+                        write();
+                    }
+                    if (drained == 0) {
+                        if (stopping) {
+                            break;
+                        }
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar o log de eventos em " + directory + ": " + e.getMessage());
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Erro ao fechar o log de eventos: " + e.getMessage());
+                }
+            }
+        }
+
+        // copia para o buffer de escrita o que já foi publicado, até enchê-lo
+        private int drain() {
+            long next = consumeSequence.get();
+            int count = 0;
+            while (buffer.remaining() >= RECORD_LENGTH) {
+                int index = (int) (next & MASK);
+                if (published.get(index) != next) {
+                    break;
+                }
+                int base = index * RECORD_LONGS;
+                for (int i = 0; i < RECORD_LONGS; i++) {
+                    buffer.putLong(records[base + i]);
+                }
+                next++;
+                count++;
+                consumeSequence.lazySet(next);
+            }
+            return count;
+        }
+
+        private void put(long timestamp, long header, long arg) {
+            buffer.putLong(timestamp).putLong(header).putLong(arg);
+            for (int i = 1; i < MAX_ARGS; i++) {
+                buffer.putLong(0);
+            }
+        }
+
+        private void write() throws IOException {
+            if (channel.position() + buffer.position() > maxFileBytes) {
+                roll();
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void roll() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+            fileNumber++;
+            channel = FileChannel.open(directory.resolve(String.format("%s%09d%s", FILE_PREFIX, fileNumber, FILE_SUFFIX)),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_LENGTH).putInt(MAGIC).putShort(VERSION)
+                    .putShort((short) RECORD_LENGTH).putLong(System.currentTimeMillis()).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            List<Path> files = files(directory);
+            for (int i = 0; i < files.size() - maxFiles; i++) {
+                Files.deleteIfExists(files.get(i));
+            }
+        }
+
+        private long lastFileNumber() throws IOException {
+            List<Path> files = files(directory);
+            return files.isEmpty() ? 0 : fileNumber(files.get(files.size() - 1));
+        }
+    }
+
+    /**
+     * Arquivos do log em {@code directory}, do mais antigo para o mais novo.
+     */
+    static List<Path> files(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            List<Path> files = new ArrayList<>(paths
+                    .filter(path -> path.getFileName().toString().startsWith(FILE_PREFIX)
+                            && path.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .toList());
+            files.sort((a, b) -> Long.compare(fileNumber(a), fileNumber(b)));
+            return files;
+        }
+    }
+
+    private static long fileNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.eventlog;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Decodifica os arquivos gravados pelo {@link EventLog}. É aqui, fora do processo que
+ * registrou os eventos, que o texto de cada um é montado.
+ */
+public class EventLogReader {
+    private static final Event[] EVENTS = Event.values();
+
+    /**
+     * Imprime em {@code out} os eventos de {@code file} com nível {@code minLevel} ou acima.
+     *
+     * @return quantos eventos foram impressos
+     */
+    public static long print(Path file, EventLevel minLevel, PrintStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(EventLog.FILE_HEADER_LENGTH);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException(file + " não tem o cabeçalho do log de eventos");
+                }
+            }
+            header.flip();
+            if (header.getInt() != EventLog.MAGIC || header.getShort() != EventLog.VERSION
+                    || header.getShort() != EventLog.RECORD_LENGTH) {
+                throw new IOException(file + " não é um log de eventos desta versão");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(1024 * EventLog.RECORD_LENGTH);
+            long[] args = new long[EventLog.MAX_ARGS];
+            long printed = 0;
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.remaining() >= EventLog.RECORD_LENGTH) {
+                    long timestamp = buffer.getLong();
+                    long eventHeader = buffer.getLong();
+                    for (int i = 0; i < args.length; i++) {
+                        args[i] = buffer.getLong();
+                    }
+                    int ordinal = (int) (eventHeader & 0xFFFF);
+                    if (ordinal >= EVENTS.length) {
+                        out.println(Instant.ofEpochMilli(timestamp) + " evento desconhecido " + ordinal);
+                        continue;
+                    }
+                    Event event = EVENTS[ordinal];
+                    if (event.getLevel().compareTo(minLevel) < 0) {
+                        continue;
+                    }
+                    out.println(Instant.ofEpochMilli(timestamp) + " " + event.getLevel() + " " + event.getCategory()
+                            + " [" + (eventHeader >>> 16) + "] " + event.format(args));
+                    printed++;
+                }
+                // um registro incompleto fica para a próxima leitura; no fim do arquivo é descartado
+                buffer.compact();
+            }
+            return printed;
+        }
+    }
+
+    /**
+     * Uso: java EventLogReader &lt;diretório ou arquivo&gt; [nível mínimo]. Um diretório é lido
+     * do arquivo mais antigo para o mais novo.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Uso: java EventLogReader <diretório|arquivo> [DEBUG|INFO|WARN|ERROR]");
+            return;
+        }
+        Path path = Path.of(args[0]);
+        EventLevel minLevel = args.length > 1 ? EventLevel.valueOf(args[1].toUpperCase()) : EventLevel.DEBUG;
+        List<Path> files = Files.isDirectory(path) ? EventLog.files(path) : List.of(path);
+        for (Path file : files) {
+            print(file, minLevel, System.out);
+        }
+    }
+}
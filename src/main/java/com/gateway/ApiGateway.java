@@ -1,41 +1,74 @@
 package com.gateway;
 
+import com.codec.MessageCodec;
+import com.codec.MessageCodecs;
+import com.codec.OrderBatch;
+import com.codec.OrderCommand;
+import com.codec.OrderEntryDecoder;
+import com.eventlog.Event;
+import com.eventlog.EventLog;
+import com.metrics.Metrics;
 import com.patterns.HeartbeatManager;
 import com.patterns.Message;
+import com.patterns.MessageType;
+import com.patterns.Response;
 import com.server.FailureListener;
 import com.server.MessageHandler;
 import com.server.OrderHandler;
+import com.server.ServerState;
+import com.server.ShardMap;
 import com.strategy.CommunicationStrategy;
+import com.strategy.HttpCommunicationStrategy;
+import com.strategy.NioCommunicationStrategy;
+import com.strategy.TcpCommunicationStrategy;
+import com.strategy.UdpCommunicationStrategy;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ApiGateway implements FailureListener, MessageHandler, OrderHandler {
 
     private static final String[] INSTANCES_IP = {"127.0.0.1", "127.0.0.1", "127.0.0.1"};
     private static final int[] INSTANCES_PORT = {9001, 9002, 9003};
     private static final int GATEWAY_PORT = 8080;
+    private static final int METRICS_PORT = 10080;
     private static final int TIMEOUT = 2000;
-    
+
     private final CommunicationStrategy strategy;
 
     private final Map<Integer, InetSocketAddress> nodeAddresses;
-    private final Map<Integer, Boolean> activeNodes;
-    
-    private final HeartbeatManager heartbeatManager;
+    // por grupo e depois pelo id do nó: um nó pode cair num grupo e seguir vivo nos outros
+    private final List<Map<Integer, Boolean>> activeNodes;
 
-    private static int currentInstanceIndex = 0;
+    // um por grupo de replicação: cada grupo tem líder, geração e heartbeats próprios
+    private final HeartbeatManager[] heartbeatManagers;
+    // líder e geração vistos pelo gateway, alimentados pelos heartbeats e pelas respostas dos nós
+    private final ServerState[] clusterStates;
+    private final OrderForwarder forwarder;
 
-    public ApiGateway(CommunicationStrategy strategy, Map<Integer, InetSocketAddress> nodeAddresses, Map<Integer, Boolean> activeNodes, HeartbeatManager heartbeatManager) {
+    public ApiGateway(CommunicationStrategy strategy, Map<Integer, InetSocketAddress> nodeAddresses, List<Map<Integer, Boolean>> activeNodes,
+                      HeartbeatManager[] heartbeatManagers, ServerState[] clusterStates, OrderForwarder forwarder) {
         this.strategy = strategy;
         this.nodeAddresses = nodeAddresses;
         this.activeNodes = activeNodes;
-        this.heartbeatManager = heartbeatManager;
-        
-        this.heartbeatManager.addFailureListener(this);
+        this.heartbeatManagers = heartbeatManagers;
+        this.clusterStates = clusterStates;
+        this.forwarder = forwarder;
+
+        for (int shard = 0; shard < heartbeatManagers.length; shard++) {
+            int failedShard = shard;
+            heartbeatManagers[shard].addFailureListener(failedId -> onNodeFailure(failedShard, failedId));
+        }
     }
-    
+
     private void start() {
         new Thread(() -> strategy.startListening(GATEWAY_PORT, this, this)).start();
     }
@@ -43,64 +76,170 @@ public class ApiGateway implements FailureListener, MessageHandler, OrderHandler
 
     @Override
     public void onNodeFailure(int failedId) {
-        //modificar active nodes
-        activeNodes.replace(failedId, false);
+        for (int shard = 0; shard < clusterStates.length; shard++) {
+            onNodeFailure(shard, failedId);
+        }
+    }
+
+    private void onNodeFailure(int shard, int failedId) {
+        activeNodes.get(shard).replace(failedId, false);
+        ServerState clusterState = clusterStates[shard];
+        if (clusterState.getLeaderId() == failedId) {
+            // sem heartbeats do líder: volta a sondar os nós até um deles indicar o novo líder
+            clusterState.setLeaderId(-1);
+            System.out.println("Gateway: líder " + failedId + " do shard " + shard + " considerado falho");
+        }
     }
 
     @Override
     public void handleMessage(Message message, InetSocketAddress sender) {
-        //tratar heartbeats
+        if (message.getType() != MessageType.HEARTBEAT) {
+            EventLog.log(Event.GATEWAY_MESSAGE_IGNORED, message.getType().ordinal(), EventLog.address(sender));
+            return;
+        }
+        if (message.getShard() >= heartbeatManagers.length) {
+            EventLog.log(Event.GATEWAY_UNKNOWN_SHARD, message.getShard(), EventLog.address(sender));
+            return;
+        }
+        activeNodes.get(message.getShard()).put(message.getSenderId(), true);
+        forwarder.learnLeader(message);
+        heartbeatManagers[message.getShard()].handleHeartbeat(message);
     }
 
     @Override
-    public void handleOrder(String orderMessage, InetSocketAddress sender) {
-        //verificar, usar round robin e redirecionar order para active nodes
+    public CompletableFuture<Response> handleOrder(OrderCommand command, InetSocketAddress sender) {
+        // o comando já chega validado pelo decodificador do transporte; o encaminhador
+        // o serializa antes de retornar, então a thread de I/O nunca espera pelo servidor
+        return forwarder.forward(command)
+                .thenApply(response -> new Response(MessageType.RESPONSE, response));
     }
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
 
+    @Override
+    public CompletableFuture<Response> handleBatch(OrderBatch batch, InetSocketAddress sender) {
+        // validado uma vez pelo transporte; cada grupo recebe a sua parte num único envio
+        long correlationId = batch.getCorrelationId();
+        return forwarder.forwardBatch(batch)
+                .thenApply(response -> new Response(MessageType.RESPONSE, response, correlationId));
+    }
+
+    /**
+     * Uso: java ApiGateway [udp|tcp|nio|http] [codec]. O protocolo escolhe só o lado dos
+     * clientes: com {@code udp} (padrão) roda o laço de datagramas; com {@code tcp}, {@code nio}
+     * ou {@code http} atende clientes pelo transporte escolhido. Com os servidores o gateway
+     * fala sempre UDP ({@link OrderForwarder} encaminha por datagramas e os heartbeats chegam
+     * no laço UDP, que roda em todos os modos), então os servidores devem rodar {@code udp};
+     * o {@code Server} recusa um gateway com outro protocolo.
+     * {@code -Dcluster.shards} deve ser igual ao dos servidores.
+     */
     public static void main(String[] args) {
+        String protocol = args.length > 0 ? args[0].toLowerCase() : "udp";
+        MessageCodec codec = MessageCodecs.forName(args.length > 1 ? args[1] : "binary");
+        CommunicationStrategy strategy = switch (protocol) {
+            case "udp" -> new UdpCommunicationStrategy(codec);
+            case "tcp" -> new TcpCommunicationStrategy(codec);
+            case "nio" -> new NioCommunicationStrategy(codec);
+            case "http" -> new HttpCommunicationStrategy(codec);
+            default -> throw new IllegalArgumentException("Protocolo não suportado: " + protocol);
+        };
+
+        int shardCount = Integer.getInteger("cluster.shards", 1);
+        if (shardCount < 1 || shardCount > ShardMap.MAX_SHARDS) {
+            throw new IllegalArgumentException("cluster.shards deve estar entre 1 e " + ShardMap.MAX_SHARDS);
+        }
+        Map<Integer, InetSocketAddress> nodeAddresses = new HashMap<>();
+        List<Map<Integer, Boolean>> activeNodes = new ArrayList<>(shardCount);
+        InetSocketAddress[][] instances = new InetSocketAddress[shardCount][INSTANCES_PORT.length];
+        ServerState[] clusterStates = new ServerState[shardCount];
+        HeartbeatManager[] heartbeatManagers = new HeartbeatManager[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int i = 0; i < INSTANCES_PORT.length; i++) {
+                instances[shard][i] = new InetSocketAddress(INSTANCES_IP[i], INSTANCES_PORT[i] + shard * ShardMap.PORT_STRIDE);
+            }
+            clusterStates[shard] = new ServerState();
+            Map<Integer, Boolean> shardNodes = new ConcurrentHashMap<>();
+            for (int i = 0; i < INSTANCES_PORT.length; i++) {
+                shardNodes.put(i, true);
+            }
+            activeNodes.add(shardNodes);
+        }
+        for (int i = 0; i < INSTANCES_PORT.length; i++) {
+            nodeAddresses.put(i, instances[0][i]);
+        }
+        for (int shard = 0; shard < shardCount; shard++) {
+            heartbeatManagers[shard] = new HeartbeatManager(-1, nodeAddresses, strategy, clusterStates[shard]);
+        }
+
+        // -Deventlog.dir=none desliga o log de eventos do gateway
+        String eventLogDir = System.getProperty("eventlog.dir", "eventlog/gateway");
+        if (!eventLogDir.equalsIgnoreCase("none")) {
+            try {
+                EventLog.start(Path.of(eventLogDir));
+            } catch (IOException e) {
+                System.err.println("Erro ao abrir o log de eventos em " + eventLogDir + ": " + e.getMessage());
+            }
+        }
+
+        // -Dmetrics.port: texto das métricas em /metrics, por padrão na 10080; none desliga
+        Metrics.startHttpFromProperty(METRICS_PORT);
+
+        OrderForwarder forwarder;
+        try {
+            forwarder = new OrderForwarder(instances, clusterStates, activeNodes, TIMEOUT);
+        } catch (SocketException e) {
+            System.err.println("Erro ao criar o socket de encaminhamento: " + e.getMessage());
+            return;
+        }
+        ApiGateway gateway = new ApiGateway(strategy, nodeAddresses, activeNodes, heartbeatManagers, clusterStates, forwarder);
+        // clientes UDP falam texto puro, então o gateway mantém o próprio laço de datagramas;
+        // nos outros modos ele continua no ar para receber os heartbeats dos servidores
+        new Thread(gateway::runUdpGateway).start();
+        if (protocol.equals("udp")) {
+            return;
+        }
+        gateway.start();
+        System.out.println(protocol.toUpperCase() + " Gateway iniciado e escutando na porta " + GATEWAY_PORT);
+    }
+
+    private void runUdpGateway() {
         try (DatagramSocket gatewaySocket = new DatagramSocket(GATEWAY_PORT)) {
+            gatewaySocket.setReceiveBufferSize(OrderForwarder.RECEIVE_BUFFER_SIZE);
             System.out.println("UDP Gateway iniciado e escutando na porta " + GATEWAY_PORT);
 
-            byte[] buffer = new byte[1024];
+            // cabe um lote inteiro num datagrama
+            byte[] buffer = new byte[64 * 1024];
+            OrderEntryDecoder decoder = new OrderEntryDecoder();
+            OrderCommand command = new OrderCommand();
+            OrderBatch batch = new OrderBatch();
 
             while (true) {
                 DatagramPacket clientPacket = new DatagramPacket(buffer, buffer.length);
                 gatewaySocket.receive(clientPacket);
+                SocketAddress client = clientPacket.getSocketAddress();
 
-                String receivedData = new String(clientPacket.getData(), 0, clientPacket.getLength());
-                System.out.println("Pacote recebido: " + receivedData);
-                
-                String response;
-                if (isValidRequest(receivedData)) {
-                    //recebe resposta do servidor
-                    response = forwardPacket(receivedData);
+                if (OrderEntryDecoder.isBatch(buffer, 0, clientPacket.getLength())) {
+                    if (decoder.decodeBatch(buffer, 0, clientPacket.getLength(), batch)) {
+                        forwarder.forwardBatch(batch).thenAccept(response -> reply(gatewaySocket, client, response));
+                    } else {
+                        reply(gatewaySocket, client, "Erro: Lote inválido");
+                    }
+                    continue;
+                }
+                if (!OrderEntryDecoder.isOrderEntry(buffer, 0, clientPacket.getLength())) {
+                    // heartbeats do líder chegam pela mesma porta
+                    handleDatagramMessage(gatewaySocket, clientPacket);
+                    continue;
+                }
+                // valida uma única vez; a resposta volta ao cliente quando o servidor responder,
+                // sem segurar o laço de recepção
+                if (decoder.decode(buffer, 0, clientPacket.getLength(), command)) {
+                    EventLog.log(Event.GATEWAY_REQUEST, command.getAction().ordinal(),
+                            command.getSide() == null ? -1 : command.getSide().ordinal(),
+                            EventLog.symbol(command.getSymbol()), command.getQuantity(), command.getPriceTicks(),
+                            command.getOrderId());
+                    forwarder.forward(command).thenAccept(response -> reply(gatewaySocket, client, response));
                 } else {
-                    response = "Erro: Solicitação inválida";
+                    reply(gatewaySocket, client, "Erro: Solicitação inválida");
                 }
-                // Envia a resposta de volta para o cliente original
-                byte[] responseData = response.getBytes();
-                DatagramPacket responsePacket = new DatagramPacket(responseData, responseData.length,
-                        clientPacket.getAddress(), clientPacket.getPort());
-                gatewaySocket.send(responsePacket);
-                System.out.println("Resposta enviada de volta para " + clientPacket.getAddress() + ":" + clientPacket.getPort());
             }
         } catch (SocketException e) {
             System.err.println("Erro ao criar o socket UDP: " + e.getMessage());
@@ -109,58 +248,26 @@ public class ApiGateway implements FailureListener, MessageHandler, OrderHandler
         }
     }
 
-    private static String forwardPacket(String data) throws IOException {
-        for (int i = 0; i < INSTANCES_IP.length; i++) {
-            String ipAddress = INSTANCES_IP[currentInstanceIndex];
-            int port = INSTANCES_PORT[currentInstanceIndex];
-
-            byte[] sendData = data.getBytes();
-            InetAddress address = InetAddress.getByName(ipAddress);
-            DatagramPacket packet = new DatagramPacket(sendData, sendData.length, address, port);
-
-            try (DatagramSocket socket = new DatagramSocket()) {
-                socket.setSoTimeout(TIMEOUT);
-
-                socket.send(packet);
-                System.out.println("Pacote redirecionado para " + ipAddress + ":" + port);
-
-                try {
-                    byte[] receiveData = new byte[1024];
-                    DatagramPacket responsePacket = new DatagramPacket(receiveData, receiveData.length);
-                    socket.receive(responsePacket);
-                    
-                    currentInstanceIndex = (currentInstanceIndex + 1) % INSTANCES_IP.length;
-                    return new String(responsePacket.getData(), 0, responsePacket.getLength());
-                } catch (SocketTimeoutException e) {
-                    currentInstanceIndex = (currentInstanceIndex + 1) % INSTANCES_IP.length;
-                    System.out.println("Timeout ao esperar pela resposta da instância " + ipAddress + ":" + port);
-                }
-            }
-        }
-        return "Erro: Nenhuma instância respondeu";
-    }
-
-    private static boolean isValidRequest(String data) {
-        String[] parts = data.split(":", 2);
-        if (parts.length != 2 || !parts[0].trim().equals("ORDER")) {
-            return false;
+    private void handleDatagramMessage(DatagramSocket gatewaySocket, DatagramPacket packet) {
+        Message message;
+        try {
+            message = MessageCodecs.decode(ByteBuffer.wrap(packet.getData(), 0, packet.getLength()));
+        } catch (RuntimeException e) {
+            reply(gatewaySocket, packet.getSocketAddress(), "Erro: Solicitação inválida");
+            return;
         }
-        String[] orderDetails = parts[1].trim().split(";");
-
-        return orderDetails.length == 4 &&
-                ("BUY".equals(orderDetails[0]) || "SELL".equals(orderDetails[0])) &&
-                isNumeric(orderDetails[2]) && isNumeric(orderDetails[3]);
+        handleMessage(message, (InetSocketAddress) packet.getSocketAddress());
     }
 
-    private static boolean isNumeric(String str) {
+    private static void reply(DatagramSocket gatewaySocket, SocketAddress client, String response) {
+        // Envia a resposta de volta para o cliente original
+        byte[] responseData = response.getBytes();
         try {
-            Double.parseDouble(str);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+            gatewaySocket.send(new DatagramPacket(responseData, responseData.length, client));
+            EventLog.log(Event.GATEWAY_REPLIED, EventLog.address((InetSocketAddress) client));
+        } catch (IOException e) {
+            System.err.println("Erro ao enviar resposta para " + client + ": " + e.getMessage());
         }
     }
 
-
-    
 }
@@ -0,0 +1,364 @@
+package com.gateway;
+
+import com.codec.MessageCodecs;
+import com.codec.OrderBatch;
+import com.codec.OrderCommand;
+import com.codec.OrderEntryDecoder;
+import com.codec.OrderEntryEncoder;
+import com.eventlog.Event;
+import com.eventlog.EventLog;
+import com.metrics.Counter;
+import com.metrics.LatencyHistogram;
+import com.metrics.Metrics;
+import com.patterns.Message;
+import com.patterns.MessageType;
+import com.patterns.Response;
+import com.server.OrderHandler;
+import com.server.ServerState;
+import com.server.ShardMap;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encaminha ordens às instâncias sem bloquear quem chama. Um único socket UDP de longa
+ * duração é compartilhado por todas as requisições em voo; cada ordem leva um id de
+ * correlação que o servidor ecoa na resposta, e uma thread leitora casa as respostas
+ * com a tabela de pendentes.
+ * <p>
+ * As ordens vão direto ao líder conhecido. Um seguidor que recebe uma ordem responde
+ * com {@link MessageType#REDIRECT} indicando o líder, e a ordem é reenviada na hora.
+ * Sem líder conhecido, ou se ele não responde dentro do prazo, a ordem percorre os nós
+ * ainda não tentados, ativos primeiro, até algum aceitar ou indicar o líder.
+ * <p>
+ * Com vários grupos de replicação, cada ordem vai ao grupo dono do símbolo
+ * ({@link ShardMap#shardFor}) e o líder é acompanhado por grupo.
+ * <p>
+ * Consultas que aceitam atraso vão primeiro aos seguidores, em rodízio, para tirar a
+ * leitura do líder; um seguidor fora do limite responde com REDIRECT e a consulta
+ * segue para o líder como uma ordem.
+ * <p>
+ * Um lote ({@link #forwardBatch}) vira um lote binário por grupo, cada um uma requisição
+ * com o seu id de correlação e as mesmas regras de redirecionamento e timeout.
+ */
+class OrderForwarder implements AutoCloseable {
+
+    static final int RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_ENTRY_LENGTH = OrderEntryDecoder.BINARY_HEADER_LENGTH + OrderEntryDecoder.MAX_SYMBOL_LENGTH;
+
+    // indexados pelo grupo e depois pelo id do nó
+    private final InetSocketAddress[][] instances;
+    private final ServerState[] clusters;
+    // por grupo e depois pelo id do nó, como instances
+    private final List<Map<Integer, Boolean>> activeNodes;
+    private final long timeoutMillis;
+    private final DatagramSocket socket;
+    private final ConcurrentHashMap<Long, PendingRequest> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+    private final AtomicInteger nextInstance = new AtomicInteger();
+    private final ScheduledExecutorService timer;
+    private final Thread reader;
+    // do encaminhamento à resposta repassada, contando as novas tentativas; por grupo
+    private final LatencyHistogram[] forwardLatency;
+    private final Counter timeouts = Metrics.counter("gateway_timeouts_total",
+            "Tentativas do gateway sem resposta dentro do prazo");
+
+    OrderForwarder(InetSocketAddress[][] instances, ServerState[] clusters, List<Map<Integer, Boolean>> activeNodes,
+                   long timeoutMillis) throws SocketException {
+        this.instances = instances;
+        this.clusters = clusters;
+        this.activeNodes = activeNodes;
+        this.timeoutMillis = timeoutMillis;
+        this.forwardLatency = new LatencyHistogram[instances.length];
+        for (int shard = 0; shard < instances.length; shard++) {
+            forwardLatency[shard] = Metrics.histogram("gateway_forward_seconds",
+                    "Latência das requisições encaminhadas pelo gateway até a resposta", "shard", Integer.toString(shard));
+        }
+        this.socket = new DatagramSocket();
+        // respostas de muitas requisições em voo chegam em rajada
+        this.socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gateway-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reader = new Thread(this::readResponses, "gateway-upstream");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Envia a ordem e devolve imediatamente; o futuro completa com o texto da resposta
+     * do servidor ou com uma mensagem de erro quando nenhuma instância aceitou a ordem.
+     * O comando pode ser reutilizado pelo chamador assim que este método retorna.
+     */
+    CompletableFuture<String> forward(OrderCommand command) {
+        long correlationId = nextCorrelationId.incrementAndGet();
+        command.setCorrelationId(correlationId);
+        ByteBuffer entry = ByteBuffer.allocate(MAX_ENTRY_LENGTH);
+        OrderEntryEncoder.encodeBinary(command, entry);
+
+        int shard = ShardMap.shardFor(command.getSymbol(), instances.length);
+        int firstInstance = Math.floorMod(nextInstance.getAndIncrement(), instances[shard].length);
+        PendingRequest request = new PendingRequest(correlationId, shard, entry.array(), entry.position(), firstInstance,
+                command.getAction().isQuery() && !command.isLinearizableRead());
+        pending.put(correlationId, request);
+        synchronized (request) {
+            send(request);
+        }
+        return request.future;
+    }
+
+    /**
+     * Divide o lote entre os grupos donos dos símbolos e envia a cada grupo a sua parte
+     * num único datagrama. O futuro completa com a resposta do lote inteiro, uma linha por
+     * entrada na ordem original ({@link OrderBatch#formatResults}); o lote pode ser
+     * reutilizado pelo chamador assim que este método retorna.
+     */
+    CompletableFuture<String> forwardBatch(OrderBatch batch) {
+        int size = batch.size();
+        String[] results = new String[size];
+        int shards = instances.length;
+        int[][] positions = new int[shards][size];
+        OrderCommand[][] commands = new OrderCommand[shards][size];
+        int[] counts = new int[shards];
+        for (int i = 0; i < size; i++) {
+            if (!batch.isValid(i)) {
+                results[i] = OrderHandler.INVALID_BATCH_ENTRY;
+                continue;
+            }
+            OrderCommand command = batch.get(i);
+            int shard = ShardMap.shardFor(command.getSymbol(), shards);
+            positions[shard][counts[shard]] = i;
+            commands[shard][counts[shard]++] = command;
+        }
+
+        CompletableFuture<?>[] parts = new CompletableFuture<?>[shards];
+        int used = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            int count = counts[shard];
+            if (count == 0) {
+                parts[shard] = CompletableFuture.completedFuture(null);
+                continue;
+            }
+            used++;
+            long correlationId = nextCorrelationId.incrementAndGet();
+            ByteBuffer entry = ByteBuffer.allocate(OrderEntryEncoder.maxBatchLength(count));
+            OrderEntryEncoder.encodeBatch(commands[shard], count, correlationId, entry);
+            int firstInstance = Math.floorMod(nextInstance.getAndIncrement(), instances[shard].length);
+            PendingRequest request = new PendingRequest(correlationId, shard, entry.array(), entry.position(),
+                    firstInstance, false);
+            pending.put(correlationId, request);
+            synchronized (request) {
+                send(request);
+            }
+            int[] shardPositions = positions[shard];
+            parts[shard] = request.future.thenAccept(response -> {
+                // um erro do lote inteiro (sem líder, símbolo fora do grupo) vale para cada entrada
+                String[] shardResults = OrderBatch.parseResults(response, count);
+                for (int i = 0; i < count; i++) {
+                    results[shardPositions[i]] = shardResults == null ? response : shardResults[i];
+                }
+            });
+        }
+        EventLog.log(Event.GATEWAY_BATCH, size, batch.validCount(), used);
+        return CompletableFuture.allOf(parts).thenApply(ignored -> OrderBatch.formatResults(results));
+    }
+
+    /**
+     * Atualiza o líder conhecido do grupo do remetente a partir do cabeçalho de um heartbeat
+     * ou de uma resposta, ignorando informações de gerações anteriores.
+     */
+    void learnLeader(Message message) {
+        int shard = message.getShard();
+        int leaderId = message.getLeaderId();
+        if (shard >= instances.length || leaderId < 0 || leaderId >= instances[shard].length) {
+            return;
+        }
+        ServerState cluster = clusters[shard];
+        synchronized (cluster) {
+            if (message.getGeneration() < cluster.getCurrentGeneration() || leaderId == cluster.getLeaderId()) {
+                return;
+            }
+            cluster.setCurrentGeneration(message.getGeneration());
+            cluster.setLeaderId(leaderId);
+        }
+        EventLog.log(Event.GATEWAY_LEADER, leaderId, shard, message.getGeneration());
+    }
+
+    // chamado com o monitor da requisição
+    private void send(PendingRequest request) {
+        int node = nextTarget(request);
+        if (node == -1) {
+            if (pending.remove(request.correlationId, request)) {
+                request.future.complete(request.lastError != null ? request.lastError : "Erro: Nenhuma instância respondeu");
+            }
+            return;
+        }
+        InetSocketAddress target = instances[request.shard][node];
+        request.tried |= 1L << node;
+        request.target = node;
+        request.timeout = timer.schedule(() -> onTimeout(request, node), timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            socket.send(new DatagramPacket(request.data, request.length, target));
+            EventLog.log(Event.GATEWAY_FORWARDED, EventLog.address(target), request.correlationId);
+        } catch (IOException e) {
+            // trata como timeout imediato: tenta o próximo nó
+            request.timeout.cancel(false);
+            request.lastError = "Erro: " + e.getMessage();
+            send(request);
+        }
+    }
+
+    private int nextTarget(PendingRequest request) {
+        int nodes = instances[request.shard].length;
+        int leaderId = clusters[request.shard].getLeaderId();
+        Map<Integer, Boolean> active = activeNodes.get(request.shard);
+        if (request.preferFollower) {
+            for (int i = 0; i < nodes; i++) {
+                int node = (request.firstInstance + i) % nodes;
+                if (node != leaderId && (request.tried & (1L << node)) == 0 && active.getOrDefault(node, true)) {
+                    return node;
+                }
+            }
+        }
+        if (leaderId >= 0 && leaderId < nodes && (request.tried & (1L << leaderId)) == 0) {
+            return leaderId;
+        }
+        int fallback = -1;
+        for (int i = 0; i < nodes; i++) {
+            int node = (request.firstInstance + i) % nodes;
+            if ((request.tried & (1L << node)) != 0) {
+                continue;
+            }
+            if (active.getOrDefault(node, true)) {
+                return node;
+            }
+            if (fallback == -1) {
+                fallback = node;
+            }
+        }
+        return fallback;
+    }
+
+    private void onTimeout(PendingRequest request, int node) {
+        synchronized (request) {
+            if (pending.get(request.correlationId) != request || request.target != node) {
+                return;
+            }
+            EventLog.log(Event.GATEWAY_TIMEOUT, EventLog.address(instances[request.shard][node]));
+            timeouts.increment();
+            activeNodes.get(request.shard).put(node, false);
+            ServerState cluster = clusters[request.shard];
+            synchronized (cluster) {
+                if (cluster.getLeaderId() == node) {
+                    cluster.setLeaderId(-1);
+                }
+            }
+            send(request);
+        }
+    }
+
+    private void readResponses() {
+        byte[] receiveData = new byte[64 * 1024];
+        DatagramPacket packet = new DatagramPacket(receiveData, receiveData.length);
+        while (!socket.isClosed()) {
+            try {
+                packet.setLength(receiveData.length);
+                socket.receive(packet);
+                Message message = MessageCodecs.decode(ByteBuffer.wrap(receiveData, 0, packet.getLength()));
+                if (message instanceof Response response) {
+                    onResponse(response);
+                }
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    System.err.println("Erro ao receber resposta das instâncias: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Resposta inválida das instâncias: " + e.getMessage());
+            }
+        }
+    }
+
+    private void onResponse(Response response) {
+        int senderId = response.getSenderId();
+        int shard = response.getShard();
+        if (shard >= 0 && shard < instances.length && senderId >= 0 && senderId < instances[shard].length) {
+            activeNodes.get(shard).put(senderId, true);
+        }
+        learnLeader(response);
+
+        PendingRequest request = pending.get(response.getCorrelationId());
+        if (request == null) {
+            // resposta tardia de uma tentativa já reenviada ou expirada
+            return;
+        }
+        synchronized (request) {
+            if (response.getType() == MessageType.REDIRECT) {
+                if (request.target != senderId || request.future.isDone()) {
+                    return;
+                }
+                request.timeout.cancel(false);
+                int leaderId = response.getLeaderId();
+                // se o líder indicado já falhou nesta requisição, o erro final diz isso ao cliente
+                request.lastError = leaderId < 0 ? response.getResponseContent() : "Erro: Líder " + leaderId + " indisponível";
+                send(request);
+                return;
+            }
+            if (!pending.remove(request.correlationId, request)) {
+                return;
+            }
+            request.timeout.cancel(false);
+        }
+        forwardLatency[request.shard].record(System.nanoTime() - request.createdNanos);
+        request.future.complete(response.getResponseContent());
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+        timer.shutdownNow();
+        pending.forEach((id, request) -> request.future.complete("Erro: Gateway encerrado"));
+        pending.clear();
+    }
+
+    private static final class PendingRequest {
+        final long correlationId;
+        final int shard;
+        final byte[] data;
+        final int length;
+        final int firstInstance;
+        // consulta com atraso aceito: tenta os seguidores antes do líder
+        final boolean preferFollower;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        final long createdNanos = System.nanoTime();
+        // estado das tentativas, protegido pelo monitor da requisição
+        long tried;
+        int target = -1;
+        String lastError;
+        ScheduledFuture<?> timeout;
+
+        PendingRequest(long correlationId, int shard, byte[] data, int length, int firstInstance, boolean preferFollower) {
+            this.correlationId = correlationId;
+            this.shard = shard;
+            this.data = data;
+            this.length = length;
+            this.firstInstance = firstInstance;
+            this.preferFollower = preferFollower;
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.journal;
+
+import com.model.TradeEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal append-only das entradas do log replicado, do avanço do commit e dos trades
+ * resultantes, em segmentos mapeados em memória ({@code 00000000000000000000.journal}, ...).
+ *
+ * <pre>
+ * registro:
+ *  0 length     int   tamanho total do registro; 0 marca o fim dos dados do segmento
+ *  4 crc32c     int   sobre os bytes 0..4 e 8..length
+ *  8 type       byte  1 = comando, 2 = trade, 3 = commit
+ *  9 reservado  3 bytes
+ * 12 sequence   long  índice no log replicado (comando, commit) ou sequência do trade
+ * 20 generation int   geração do comando (0 para trades e commits)
+ * 24 payload
+ *
+ * comando: bytes da entrada de ordem binária (vazio para no-op)
+ * commit:  sem payload; as entradas até o índice estão comitadas
+ * trade:   24 aggressorId long, 32 passiveId long, 40 priceTicks long, 48 quantity int,
+ *          52 symbolLength byte, 53 symbol ASCII
+ * </pre>
+ *
+ * Um comando entra no journal quando é anexado ao log, antes de comitado; um comando
+ * posterior com o mesmo índice substitui aquele e os que o seguiam (o líder corrigiu o
+ * log deste nó). Na releitura, só as entradas até o último commit são aplicadas.
+ * <p>
+ * Um registro nunca atravessa segmentos. O fsync é feito em grupo por uma thread
+ * própria, a cada {@code fsyncIntervalMillis} ou quando {@code fsyncBytes} se acumulam;
+ * {@link #appendCommand} devolve um futuro que completa quando o registro estiver em disco.
+ * Depois de um snapshot durável, {@link #deleteSegmentsThrough} apaga os segmentos que ele cobre.
+ */
+public class Journal implements AutoCloseable {
+    public static final int HEADER_LENGTH = 24;
+    static final byte COMMAND = 1;
+    static final byte TRADE = 2;
+    static final byte COMMIT = 3;
+    private static final int TRADE_PAYLOAD_LENGTH = 29;
+    private static final String SUFFIX = ".journal";
+    private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long fsyncIntervalMillis;
+    private final int fsyncBytes;
+
+    // estado de escrita, protegido pelo monitor do journal
+    private final CRC32C crc = new CRC32C();
+    private final List<Segment> unflushed = new ArrayList<>();
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private Segment current;
+    private long writePosition;
+    private long unflushedBytes;
+    private boolean closed;
+    // maior índice de comando gravado até o fim de cada segmento já fechado
+    private final Map<Integer, Long> segmentLastCommand = new TreeMap<>();
+    private long lastCommandIndex;
+
+    private volatile long durablePosition;
+    private final Thread flusher;
+
+    /**
+     * Abre (ou cria) o journal em {@code directory}, descartando um registro final
+     * incompleto deixado por uma queda.
+     *
+     * @param fsyncIntervalMillis intervalo máximo entre fsyncs; 0 desliga o fsync e deixa
+     *                            a gravação a cargo do sistema operacional
+     * @param fsyncBytes          bytes pendentes que antecipam o fsync
+     */
+    public static Journal open(Path directory, int segmentSize, long fsyncIntervalMillis, int fsyncBytes) throws IOException {
+        Files.createDirectories(directory);
+        return new Journal(directory, segmentSize, fsyncIntervalMillis, fsyncBytes);
+    }
+
+    private Journal(Path directory, int segmentSize, long fsyncIntervalMillis, int fsyncBytes) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.fsyncBytes = fsyncBytes;
+        recover();
+        this.durablePosition = writePosition;
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        this.flusher.setDaemon(true);
+        if (fsyncIntervalMillis > 0) {
+            flusher.start();
+        }
+    }
+
+    /**
+     * Grava uma entrada anexada ao log replicado. O futuro completa quando o fsync em grupo
+     * cobrir o registro, e com ele todos os gravados antes.
+     */
+    public CompletableFuture<Void> appendCommand(long index, int generation, byte[] entry) {
+        synchronized (this) {
+            reserve(HEADER_LENGTH + entry.length);
+            ByteBuffer buffer = current.buffer;
+            int offset = current.offset;
+            buffer.put(offset + HEADER_LENGTH, entry);
+            long end = commit(buffer, offset, HEADER_LENGTH + entry.length, COMMAND, index, generation);
+            lastCommandIndex = index;
+            if (fsyncIntervalMillis <= 0) {
+                return DURABLE;
+            }
+            CompletableFuture<Void> durable = new CompletableFuture<>();
+            waiters.add(new Waiter(end, durable));
+            return durable;
+        }
+    }
+
+    /**
+     * Registra que as entradas até {@code index} estão comitadas. Não espera o fsync: sem
+     * o registro, a releitura deixa as entradas no log e o líder as comita de novo.
+     */
+    public void appendCommit(long index) {
+        synchronized (this) {
+            reserve(HEADER_LENGTH);
+            commit(current.buffer, current.offset, HEADER_LENGTH, COMMIT, index, 0);
+        }
+    }
+
+    /**
+     * Grava um trade. Roda na thread de matching; só copia os campos para o segmento.
+     */
+    public void appendTrade(TradeEvent trade) {
+        String symbol = trade.getSymbol();
+        int length = HEADER_LENGTH + TRADE_PAYLOAD_LENGTH + symbol.length();
+        synchronized (this) {
+            reserve(length);
+            ByteBuffer buffer = current.buffer;
+            int offset = current.offset;
+            buffer.putLong(offset + 24, trade.getAggressor().getOrderId())
+                    .putLong(offset + 32, trade.getPassive().getOrderId())
+                    .putLong(offset + 40, trade.getPriceTicks())
+                    .putInt(offset + 48, trade.getQuantity())
+                    .put(offset + 52, (byte) symbol.length());
+            for (int i = 0; i < symbol.length(); i++) {
+                buffer.put(offset + 53 + i, (byte) symbol.charAt(i));
+            }
+            commit(buffer, offset, length, TRADE, trade.getTradeSequence(), 0);
+        }
+    }
+
+    /**
+     * Relê todos os registros válidos, do segmento mais antigo ao mais novo.
+     */
+    public void replay(JournalReplayHandler handler) throws IOException {
+        for (Path path : segmentPaths()) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int offset = 0;
+                int length;
+                while ((length = validRecordLength(buffer, offset)) > 0) {
+                    dispatch(buffer, offset, length, handler);
+                    offset += length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apaga os segmentos já em disco cujos comandos vão todos até {@code index}, coberto
+     * por um snapshot durável. O segmento corrente nunca é apagado.
+     *
+     * @return quantos segmentos foram apagados
+     */
+    public int deleteSegmentsThrough(long index) throws IOException {
+        List<Path> deletable = new ArrayList<>();
+        synchronized (this) {
+            var iterator = segmentLastCommand.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Long> segment = iterator.next();
+                if (segment.getValue() > index || isUnflushed(segment.getKey())) {
+                    break;
+                }
+                deletable.add(segmentPath(segment.getKey()));
+                iterator.remove();
+            }
+        }
+        for (Path path : deletable) {
+            Files.deleteIfExists(path);
+        }
+        return deletable.size();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getWritePosition() {
+        synchronized (this) {
+            return writePosition;
+        }
+    }
+
+    public long getDurablePosition() {
+        return durablePosition;
+    }
+
+    private void reserve(int length) {
+        if (closed) {
+            throw new IllegalStateException("Journal fechado");
+        }
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Registro maior que o segmento: " + length);
+        }
+        if (current.offset + length > segmentSize) {
+            roll();
+        }
+    }
+
+    private long commit(ByteBuffer buffer, int offset, int length, byte type, long sequence, int generation) {
+        buffer.put(offset + 8, type)
+                .putLong(offset + 12, sequence)
+                .putInt(offset + 20, generation)
+                .putInt(offset, length);
+        buffer.putInt(offset + 4, checksum(buffer, offset, length));
+        current.offset += length;
+        writePosition = (long) current.index * segmentSize + current.offset;
+        if (!unflushed.contains(current)) {
+            unflushed.add(current);
+        }
+        unflushedBytes += length;
+        if (unflushedBytes >= fsyncBytes) {
+            notifyAll();
+        }
+        return writePosition;
+    }
+
+    // cobre o campo de tamanho e tudo a partir do tipo, pulando o próprio checksum
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        crc.reset();
+        crc.update(buffer.duplicate().limit(offset + 4).position(offset));
+        crc.update(buffer.duplicate().limit(offset + length).position(offset + 8));
+        return (int) crc.getValue();
+    }
+
+    private boolean isUnflushed(int segmentIndex) {
+        for (Segment segment : unflushed) {
+            if (segment.index == segmentIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void roll() {
+        // o segmento anterior fecha o canal no próximo fsync, depois de gravado
+        current.retired = true;
+        segmentLastCommand.put(current.index, lastCommandIndex);
+        if (!unflushed.contains(current)) {
+            unflushed.add(current);
+        }
+        try {
+            current = openSegment(current.index + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao criar segmento do journal", e);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            Segment[] toFlush;
+            int[] ends;
+            boolean[] retired;
+            long target;
+            synchronized (this) {
+                try {
+                    if (!closed && unflushedBytes < fsyncBytes) {
+                        wait(fsyncIntervalMillis);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (unflushed.isEmpty()) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                toFlush = unflushed.toArray(new Segment[0]);
+                ends = new int[toFlush.length];
+                retired = new boolean[toFlush.length];
+                for (int i = 0; i < toFlush.length; i++) {
+                    ends[i] = toFlush[i].offset;
+                    retired[i] = toFlush[i].retired;
+                }
+                unflushed.clear();
+                unflushedBytes = 0;
+                target = writePosition;
+            }
+            for (int i = 0; i < toFlush.length; i++) {
+                toFlush[i].force(ends[i]);
+                if (retired[i]) {
+                    toFlush[i].close();
+                }
+            }
+            durablePosition = target;
+            completeWaiters(target);
+        }
+    }
+
+    private void completeWaiters(long target) {
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        synchronized (this) {
+            while (!waiters.isEmpty() && waiters.peek().position <= target) {
+                done.add(waiters.poll().future);
+            }
+        }
+        for (CompletableFuture<Void> future : done) {
+            future.complete(null);
+        }
+    }
+
+    // encontra o fim dos dados válidos; o que vier depois de um registro inválido é descartado
+    private void recover() throws IOException {
+        List<Path> paths = segmentPaths();
+        if (paths.isEmpty()) {
+            current = openSegment(0);
+            return;
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            Segment segment = openSegment(segmentIndex(paths.get(i)));
+            int offset = 0;
+            int length;
+            while ((length = validRecordLength(segment.buffer, offset)) > 0) {
+                if (segment.buffer.get(offset + 8) == COMMAND) {
+                    lastCommandIndex = segment.buffer.getLong(offset + 12);
+                }
+                offset += length;
+            }
+            segment.offset = offset;
+            boolean torn = offset + 4 <= segmentSize && segment.buffer.getInt(offset) != 0;
+            if (torn) {
+                System.out.println("Journal: registro incompleto descartado em " + paths.get(i) + " offset " + offset);
+                for (int p = offset; p < segmentSize; p++) {
+                    segment.buffer.put(p, (byte) 0);
+                }
+                segment.flushedOffset = offset;
+                segment.force(segmentSize);
+                for (Path later : paths.subList(i + 1, paths.size())) {
+                    Files.delete(later);
+                }
+            }
+            if (torn || i == paths.size() - 1) {
+                current = segment;
+                break;
+            }
+            segmentLastCommand.put(segment.index, lastCommandIndex);
+            segment.close();
+        }
+        writePosition = (long) current.index * segmentSize + current.offset;
+    }
+
+    private int validRecordLength(ByteBuffer buffer, int offset) {
+        if (offset + HEADER_LENGTH > buffer.limit()) {
+            return 0;
+        }
+        int length = buffer.getInt(offset);
+        if (length < HEADER_LENGTH || offset + length > buffer.limit()) {
+            return 0;
+        }
+        return checksum(buffer, offset, length) == buffer.getInt(offset + 4) ? length : 0;
+    }
+
+    private static void dispatch(ByteBuffer buffer, int offset, int length, JournalReplayHandler handler) {
+        byte type = buffer.get(offset + 8);
+        long sequence = buffer.getLong(offset + 12);
+        if (type == COMMAND) {
+            byte[] entry = new byte[length - HEADER_LENGTH];
+            buffer.get(offset + HEADER_LENGTH, entry);
+            handler.onCommand(sequence, buffer.getInt(offset + 20), entry);
+        } else if (type == TRADE) {
+            int symbolLength = buffer.get(offset + 52);
+            char[] symbol = new char[symbolLength];
+            for (int i = 0; i < symbolLength; i++) {
+                symbol[i] = (char) buffer.get(offset + 53 + i);
+            }
+            handler.onTrade(new String(symbol), sequence, buffer.getLong(offset + 24), buffer.getLong(offset + 32),
+                    buffer.getLong(offset + 40), buffer.getInt(offset + 48));
+        } else if (type == COMMIT) {
+            handler.onCommit(sequence);
+        }
+    }
+
+    private Segment openSegment(int index) throws IOException {
+        Path path = segmentPath(index);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(index, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%020d%s", index, SUFFIX));
+    }
+
+    private List<Path> segmentPaths() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int segmentIndex(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        if (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            current.force(current.offset);
+            current.close();
+        }
+    }
+
+    private static final class Segment {
+        final int index;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // fim dos dados, avançado sob o monitor do journal
+        int offset;
+        boolean retired;
+        // só a thread de fsync mexe depois da criação
+        int flushedOffset;
+
+        Segment(int index, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void force(int end) {
+            if (end > flushedOffset) {
+                buffer.force(flushedOffset, end - flushedOffset);
+                flushedOffset = end;
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar segmento do journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private record Waiter(long position, CompletableFuture<Void> future) {
+    }
+}
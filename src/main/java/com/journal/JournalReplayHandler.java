@@ -0,0 +1,16 @@
+package com.journal;
+
+/**
+ * Recebe os registros do journal na ordem em que foram gravados.
+ */
+public interface JournalReplayHandler {
+
+    void onCommand(long index, int generation, byte[] entry);
+
+    default void onCommit(long index) {
+    }
+
+    default void onTrade(String symbol, long tradeSequence, long aggressorId, long passiveId,
+                         long priceTicks, int quantity) {
+    }
+}
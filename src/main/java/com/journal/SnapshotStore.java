@@ -0,0 +1,194 @@
+package com.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshots dos livros gravados ao lado do journal, um arquivo por índice do log
+ * ({@code 00000000000000012345.snapshot}). O arquivo é escrito num temporário, levado
+ * ao disco e renomeado, então um snapshot visível está sempre completo.
+ *
+ * <pre>
+ *  0 magic       int   'OBSN'
+ *  4 version     short
+ *  6 index       long  último índice do log refletido no snapshot
+ * 14 generation  int   geração dessa entrada
+ * 18 bodyLength  int
+ * 22 crc32c      int   sobre o corpo
+ * 26 corpo       formato de {@code MatchingEngine.captureSnapshot()}
+ * </pre>
+ */
+public class SnapshotStore {
+    public static final int HEADER_LENGTH = 26;
+    private static final int MAGIC = 0x4F42534E;
+    private static final short VERSION = 1;
+    private static final String SUFFIX = ".snapshot";
+    private static final String PART_SUFFIX = ".part";
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public record Snapshot(long index, int generation, byte[] body, Path path) {
+    }
+
+    /**
+     * Grava o snapshot de forma durável e apaga os anteriores.
+     */
+    public Path write(long index, int generation, byte[] body) throws IOException {
+        Path path = pathFor(index);
+        Path temporary = directory.resolve(path.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH)
+                .putInt(MAGIC)
+                .putShort(VERSION)
+                .putLong(index)
+                .putInt(generation)
+                .putInt(body.length)
+                .putInt((int) crc.getValue())
+                .flip();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.wrap(body);
+            while (header.hasRemaining() || data.hasRemaining()) {
+                channel.write(new ByteBuffer[]{header, data});
+            }
+            channel.force(true);
+        }
+        publish(temporary, path, index);
+        return path;
+    }
+
+    /**
+     * Valida um snapshot recebido de outro nó e o torna o mais recente deste.
+     *
+     * @return o snapshot aceito, ou {@code null} se o arquivo estiver corrompido
+     */
+    public Snapshot accept(Path part) throws IOException {
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Snapshot snapshot = read(part);
+        if (snapshot == null) {
+            Files.delete(part);
+            return null;
+        }
+        Path path = pathFor(snapshot.index());
+        publish(part, path, snapshot.index());
+        return new Snapshot(snapshot.index(), snapshot.generation(), snapshot.body(), path);
+    }
+
+    /**
+     * Arquivo parcial onde um snapshot em transferência é recebido; sobrevive a quedas
+     * da conexão para a transferência continuar do ponto em que parou.
+     */
+    public Path partPath(long index) {
+        return directory.resolve(pathFor(index).getFileName() + PART_SUFFIX);
+    }
+
+    /**
+     * Apaga transferências parciais de snapshots diferentes de {@code index}.
+     */
+    public void deletePartsExcept(long index) throws IOException {
+        Path keep = partPath(index);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(p -> p.getFileName().toString().endsWith(SUFFIX + PART_SUFFIX)).toList()) {
+                if (!path.equals(keep)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Arquivo do snapshot mais recente, sem validar o conteúdo, ou {@code null}.
+     */
+    public Path latestPath() throws IOException {
+        List<Path> paths = snapshotPaths();
+        return paths.isEmpty() ? null : paths.get(paths.size() - 1);
+    }
+
+    public static long snapshotIndex(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private void publish(Path source, Path path, long index) throws IOException {
+        Files.move(source, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+
+        // um snapshot antigo em transferência continua legível pelo descritor já aberto
+        for (Path older : snapshotPaths()) {
+            if (snapshotIndex(older) < index) {
+                Files.delete(older);
+            }
+        }
+    }
+
+    /**
+     * O snapshot válido mais recente, ou {@code null} se não houver nenhum.
+     */
+    public Snapshot latest() throws IOException {
+        List<Path> paths = snapshotPaths();
+        for (int i = paths.size() - 1; i >= 0; i--) {
+            Snapshot snapshot = read(paths.get(i));
+            if (snapshot != null) {
+                return snapshot;
+            }
+            System.out.println("Snapshot inválido ignorado: " + paths.get(i));
+        }
+        return null;
+    }
+
+    private Snapshot read(Path path) throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        if (file.length < HEADER_LENGTH) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(file);
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION
+                || buffer.getInt(18) != file.length - HEADER_LENGTH) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(file, HEADER_LENGTH, file.length - HEADER_LENGTH);
+        if ((int) crc.getValue() != buffer.getInt(22)) {
+            return null;
+        }
+        byte[] body = new byte[file.length - HEADER_LENGTH];
+        System.arraycopy(file, HEADER_LENGTH, body, 0, body.length);
+        return new Snapshot(buffer.getLong(6), buffer.getInt(14), body, path);
+    }
+
+    private Path pathFor(long index) {
+        return directory.resolve(String.format("%020d%s", index, SUFFIX));
+    }
+
+    // o rename só é durável depois do fsync do diretório
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // nem todo sistema permite abrir diretórios; o rename continua atômico
+        }
+    }
+
+    private List<Path> snapshotPaths() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
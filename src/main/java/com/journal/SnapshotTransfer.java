@@ -0,0 +1,208 @@
+package com.journal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Transferência de snapshots entre nós por uma conexão TCP própria, fora do
+ * {@code CommunicationStrategy}: o arquivo vai do disco do líder para o socket com
+ * {@link FileChannel#transferTo} em blocos de {@link #CHUNK_SIZE}, sem passar pelo heap.
+ * <p>
+ * Quem está atrás pede o snapshot informando quantos bytes já tem no arquivo parcial;
+ * se a conexão cair, a próxima tentativa continua desse ponto.
+ *
+ * <pre>
+ * pedido:   index long, offset long
+ * resposta: status byte (0 = ok, 1 = sem snapshot), index long, size long, start long,
+ *           seguidos dos bytes [start, size) do arquivo
+ * </pre>
+ * Se o snapshot pedido já foi substituído, a resposta traz o mais recente desde o início.
+ */
+public class SnapshotTransfer implements AutoCloseable {
+    // a porta de snapshots de um nó é a porta do cluster mais este deslocamento
+    public static final int PORT_OFFSET = 500;
+    static final int CHUNK_SIZE = 1024 * 1024;
+    static final int MAX_ATTEMPTS = 10;
+    static final long RETRY_MILLIS = 200;
+    private static final int REQUEST_LENGTH = 16;
+    private static final int RESPONSE_HEADER_LENGTH = 25;
+    private static final byte OK = 0;
+    private static final byte UNAVAILABLE = 1;
+
+    private final SnapshotStore store;
+    private final AtomicLong fetching = new AtomicLong(-1);
+    private ServerSocketChannel serverChannel;
+
+    public SnapshotTransfer(SnapshotStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Passa a servir o snapshot mais recente deste nó em {@code port}.
+     */
+    public void serve(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        Thread acceptor = new Thread(this::accept, "snapshot-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Busca o snapshot {@code index} (ou um mais novo) de {@code source} em segundo plano e
+     * entrega o snapshot validado a {@code onReceived}. Ignorado se já houver uma busca em curso.
+     */
+    public void fetch(InetSocketAddress source, long index, Consumer<SnapshotStore.Snapshot> onReceived) {
+        if (!fetching.compareAndSet(-1, index)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                long started = System.nanoTime();
+                Path part = download(source, index);
+                SnapshotStore.Snapshot snapshot = store.accept(part);
+                if (snapshot == null) {
+                    System.err.println("Snapshot recebido de " + source + " está corrompido");
+                    return;
+                }
+                System.out.println("Snapshot " + snapshot.index() + " recebido de " + source + " em "
+                        + (System.nanoTime() - started) / 1_000_000 + " ms");
+                onReceived.accept(snapshot);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erro ao buscar snapshot de " + source + ": " + e.getMessage());
+            } finally {
+                fetching.set(-1);
+            }
+        }, "snapshot-fetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Path download(InetSocketAddress source, long index) throws IOException {
+        long requested = index;
+        for (int attempt = 1; ; attempt++) {
+            try (SocketChannel channel = SocketChannel.open(source)) {
+                Path part = store.partPath(requested);
+                long offset = Files.exists(part) ? Files.size(part) : 0;
+                ByteBuffer request = ByteBuffer.allocate(REQUEST_LENGTH).putLong(requested).putLong(offset).flip();
+                while (request.hasRemaining()) {
+                    channel.write(request);
+                }
+                ByteBuffer header = ByteBuffer.allocate(RESPONSE_HEADER_LENGTH);
+                while (header.hasRemaining()) {
+                    if (channel.read(header) < 0) {
+                        throw new EOFException("conexão encerrada antes do cabeçalho");
+                    }
+                }
+                if (header.get(0) != OK) {
+                    throw new IOException("nó sem snapshot disponível");
+                }
+                long served = header.getLong(1);
+                long size = header.getLong(9);
+                long position = header.getLong(17);
+                if (served != requested) {
+                    requested = served;
+                    part = store.partPath(served);
+                }
+                store.deletePartsExcept(served);
+                try (FileChannel file = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    file.truncate(position);
+                    while (position < size) {
+                        long received = file.transferFrom(channel, position, Math.min(CHUNK_SIZE, size - position));
+                        if (received == 0) {
+                            throw new EOFException("conexão encerrada em " + position + " de " + size + " bytes");
+                        }
+                        position += received;
+                    }
+                }
+                return part;
+            } catch (IOException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                System.out.println("Transferência do snapshot interrompida (" + e.getMessage() + "), retomando");
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void accept() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                Thread sender = new Thread(() -> send(channel), "snapshot-send");
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (serverChannel.isOpen()) {
+                    System.err.println("Erro ao aceitar pedido de snapshot: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void send(SocketChannel channel) {
+        try (channel) {
+            ByteBuffer request = ByteBuffer.allocate(REQUEST_LENGTH);
+            while (request.hasRemaining()) {
+                if (channel.read(request) < 0) {
+                    return;
+                }
+            }
+            long requested = request.getLong(0);
+            long offset = request.getLong(8);
+            // um snapshot novo pode apagar o mais recente entre a listagem e a abertura
+            while (true) {
+                Path latest = store.latestPath();
+                if (latest == null) {
+                    writeFully(channel, ByteBuffer.allocate(RESPONSE_HEADER_LENGTH).put(0, UNAVAILABLE));
+                    return;
+                }
+                try (FileChannel file = FileChannel.open(latest, StandardOpenOption.READ)) {
+                    long index = SnapshotStore.snapshotIndex(latest);
+                    long size = file.size();
+                    long position = index == requested ? Math.min(offset, size) : 0;
+                    writeFully(channel, ByteBuffer.allocate(RESPONSE_HEADER_LENGTH)
+                            .put(OK).putLong(index).putLong(size).putLong(position).flip());
+                    while (position < size) {
+                        position += file.transferTo(position, Math.min(CHUNK_SIZE, size - position), channel);
+                    }
+                    return;
+                } catch (NoSuchFileException e) {
+                    // tenta de novo com o próximo mais recente
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Envio de snapshot interrompido: " + e.getMessage());
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.marketdata;
+
+import com.model.BookListener;
+import com.model.DepthLevel;
+import com.model.LevelAction;
+import com.model.MarketDepth;
+import com.model.Order;
+import com.model.OrderType;
+import com.model.TradeEvent;
+import com.model.TradeListener;
+import com.service.MatchingEngine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Feed L2 incremental por UDP multicast, alimentado pelos listeners do matching.
+ * <p>
+ * Cada alteração de nível (NEW, CHANGE, DELETE) e cada trade recebe o próximo número de
+ * sequência do símbolo. Snapshots completos dos livros saem periodicamente, ao assumir
+ * a liderança e depois de descartar eventos, para quem entrou atrasado ou perdeu pacotes
+ * se ressincronizar: o snapshot leva a sequência do último incremental que ele cobre.
+ * Um incremental descartado com o ring cheio ainda consome o seu número de sequência,
+ * então o assinante vê a lacuna e espera esse snapshot em vez de seguir num livro errado.
+ * <p>
+ * O feed conflacionado, numa porta própria, é opcional para o assinante: a cada
+ * {@code conflateMillis} ele traz só o estado final de cada nível alterado, mais os
+ * snapshots, sem trades. Quem não acompanha o ritmo do feed completo assina este.
+ * <p>
+ * Todos os nós do grupo aplicam os mesmos comandos, mas só o líder transmite. A sessão
+ * no cabeçalho é a geração em que ele assumiu; ao ver uma sessão nova, o assinante
+ * espera o snapshot que a abre.
+ *
+ * <pre>
+ * pacote:   magic byte (0xB9), version byte, session int, messageCount short
+ * mensagem: type byte, symbolLength byte, symbol ASCII, sequence long, corpo:
+ *   LEVEL    (0) action byte, side byte, priceTicks long, quantity long, orderCount int
+ *   TRADE    (1) tradeSequence long, priceTicks long, quantity int, aggressorSide byte
+ *   SNAPSHOT (2) bidCount short, askCount short, níveis (priceTicks long, quantity long, orderCount int)
+ * </pre>
+ */
+public class MarketDataPublisher implements TradeListener, BookListener, AutoCloseable {
+    static final byte MAGIC = (byte) 0xB9;
+    static final byte VERSION = 1;
+    static final int PACKET_HEADER_LENGTH = 8;
+    // incrementais vão em pacotes que cabem num quadro Ethernet; um snapshot maior vai sozinho
+    static final int MAX_PACKET_LENGTH = 1400;
+    static final int MAX_DATAGRAM_LENGTH = 65_000;
+    static final int LEVEL_LENGTH = 20;
+    // 2 x 1000 níveis de 20 bytes cabem num datagrama
+    static final int MAX_SNAPSHOT_LEVELS = 1000;
+    private static final int RING_CAPACITY = 64 * 1024;
+    private static final long PARK_NANOS = 1_000_000;
+
+    private final DatagramChannel channel;
+    private final InetSocketAddress feed;
+    private final InetSocketAddress conflatedFeed;
+    private final long snapshotNanos;
+    private final long conflateNanos;
+    private final MarketDataRing ring = new MarketDataRing(RING_CAPACITY);
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private MatchingEngine matchingEngine;
+    private BooleanSupplier active;
+    private IntSupplier session;
+
+    // estado da thread do publicador
+    private final Map<String, SymbolState> symbols = new HashMap<>();
+    private final List<SymbolState> conflationPending = new ArrayList<>();
+    private final Packet packet;
+    private final Packet conflatedPacket;
+    private boolean transmitting;
+    // houve descarte desde o último pedido de snapshots
+    private boolean resync;
+    private int currentSession;
+    private boolean sendErrorLogged;
+
+    /**
+     * @param feed           grupo e porta do feed completo; o conflacionado usa a porta seguinte
+     * @param networkInterface interface de saída do multicast, ex.: a de loopback em testes
+     */
+    public MarketDataPublisher(InetSocketAddress feed, NetworkInterface networkInterface,
+                               long snapshotMillis, long conflateMillis) throws IOException {
+        this.feed = feed;
+        this.conflatedFeed = new InetSocketAddress(feed.getAddress(), feed.getPort() + 1);
+        this.packet = new Packet(feed);
+        this.conflatedPacket = new Packet(conflatedFeed);
+        this.snapshotNanos = snapshotMillis * 1_000_000;
+        this.conflateNanos = conflateMillis * 1_000_000;
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, 1);
+        this.thread = new Thread(this::run, "market-data");
+        this.thread.setDaemon(true);
+        ring.setConsumer(thread);
+    }
+
+    /**
+     * Passa a publicar os livros de {@code matchingEngine} enquanto {@code active} for
+     * verdadeiro (o nó é o líder do grupo), com a sessão dada por {@code session}.
+     */
+    public void start(MatchingEngine matchingEngine, BooleanSupplier active, IntSupplier session) {
+        this.matchingEngine = matchingEngine;
+        this.active = active;
+        this.session = session;
+        matchingEngine.addTradeListener(this);
+        matchingEngine.addBookListener(this);
+        thread.start();
+        System.out.println("Market data em " + feed + " (conflacionado em " + conflatedFeed.getPort() + ")");
+    }
+
+    @Override
+    public void onLevelUpdate(String symbol, OrderType side, LevelAction action, long priceTicks, long quantity, int orderCount) {
+        ring.publishLevel(symbol, side, action, priceTicks, quantity, orderCount);
+    }
+
+    @Override
+    public void onTrade(TradeEvent trade) {
+        ring.publishTrade(trade.getSymbol(), trade.getAggressor().getType(), trade.getTradeSequence(),
+                trade.getPriceTicks(), trade.getQuantity());
+    }
+
+    private void run() {
+        long nextSnapshot = System.nanoTime() + snapshotNanos;
+        long nextConflation = System.nanoTime() + conflateNanos;
+        while (running) {
+            boolean leader = active.getAsBoolean();
+            if (leader && !transmitting) {
+                // nova sessão: os assinantes descartam o que tinham e esperam estes snapshots
+                currentSession = session.getAsInt();
+                requestSnapshots();
+                nextSnapshot = System.nanoTime() + snapshotNanos;
+            }
+            transmitting = leader;
+
+            int drained = ring.drain(this::onSlot);
+            send(packet);
+
+            long now = System.nanoTime();
+            if (transmitting && now - nextConflation >= 0) {
+                flushConflated();
+                send(conflatedPacket);
+                nextConflation = now + conflateNanos;
+            }
+            takeDropped();
+            if (resync || transmitting && now - nextSnapshot >= 0) {
+                resync = false;
+                requestSnapshots();
+                nextSnapshot = now + snapshotNanos;
+            }
+            if (drained == 0) {
+                ring.parkConsumer(Math.min(PARK_NANOS, conflateNanos));
+            }
+        }
+    }
+
+    // os snapshots são lidos nas threads de matching e voltam pelo ring, em ordem com os incrementais
+    private void requestSnapshots() {
+        if (transmitting || active.getAsBoolean()) {
+            matchingEngine.forEachDepth(MAX_SNAPSHOT_LEVELS, ring::publishSnapshot);
+        }
+    }
+
+    // pula as sequências dos incrementais descartados antes de numerar o próximo evento
+    private void takeDropped() {
+        if (ring.takeOverflow()) {
+            resync = true;
+            ring.takeDropped((symbol, count) -> symbols.computeIfAbsent(symbol, SymbolState::new).sequence += count);
+        }
+    }
+
+    private void onSlot(MarketDataRing.Slot slot) {
+        takeDropped();
+        SymbolState state = symbols.computeIfAbsent(slot.symbol, SymbolState::new);
+        switch (slot.type) {
+            case MarketDataRing.LEVEL -> {
+                long sequence = ++state.sequence;
+                if (transmitting) {
+                    encodeLevel(packet, slot.symbol, sequence, slot.action, slot.side, slot.priceTicks,
+                            slot.quantity, slot.orderCount);
+                    if (state.conflate(slot.side, slot.priceTicks, slot.action, slot.quantity, slot.orderCount)) {
+                        conflationPending.add(state);
+                    }
+                }
+            }
+            case MarketDataRing.TRADE -> {
+                long sequence = ++state.sequence;
+                if (transmitting) {
+                    encodeTrade(packet, slot.symbol, sequence, slot.tradeSequence, slot.priceTicks,
+                            (int) slot.quantity, slot.side);
+                }
+            }
+            case MarketDataRing.SNAPSHOT -> {
+                if (transmitting) {
+                    encodeSnapshot(packet, state.sequence, slot.depth);
+                    // o snapshot já contém as alterações ainda não conflacionadas
+                    state.clearConflated();
+                    encodeSnapshot(conflatedPacket, state.sequence, slot.depth);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void flushConflated() {
+        for (SymbolState state : conflationPending) {
+            for (int side = 0; side < 2; side++) {
+                Iterator<Map.Entry<Long, PendingLevel>> levels = state.pending.get(side).entrySet().iterator();
+                while (levels.hasNext()) {
+                    Map.Entry<Long, PendingLevel> entry = levels.next();
+                    PendingLevel level = entry.getValue();
+                    encodeLevel(conflatedPacket, state.symbol, state.sequence, level.action,
+                            side == 0 ? OrderType.BUY : OrderType.SELL, entry.getKey(), level.quantity, level.orderCount);
+                    levels.remove();
+                }
+            }
+            state.conflationPending = false;
+        }
+        conflationPending.clear();
+    }
+
+    private void encodeLevel(Packet target, String symbol, long sequence, LevelAction action, OrderType side,
+                             long priceTicks, long quantity, int orderCount) {
+        ByteBuffer buffer = target.reserve(messageLength(symbol, 2 + LEVEL_LENGTH));
+        putHeader(buffer, MarketDataRing.LEVEL, symbol, sequence);
+        buffer.put((byte) action.ordinal())
+                .put((byte) side.ordinal())
+                .putLong(priceTicks)
+                .putLong(quantity)
+                .putInt(orderCount);
+    }
+
+    private void encodeTrade(Packet target, String symbol, long sequence, long tradeSequence, long priceTicks,
+                             int quantity, OrderType aggressorSide) {
+        ByteBuffer buffer = target.reserve(messageLength(symbol, 21));
+        putHeader(buffer, MarketDataRing.TRADE, symbol, sequence);
+        buffer.putLong(tradeSequence)
+                .putLong(priceTicks)
+                .putInt(quantity)
+                .put((byte) aggressorSide.ordinal());
+    }
+
+    private void encodeSnapshot(Packet target, long sequence, MarketDepth depth) {
+        List<DepthLevel> bids = depth.bids();
+        List<DepthLevel> asks = depth.asks();
+        ByteBuffer buffer = target.reserve(messageLength(depth.symbol(), 4 + LEVEL_LENGTH * (bids.size() + asks.size())));
+        putHeader(buffer, MarketDataRing.SNAPSHOT, depth.symbol(), sequence);
+        buffer.putShort((short) bids.size()).putShort((short) asks.size());
+        for (DepthLevel level : bids) {
+            buffer.putLong(Order.toTicks(level.price())).putLong(level.quantity()).putInt(level.orderCount());
+        }
+        for (DepthLevel level : asks) {
+            buffer.putLong(Order.toTicks(level.price())).putLong(level.quantity()).putInt(level.orderCount());
+        }
+    }
+
+    private static int messageLength(String symbol, int bodyLength) {
+        return 2 + symbol.length() + 8 + bodyLength;
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte type, String symbol, long sequence) {
+        buffer.put(type).put((byte) symbol.length());
+        for (int i = 0; i < symbol.length(); i++) {
+            buffer.put((byte) symbol.charAt(i));
+        }
+        buffer.putLong(sequence);
+    }
+
+    private void send(Packet target) {
+        if (target.messageCount == 0) {
+            return;
+        }
+        ByteBuffer buffer = target.buffer;
+        buffer.putShort(6, (short) target.messageCount);
+        buffer.flip();
+        try {
+            channel.send(buffer, target.address);
+        } catch (IOException e) {
+            // market data é melhor esforço: o assinante se recupera pelo próximo snapshot
+            if (!sendErrorLogged) {
+                sendErrorLogged = true;
+                System.err.println("Erro ao publicar market data em " + target.address + ": " + e.getMessage());
+            }
+        }
+        target.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        thread.interrupt();
+        channel.close();
+    }
+
+    // pacote em montagem para um dos feeds; o cabeçalho é escrito com a primeira mensagem
+    private final class Packet {
+        final InetSocketAddress address;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_LENGTH);
+        int messageCount;
+
+        Packet(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        ByteBuffer reserve(int length) {
+            if (messageCount > 0 && buffer.position() + length > MAX_PACKET_LENGTH) {
+                send(this);
+            }
+            if (messageCount == 0) {
+                buffer.put(MAGIC).put(VERSION).putInt(currentSession).putShort((short) 0);
+            }
+            messageCount++;
+            return buffer;
+        }
+
+        void reset() {
+            buffer.clear();
+            messageCount = 0;
+        }
+    }
+
+    private static final class SymbolState {
+        final String symbol;
+        long sequence;
+        // alterações desde o último envio conflacionado, por lado (0 = compra) e preço
+        final List<Map<Long, PendingLevel>> pending = List.of(new HashMap<>(), new HashMap<>());
+        boolean conflationPending;
+
+        SymbolState(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /**
+         * Funde a alteração com a pendente no mesmo nível.
+         *
+         * @return {@code true} se o símbolo passou a ter alterações pendentes
+         */
+        boolean conflate(OrderType side, long priceTicks, LevelAction action, long quantity, int orderCount) {
+            Map<Long, PendingLevel> levels = pending.get(side == OrderType.BUY ? 0 : 1);
+            PendingLevel level = levels.get(priceTicks);
+            if (level == null) {
+                levels.put(priceTicks, new PendingLevel(action, quantity, orderCount));
+            } else if (level.action == LevelAction.NEW && action == LevelAction.DELETE) {
+                // criado e removido no intervalo: o assinante nunca o viu
+                levels.remove(priceTicks);
+            } else {
+                level.action = level.action == LevelAction.NEW ? LevelAction.NEW
+                        : level.action == LevelAction.DELETE ? LevelAction.CHANGE : action;
+                level.quantity = quantity;
+                level.orderCount = orderCount;
+            }
+            if (conflationPending) {
+                return false;
+            }
+            conflationPending = true;
+            return true;
+        }
+
+        void clearConflated() {
+            pending.get(0).clear();
+            pending.get(1).clear();
+        }
+    }
+
+    private static final class PendingLevel {
+        LevelAction action;
+        long quantity;
+        int orderCount;
+
+        PendingLevel(LevelAction action, long quantity, int orderCount) {
+            this.action = action;
+            this.quantity = quantity;
+            this.orderCount = orderCount;
+        }
+    }
+}
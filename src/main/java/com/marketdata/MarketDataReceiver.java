@@ -0,0 +1,241 @@
+package com.marketdata;
+
+import com.model.DepthLevel;
+import com.model.LevelAction;
+import com.model.MarketDepth;
+import com.model.Order;
+import com.model.OrderType;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assinante do feed de {@link MarketDataPublisher}. Confere a sequência de cada símbolo:
+ * ao ver uma lacuna ou uma sessão nova, descarta os incrementais até o próximo snapshot
+ * do símbolo e continua a partir da sequência dele. No feed conflacionado as sequências
+ * saltam por natureza; só se exige que não voltem.
+ */
+public class MarketDataReceiver implements AutoCloseable {
+
+    /**
+     * Recebe os eventos já validados, na thread do receptor.
+     */
+    public interface Listener {
+        default void onLevel(String symbol, long sequence, LevelAction action, OrderType side, double price,
+                             long quantity, int orderCount) {
+        }
+
+        default void onTrade(String symbol, long sequence, long tradeSequence, double price, int quantity,
+                             OrderType aggressorSide) {
+        }
+
+        default void onSnapshot(String symbol, long sequence, MarketDepth depth) {
+        }
+
+        /**
+         * O símbolo perdeu mensagens e fica sem incrementais até o próximo snapshot.
+         */
+        default void onGap(String symbol, long expected, long received) {
+        }
+    }
+
+    private static final LevelAction[] ACTIONS = LevelAction.values();
+    private static final OrderType[] SIDES = OrderType.values();
+
+    private final DatagramChannel channel;
+    private final boolean conflated;
+    private final Listener listener;
+    private final Map<String, SymbolState> symbols = new HashMap<>();
+    private final Thread thread;
+
+    /**
+     * @param feed      grupo e porta do feed completo, os mesmos do publicador
+     * @param conflated assina o feed conflacionado (porta seguinte) em vez do completo
+     */
+    public MarketDataReceiver(InetSocketAddress feed, NetworkInterface networkInterface, boolean conflated,
+                              Listener listener) throws IOException {
+        this.conflated = conflated;
+        this.listener = listener;
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET)
+                .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+                .setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024)
+                .bind(new InetSocketAddress(feed.getPort() + (conflated ? 1 : 0)));
+        channel.join(feed.getAddress(), networkInterface);
+        this.thread = new Thread(this::receive, "market-data-receiver");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocate(MarketDataPublisher.MAX_DATAGRAM_LENGTH);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                onPacket(buffer);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Erro ao receber market data: " + e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("Pacote de market data inválido: " + e);
+            }
+        }
+    }
+
+    private void onPacket(ByteBuffer buffer) {
+        if (buffer.remaining() < MarketDataPublisher.PACKET_HEADER_LENGTH || buffer.get() != MarketDataPublisher.MAGIC
+                || buffer.get() != MarketDataPublisher.VERSION) {
+            return;
+        }
+        int session = buffer.getInt();
+        int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            byte type = buffer.get();
+            byte[] symbolBytes = new byte[buffer.get()];
+            buffer.get(symbolBytes);
+            String symbol = new String(symbolBytes, StandardCharsets.US_ASCII);
+            long sequence = buffer.getLong();
+            SymbolState state = symbols.computeIfAbsent(symbol, s -> new SymbolState());
+            switch (type) {
+                case MarketDataRing.LEVEL -> {
+                    LevelAction action = ACTIONS[buffer.get()];
+                    OrderType side = SIDES[buffer.get()];
+                    long priceTicks = buffer.getLong();
+                    long quantity = buffer.getLong();
+                    int orderCount = buffer.getInt();
+                    if (accept(symbol, state, session, sequence)) {
+                        listener.onLevel(symbol, sequence, action, side, Order.fromTicks(priceTicks), quantity, orderCount);
+                    }
+                }
+                case MarketDataRing.TRADE -> {
+                    long tradeSequence = buffer.getLong();
+                    long priceTicks = buffer.getLong();
+                    int quantity = buffer.getInt();
+                    OrderType aggressorSide = SIDES[buffer.get()];
+                    if (accept(symbol, state, session, sequence)) {
+                        listener.onTrade(symbol, sequence, tradeSequence, Order.fromTicks(priceTicks), quantity, aggressorSide);
+                    }
+                }
+                case MarketDataRing.SNAPSHOT -> {
+                    int bidCount = buffer.getShort();
+                    int askCount = buffer.getShort();
+                    List<DepthLevel> bids = readLevels(buffer, bidCount);
+                    List<DepthLevel> asks = readLevels(buffer, askCount);
+                    // um snapshot mais velho que o estado atual da mesma sessão não acrescenta nada
+                    if (state.recovering || session != state.session || sequence >= state.sequence) {
+                        state.session = session;
+                        state.sequence = sequence;
+                        state.recovering = false;
+                        listener.onSnapshot(symbol, sequence, new MarketDepth(symbol, bids, asks));
+                    }
+                }
+                default -> throw new IllegalArgumentException("tipo de mensagem " + type);
+            }
+        }
+    }
+
+    private static List<DepthLevel> readLevels(ByteBuffer buffer, int count) {
+        List<DepthLevel> levels = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            levels.add(new DepthLevel(Order.fromTicks(buffer.getLong()), buffer.getLong(), buffer.getInt()));
+        }
+        return levels;
+    }
+
+    // decide se o incremental se aplica ao estado do símbolo, marcando lacunas
+    private boolean accept(String symbol, SymbolState state, int session, long sequence) {
+        if (state.recovering) {
+            return false;
+        }
+        if (session != state.session) {
+            state.recovering = true;
+            listener.onGap(symbol, state.sequence + 1, sequence);
+            return false;
+        }
+        if (sequence <= state.sequence) {
+            return conflated && sequence == state.sequence;
+        }
+        if (!conflated && sequence != state.sequence + 1) {
+            state.recovering = true;
+            listener.onGap(symbol, state.sequence + 1, sequence);
+            return false;
+        }
+        state.sequence = sequence;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static final class SymbolState {
+        int session;
+        long sequence;
+        // sem snapshot ainda, ou depois de uma lacuna
+        boolean recovering = true;
+    }
+
+    /**
+     * Uso: java MarketDataReceiver [grupo:porta] [conflated]. Imprime os eventos do feed
+     * recebidos pela interface de loopback, ou pela de {@code -Dmarketdata.interface}.
+     */
+    public static void main(String[] args) throws Exception {
+        String address = args.length > 0 ? args[0] : "239.255.0.1:9600";
+        int separator = address.lastIndexOf(':');
+        InetSocketAddress feed = new InetSocketAddress(InetAddress.getByName(address.substring(0, separator)),
+                Integer.parseInt(address.substring(separator + 1)));
+        boolean conflated = args.length > 1 && args[1].equalsIgnoreCase("conflated");
+        String name = System.getProperty("marketdata.interface");
+        NetworkInterface networkInterface = name == null
+                ? NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress())
+                : NetworkInterface.getByName(name);
+
+        MarketDataReceiver receiver = new MarketDataReceiver(feed, networkInterface, conflated, new Listener() {
+            @Override
+            public void onLevel(String symbol, long sequence, LevelAction action, OrderType side, double price,
+                                long quantity, int orderCount) {
+                System.out.println(symbol + " #" + sequence + " " + action + " " + side + " " + quantity + "@" + price
+                        + " (" + orderCount + ")");
+            }
+
+            @Override
+            public void onTrade(String symbol, long sequence, long tradeSequence, double price, int quantity,
+                                OrderType aggressorSide) {
+                System.out.println(symbol + " #" + sequence + " TRADE " + tradeSequence + " " + quantity + "@" + price
+                        + " agressor " + aggressorSide);
+            }
+
+            @Override
+            public void onSnapshot(String symbol, long sequence, MarketDepth depth) {
+                System.out.println(symbol + " #" + sequence + " SNAPSHOT " + depth);
+            }
+
+            @Override
+            public void onGap(String symbol, long expected, long received) {
+                System.out.println(symbol + " lacuna: esperava " + expected + ", recebeu " + received
+                        + "; aguardando snapshot");
+            }
+        });
+        System.out.println("Assinando " + feed + (conflated ? " (conflacionado)" : ""));
+        receiver.start();
+        receiver.thread.join();
+    }
+}
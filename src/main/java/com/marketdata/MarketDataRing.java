@@ -0,0 +1,198 @@
+package com.marketdata;
+
+import com.model.LevelAction;
+import com.model.MarketDepth;
+import com.model.OrderType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffer circular pré-alocado entre as threads de matching (produtoras) e a thread do
+ * publicador. Ao contrário do ring de ordens, um produtor nunca espera: com o buffer
+ * cheio o evento é descartado e o publicador é avisado para reenviar os snapshots. Os
+ * incrementais descartados são contados por símbolo, para o publicador pular os números
+ * de sequência deles e o assinante ver a lacuna.
+ */
+final class MarketDataRing {
+    static final byte LEVEL = 0;
+    static final byte TRADE = 1;
+    static final byte SNAPSHOT = 2;
+
+    static final class Slot {
+        byte type;
+        String symbol;
+        OrderType side;
+        LevelAction action;
+        long priceTicks;
+        long quantity;
+        int orderCount;
+        long tradeSequence;
+        MarketDepth depth;
+    }
+
+    interface SlotHandler {
+        void onSlot(Slot slot);
+    }
+
+    interface DropHandler {
+        void onDropped(String symbol, long count);
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLongArray published;
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLong consumeSequence = new AtomicLong();
+    private volatile boolean overflowed;
+    // incrementais descartados por símbolo; só é tocado com o buffer cheio
+    private final Map<String, AtomicLong> dropped = new ConcurrentHashMap<>();
+
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+
+    MarketDataRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity deve ser potência de 2: " + capacity);
+        }
+        this.slots = new Slot[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+    }
+
+    void setConsumer(Thread consumer) {
+        this.consumer = consumer;
+    }
+
+    void publishLevel(String symbol, OrderType side, LevelAction action, long priceTicks, long quantity, int orderCount) {
+        long sequence = tryClaim(symbol);
+        if (sequence < 0) {
+            return;
+        }
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.type = LEVEL;
+        slot.symbol = symbol;
+        slot.side = side;
+        slot.action = action;
+        slot.priceTicks = priceTicks;
+        slot.quantity = quantity;
+        slot.orderCount = orderCount;
+        commit(sequence);
+    }
+
+    void publishTrade(String symbol, OrderType aggressorSide, long tradeSequence, long priceTicks, int quantity) {
+        long sequence = tryClaim(symbol);
+        if (sequence < 0) {
+            return;
+        }
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.type = TRADE;
+        slot.symbol = symbol;
+        slot.side = aggressorSide;
+        slot.tradeSequence = tradeSequence;
+        slot.priceTicks = priceTicks;
+        slot.quantity = quantity;
+        commit(sequence);
+    }
+
+    void publishSnapshot(MarketDepth depth) {
+        // um snapshot perdido não consome sequência: basta pedir outro
+        long sequence = tryClaim(null);
+        if (sequence < 0) {
+            return;
+        }
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.type = SNAPSHOT;
+        slot.symbol = depth.symbol();
+        slot.depth = depth;
+        commit(sequence);
+    }
+
+    // -1 com o buffer cheio: o evento se perde e os assinantes se recuperam pelo snapshot
+    private long tryClaim(String droppedSymbol) {
+        while (true) {
+            long sequence = claimSequence.get();
+            if (sequence - consumeSequence.get() >= slots.length) {
+                if (droppedSymbol != null) {
+                    dropped.computeIfAbsent(droppedSymbol, symbol -> new AtomicLong()).incrementAndGet();
+                }
+                // depois da contagem: quem vê a marca vê a contagem também
+                overflowed = true;
+                return -1;
+            }
+            if (claimSequence.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    private void commit(long sequence) {
+        published.set((int) (sequence & mask), sequence);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * @return {@code true} se algum evento foi descartado desde a última chamada
+     */
+    boolean takeOverflow() {
+        if (!overflowed) {
+            return false;
+        }
+        overflowed = false;
+        return true;
+    }
+
+    /**
+     * Entrega e zera as contagens de incrementais descartados; chamado depois de
+     * {@link #takeOverflow()} devolver {@code true}.
+     */
+    void takeDropped(DropHandler handler) {
+        for (Map.Entry<String, AtomicLong> entry : dropped.entrySet()) {
+            long count = entry.getValue().getAndSet(0);
+            if (count > 0) {
+                handler.onDropped(entry.getKey(), count);
+            }
+        }
+    }
+
+    int drain(SlotHandler handler) {
+        long next = consumeSequence.get();
+        int count = 0;
+        while (true) {
+            int index = (int) (next & mask);
+            if (published.get(index) != next) {
+                break;
+            }
+            Slot slot = slots[index];
+            handler.onSlot(slot);
+            slot.symbol = null;
+            slot.depth = null;
+            next++;
+            count++;
+            consumeSequence.lazySet(next);
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        long next = consumeSequence.get();
+        return published.get((int) (next & mask)) != next;
+    }
+
+    void parkConsumer(long nanos) {
+        consumerParked = true;
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        consumerParked = false;
+    }
+}
@@ -0,0 +1,110 @@
+package com.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Métricas do protocolo do cluster: duração das eleições, intervalo entre heartbeats e
+ * mensagens trocadas com cada nó, por tipo. O nó {@link #OBSERVER} reúne os destinos que
+ * não são nós do grupo, como o gateway.
+ */
+public final class ClusterMetrics {
+    public static final int OBSERVER = -1;
+
+    private static final LatencyHistogram ELECTIONS_WON = Metrics.histogram("election_seconds",
+            "Duração de cada rodada de eleição deste nó como candidato", "result", "won");
+    private static final LatencyHistogram ELECTIONS_LOST = Metrics.histogram("election_seconds",
+            "Duração de cada rodada de eleição deste nó como candidato", "result", "lost");
+
+    private static final ConcurrentHashMap<Integer, LatencyHistogram> heartbeatIntervals = new ConcurrentHashMap<>();
+    // chave: (nó + 1) << 8 | ordinal do tipo
+    private static final ConcurrentHashMap<Integer, Counter> received = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, Counter> sent = new ConcurrentHashMap<>();
+    private static final String RECEIVED = "peer_messages_received_total";
+    private static final String RECEIVED_HELP = "Mensagens do cluster recebidas de cada nó";
+    private static final String SENT = "peer_messages_sent_total";
+    private static final String SENT_HELP = "Mensagens do cluster enviadas a cada nó";
+
+    private ClusterMetrics() {
+    }
+
+    /**
+     * Cria de antemão as métricas de cada nó (e do {@link #OBSERVER}) por tipo de mensagem,
+     * e carrega os eventos JFR, na thread que monta o servidor: a primeira mensagem de um nó
+     * não paga isso na thread que recebe.
+     */
+    public static void preregister(Collection<Integer> peers, Enum<?>[] types) {
+        List<Integer> all = new ArrayList<>(peers);
+        all.add(OBSERVER);
+        for (int peer : all) {
+            heartbeatInterval(peer);
+            for (Enum<?> type : types) {
+                counter(received, RECEIVED, RECEIVED_HELP, peer, type);
+                counter(sent, SENT, SENT_HELP, peer, type);
+            }
+        }
+        // o primeiro uso de cada classe de evento a registra no JFR
+        new ElectionEvent().shouldCommit();
+        new HeartbeatEvent().shouldCommit();
+        new OrderStageEvent().shouldCommit();
+    }
+
+    /**
+     * Fim de uma rodada de eleição iniciada em {@code startNanos}.
+     */
+    public static void electionFinished(int node, int generation, long startNanos, boolean won) {
+        long duration = System.nanoTime() - startNanos;
+        (won ? ELECTIONS_WON : ELECTIONS_LOST).record(duration);
+        ElectionEvent event = new ElectionEvent();
+        if (event.shouldCommit()) {
+            event.node = node;
+            event.generation = generation;
+            event.won = won;
+            event.elapsed = duration;
+            event.commit();
+        }
+    }
+
+    /**
+     * Heartbeat de {@code peer} chegado {@code intervalMillis} depois do anterior.
+     */
+    public static void heartbeatReceived(int peer, long intervalMillis) {
+        heartbeatInterval(peer).record(intervalMillis * 1_000_000);
+        HeartbeatEvent event = new HeartbeatEvent();
+        if (event.shouldCommit()) {
+            event.peer = peer;
+            event.interval = intervalMillis;
+            event.commit();
+        }
+    }
+
+    public static void messageReceived(int peer, Enum<?> type) {
+        counter(received, RECEIVED, RECEIVED_HELP, peer, type).increment();
+    }
+
+    public static void messageSent(int peer, Enum<?> type) {
+        counter(sent, SENT, SENT_HELP, peer, type).increment();
+    }
+
+    private static LatencyHistogram heartbeatInterval(int peer) {
+        return heartbeatIntervals.computeIfAbsent(peer, p -> Metrics.histogram("heartbeat_interval_seconds",
+                "Intervalo entre heartbeats recebidos de cada nó", "peer", peerLabel(p)));
+    }
+
+    private static Counter counter(ConcurrentHashMap<Integer, Counter> counters, String name, String help,
+                                   int peer, Enum<?> type) {
+        int key = (peer + 1) << 8 | type.ordinal();
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> Metrics.counter(name, help,
+                    "peer", peerLabel(peer), "message", type.name().toLowerCase()));
+        }
+        return counter;
+    }
+
+    private static String peerLabel(int peer) {
+        return peer == OBSERVER ? "observer" : Integer.toString(peer);
+    }
+}
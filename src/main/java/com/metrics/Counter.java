@@ -0,0 +1,48 @@
+package com.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador cumulativo sem lock, para várias threads incrementarem sem disputar a mesma
+ * linha de cache.
+ */
+public final class Counter implements CounterMXBean {
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    // taxa da última janela, calculada pela thread de Metrics
+    private volatile double rate;
+    private long windowStart;
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    void rollWindow(double seconds) {
+        long total = value.sum();
+        rate = (total - windowStart) / seconds;
+        windowStart = total;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return value.sum();
+    }
+
+    @Override
+    public double getRate() {
+        return rate;
+    }
+}
@@ -0,0 +1,11 @@
+package com.metrics;
+
+/**
+ * Visão JMX de um {@link Counter}: o total e a taxa por segundo na última janela de
+ * {@link Metrics}.
+ */
+public interface CounterMXBean {
+    long getCount();
+
+    double getRate();
+}
@@ -0,0 +1,31 @@
+package com.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Uma rodada de eleição deste nó como candidato.
+ */
+@Name("com.exchange.Election")
+@Label("Eleição")
+@Category({"Exchange", "Cluster"})
+@Description("Rodada de eleição, do pedido de votos até a vitória ou a desistência")
+@StackTrace(false)
+class ElectionEvent extends jdk.jfr.Event {
+    @Label("Nó")
+    int node;
+
+    @Label("Geração")
+    int generation;
+
+    @Label("Venceu")
+    boolean won;
+
+    @Label("Duração")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
@@ -0,0 +1,28 @@
+package com.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Chegada de um heartbeat (ou lote de replicação) do líder, com o intervalo desde o anterior.
+ * Desligado por padrão: sob carga os lotes de replicação chegam a cada poucos milissegundos.
+ */
+@Name("com.exchange.Heartbeat")
+@Label("Heartbeat recebido")
+@Category({"Exchange", "Cluster"})
+@Description("Intervalo entre heartbeats recebidos de um nó")
+@Enabled(false)
+@StackTrace(false)
+class HeartbeatEvent extends jdk.jfr.Event {
+    @Label("Nó de origem")
+    int peer;
+
+    @Label("Intervalo")
+    @Timespan(Timespan.MILLISECONDS)
+    long interval;
+}
@@ -0,0 +1,25 @@
+package com.metrics;
+
+/**
+ * Visão JMX de um {@link LatencyHistogram}. Contagem, média, percentis e máximo são os da
+ * última janela de {@link Metrics}; os atributos {@code Total} cobrem tudo desde o início.
+ */
+public interface HistogramMXBean {
+    long getTotalCount();
+
+    long getTotalMaxMicros();
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
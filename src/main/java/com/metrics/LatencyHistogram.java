@@ -0,0 +1,217 @@
+package com.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências em nanossegundos, sem lock: cada registro incrementa um balde
+ * de uma tabela fixa. Os baldes são log-lineares, 16 por potência de 2, então o valor
+ * devolvido para um percentil fica no máximo 1/16 acima do medido; abaixo de 16 ns o
+ * valor é exato.
+ * <p>
+ * Os contadores são cumulativos desde a criação. {@link Metrics} guarda a cada janela uma
+ * cópia deles; os percentis do JMX são os da última janela fechada, para um salto no p99
+ * aparecer sem se diluir no histórico.
+ */
+public final class LatencyHistogram implements HistogramMXBean {
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // última janela fechada por Metrics, trocada inteira
+    private volatile Snapshot window = new Snapshot(new long[BUCKETS], 0, 0);
+    private long[] windowStartCounts = new long[BUCKETS];
+    private long windowStartSum;
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Registra uma latência; valores negativos (relógio voltando) contam como zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Maior valor que cai no balde.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Cópia dos contadores cumulativos.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, sum.sum(), max.get());
+    }
+
+    /**
+     * Fecha a janela corrente; chamado só pela thread de {@link Metrics}.
+     */
+    void rollWindow() {
+        Snapshot total = snapshot();
+        long[] delta = new long[BUCKETS];
+        long windowMax = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            delta[i] = total.counts[i] - windowStartCounts[i];
+            if (delta[i] > 0) {
+                windowMax = upperBound(i);
+            }
+        }
+        window = new Snapshot(delta, total.sum - windowStartSum, Math.min(windowMax, total.max));
+        windowStartCounts = total.counts;
+        windowStartSum = total.sum;
+    }
+
+    Snapshot window() {
+        return window;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getTotalCount() {
+        return snapshot().count();
+    }
+
+    @Override
+    public long getTotalMaxMicros() {
+        return max.get() / 1000;
+    }
+
+    @Override
+    public long getCount() {
+        return window.count();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return window.mean() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return window.percentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return window.percentile(90) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return window.percentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return window.percentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return window.max / 1000.0;
+    }
+
+    /**
+     * Contagens por balde num instante, cumulativas ou de uma janela.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long sum;
+        private final long max;
+        private final long count;
+
+        Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            this.sum = sum;
+            this.max = max;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sum() {
+            return sum;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return o limite superior do balde em que cai o percentil, sem passar do máximo
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Quantos valores são no máximo {@code nanos}, contando baldes inteiros.
+         */
+        public long countAtOrBelow(long nanos) {
+            long total = 0;
+            for (int i = 0; i < counts.length && upperBound(i) <= nanos; i++) {
+                total += counts[i];
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro das métricas do processo. Quem mede pega o {@link LatencyHistogram} ou o
+ * {@link Counter} uma vez, guarda a referência e depois só registra valores; nada aqui
+ * fica no caminho quente. O MBean de uma métrica nova é registrado em segundo plano.
+ * <p>
+ * Cada métrica tem um nome e rótulos em pares chave/valor, e aparece de três formas:
+ * <ul>
+ *     <li>um MXBean {@code com.exchange:type=Metrics,name=<nome>,<rótulo>=<valor>}, com os
+ *     percentis da última janela de {@code -Dmetrics.windowMillis} (10 s);</li>
+ *     <li>o texto de {@link #scrape}, no formato de exposição do Prometheus, servido em
+ *     {@code /metrics} por {@link #startHttp}: histogramas cumulativos em segundos e, em
+ *     {@code <nome>_window}, os percentis da última janela;</li>
+ *     <li>os eventos JFR de {@link OrderStage} e {@link ClusterMetrics}, numa gravação aberta
+ *     com o processo rodando: {@code jcmd <pid> JFR.start +com.exchange.OrderStage#enabled=true}
+ *     (só o de eleição vem ligado por padrão).</li>
+ * </ul>
+ * As métricas são do processo: os grupos de replicação de um mesmo servidor somam nelas.
+ */
+public final class Metrics {
+    public static final String JMX_DOMAIN = "com.exchange";
+    private static final long WINDOW_MILLIS = Long.getLong("metrics.windowMillis", 10_000);
+    // limites dos baldes expostos no texto: 1-2-5 de 1 µs a 10 s
+    private static final long[] EXPOSED_BOUNDS_NANOS = exposedBounds();
+    private static final double[] WINDOW_QUANTILES = {0.5, 0.9, 0.99, 0.999, 1};
+
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+    // vira as janelas e registra os MBeans: subir o MBeanServer da plataforma leva centenas
+    // de ms, que não podem cair na thread que criou a métrica
+    private static final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "metrics-window");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        worker.scheduleAtFixedRate(Metrics::rollWindows, WINDOW_MILLIS, WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private enum Kind {HISTOGRAM, COUNTER}
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Kind kind;
+        // rótulos já formatados -> métrica
+        final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, Kind kind) {
+            this.name = name;
+            this.help = help;
+            this.kind = kind;
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Histograma de latências em nanossegundos; a mesma combinação de nome e rótulos
+     * devolve sempre o mesmo histograma.
+     *
+     * @param labels pares chave, valor
+     */
+    public static LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) register(name, help, Kind.HISTOGRAM, labels);
+    }
+
+    /**
+     * Contador cumulativo; por convenção o nome termina em {@code _total}.
+     *
+     * @param labels pares chave, valor
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name, help, Kind.COUNTER, labels);
+    }
+
+    private static Object register(String name, String help, Kind kind, String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Rótulos devem vir em pares chave, valor: " + name);
+        }
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help, kind));
+        if (family.kind != kind) {
+            throw new IllegalArgumentException("Métrica " + name + " já registrada como " + family.kind);
+        }
+        return family.metrics.computeIfAbsent(formatLabels(labels), key -> {
+            Object metric = kind == Kind.HISTOGRAM ? new LatencyHistogram(name) : new Counter(name);
+            worker.execute(() -> registerMBean(metric, name, labels));
+            return metric;
+        });
+    }
+
+    private static String formatLabels(String... labels) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return text.toString();
+    }
+
+    private static void registerMBean(Object metric, String name, String... labels) {
+        StringBuilder objectName = new StringBuilder(JMX_DOMAIN).append(":type=Metrics,name=").append(name);
+        for (int i = 0; i < labels.length; i += 2) {
+            String value = labels[i + 1];
+            boolean plain = value.chars().noneMatch(c -> ",=:\"*?\n".indexOf(c) >= 0);
+            objectName.append(',').append(labels[i]).append('=').append(plain ? value : ObjectName.quote(value));
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metric, new ObjectName(objectName.toString()));
+        } catch (JMException e) {
+            System.err.println("Erro ao registrar a métrica " + objectName + " no JMX: " + e.getMessage());
+        }
+    }
+
+    private static void rollWindows() {
+        double seconds = WINDOW_MILLIS / 1000.0;
+        for (Family family : families.values()) {
+            for (Object metric : family.metrics.values()) {
+                if (metric instanceof LatencyHistogram histogram) {
+                    histogram.rollWindow();
+                } else {
+                    ((Counter) metric).rollWindow(seconds);
+                }
+            }
+        }
+    }
+
+    /**
+     * Todas as métricas no formato de exposição em texto do Prometheus.
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        for (Family family : families.values()) {
+            if (family.kind == Kind.COUNTER) {
+                header(out, family.name, family.help, "counter");
+                family.metrics.forEach((labels, metric) -> sample(out, family.name, labels, "",
+                        Long.toString(((Counter) metric).getCount())));
+                continue;
+            }
+            String name = family.name;
+            header(out, name, family.help, "histogram");
+            family.metrics.forEach((labels, metric) -> {
+                LatencyHistogram.Snapshot total = ((LatencyHistogram) metric).snapshot();
+                for (long bound : EXPOSED_BOUNDS_NANOS) {
+                    sample(out, name + "_bucket", labels, "le=\"" + toSeconds(bound) + '"',
+                            Long.toString(total.countAtOrBelow(bound)));
+                }
+                sample(out, name + "_bucket", labels, "le=\"+Inf\"", Long.toString(total.count()));
+                sample(out, name + "_sum", labels, "", Double.toString(total.sum() / 1e9));
+                sample(out, name + "_count", labels, "", Long.toString(total.count()));
+            });
+            header(out, name + "_window", family.help + " (última janela)", "gauge");
+            family.metrics.forEach((labels, metric) -> {
+                LatencyHistogram.Snapshot window = ((LatencyHistogram) metric).window();
+                for (double quantile : WINDOW_QUANTILES) {
+                    long nanos = quantile == 1 ? window.max() : window.percentile(quantile * 100);
+                    sample(out, name + "_window", labels, "quantile=\"" + quantile + '"',
+                            Double.toString(nanos / 1e9));
+                }
+            });
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String extraLabel, String value) {
+        out.append(name);
+        if (!labels.isEmpty() || !extraLabel.isEmpty()) {
+            out.append('{').append(labels);
+            if (!labels.isEmpty() && !extraLabel.isEmpty()) {
+                out.append(',');
+            }
+            out.append(extraLabel).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String toSeconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+
+    private static long[] exposedBounds() {
+        long[] bounds = new long[22];
+        long decade = 1_000;
+        for (int i = 0; i < bounds.length; decade *= 10) {
+            bounds[i++] = decade;
+            if (i < bounds.length) {
+                bounds[i++] = 2 * decade;
+            }
+            if (i < bounds.length) {
+                bounds[i++] = 5 * decade;
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Serve {@link #scrape} em {@code GET /metrics} na porta dada.
+     */
+    public static HttpServer startHttp(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            try (exchange) {
+                byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Lê {@code -Dmetrics.port}, com {@code defaultPort} se ausente, e sobe o endpoint de
+     * texto; {@code none} desliga. O JMX e o JFR continuam disponíveis de qualquer forma.
+     */
+    public static void startHttpFromProperty(int defaultPort) {
+        String port = System.getProperty("metrics.port", Integer.toString(defaultPort));
+        if (port.equalsIgnoreCase("none")) {
+            return;
+        }
+        try {
+            startHttp(Integer.parseInt(port));
+            System.out.println("Métricas em http://localhost:" + port + "/metrics");
+        } catch (IOException e) {
+            System.err.println("Erro ao abrir o endpoint de métricas na porta " + port + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.metrics;
+
+/**
+ * Etapas do caminho de uma ordem no servidor, cada uma com o seu histograma em
+ * {@code order_stage_seconds{stage=...}}. A contagem de {@link #SERVER} é a vazão de ordens.
+ * <p>
+ * {@link #record(long)} devolve o instante final, para a etapa seguinte começar dele sem
+ * outra leitura do relógio. Com o evento {@code com.exchange.OrderStage} habilitado numa
+ * gravação JFR, cada medida também vira um evento; por padrão ele fica desligado, porque
+ * são vários por ordem.
+ */
+public enum OrderStage {
+    /** Tempo da thread de recepção por ordem: da chegada do pacote à ordem entregue ao servidor. */
+    RECEIVE("receive"),
+    /** Decodificação da entrada de ordem pelo {@code OrderEntryDecoder}. */
+    DECODE("decode"),
+    /** Do envio ao log replicado até a entrada ser comitada pela maioria e começar a ser aplicada. */
+    COMMIT("commit"),
+    /** Espera pelo monitor do livro, no matching direto. */
+    LOCK_WAIT("lock_wait"),
+    /** Espera no ring buffer até a thread de matching pegar o comando, no matching em shards. */
+    QUEUE_WAIT("queue_wait"),
+    /** Execução do comando no livro. */
+    MATCH("match"),
+    /** Envio da resposta ao cliente. */
+    RESPONSE("response"),
+    /** Da chegada do pacote até a resposta enviada. */
+    SERVER("server");
+
+    private final String label;
+    private final LatencyHistogram histogram;
+
+    OrderStage(String label) {
+        this.label = label;
+        this.histogram = Metrics.histogram("order_stage_seconds", "Latência de cada etapa do caminho da ordem",
+                "stage", label);
+    }
+
+    /**
+     * Registra a etapa iniciada em {@code startNanos} e terminada agora.
+     *
+     * @return o instante final, em {@link System#nanoTime()}
+     */
+    public long record(long startNanos) {
+        long now = System.nanoTime();
+        record(startNanos, now);
+        return now;
+    }
+
+    public void record(long startNanos, long endNanos) {
+        long latency = endNanos - startNanos;
+        histogram.record(latency);
+        OrderStageEvent event = new OrderStageEvent();
+        if (event.shouldCommit()) {
+            event.stage = label;
+            event.latency = latency;
+            event.commit();
+        }
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
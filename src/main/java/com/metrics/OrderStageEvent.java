@@ -0,0 +1,28 @@
+package com.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Uma medida de {@link OrderStage}. A latência vem num campo porque a etapa já terminou
+ * quando o evento é criado.
+ */
+@Name("com.exchange.OrderStage")
+@Label("Etapa da ordem")
+@Category({"Exchange", "Ordens"})
+@Description("Latência de uma etapa do caminho da ordem no servidor")
+@Enabled(false)
+@StackTrace(false)
+class OrderStageEvent extends jdk.jfr.Event {
+    @Label("Etapa")
+    String stage;
+
+    @Label("Latência")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+}
@@ -0,0 +1,10 @@
+package com.model;
+
+public interface BookListener {
+    /**
+     * Chamado na thread de matching ao fim de cada comando, uma vez por nível de preço
+     * que o comando alterou, com a quantidade total e o número de ordens resultantes
+     * (ambos 0 em {@link LevelAction#DELETE}).
+     */
+    void onLevelUpdate(String symbol, OrderType side, LevelAction action, long priceTicks, long quantity, int orderCount);
+}
@@ -0,0 +1,43 @@
+package com.model;
+
+import java.util.List;
+
+/**
+ * Retrato imutável do topo de um livro, publicado pelo próprio livro ao fim de cada
+ * comando que o altera: os {@link #LEVELS} melhores níveis agregados de cada lado e o
+ * último trade. Leitores o obtêm por uma referência volátil, sem lock e sem copiar ordens.
+ */
+public record BookSnapshot(String symbol, long version, List<DepthLevel> bids, List<DepthLevel> asks,
+                           double lastTradePrice, int lastTradeQuantity, long tradeSequence) {
+
+    public static final int LEVELS = 10;
+
+    public static BookSnapshot empty(String symbol) {
+        return new BookSnapshot(symbol, 0, List.of(), List.of(), 0.0, 0, 0);
+    }
+
+    /**
+     * @return o melhor nível de compra, ou {@code null} com o lado vazio
+     */
+    public DepthLevel bestBid() {
+        return bids.isEmpty() ? null : bids.get(0);
+    }
+
+    public DepthLevel bestAsk() {
+        return asks.isEmpty() ? null : asks.get(0);
+    }
+
+    /**
+     * Os primeiros {@code levels} níveis de cada lado, até {@link #LEVELS}.
+     */
+    public MarketDepth depth(int levels) {
+        return new MarketDepth(symbol, bids.subList(0, Math.min(levels, bids.size())),
+                asks.subList(0, Math.min(levels, asks.size())));
+    }
+
+    @Override
+    public String toString() {
+        return "BookSnapshot{symbol=" + symbol + ", version=" + version + ", bid=" + bestBid() + ", ask=" + bestAsk()
+                + ", last=" + lastTradeQuantity + "@" + lastTradePrice + '}';
+    }
+}
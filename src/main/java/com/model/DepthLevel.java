@@ -0,0 +1,12 @@
+package com.model;
+
+/**
+ * Um nível de preço agregado do livro: quantidade total e número de ordens em repouso.
+ */
+public record DepthLevel(double price, long quantity, int orderCount) {
+
+    @Override
+    public String toString() {
+        return quantity + "@" + price + " (" + orderCount + ")";
+    }
+}
@@ -0,0 +1,82 @@
+package com.model;
+
+/**
+ * Resumo imutável do estado de uma ordem logo após ser processada pelo matching.
+ */
+public final class ExecutionReport {
+    private final long orderId;
+    private final String symbol;
+    private final OrderType type;
+    private final OrderStatus status;
+    private final int filledQuantity;
+    private final int leavesQuantity;
+    private final int fillCount;
+    private final double averagePrice;
+
+    private ExecutionReport(long orderId, String symbol, OrderType type, OrderStatus status, int filledQuantity,
+                            int leavesQuantity, int fillCount, double averagePrice) {
+        this.orderId = orderId;
+        this.symbol = symbol;
+        this.type = type;
+        this.status = status;
+        this.filledQuantity = filledQuantity;
+        this.leavesQuantity = leavesQuantity;
+        this.fillCount = fillCount;
+        this.averagePrice = averagePrice;
+    }
+
+    public static ExecutionReport of(Order order) {
+        return new ExecutionReport(order.getOrderId(), order.getSymbol(), order.getType(), order.getStatus(),
+                order.getFilledQuantity(), order.getQuantity(), order.getFillCount(), order.getAverageFillPrice());
+    }
+
+    public static ExecutionReport rejected(String symbol, long orderId) {
+        return new ExecutionReport(orderId, symbol, null, OrderStatus.REJECTED, 0, 0, 0, 0.0);
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public OrderType getType() {
+        return type;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public int getFilledQuantity() {
+        return filledQuantity;
+    }
+
+    public int getLeavesQuantity() {
+        return leavesQuantity;
+    }
+
+    public int getFillCount() {
+        return fillCount;
+    }
+
+    public double getAveragePrice() {
+        return averagePrice;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionReport{" +
+                "orderId=" + orderId +
+                ", symbol=" + symbol +
+                ", type=" + type +
+                ", status=" + status +
+                ", filled=" + filledQuantity +
+                ", leaves=" + leavesQuantity +
+                ", fills=" + fillCount +
+                ", avgPrice=" + averagePrice +
+                '}';
+    }
+}
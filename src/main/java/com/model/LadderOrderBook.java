@@ -0,0 +1,338 @@
+package com.model;
+
+import java.util.*;
+
+/**
+ * Livro por níveis de preço: preços em ticks inteiros, um TreeMap de níveis por lado
+ * com fila FIFO em cada nível e melhor compra/venda em cache para leitura O(1).
+ * A prioridade temporal vem do número de sequência atribuído na entrada.
+ * Não é thread-safe: o chamador serializa as escritas (monitor do livro ou thread dona do shard).
+ */
+public class LadderOrderBook implements OrderBook {
+    private final TreeMap<Long, PriceLevel> bids = new TreeMap<>(Comparator.reverseOrder());
+    private final TreeMap<Long, PriceLevel> asks = new TreeMap<>();
+    private final LongOrderMap restingOrders = new LongOrderMap(1024);
+
+    private volatile PriceLevel bestBid;
+    private volatile PriceLevel bestAsk;
+    private long nextSequence;
+    private long nextTradeSequence;
+
+    private final TradeEvent trade = new TradeEvent();
+    private TradeListener tradeListener;
+    private BookListener bookListener;
+    // níveis alterados pelo comando em curso, publicados de uma vez ao fim dele
+    private final ArrayList<PriceLevel> touchedLevels = new ArrayList<>();
+    private boolean tradedInCommand;
+    private long lastTradePriceTicks;
+    private int lastTradeQuantity;
+    // trocado por inteiro ao fim de cada comando que muda o topo; leitores não tomam lock
+    private volatile BookSnapshot snapshot = BookSnapshot.empty(null);
+
+    @Override
+    public void setTradeListener(TradeListener listener) {
+        this.tradeListener = listener;
+    }
+
+    @Override
+    public void setBookListener(BookListener listener) {
+        this.bookListener = listener;
+    }
+
+    @Override
+    public void addOrder(Order order) {
+        insert(order);
+        endCommand(order.getSymbol());
+    }
+
+    private void insert(Order order) {
+        order.setSequence(++nextSequence);
+        matchOrder(order);
+        if (order.getQuantity() > 0) {
+            rest(order);
+        } else {
+            order.setStatus(OrderStatus.COMPLETED);
+        }
+    }
+
+    private void matchOrder(Order aggressor) {
+        boolean buy = aggressor.getType() == OrderType.BUY;
+        while (aggressor.getQuantity() > 0) {
+            PriceLevel level = buy ? bestAsk : bestBid;
+            if (level == null || !crosses(buy, aggressor.getPriceTicks(), level.priceTicks)) {
+                break;
+            }
+
+            Order passive = level.head();
+            int quantity = Math.min(aggressor.getQuantity(), passive.getQuantity());
+            aggressor.fill(quantity, level.priceTicks);
+            passive.fill(quantity, level.priceTicks);
+            level.reduce(quantity);
+            touch(level);
+            publishTrade(aggressor, passive, level.priceTicks, quantity);
+
+            if (passive.getQuantity() == 0) {
+                level.remove(passive);
+                restingOrders.remove(passive.getOrderId());
+                passive.setStatus(OrderStatus.COMPLETED);
+                if (level.isEmpty()) {
+                    removeLevel(passive.getType(), level);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Order cancelOrder(long orderId) {
+        Order order = restingOrders.remove(orderId);
+        if (order == null) {
+            return null;
+        }
+        unlink(order);
+        order.setStatus(OrderStatus.CANCELLED);
+        endCommand(order.getSymbol());
+        return order;
+    }
+
+    @Override
+    public Order amendOrder(long orderId, int quantity, double price) {
+        Order order = restingOrders.get(orderId);
+        if (order == null) {
+            return null;
+        }
+        if (quantity <= 0) {
+            return cancelOrder(orderId);
+        }
+
+        if (Order.toTicks(price) == order.getPriceTicks() && quantity <= order.getQuantity()) {
+            order.level.reduce(order.getQuantity() - quantity);
+            touch(order.level);
+            order.setQuantity(quantity);
+            endCommand(order.getSymbol());
+            return order;
+        }
+
+        restingOrders.remove(orderId);
+        unlink(order);
+        order.setPrice(price);
+        order.setQuantity(quantity);
+        insert(order);
+        endCommand(order.getSymbol());
+        return order;
+    }
+
+    private void unlink(Order order) {
+        PriceLevel level = order.level;
+        touch(level);
+        level.remove(order);
+        if (level.isEmpty()) {
+            removeLevel(order.getType(), level);
+        }
+    }
+
+    private void publishTrade(Order aggressor, Order passive, long priceTicks, int quantity) {
+        long tradeSequence = ++nextTradeSequence;
+        tradedInCommand = true;
+        lastTradePriceTicks = priceTicks;
+        lastTradeQuantity = quantity;
+        TradeListener listener = tradeListener;
+        if (listener != null) {
+            trade.set(aggressor, passive, priceTicks, quantity, tradeSequence);
+            listener.onTrade(trade);
+            trade.clear();
+        }
+    }
+
+    private void touch(PriceLevel level) {
+        if (!level.touched) {
+            level.touched = true;
+            touchedLevels.add(level);
+        }
+    }
+
+    // publica os níveis alterados e, se o topo mudou, um novo retrato do livro
+    private void endCommand(String symbol) {
+        if (tradedInCommand || touchesTop()) {
+            publishSnapshot(symbol);
+        }
+        tradedInCommand = false;
+        publishLevels(symbol);
+    }
+
+    // alterações abaixo dos níveis do retrato não mudam o que os leitores veem
+    private boolean touchesTop() {
+        BookSnapshot current = snapshot;
+        for (int i = 0; i < touchedLevels.size(); i++) {
+            PriceLevel level = touchedLevels.get(i);
+            List<DepthLevel> levels = level.side == OrderType.BUY ? current.bids() : current.asks();
+            if (levels.size() < BookSnapshot.LEVELS) {
+                return true;
+            }
+            long worst = Order.toTicks(levels.get(levels.size() - 1).price());
+            if (level.side == OrderType.BUY ? level.priceTicks >= worst : level.priceTicks <= worst) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void publishSnapshot(String symbol) {
+        snapshot = new BookSnapshot(symbol, snapshot.version() + 1,
+                Collections.unmodifiableList(getDepth(OrderType.BUY, BookSnapshot.LEVELS)),
+                Collections.unmodifiableList(getDepth(OrderType.SELL, BookSnapshot.LEVELS)),
+                Order.fromTicks(lastTradePriceTicks), lastTradeQuantity, nextTradeSequence);
+    }
+
+    // um nível criado e esvaziado no mesmo comando não chega a ser anunciado
+    private void publishLevels(String symbol) {
+        BookListener listener = bookListener;
+        for (int i = 0; i < touchedLevels.size(); i++) {
+            PriceLevel level = touchedLevels.get(i);
+            level.touched = false;
+            if (listener == null) {
+                level.published = !level.isEmpty();
+            } else if (level.isEmpty()) {
+                if (level.published) {
+                    level.published = false;
+                    listener.onLevelUpdate(symbol, level.side, LevelAction.DELETE, level.priceTicks, 0, 0);
+                }
+            } else {
+                listener.onLevelUpdate(symbol, level.side, level.published ? LevelAction.CHANGE : LevelAction.NEW,
+                        level.priceTicks, level.getTotalQuantity(), level.getOrderCount());
+                level.published = true;
+            }
+        }
+        touchedLevels.clear();
+    }
+
+    private static boolean crosses(boolean buy, long limitTicks, long levelTicks) {
+        return buy ? limitTicks >= levelTicks : limitTicks <= levelTicks;
+    }
+
+    private void rest(Order order) {
+        restingOrders.put(order.getOrderId(), order);
+        long price = order.getPriceTicks();
+        if (order.getType() == OrderType.BUY) {
+            PriceLevel level = bids.get(price);
+            if (level == null) {
+                level = new PriceLevel(OrderType.BUY, price);
+                bids.put(price, level);
+                if (bestBid == null || price > bestBid.priceTicks) {
+                    bestBid = level;
+                }
+            }
+            level.append(order);
+            touch(level);
+        } else {
+            PriceLevel level = asks.get(price);
+            if (level == null) {
+                level = new PriceLevel(OrderType.SELL, price);
+                asks.put(price, level);
+                if (bestAsk == null || price < bestAsk.priceTicks) {
+                    bestAsk = level;
+                }
+            }
+            level.append(order);
+            touch(level);
+        }
+    }
+
+    private void removeLevel(OrderType side, PriceLevel level) {
+        if (side == OrderType.BUY) {
+            bids.remove(level.priceTicks);
+            if (level == bestBid) {
+                Map.Entry<Long, PriceLevel> first = bids.firstEntry();
+                bestBid = first == null ? null : first.getValue();
+            }
+        } else {
+            asks.remove(level.priceTicks);
+            if (level == bestAsk) {
+                Map.Entry<Long, PriceLevel> first = asks.firstEntry();
+                bestAsk = first == null ? null : first.getValue();
+            }
+        }
+    }
+
+    public long getBestBidTicks() {
+        PriceLevel level = bestBid;
+        return level == null ? Long.MIN_VALUE : level.priceTicks;
+    }
+
+    public long getBestAskTicks() {
+        PriceLevel level = bestAsk;
+        return level == null ? Long.MAX_VALUE : level.priceTicks;
+    }
+
+    @Override
+    public long getOrderSequence() {
+        return nextSequence;
+    }
+
+    @Override
+    public long getTradeSequence() {
+        return nextTradeSequence;
+    }
+
+    @Override
+    public void restore(List<Order> buyOrders, List<Order> sellOrders, long orderSequence, long tradeSequence) {
+        for (Order order : buyOrders) {
+            rest(order);
+        }
+        for (Order order : sellOrders) {
+            rest(order);
+        }
+        // o livro restaurado chega aos assinantes pelo próximo snapshot de market data
+        for (PriceLevel level : touchedLevels) {
+            level.touched = false;
+        }
+        touchedLevels.clear();
+        bids.values().forEach(level -> level.published = true);
+        asks.values().forEach(level -> level.published = true);
+        nextSequence = orderSequence;
+        nextTradeSequence = tradeSequence;
+        Order any = !buyOrders.isEmpty() ? buyOrders.get(0) : !sellOrders.isEmpty() ? sellOrders.get(0) : null;
+        publishSnapshot(any == null ? null : any.getSymbol());
+    }
+
+    @Override
+    public List<Order> getBuyOrders() {
+        return collect(bids);
+    }
+
+    @Override
+    public List<Order> getSellOrders() {
+        return collect(asks);
+    }
+
+    @Override
+    public List<DepthLevel> getDepth(OrderType side, int maxLevels) {
+        List<DepthLevel> depth = new ArrayList<>(Math.min(maxLevels, 16));
+        for (PriceLevel level : (side == OrderType.BUY ? bids : asks).values()) {
+            if (depth.size() == maxLevels) {
+                break;
+            }
+            depth.add(new DepthLevel(Order.fromTicks(level.priceTicks), level.getTotalQuantity(), level.getOrderCount()));
+        }
+        return depth;
+    }
+
+    @Override
+    public BookSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public Order getOrder(long orderId) {
+        return restingOrders.get(orderId);
+    }
+
+    private static List<Order> collect(TreeMap<Long, PriceLevel> levels) {
+        List<Order> orders = new ArrayList<>();
+        for (PriceLevel level : levels.values()) {
+            for (Order order = level.head(); order != null; order = order.next) {
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+}
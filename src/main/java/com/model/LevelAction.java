@@ -0,0 +1,10 @@
+package com.model;
+
+/**
+ * O que aconteceu com um nível de preço ao fim de um comando.
+ */
+public enum LevelAction {
+    NEW,
+    CHANGE,
+    DELETE
+}
@@ -0,0 +1,19 @@
+package com.model;
+
+import java.util.List;
+
+/**
+ * Profundidade agregada de um livro em um instante: níveis de compra e de venda,
+ * do melhor preço para o pior. Com um nível de cada lado é o topo do livro.
+ */
+public record MarketDepth(String symbol, List<DepthLevel> bids, List<DepthLevel> asks) {
+
+    public static MarketDepth empty(String symbol) {
+        return new MarketDepth(symbol, List.of(), List.of());
+    }
+
+    @Override
+    public String toString() {
+        return "MarketDepth{symbol=" + symbol + ", bids=" + bids + ", asks=" + asks + '}';
+    }
+}
@@ -3,26 +3,74 @@ package com.model;
 import java.time.Instant;
 
 public class Order {
+    public static final long TICKS_PER_UNIT = 10_000;
+
+    private long orderId;
     private String symbol;
+    // índice do livro do símbolo; ver SymbolDirectory
+    private int symbolId;
     private OrderType type;
     private OrderStatus status;
     private double price;
+    private long priceTicks;
     private int quantity;
     private Instant receivedAt;
+    private long sequence;
+    private int filledQuantity;
+    private int fillCount;
+    private long filledNotionalTicks;
+
+    // encadeamento FIFO dentro do PriceLevel (LadderOrderBook)
+    PriceLevel level;
+    Order prev;
+    Order next;
 
     public Order(String symbol, OrderType type, int quantity, double price) {
+        this(symbol, SymbolDirectory.id(symbol), type, quantity, price);
+    }
+
+    /**
+     * @param symbolId id do {@link SymbolDirectory}, já resolvido pelo decodificador
+     */
+    public Order(int symbolId, OrderType type, int quantity, double price) {
+        this(SymbolDirectory.symbol(symbolId), symbolId, type, quantity, price);
+    }
+
+    private Order(String symbol, int symbolId, OrderType type, int quantity, double price) {
         this.symbol = symbol;
+        this.symbolId = symbolId;
         this.type = type;
         this.price = price;
+        this.priceTicks = toTicks(price);
         this.quantity = quantity;
         this.receivedAt = Instant.now();
         this.status = OrderStatus.PENDING;
     }
 
+    public static long toTicks(double price) {
+        return Math.round(price * TICKS_PER_UNIT);
+    }
+
+    public static double fromTicks(long ticks) {
+        return (double) ticks / TICKS_PER_UNIT;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(long orderId) {
+        this.orderId = orderId;
+    }
+
     public String getSymbol() {
         return symbol;
     }
 
+    public int getSymbolId() {
+        return symbolId;
+    }
+
     public OrderType getType() {
         return type;
     }
@@ -31,6 +79,15 @@ public class Order {
         return price;
     }
 
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    void setPrice(double price) {
+        this.price = price;
+        this.priceTicks = toTicks(price);
+    }
+
     public int getQuantity() {
         return quantity;
     }
@@ -39,10 +96,52 @@ public class Order {
         this.quantity = quantity;
     }
 
+    void fill(int quantity, long priceTicks) {
+        this.quantity -= quantity;
+        this.filledQuantity += quantity;
+        this.fillCount++;
+        this.filledNotionalTicks += priceTicks * quantity;
+    }
+
+    public int getFilledQuantity() {
+        return filledQuantity;
+    }
+
+    public int getFillCount() {
+        return fillCount;
+    }
+
+    public long getFilledNotionalTicks() {
+        return filledNotionalTicks;
+    }
+
+    public double getAverageFillPrice() {
+        return filledQuantity == 0 ? 0.0 : fromTicks(filledNotionalTicks) / filledQuantity;
+    }
+
     public Instant getReceivedAt() {
         return receivedAt;
     }
 
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Restaura os campos que não vêm do construtor, ao reler uma ordem de um snapshot.
+     */
+    public void restore(long sequence, Instant receivedAt, int filledQuantity, int fillCount, long filledNotionalTicks) {
+        this.sequence = sequence;
+        this.receivedAt = receivedAt;
+        this.filledQuantity = filledQuantity;
+        this.fillCount = fillCount;
+        this.filledNotionalTicks = filledNotionalTicks;
+    }
+
     public OrderStatus getStatus() {
         return status;
     }
@@ -50,4 +149,16 @@ public class Order {
     public void setStatus(OrderStatus status) {
         this.status = status;
     }
+
+    @Override
+    public String toString() {
+        return "Order{" +
+                "orderId=" + orderId +
+                ", symbol=" + symbol +
+                ", type=" + type +
+                ", status=" + status +
+                ", quantity=" + quantity +
+                ", price=" + price +
+                '}';
+    }
 }
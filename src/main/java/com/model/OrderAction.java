@@ -0,0 +1,15 @@
+package com.model;
+
+public enum OrderAction {
+    NEW,
+    CANCEL,
+    AMEND,
+    // consultas: não passam pelo log replicado nem alteram o livro
+    TOP_OF_BOOK,
+    DEPTH,
+    ORDER_STATUS;
+
+    public boolean isQuery() {
+        return ordinal() >= TOP_OF_BOOK.ordinal();
+    }
+}
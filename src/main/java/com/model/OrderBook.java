@@ -1,61 +1,68 @@
 package com.model;
 
-import java.util.*;
-import java.util.concurrent.PriorityBlockingQueue;
-
-public class OrderBook {
-    private final PriorityBlockingQueue<Order> buyOrders;
-    private final PriorityBlockingQueue<Order> sellOrders;
-
-    public OrderBook() {
-        this.buyOrders = new PriorityBlockingQueue<>(1,(o1, o2) -> {
-            int priceComparison = Double.compare(o2.getPrice(), o1.getPrice());
-            if (priceComparison == 0) {
-                return o1.getReceivedAt().compareTo(o2.getReceivedAt());
-            }
-            return priceComparison;
-        });
-        this.sellOrders = new PriorityBlockingQueue<>(1,(o1, o2) -> {
-            int priceComparison = Double.compare(o1.getPrice(), o2.getPrice());
-            if (priceComparison == 0) {
-                return o1.getReceivedAt().compareTo(o2.getReceivedAt());
-            }
-            return priceComparison;
-        });
-    }
+import java.util.List;
 
-    public synchronized void addOrder(Order order) {
-        if (order.getType() == OrderType.BUY) {
-            buyOrders.add(order);
-        } else if (order.getType() == OrderType.SELL) {
-            sellOrders.add(order);
-        }
-        matchOrders();
-    }
+public interface OrderBook {
+    void addOrder(Order order);
 
-    private void matchOrders() {
-        while (!buyOrders.isEmpty() && !sellOrders.isEmpty()) {
-            Order buyOrder = buyOrders.peek();
-            Order sellOrder = sellOrders.peek();
-
-            if (buyOrder.getPrice() >= sellOrder.getPrice()) {
-                int quantity = Math.min(buyOrder.getQuantity(), sellOrder.getQuantity());
-                buyOrder.setQuantity(buyOrder.getQuantity() - quantity);
-                sellOrder.setQuantity(sellOrder.getQuantity() - quantity);
-
-                if (buyOrder.getQuantity() == 0) buyOrders.poll();
-                if (sellOrder.getQuantity() == 0) sellOrders.poll();
-            } else {
-                break;
-            }
-        }
-    }
+    /**
+     * @return a ordem cancelada, ou {@code null} se o id não estiver no livro
+     */
+    Order cancelOrder(long orderId);
 
-    public synchronized List<Order> getBuyOrders() {
-        return new ArrayList<>(buyOrders);
-    }
+    /**
+     * Altera quantidade restante e preço. Reduzir a quantidade no mesmo preço mantém
+     * a prioridade; qualquer outra alteração reinsere a ordem no fim da fila e pode executar.
+     *
+     * @return a ordem alterada, ou {@code null} se o id não estiver no livro
+     */
+    Order amendOrder(long orderId, int quantity, double price);
 
-    public synchronized List<Order> getSellOrders() {
-        return new ArrayList<>(sellOrders);
+    void setTradeListener(TradeListener listener);
+
+    /**
+     * Recebe as alterações dos níveis de preço; livros sem níveis agregados não publicam.
+     */
+    default void setBookListener(BookListener listener) {
     }
+
+    /**
+     * Ordens de compra em repouso, na ordem de prioridade (preço, depois chegada).
+     */
+    List<Order> getBuyOrders();
+
+    /**
+     * Ordens de venda em repouso, na ordem de prioridade (preço, depois chegada).
+     */
+    List<Order> getSellOrders();
+
+    /**
+     * Níveis agregados de um lado, do melhor preço para o pior, até {@code maxLevels};
+     * não copia as ordens.
+     */
+    List<DepthLevel> getDepth(OrderType side, int maxLevels);
+
+    /**
+     * Último retrato publicado do topo do livro. Não bloqueia nem disputa o lock do
+     * matching; pode ser chamado de qualquer thread.
+     */
+    BookSnapshot getSnapshot();
+
+    /**
+     * @return a ordem em repouso com esse id, ou {@code null} se ela não estiver no livro
+     */
+    Order getOrder(long orderId);
+
+    /**
+     * Último número de sequência de entrada atribuído (0 se o livro não usa).
+     */
+    long getOrderSequence();
+
+    long getTradeSequence();
+
+    /**
+     * Recarrega um livro vazio a partir de um snapshot: as ordens já estão em repouso e
+     * entram na ordem de prioridade dada, sem passar pelo matching.
+     */
+    void restore(List<Order> buyOrders, List<Order> sellOrders, long orderSequence, long tradeSequence);
 }
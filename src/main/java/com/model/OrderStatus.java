@@ -3,4 +3,6 @@ package com.model;
 public enum OrderStatus {
     PENDING,
     COMPLETED,
+    CANCELLED,
+    REJECTED,
 }
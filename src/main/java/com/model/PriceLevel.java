@@ -0,0 +1,75 @@
+package com.model;
+
+/**
+ * Um nível de preço do LadderOrderBook: fila FIFO intrusiva das ordens
+ * que repousam no mesmo preço, na ordem de chegada.
+ */
+final class PriceLevel {
+    final OrderType side;
+    final long priceTicks;
+    // alterado no comando em curso, à espera de ser publicado ao BookListener
+    boolean touched;
+    // já anunciado ao BookListener; a próxima publicação é CHANGE ou DELETE, não NEW
+    boolean published;
+    private Order head;
+    private Order tail;
+    private long totalQuantity;
+    private int orderCount;
+
+    PriceLevel(OrderType side, long priceTicks) {
+        this.side = side;
+        this.priceTicks = priceTicks;
+    }
+
+    void append(Order order) {
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        totalQuantity += order.getQuantity();
+        orderCount++;
+    }
+
+    void remove(Order order) {
+        if (order.prev == null) {
+            head = order.next;
+        } else {
+            order.prev.next = order.next;
+        }
+        if (order.next == null) {
+            tail = order.prev;
+        } else {
+            order.next.prev = order.prev;
+        }
+        totalQuantity -= order.getQuantity();
+        orderCount--;
+        order.level = null;
+        order.prev = null;
+        order.next = null;
+    }
+
+    void reduce(int quantity) {
+        totalQuantity -= quantity;
+    }
+
+    Order head() {
+        return head;
+    }
+
+    boolean isEmpty() {
+        return head == null;
+    }
+
+    long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    int getOrderCount() {
+        return orderCount;
+    }
+}
@@ -0,0 +1,252 @@
+package com.model;
+
+import java.util.*;
+import java.util.concurrent.PriorityBlockingQueue;
+
+public class PriorityQueueOrderBook implements OrderBook {
+    private final PriorityBlockingQueue<Order> buyOrders;
+    private final PriorityBlockingQueue<Order> sellOrders;
+    private final Map<Long, Order> restingOrders = new HashMap<>();
+    // quantidade e ordens por preço, mantidas a cada mudança nas filas: a profundidade
+    // sai daqui sem copiar e ordenar o heap
+    private final TreeMap<Long, Level> bidLevels = new TreeMap<>(Comparator.reverseOrder());
+    private final TreeMap<Long, Level> askLevels = new TreeMap<>();
+
+    private final TradeEvent trade = new TradeEvent();
+    private TradeListener tradeListener;
+    // prioridade de tempo: cada entrada na fila, inclusive a reinserção de um amend, vai para o fim
+    private long nextSequence;
+    private long nextTradeSequence;
+    private long lastTradePriceTicks;
+    private int lastTradeQuantity;
+    private volatile BookSnapshot snapshot = BookSnapshot.empty(null);
+
+    public PriorityQueueOrderBook() {
+        this.buyOrders = new PriorityBlockingQueue<>(1,(o1, o2) -> {
+            int priceComparison = Double.compare(o2.getPrice(), o1.getPrice());
+            if (priceComparison == 0) {
+                return timePriority(o1, o2);
+            }
+            return priceComparison;
+        });
+        this.sellOrders = new PriorityBlockingQueue<>(1,(o1, o2) -> {
+            int priceComparison = Double.compare(o1.getPrice(), o2.getPrice());
+            if (priceComparison == 0) {
+                return timePriority(o1, o2);
+            }
+            return priceComparison;
+        });
+    }
+
+    // snapshots antigos deste livro gravavam sequência 0: o horário de chegada desempata
+    private static int timePriority(Order o1, Order o2) {
+        int sequenceComparison = Long.compare(o1.getSequence(), o2.getSequence());
+        return sequenceComparison != 0 ? sequenceComparison : o1.getReceivedAt().compareTo(o2.getReceivedAt());
+    }
+
+    @Override
+    public synchronized void setTradeListener(TradeListener listener) {
+        this.tradeListener = listener;
+    }
+
+    @Override
+    public synchronized void addOrder(Order order) {
+        order.setSequence(++nextSequence);
+        if (order.getType() == OrderType.BUY) {
+            buyOrders.add(order);
+        } else if (order.getType() == OrderType.SELL) {
+            sellOrders.add(order);
+        }
+        enterLevel(order);
+        matchOrders(order);
+        if (order.getQuantity() == 0) {
+            order.setStatus(OrderStatus.COMPLETED);
+        } else {
+            restingOrders.put(order.getOrderId(), order);
+        }
+        publishSnapshot(order.getSymbol());
+    }
+
+    @Override
+    public synchronized Order cancelOrder(long orderId) {
+        Order order = restingOrders.remove(orderId);
+        if (order == null) {
+            return null;
+        }
+        queueFor(order).remove(order);
+        leaveLevel(order, order.getQuantity(), true);
+        order.setStatus(OrderStatus.CANCELLED);
+        publishSnapshot(order.getSymbol());
+        return order;
+    }
+
+    @Override
+    public synchronized Order amendOrder(long orderId, int quantity, double price) {
+        Order order = restingOrders.get(orderId);
+        if (order == null) {
+            return null;
+        }
+        if (quantity <= 0) {
+            return cancelOrder(orderId);
+        }
+        if (Order.toTicks(price) == order.getPriceTicks() && quantity <= order.getQuantity()) {
+            leaveLevel(order, order.getQuantity() - quantity, false);
+            order.setQuantity(quantity);
+            publishSnapshot(order.getSymbol());
+            return order;
+        }
+        restingOrders.remove(orderId);
+        queueFor(order).remove(order);
+        leaveLevel(order, order.getQuantity(), true);
+        order.setPrice(price);
+        order.setQuantity(quantity);
+        addOrder(order);
+        return order;
+    }
+
+    private PriorityBlockingQueue<Order> queueFor(Order order) {
+        return order.getType() == OrderType.BUY ? buyOrders : sellOrders;
+    }
+
+    private TreeMap<Long, Level> levelsFor(OrderType side) {
+        return side == OrderType.BUY ? bidLevels : askLevels;
+    }
+
+    private void enterLevel(Order order) {
+        Level level = levelsFor(order.getType()).computeIfAbsent(order.getPriceTicks(), ticks -> new Level());
+        level.quantity += order.getQuantity();
+        level.orderCount++;
+    }
+
+    // chamado antes de a ordem mudar de quantidade ou preço
+    private void leaveLevel(Order order, int quantity, boolean removed) {
+        TreeMap<Long, Level> levels = levelsFor(order.getType());
+        Level level = levels.get(order.getPriceTicks());
+        level.quantity -= quantity;
+        if (removed && --level.orderCount == 0) {
+            levels.remove(order.getPriceTicks());
+        }
+    }
+
+    private void matchOrders(Order aggressor) {
+        while (!buyOrders.isEmpty() && !sellOrders.isEmpty()) {
+            Order buyOrder = buyOrders.peek();
+            Order sellOrder = sellOrders.peek();
+
+            if (buyOrder.getPrice() >= sellOrder.getPrice()) {
+                int quantity = Math.min(buyOrder.getQuantity(), sellOrder.getQuantity());
+                Order passive = aggressor == buyOrder ? sellOrder : buyOrder;
+                long priceTicks = passive.getPriceTicks();
+                leaveLevel(buyOrder, quantity, quantity == buyOrder.getQuantity());
+                leaveLevel(sellOrder, quantity, quantity == sellOrder.getQuantity());
+                buyOrder.fill(quantity, priceTicks);
+                sellOrder.fill(quantity, priceTicks);
+                publishTrade(aggressor, passive, priceTicks, quantity);
+
+                if (buyOrder.getQuantity() == 0) {
+                    buyOrders.poll();
+                    restingOrders.remove(buyOrder.getOrderId());
+                    buyOrder.setStatus(OrderStatus.COMPLETED);
+                }
+                if (sellOrder.getQuantity() == 0) {
+                    sellOrders.poll();
+                    restingOrders.remove(sellOrder.getOrderId());
+                    sellOrder.setStatus(OrderStatus.COMPLETED);
+                }
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void publishTrade(Order aggressor, Order passive, long priceTicks, int quantity) {
+        long tradeSequence = ++nextTradeSequence;
+        lastTradePriceTicks = priceTicks;
+        lastTradeQuantity = quantity;
+        if (tradeListener != null) {
+            trade.set(aggressor, passive, priceTicks, quantity, tradeSequence);
+            tradeListener.onTrade(trade);
+            trade.clear();
+        }
+    }
+
+    @Override
+    public synchronized List<Order> getBuyOrders() {
+        return sorted(buyOrders);
+    }
+
+    @Override
+    public synchronized List<Order> getSellOrders() {
+        return sorted(sellOrders);
+    }
+
+    @Override
+    public synchronized List<DepthLevel> getDepth(OrderType side, int maxLevels) {
+        List<DepthLevel> depth = new ArrayList<>(Math.min(maxLevels, levelsFor(side).size()));
+        for (Map.Entry<Long, Level> entry : levelsFor(side).entrySet()) {
+            if (depth.size() == maxLevels) {
+                break;
+            }
+            Level level = entry.getValue();
+            depth.add(new DepthLevel(Order.fromTicks(entry.getKey()), level.quantity, level.orderCount));
+        }
+        return depth;
+    }
+
+    @Override
+    public BookSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private void publishSnapshot(String symbol) {
+        snapshot = new BookSnapshot(symbol, snapshot.version() + 1,
+                Collections.unmodifiableList(getDepth(OrderType.BUY, BookSnapshot.LEVELS)),
+                Collections.unmodifiableList(getDepth(OrderType.SELL, BookSnapshot.LEVELS)),
+                Order.fromTicks(lastTradePriceTicks), lastTradeQuantity, nextTradeSequence);
+    }
+
+    @Override
+    public synchronized Order getOrder(long orderId) {
+        return restingOrders.get(orderId);
+    }
+
+    // o iterador da fila segue a ordem do heap, não a de prioridade
+    private static List<Order> sorted(PriorityBlockingQueue<Order> queue) {
+        List<Order> orders = new ArrayList<>(queue);
+        orders.sort(queue.comparator());
+        return orders;
+    }
+
+    @Override
+    public synchronized long getOrderSequence() {
+        return nextSequence;
+    }
+
+    @Override
+    public synchronized long getTradeSequence() {
+        return nextTradeSequence;
+    }
+
+    @Override
+    public synchronized void restore(List<Order> buyOrders, List<Order> sellOrders, long orderSequence, long tradeSequence) {
+        for (Order order : buyOrders) {
+            this.buyOrders.add(order);
+            enterLevel(order);
+            restingOrders.put(order.getOrderId(), order);
+        }
+        for (Order order : sellOrders) {
+            this.sellOrders.add(order);
+            enterLevel(order);
+            restingOrders.put(order.getOrderId(), order);
+        }
+        nextSequence = orderSequence;
+        nextTradeSequence = tradeSequence;
+        Order any = !buyOrders.isEmpty() ? buyOrders.get(0) : !sellOrders.isEmpty() ? sellOrders.get(0) : null;
+        publishSnapshot(any == null ? null : any.getSymbol());
+    }
+
+    private static final class Level {
+        long quantity;
+        int orderCount;
+    }
+}
@@ -0,0 +1,280 @@
+package com.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Diretório dos símbolos do processo: cada símbolo recebe, na primeira vez em que aparece,
+ * um id inteiro denso (0, 1, 2...) que vale até o fim do processo. Os livros ficam num
+ * array indexado por esse id, e o decodificador chega ao id direto dos bytes recebidos,
+ * sem criar String nem passar por um mapa.
+ * <p>
+ * Os símbolos de {@code -Dsymbols} (lista separada por vírgulas, ou {@code @arquivo} com
+ * um por linha) são registrados na carga da classe, na ordem dada; com a mesma lista,
+ * gateway e servidores atribuem os mesmos ids. Os símbolos vistos só depois têm ids
+ * próprios de cada processo, por isso o que vai para a rede, o journal e os snapshots
+ * continua sendo o texto do símbolo.
+ * <p>
+ * A consulta não usa lock: lê a tabela publicada e, se não achar o símbolo (ou cruzar
+ * com um registro em andamento), repete sob o lock, onde também registra. Acima de
+ * {@code -Dsymbols.max} (65536) símbolos, os novos são recusados com {@link #NO_SYMBOL}
+ * e o primeiro recusado é avisado no stderr.
+ */
+public final class SymbolDirectory {
+    public static final int NO_SYMBOL = -1;
+    public static final int MAX_SYMBOLS = Integer.getInteger("symbols.max", 65_536);
+
+    private static final Object lock = new Object();
+    private static volatile Table table = new Table(64);
+    // protegido pelo lock
+    private static boolean fullReported;
+
+    static {
+        for (String symbol : configuredSymbols()) {
+            id(symbol);
+        }
+    }
+
+    /*
+     * Endereçamento aberto: slots guarda id + 1 (0 é vazio) e symbols guarda o texto por id.
+     * Só quem tem o lock escreve; a tabela cheia é trocada inteira por uma com o dobro.
+     */
+    private static final class Table {
+        final int[] slots;
+        final String[] symbols;
+        final int mask;
+        int size;
+
+        Table(int capacity) {
+            this.slots = new int[capacity * 2];
+            this.symbols = new String[capacity];
+            this.mask = slots.length - 1;
+        }
+    }
+
+    private SymbolDirectory() {
+    }
+
+    /**
+     * Id do símbolo em ASCII em {@code data}, registrando-o se for novo.
+     *
+     * @return o id, ou {@link #NO_SYMBOL} se o diretório estiver cheio ou o símbolo tiver
+     * algo além de ASCII visível
+     */
+    public static int id(byte[] data, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!isVisibleAscii(data[offset + i])) {
+                return NO_SYMBOL;
+            }
+        }
+        int id = find(table, data, offset, length);
+        if (id >= 0) {
+            return id;
+        }
+        synchronized (lock) {
+            id = find(table, data, offset, length);
+            return id >= 0 ? id : register(new String(data, offset, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Id do símbolo, registrando-o se for novo; aceita os mesmos símbolos que
+     * {@link #id(byte[], int, int)}.
+     *
+     * @return o id, ou {@link #NO_SYMBOL} se o diretório estiver cheio ou o símbolo tiver
+     * algo além de ASCII visível
+     */
+    public static int id(String symbol) {
+        for (int i = 0; i < symbol.length(); i++) {
+            if (!isVisibleAscii(symbol.charAt(i))) {
+                return NO_SYMBOL;
+            }
+        }
+        int id = find(table, symbol);
+        if (id >= 0) {
+            return id;
+        }
+        synchronized (lock) {
+            id = find(table, symbol);
+            return id >= 0 ? id : register(symbol);
+        }
+    }
+
+    /**
+     * Id de um símbolo já registrado, sem registrar; para consultas, que não criam livros.
+     *
+     * @return o id, ou {@link #NO_SYMBOL} se o símbolo nunca apareceu
+     */
+    public static int find(String symbol) {
+        int id = find(table, symbol);
+        if (id >= 0) {
+            return id;
+        }
+        synchronized (lock) {
+            return find(table, symbol);
+        }
+    }
+
+    /**
+     * Texto do símbolo de um id devolvido por {@link #id}; é sempre a mesma instância.
+     *
+     * @return o texto, ou {@code null} para {@link #NO_SYMBOL} e ids ainda não atribuídos
+     */
+    public static String symbol(int id) {
+        if (id < 0) {
+            return null;
+        }
+        String[] symbols = table.symbols;
+        String symbol = id < symbols.length ? symbols[id] : null;
+        if (symbol != null) {
+            return symbol;
+        }
+        synchronized (lock) {
+            symbols = table.symbols;
+            return id < symbols.length ? symbols[id] : null;
+        }
+    }
+
+    /**
+     * Quantidade de símbolos registrados; os ids vão de 0 a {@code size() - 1}.
+     */
+    public static int size() {
+        return table.size;
+    }
+
+    /**
+     * @return {@code true} se o diretório chegou a {@link #MAX_SYMBOLS} e recusa símbolos novos
+     */
+    public static boolean isFull() {
+        return table.size >= MAX_SYMBOLS;
+    }
+
+    // chamado com o lock
+    private static int register(String symbol) {
+        Table current = table;
+        if (current.size >= MAX_SYMBOLS) {
+            if (!fullReported) {
+                fullReported = true;
+                System.err.println("Diretório de símbolos cheio com " + MAX_SYMBOLS
+                        + " símbolos (-Dsymbols.max): símbolos novos são recusados, a começar por " + symbol);
+            }
+            return NO_SYMBOL;
+        }
+        if (current.size == current.symbols.length) {
+            current = grow(current);
+        }
+        int id = current.size;
+        // o texto antes do slot: quem achar o slot sem o lock acha o texto também ou repete sob o lock
+        current.symbols[id] = symbol;
+        insert(current, symbol, id);
+        current.size = id + 1;
+        table = current;
+        return id;
+    }
+
+    private static Table grow(Table current) {
+        Table bigger = new Table(current.symbols.length * 2);
+        for (int id = 0; id < current.size; id++) {
+            bigger.symbols[id] = current.symbols[id];
+            insert(bigger, current.symbols[id], id);
+        }
+        bigger.size = current.size;
+        return bigger;
+    }
+
+    private static void insert(Table table, String symbol, int id) {
+        int slot = hash(symbol) & table.mask;
+        while (table.slots[slot] != 0) {
+            slot = (slot + 1) & table.mask;
+        }
+        table.slots[slot] = id + 1;
+    }
+
+    private static int find(Table table, byte[] data, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + data[offset + i];
+        }
+        for (int slot = spread(hash) & table.mask; ; slot = (slot + 1) & table.mask) {
+            int entry = table.slots[slot];
+            if (entry == 0) {
+                return NO_SYMBOL;
+            }
+            String symbol = table.symbols[entry - 1];
+            if (symbol == null) {
+                return NO_SYMBOL;
+            }
+            if (matches(symbol, data, offset, length)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private static int find(Table table, String symbol) {
+        for (int slot = hash(symbol) & table.mask; ; slot = (slot + 1) & table.mask) {
+            int entry = table.slots[slot];
+            if (entry == 0) {
+                return NO_SYMBOL;
+            }
+            String candidate = table.symbols[entry - 1];
+            if (candidate == null) {
+                return NO_SYMBOL;
+            }
+            if (candidate.equals(symbol)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    // com símbolos em ASCII, o hashCode da String é o mesmo hash calculado sobre os bytes
+    private static int hash(String symbol) {
+        return spread(symbol.hashCode());
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean isVisibleAscii(int c) {
+        return c > ' ' && c <= '~';
+    }
+
+    private static boolean matches(String symbol, byte[] data, int offset, int length) {
+        if (symbol.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (symbol.charAt(i) != data[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> configuredSymbols() {
+        String property = System.getProperty("symbols", "").trim();
+        List<String> symbols = new ArrayList<>();
+        if (property.startsWith("@")) {
+            try {
+                for (String line : Files.readAllLines(Path.of(property.substring(1)), StandardCharsets.US_ASCII)) {
+                    if (!line.isBlank()) {
+                        symbols.add(line.trim());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao ler a lista de símbolos " + property.substring(1) + ": " + e.getMessage());
+            }
+        } else if (!property.isEmpty()) {
+            for (String symbol : property.split(",")) {
+                if (!symbol.isBlank()) {
+                    symbols.add(symbol.trim());
+                }
+            }
+        }
+        return symbols;
+    }
+}
@@ -0,0 +1,67 @@
+package com.model;
+
+/**
+ * Execução entre a ordem agressora e a ordem passiva. Cada livro mantém uma
+ * instância reutilizável, então o caminho de matching não aloca por execução.
+ */
+public final class TradeEvent {
+    private String symbol;
+    private Order aggressor;
+    private Order passive;
+    private long priceTicks;
+    private int quantity;
+    private long tradeSequence;
+
+    void set(Order aggressor, Order passive, long priceTicks, int quantity, long tradeSequence) {
+        this.symbol = aggressor.getSymbol();
+        this.aggressor = aggressor;
+        this.passive = passive;
+        this.priceTicks = priceTicks;
+        this.quantity = quantity;
+        this.tradeSequence = tradeSequence;
+    }
+
+    void clear() {
+        this.aggressor = null;
+        this.passive = null;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Order getAggressor() {
+        return aggressor;
+    }
+
+    public Order getPassive() {
+        return passive;
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public double getPrice() {
+        return Order.fromTicks(priceTicks);
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getTradeSequence() {
+        return tradeSequence;
+    }
+
+    @Override
+    public String toString() {
+        return "TradeEvent{" +
+                "symbol=" + symbol +
+                ", tradeSequence=" + tradeSequence +
+                ", aggressor=" + (aggressor == null ? null : aggressor.getType()) +
+                ", price=" + getPrice() +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
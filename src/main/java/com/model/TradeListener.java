@@ -0,0 +1,9 @@
+package com.model;
+
+public interface TradeListener {
+    /**
+     * Chamado na thread de matching para cada execução. O evento é reutilizado
+     * pelo livro: quem precisar guardá-lo deve copiar os campos.
+     */
+    void onTrade(TradeEvent trade);
+}
@@ -0,0 +1,37 @@
+package com.patterns;
+
+/**
+ * Resposta de um seguidor a um {@link AppendEntries}. {@code matchIndex} é o último índice
+ * que o seguidor sabe coincidir com o log do líder; numa recusa, é o ponto de onde o líder
+ * deve reenviar.
+ */
+public class AppendAck extends Message {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean success;
+    private final long matchIndex;
+
+    public AppendAck(int generation, int senderId, int leaderId, boolean success, long matchIndex) {
+        super(MessageType.APPEND_ACK, generation, senderId, leaderId);
+        this.success = success;
+        this.matchIndex = matchIndex;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public long getMatchIndex() {
+        return matchIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "AppendAck{" +
+                "generation=" + getGeneration() +
+                ", senderId=" + getSenderId() +
+                ", success=" + success +
+                ", matchIndex=" + matchIndex +
+                '}';
+    }
+}
@@ -0,0 +1,61 @@
+package com.patterns;
+
+/**
+ * Lote de entradas do log replicado enviado pelo líder. Sem entradas, serve de heartbeat
+ * e ainda propaga o índice de commit.
+ */
+public class AppendEntries extends Message {
+    private static final long serialVersionUID = 1L;
+
+    private final long prevLogIndex;
+    private final int prevLogGeneration;
+    private final long leaderCommit;
+    private final int[] entryGenerations;
+    private final byte[][] entries;
+
+    public AppendEntries(int generation, int senderId, long prevLogIndex, int prevLogGeneration,
+                         long leaderCommit, int[] entryGenerations, byte[][] entries) {
+        super(MessageType.APPEND_ENTRIES, generation, senderId, senderId);
+        this.prevLogIndex = prevLogIndex;
+        this.prevLogGeneration = prevLogGeneration;
+        this.leaderCommit = leaderCommit;
+        this.entryGenerations = entryGenerations;
+        this.entries = entries;
+    }
+
+    public long getPrevLogIndex() {
+        return prevLogIndex;
+    }
+
+    public int getPrevLogGeneration() {
+        return prevLogGeneration;
+    }
+
+    public long getLeaderCommit() {
+        return leaderCommit;
+    }
+
+    public int getEntryCount() {
+        return entries.length;
+    }
+
+    public int getEntryGeneration(int i) {
+        return entryGenerations[i];
+    }
+
+    public byte[] getEntry(int i) {
+        return entries[i];
+    }
+
+    @Override
+    public String toString() {
+        return "AppendEntries{" +
+                "generation=" + getGeneration() +
+                ", leaderId=" + getLeaderId() +
+                ", prevLogIndex=" + prevLogIndex +
+                ", prevLogGeneration=" + prevLogGeneration +
+                ", leaderCommit=" + leaderCommit +
+                ", entries=" + entries.length +
+                '}';
+    }
+}
@@ -1,5 +1,8 @@
 package com.patterns;
 
+import com.eventlog.Event;
+import com.eventlog.EventLog;
+import com.metrics.ClusterMetrics;
 import com.server.LeaderElectedListener;
 import com.server.ServerState;
 import com.strategy.CommunicationStrategy;
@@ -17,9 +20,17 @@ public class ElectionManager {
     private final Map<Integer, InetSocketAddress> nodeAddresses;
 
     private final int electionTimeout = 5000;
+    private final Random random = new Random();
+    // última rodada iniciada, voto concedido ou geração nova vista; o contato do líder fica no ServerState
+    private volatile long timerResetMillis = System.currentTimeMillis();
+    // atraso extra da primeira eleição, para outro nó preferido chegar antes
+    private long initialDelay;
     private final CommunicationStrategy strategy;
 
     private LeaderElectedListener listener;
+    private ReplicatedLog log;
+    // início da rodada em curso, para medir quanto ela levou
+    private volatile long electionStartNanos;
 
 
     public ElectionManager(int serverId, Map<Integer, InetSocketAddress> nodeAddresses, CommunicationStrategy strategy,
@@ -31,77 +42,190 @@ public class ElectionManager {
     }
 
 
+    /**
+     * Temporizador de eleição, rodando na thread que chama: enquanto este nó não for líder,
+     * um prazo sem contato aceito do líder nem voto concedido inicia uma rodada. O prazo é
+     * sorteado de novo a cada rodada, para candidatos empatados não repetirem o empate.
+     */
     public void startElectionTimeout() {
-        try {
-            Thread.sleep(electionTimeout + new Random().nextInt(2000));
-            if (state.getLeaderId() == -1) {
+        long timeout = electionTimeout + initialDelay + random.nextInt(2000);
+        while (!Thread.currentThread().isInterrupted()) {
+            long lastContact = Math.max(timerResetMillis, state.getLeaderContactMillis());
+            long remaining = lastContact + timeout - System.currentTimeMillis();
+            if (remaining > 0) {
+                try {
+                    Thread.sleep(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                continue;
+            }
+            if (state.getServerRole() == ServerRole.LEADER) {
+                timerResetMillis = System.currentTimeMillis();
+            } else {
                 startElection();
             }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            timeout = electionTimeout + random.nextInt(2000);
         }
     }
 
+    /**
+     * Uma rodada de eleição numa geração nova. Termina eleita, destituída por outro líder
+     * ou sem maioria no prazo; nesse caso o temporizador sorteia quando tentar de novo.
+     */
     public void startElection() {
-        state.incrementGeneration();
-        System.out.println("Iniciando Election... Generation: " + state.getCurrentGeneration());
-        state.setServerRole(ServerRole.CANDIDATE);
-        state.addVotedForAtGeneration(serverId,state.getCurrentGeneration());
-        
-        state.incrementVotes();
+        int generation;
+        synchronized (state) {
+            if (state.getServerRole() == ServerRole.LEADER) {
+                return;
+            }
+            electionStartNanos = System.nanoTime();
+            state.incrementGeneration();
+            generation = state.getCurrentGeneration();
+            state.setServerRole(ServerRole.CANDIDATE);
+            state.setLeaderId(-1);
+            state.voteFor(generation, serverId);
+            // só o próprio voto: os das rodadas anteriores eram de outra geração
+            state.setVotes(1);
+        }
+        timerResetMillis = System.currentTimeMillis();
+        EventLog.log(Event.ELECTION_STARTED, serverId, generation);
 
         for (int otherNodeId : nodeAddresses.keySet()) {
-            Message requestVote = new Message(MessageType.REQUEST_VOTE, state.getCurrentGeneration(), serverId, -1);
+            Message requestVote = log == null
+                    ? new Message(MessageType.REQUEST_VOTE, generation, serverId, -1)
+                    : new VoteRequest(generation, serverId, log.lastIndex(), log.lastGeneration());
             strategy.sendMessage(requestVote, nodeAddresses.get(otherNodeId));
         }
-        waitForVotes();
+        synchronized (state) {
+            // sem outros nós o próprio voto já é a maioria
+            if (isCandidate(generation) && state.getVotes() > nodeAddresses.size() / 2) {
+                elected(generation);
+            }
+        }
+        waitForVotes(generation);
     }
 
-    private void waitForVotes() {
+    private void waitForVotes(int generation) {
         long waitUntil = System.currentTimeMillis() + electionTimeout;
-        while (System.currentTimeMillis() < waitUntil && state.getServerRole() == ServerRole.CANDIDATE) {
+        while (System.currentTimeMillis() < waitUntil && isCandidate(generation)) {
             try {
                 Thread.sleep(100);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+                return;
             }
         }
 
-        if (state.getServerRole() == ServerRole.CANDIDATE && state.getVotes() <= (nodeAddresses.size() / 2)) {
-            System.out.println("Nenhuma resposta de outros nós. Node " + serverId + " voltando a follower.");
-
-            startElection();
+        if (state.getServerRole() != ServerRole.LEADER) {
+            ClusterMetrics.electionFinished(serverId, generation, electionStartNanos, false);
+        }
+        if (isCandidate(generation)) {
+            EventLog.log(Event.ELECTION_FAILED, serverId);
         }
     }
 
+    private boolean isCandidate(int generation) {
+        return state.getServerRole() == ServerRole.CANDIDATE && state.getCurrentGeneration() == generation;
+    }
+
     public void handleVoteRequest(Message message) {
-        if (message.getGeneration() >= state.getCurrentGeneration()) {
-            state.setCurrentGeneration(message.getGeneration());
-            if (state.getVotedForAtGeneration().getOrDefault(state.getCurrentGeneration(), -1) == -1) {
-                state.addVotedForAtGeneration(message.getSenderId(), state.getCurrentGeneration());
-                System.out.println(serverId + " votou para " + message.getSenderId() + " na geração " + state.getCurrentGeneration() + ".");
-
-                Message vote = new Message(MessageType.VOTE, state.getCurrentGeneration(), serverId, -1);
-                strategy.sendMessage(vote, nodeAddresses.get(message.getSenderId()));
+        if (state.getServerRole() == ServerRole.FOLLOWER
+                && System.currentTimeMillis() - state.getLeaderContactMillis() < ReplicationManager.LEADER_TIMEOUT_MILLIS) {
+            // o líder ainda pode estar servindo leituras pelo lease: este voto não pode
+            // ajudar a eleger outro, nem a geração do candidato destituí-lo por aqui
+            EventLog.log(Event.VOTE_REFUSED, serverId, message.getSenderId());
+            return;
+        }
+        observeGeneration(message.getGeneration(), message.getSenderId());
+        int generation;
+        synchronized (state) {
+            generation = state.getCurrentGeneration();
+            if (message.getGeneration() != generation) {
+                return;
+            }
+            if (!isLogUpToDate(message)) {
+                EventLog.log(Event.VOTE_REFUSED, serverId, message.getSenderId());
+                return;
+            }
+            // um voto por geração: o candidato e o líder já votaram em si mesmos
+            if (!state.voteFor(generation, message.getSenderId())) {
+                return;
             }
         }
+        timerResetMillis = System.currentTimeMillis();
+        EventLog.log(Event.VOTE_GRANTED, serverId, message.getSenderId(), generation);
+
+        Message vote = new Message(MessageType.VOTE, generation, serverId, -1);
+        strategy.sendMessage(vote, nodeAddresses.get(message.getSenderId()));
     }
 
 
+    // o candidato precisa ter todas as entradas que este nó possa ter ajudado a comitar
+    private boolean isLogUpToDate(Message message) {
+        if (log == null) {
+            return true;
+        }
+        long candidateIndex = 0;
+        int candidateGeneration = 0;
+        if (message instanceof VoteRequest request) {
+            candidateIndex = request.getLastLogIndex();
+            candidateGeneration = request.getLastLogGeneration();
+        }
+        int lastGeneration = log.lastGeneration();
+        return candidateGeneration > lastGeneration
+                || (candidateGeneration == lastGeneration && candidateIndex >= log.lastIndex());
+    }
+
     public void handleVoteResponse(Message message) {
         synchronized (state){
             if (state.getServerRole() == ServerRole.CANDIDATE && message.getGeneration() == state.getCurrentGeneration()) {
                 state.incrementVotes();
-                System.out.println("Node " + serverId + " recebeu um voto. Total: " + state.getVotes());
+                EventLog.log(Event.VOTE_RECEIVED, serverId, state.getVotes());
                 
                 if (state.getVotes() > (nodeAddresses.size() / 2)) {
-                    System.out.println("Node " + serverId + " se tornou o líder no termo " + state.getCurrentGeneration());
-                    becomeLeader();
+                    elected(state.getCurrentGeneration());
                 }
             }
         }
     }
 
+    /**
+     * Qualquer mensagem do cluster com geração maior que a local faz o nó adotá-la e voltar
+     * a seguidor; um líder destituído avisa o listener para parar a replicação.
+     *
+     * @return {@code true} se a geração era mais nova
+     */
+    public boolean observeGeneration(int generation, int senderId) {
+        boolean wasLeader;
+        synchronized (state) {
+            if (generation <= state.getCurrentGeneration()) {
+                return false;
+            }
+            wasLeader = state.getServerRole() == ServerRole.LEADER;
+            state.setCurrentGeneration(generation);
+            state.setServerRole(ServerRole.FOLLOWER);
+            state.setVotes(0);
+            if (wasLeader) {
+                state.setLeaderId(-1);
+            }
+        }
+        // quem anunciou a geração está vivo: dá a ele o prazo inteiro para se firmar
+        timerResetMillis = System.currentTimeMillis();
+        if (wasLeader) {
+            EventLog.log(Event.LEADERSHIP_LOST, serverId, generation, senderId);
+            listener.onLeadershipLost();
+        }
+        return true;
+    }
+
+    // chamado com o monitor do estado
+    private void elected(int generation) {
+        EventLog.log(Event.LEADER_ELECTED, serverId, generation);
+        ClusterMetrics.electionFinished(serverId, generation, electionStartNanos, true);
+        becomeLeader();
+    }
+
     private void becomeLeader() {
         state.setServerRole(ServerRole.LEADER);
         state.setLeaderId(serverId);
@@ -114,6 +238,14 @@ public class ElectionManager {
 //        serverState.setServerRole(ServerRole.FOLLOWER);
 //    }
 
+    public void setInitialDelay(long initialDelay) {
+        this.initialDelay = initialDelay;
+    }
+
+    public void setLog(ReplicatedLog log) {
+        this.log = log;
+    }
+
     public void addLeaderElectedListener(LeaderElectedListener listener) {
         this.listener = listener;
     }
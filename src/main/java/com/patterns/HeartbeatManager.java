@@ -1,5 +1,8 @@
 package com.patterns;
 
+import com.eventlog.Event;
+import com.eventlog.EventLog;
+import com.metrics.ClusterMetrics;
 import com.server.FailureListener;
 import com.server.ServerState;
 import com.strategy.CommunicationStrategy;
@@ -23,6 +26,11 @@ public class HeartbeatManager {
 
     private final List<FailureListener> listeners = new ArrayList<FailureListener>();
 
+    // recebem os heartbeats do líder sem participar da eleição (ex.: o gateway)
+    private final List<InetSocketAddress> observers = new CopyOnWriteArrayList<>();
+    private volatile boolean sendToPeers = true;
+    private volatile int shard;
+
 
     private final ServerState serverState;
 
@@ -53,16 +61,24 @@ public class HeartbeatManager {
 
     private void sendHeartbeats() { //provalvelmente vai ser modificado
         if (serverState.getServerRole() == ServerRole.LEADER) {
-            nodeAddresses.forEach((otherNodeId, address) -> {
-                Message heartbeat = new Message(
-                        MessageType.HEARTBEAT,
-                        serverState.getCurrentGeneration(),
-                        serverId,
-                        serverId
-                );
-                System.out.println(heartbeat + " para: " + otherNodeId);
-                strategy.sendMessage(heartbeat, address);
-            });
+            if (sendToPeers) {
+                nodeAddresses.forEach((otherNodeId, address) -> {
+                    Message heartbeat = new Message(
+                            MessageType.HEARTBEAT,
+                            serverState.getCurrentGeneration(),
+                            serverId,
+                            serverId
+                    );
+                    heartbeat.setShard(shard);
+                    EventLog.log(Event.HEARTBEAT_SENT, heartbeat.getGeneration(), otherNodeId);
+                    strategy.sendMessage(heartbeat, address);
+                });
+            }
+            for (InetSocketAddress observer : observers) {
+                Message heartbeat = new Message(MessageType.HEARTBEAT, serverState.getCurrentGeneration(), serverId, serverId);
+                heartbeat.setShard(shard);
+                strategy.sendMessage(heartbeat, observer);
+            }
         }
         else{
             stopSendingHeartbeats();
@@ -70,6 +86,26 @@ public class HeartbeatManager {
     }
 
 
+    /**
+     * Com replicação ativa, os lotes de {@link AppendEntries} já fazem papel de heartbeat
+     * para os outros nós; os observadores continuam recebendo {@code HEARTBEAT}.
+     */
+    public void setSendToPeers(boolean sendToPeers) {
+        this.sendToPeers = sendToPeers;
+    }
+
+    /**
+     * Grupo de replicação anunciado nos heartbeats, para os observadores saberem de qual
+     * grupo este nó é líder.
+     */
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
+
+    public void addObserver(InetSocketAddress observer) {
+        observers.add(observer);
+    }
+
     public void addFailureListener(FailureListener listener) {
         listeners.add(listener);
     }
@@ -86,7 +122,7 @@ public class HeartbeatManager {
             long timeSinceLastHeartbeat = now - entry.getValue();
             long timeoutThreshold = 4000;
             if (timeSinceLastHeartbeat >= timeoutThreshold) {
-                System.out.println("Servidor " + entry.getKey() + " considerado falho.");
+                EventLog.log(Event.NODE_FAILED, entry.getKey());
 
                 notifyNodeFailure(entry.getKey());
             }
@@ -101,16 +137,36 @@ public class HeartbeatManager {
     }
     
     //talvez add listener onLeaderDetected, talvez nem precise, pq quem chama esse metodo eh o server
-    public void handleHeartbeat(Message message) {
-        if (message.getGeneration() >= serverState.getCurrentGeneration()) {
+    /**
+     * Registra o contato do líder de um heartbeat, append ou aviso de snapshot.
+     *
+     * @return {@code false} se a mensagem é de uma geração anterior ou se este nó é o líder
+     * da mesma geração; nesse caso quem chama também a descarta
+     */
+    public boolean handleHeartbeat(Message message) {
+        long now = System.currentTimeMillis();
+        synchronized (serverState) {
+            if (message.getGeneration() < serverState.getCurrentGeneration()) {
+                return false;
+            }
+            // um voto por geração garante um só líder nela: este nó não se rende a outro
+            if (serverState.getServerRole() == ServerRole.LEADER
+                    && message.getGeneration() == serverState.getCurrentGeneration()) {
+                return false;
+            }
             if (serverState.getServerRole() != ServerRole.FOLLOWER){
                 serverState.setServerRole(ServerRole.FOLLOWER);
-                System.out.println("Node " + serverId + " reconhece o líder " + message.getLeaderId() + " no termo " + serverState.getCurrentGeneration());
-            } 
+                EventLog.log(Event.LEADER_RECOGNIZED, serverId, message.getLeaderId(), message.getGeneration());
+            }
             serverState.setLeaderId(message.getLeaderId());
             serverState.setCurrentGeneration(message.getGeneration());
-            lastHeartbeatReceivedTimes.put(message.getSenderId(), System.currentTimeMillis());
+            serverState.setLeaderContactMillis(now);
+        }
+        Long previous = lastHeartbeatReceivedTimes.put(message.getSenderId(), now);
+        if (previous != null) {
+            ClusterMetrics.heartbeatReceived(message.getSenderId(), now - previous);
         }
+        return true;
     }
 
 }
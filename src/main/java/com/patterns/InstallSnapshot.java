@@ -0,0 +1,31 @@
+package com.patterns;
+
+/**
+ * Aviso do líder a um seguidor que ficou atrás do log em memória: as entradas que faltam
+ * só existem no snapshot {@code snapshotIndex}. O seguidor busca o arquivo pelo canal de
+ * transferência de snapshots e, depois de instalá-lo, responde com um {@link AppendAck}.
+ * Também conta como heartbeat.
+ */
+public class InstallSnapshot extends Message {
+    private static final long serialVersionUID = 1L;
+
+    private final long snapshotIndex;
+
+    public InstallSnapshot(int generation, int senderId, long snapshotIndex) {
+        super(MessageType.INSTALL_SNAPSHOT, generation, senderId, senderId);
+        this.snapshotIndex = snapshotIndex;
+    }
+
+    public long getSnapshotIndex() {
+        return snapshotIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "InstallSnapshot{" +
+                "generation=" + getGeneration() +
+                ", senderId=" + getSenderId() +
+                ", snapshotIndex=" + snapshotIndex +
+                '}';
+    }
+}
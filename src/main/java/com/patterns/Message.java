@@ -8,6 +8,8 @@ public class Message implements Serializable {
     private int generation;
     private int senderId; 
     private int leaderId;
+    // grupo de replicação (shard de símbolos) a que o remetente pertence
+    private int shard;
     
     public Message(MessageType type){
         this.type = type;
@@ -38,6 +40,14 @@ public class Message implements Serializable {
     public int getLeaderId() {
         return leaderId;
     }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
     
     @Override
     public String toString() {
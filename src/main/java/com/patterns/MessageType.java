@@ -1,5 +1,33 @@
 package com.patterns;
 
 public enum MessageType {
-    REQUEST_VOTE, VOTE, HEARTBEAT, RESPONSE
+    REQUEST_VOTE(1), VOTE(2), HEARTBEAT(3), RESPONSE(4), REDIRECT(5), APPEND_ENTRIES(6), APPEND_ACK(7),
+    INSTALL_SNAPSHOT(8);
+
+    private static final MessageType[] BY_CODE = new MessageType[256];
+
+    static {
+        for (MessageType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    // código fixo no formato binário; não reutilizar códigos de tipos removidos
+    private final int code;
+
+    MessageType(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static MessageType fromCode(int code) {
+        MessageType type = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Código de mensagem desconhecido: " + code);
+        }
+        return type;
+    }
 }
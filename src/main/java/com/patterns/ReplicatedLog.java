@@ -0,0 +1,180 @@
+package com.patterns;
+
+import java.util.Arrays;
+
+/**
+ * Log de comandos replicado, em memória. Índices começam em 1; o índice 0 representa o
+ * log vazio (geração 0). Cada entrada guarda a geração em que o líder a criou e os bytes
+ * do comando no formato binário de entrada de ordens; uma entrada vazia é um no-op.
+ * <p>
+ * Depois de restaurado de um snapshot, ou compactado, o log começa logo após o índice
+ * base, que faz o papel do índice 0: as entradas até ele estão comitadas e não ficam
+ * mais em memória.
+ * <p>
+ * Acessado pela thread que recebe ordens, pela de replicação e pela que recebe
+ * mensagens do cluster; todos os métodos sincronizam no próprio log.
+ */
+public class ReplicatedLog {
+    private static final byte[] NO_OP = new byte[0];
+
+    private int[] generations = new int[1024];
+    private byte[][] entries = new byte[1024][];
+    private long lastIndex;
+    private long baseIndex;
+
+    public synchronized long append(int generation, byte[] entry) {
+        ensureCapacity(lastIndex + 1);
+        int slot = slot(++lastIndex);
+        generations[slot] = generation;
+        entries[slot] = entry;
+        return lastIndex;
+    }
+
+    /**
+     * Descarta todo o log e recomeça após {@code index}, a última entrada coberta por um snapshot.
+     */
+    public synchronized void resetTo(long index, int generation) {
+        Arrays.fill(entries, null);
+        baseIndex = index;
+        lastIndex = index;
+        generations[0] = generation;
+    }
+
+    /**
+     * Descarta da memória as entradas até {@code index}, já cobertas por um snapshot.
+     */
+    public synchronized void compactTo(long index) {
+        if (index <= baseIndex || index > lastIndex) {
+            return;
+        }
+        int from = slot(index);
+        int length = (int) (lastIndex - index) + 1;
+        System.arraycopy(generations, from, generations, 0, length);
+        System.arraycopy(entries, from, entries, 0, length);
+        Arrays.fill(entries, length, from + length, null);
+        baseIndex = index;
+    }
+
+    /**
+     * Último índice coberto pelo snapshot de onde o log foi restaurado (0 se nenhum).
+     */
+    public synchronized long baseIndex() {
+        return baseIndex;
+    }
+
+    public long appendNoOp(int generation) {
+        return append(generation, NO_OP);
+    }
+
+    public synchronized long lastIndex() {
+        return lastIndex;
+    }
+
+    public synchronized int lastGeneration() {
+        return generations[slot(lastIndex)];
+    }
+
+    /**
+     * Geração da entrada em {@code index}, ou -1 se o índice não existe ou já foi descartado.
+     */
+    public synchronized int generationAt(long index) {
+        return index >= baseIndex && index <= lastIndex ? generations[slot(index)] : -1;
+    }
+
+    public synchronized byte[] entryAt(long index) {
+        return entries[slot(index)];
+    }
+
+    /**
+     * Aplica um lote recebido do líder a partir de {@code prevIndex + 1}. Entradas já
+     * presentes com a mesma geração, ou já cobertas pelo snapshot, são mantidas; a
+     * primeira divergente descarta o restante do log local antes de anexar. Depois disso o
+     * log coincide com o do líder até {@code prevIndex + batch.getEntryCount()}.
+     *
+     * @return o primeiro índice gravado, ou o seguinte ao lote se nada mudou; as entradas
+     *         a partir dele precisam ir para o disco
+     * @throws IllegalArgumentException se {@code prevIndex} passa do fim do log: anexar ali
+     *                                  deixaria as entradas em índices errados
+     */
+    public synchronized long appendFrom(long prevIndex, AppendEntries batch) {
+        if (prevIndex > lastIndex) {
+            throw new IllegalArgumentException("Lacuna no log: lote após " + prevIndex + ", último índice " + lastIndex);
+        }
+        long index = prevIndex;
+        long firstWritten = prevIndex + batch.getEntryCount() + 1;
+        for (int i = 0; i < batch.getEntryCount(); i++) {
+            index++;
+            if (index <= baseIndex) {
+                continue;
+            }
+            if (index <= lastIndex) {
+                if (generations[slot(index)] == batch.getEntryGeneration(i)) {
+                    continue;
+                }
+                truncateFrom(index);
+            }
+            append(batch.getEntryGeneration(i), batch.getEntry(i));
+            firstWritten = Math.min(firstWritten, index);
+        }
+        return firstWritten;
+    }
+
+    /**
+     * Copia até {@code maxEntries} entradas a partir de {@code fromIndex}, limitado a
+     * {@code maxBytes} de comandos (ao menos uma entrada é sempre incluída).
+     *
+     * @return {@code null} se {@code fromIndex} já foi compactado e só existe no snapshot
+     */
+    public synchronized AppendEntries batch(int generation, int leaderId, long fromIndex, long leaderCommit,
+                                            int maxEntries, int maxBytes) {
+        if (fromIndex <= baseIndex) {
+            return null;
+        }
+        long prevIndex = fromIndex - 1;
+        int count = 0;
+        int bytes = 0;
+        while (count < maxEntries && fromIndex + count <= lastIndex) {
+            int size = entries[slot(fromIndex + count)].length;
+            if (count > 0 && bytes + size > maxBytes) {
+                break;
+            }
+            bytes += size;
+            count++;
+        }
+        int[] batchGenerations = new int[count];
+        byte[][] batchEntries = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            batchGenerations[i] = generations[slot(fromIndex + i)];
+            batchEntries[i] = entries[slot(fromIndex + i)];
+        }
+        return new AppendEntries(generation, leaderId, prevIndex, generations[slot(prevIndex)],
+                leaderCommit, batchGenerations, batchEntries);
+    }
+
+    /**
+     * Descarta as entradas a partir de {@code index}, que o líder substituiu; as já
+     * cobertas pelo snapshot ficam.
+     */
+    public synchronized void truncateFrom(long index) {
+        index = Math.max(index, baseIndex + 1);
+        if (index > lastIndex) {
+            return;
+        }
+        for (long i = index; i <= lastIndex; i++) {
+            entries[slot(i)] = null;
+        }
+        lastIndex = index - 1;
+    }
+
+    private int slot(long index) {
+        return (int) (index - baseIndex);
+    }
+
+    private void ensureCapacity(long index) {
+        if (slot(index) >= entries.length) {
+            int capacity = Math.max(entries.length * 2, slot(index) + 1);
+            generations = Arrays.copyOf(generations, capacity);
+            entries = Arrays.copyOf(entries, capacity);
+        }
+    }
+}
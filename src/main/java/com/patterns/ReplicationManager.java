@@ -0,0 +1,598 @@
+package com.patterns;
+
+import com.eventlog.Event;
+import com.eventlog.EventLog;
+import com.metrics.OrderStage;
+import com.model.ExecutionReport;
+import com.server.ServerState;
+import com.strategy.CommunicationStrategy;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replicação do log de comandos no estilo Raft, sobre a eleição do {@link ElectionManager}.
+ * <p>
+ * O líder anexa cada ordem ao {@link ReplicatedLog} e uma thread de replicação envia a
+ * cada seguidor lotes {@link AppendEntries} sem esperar o ack do lote anterior, até
+ * {@link #MAX_IN_FLIGHT_ENTRIES} entradas não confirmadas. Um lote vazio vai a cada
+ * intervalo de heartbeat, então as mensagens de replicação também são os heartbeats.
+ * Quando a maioria confirma um índice da geração atual, ele é comitado e as entradas
+ * são aplicadas ao {@code MatchingEngine} em ordem, tanto no líder quanto nos seguidores.
+ * Sob carga, um round trip confirma centenas de ordens, não uma.
+ * <p>
+ * Cada entrada vai para o {@link LogStore} ao entrar no log. O seguidor só confirma um
+ * lote depois que ele estiver em disco, e o líder só conta a si mesmo na maioria até o
+ * índice que já gravou: uma entrada comitada sobrevive à queda de qualquer minoria.
+ */
+public class ReplicationManager {
+
+    /**
+     * Aplica uma entrada comitada, em ordem de índice; no-ops chegam com {@code entry} vazio.
+     * Uma entrada pode ser um lote de ordens, então o resultado traz um relatório por ordem.
+     */
+    public interface Applier {
+        CompletableFuture<List<ExecutionReport>> apply(long index, int generation, byte[] entry);
+    }
+
+    /**
+     * Guarda o log em disco, recebendo as entradas na ordem dos índices; uma entrada com
+     * o índice de outra já gravada a substitui, junto com as seguintes.
+     */
+    public interface LogStore {
+        // sem disco, toda entrada conta como gravada
+        LogStore IN_MEMORY = new LogStore() {
+            @Override
+            public CompletableFuture<Void> append(long index, int generation, byte[] entry) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public void commit(long index) {
+            }
+        };
+
+        /**
+         * @return completa quando a entrada, e todas as gravadas antes, estiverem em disco
+         */
+        CompletableFuture<Void> append(long index, int generation, byte[] entry);
+
+        /**
+         * As entradas até {@code index} foram comitadas e entregues ao {@link Applier}.
+         */
+        void commit(long index);
+    }
+
+    static final int MAX_BATCH_ENTRIES = 512;
+    // cabe no datagrama/buffer de envio de 64 KiB dos transportes
+    static final int MAX_BATCH_BYTES = 32 * 1024;
+    static final int MAX_IN_FLIGHT_ENTRIES = 8 * MAX_BATCH_ENTRIES;
+    // sem ack nesse prazo, o seguidor volta a receber a partir do último índice confirmado
+    static final long RETRANSMIT_MILLIS = 200;
+    // um seguidor só desiste do líder após 4 s sem notícias (HeartbeatManager); o lease do
+    // líder dura metade disso a partir do ack da maioria, a folga cobre atrasos e relógios
+    public static final long LEASE_MILLIS = 2000;
+    public static final long LEADER_TIMEOUT_MILLIS = 4000;
+
+    private final int serverId;
+    private final Map<Integer, InetSocketAddress> nodeAddresses;
+    private final CommunicationStrategy strategy;
+    private final ServerState state;
+    private final ReplicatedLog log;
+    private final Applier applier;
+    private final LogStore store;
+    private final long heartbeatInterval;
+
+    private final Map<Integer, FollowerProgress> followers = new HashMap<>();
+    private final ConcurrentHashMap<Long, PendingCommit> pendingCommits = new ConcurrentHashMap<>();
+    // geração em que este nó venceu a eleição; só replica enquanto ela for a atual
+    private volatile int leaderGeneration = -1;
+    // geração em que outro nó também se disse líder; sem lease nela
+    private volatile int conflictGeneration = -1;
+    // último registro entregue ao store, protegido pelo monitor do log
+    private CompletableFuture<Void> lastPersist = CompletableFuture.completedFuture(null);
+    // líder: até onde o log deste nó está em disco, escrito sob o monitor deste objeto
+    private volatile long durableIndex;
+    // escrito só sob applyLock, e só para cima
+    private volatile long commitIndex;
+    // snapshot mais recente deste nó, oferecido a quem precisa de entradas já compactadas
+    private volatile long latestSnapshot;
+    private final Object applyLock = new Object();
+    private volatile long lastApplied;
+    // leituras esperando um índice ser aplicado, protegidas por applyLock
+    private final PriorityQueue<AppliedWaiter> appliedWaiters = new PriorityQueue<>(Comparator.comparingLong(AppliedWaiter::index));
+
+    // seguidor: quando o último lote do líder chegou e o commit que ele anunciava
+    private volatile long leaderContactMillis;
+    private volatile long leaderCommitSeen;
+
+    private final Object signal = new Object();
+    private boolean dirty;
+    private Thread replicator;
+
+    public ReplicationManager(int serverId, Map<Integer, InetSocketAddress> nodeAddresses, CommunicationStrategy strategy,
+                              ServerState state, ReplicatedLog log, long heartbeatInterval,
+                              Applier applier, LogStore store) {
+        this.serverId = serverId;
+        this.nodeAddresses = nodeAddresses;
+        this.strategy = strategy;
+        this.state = state;
+        this.log = log;
+        this.heartbeatInterval = heartbeatInterval;
+        this.applier = applier;
+        this.store = store;
+        for (int nodeId : nodeAddresses.keySet()) {
+            followers.put(nodeId, new FollowerProgress());
+        }
+    }
+
+    public long getCommitIndex() {
+        return commitIndex;
+    }
+
+    public long getAppliedIndex() {
+        return lastApplied;
+    }
+
+    /**
+     * Ponto de leitura deste nó: um índice que estava comitado no cluster no instante
+     * {@code asOfMillis}. Quem ler depois de aplicar até {@code commitIndex} vê um estado
+     * no máximo {@code agora - asOfMillis} atrasado.
+     */
+    public record ReadPoint(long commitIndex, long asOfMillis) {
+    }
+
+    /**
+     * No líder, o commit atual: com lease ele vale agora, sem lease só até o ack mais antigo
+     * entre a maioria. No seguidor, o commit anunciado no último lote do líder.
+     * {@code asOfMillis} é 0 sem informação.
+     */
+    public ReadPoint readPoint() {
+        if (state.getServerRole() == ServerRole.LEADER) {
+            long now = System.currentTimeMillis();
+            long quorumAck = quorumAckMillis();
+            return new ReadPoint(commitIndex, now - quorumAck < LEASE_MILLIS ? now : quorumAck);
+        }
+        return new ReadPoint(leaderCommitSeen, leaderContactMillis);
+    }
+
+    /**
+     * Índice de leitura linearizável pelo lease do líder: enquanto a maioria confirmou há
+     * menos de {@link #LEASE_MILLIS}, nenhum outro nó pode ter sido eleito, e o commit
+     * atual inclui toda escrita já confirmada a um cliente. Isso vale porque um seguidor
+     * recusa votos por {@link #LEADER_TIMEOUT_MILLIS} depois de ouvir o líder (ver
+     * {@code ElectionManager.handleVoteRequest}), e o próprio líder só vota depois de se
+     * destituir. Se outro nó mesmo assim se disser líder da mesma geração
+     * ({@link #rivalLeader}), o lease deixa de valer até a próxima geração.
+     *
+     * @return o índice que a leitura deve esperar ser aplicado, ou -1 sem lease
+     */
+    public long leaseReadIndex() {
+        if (!isLeading() || conflictGeneration == leaderGeneration
+                || System.currentTimeMillis() - quorumAckMillis() >= LEASE_MILLIS) {
+            return -1;
+        }
+        long commit = commitIndex;
+        // até comitar o no-op da própria geração, o líder não sabe o commit real
+        return log.generationAt(commit) == leaderGeneration ? commit : -1;
+    }
+
+    /**
+     * Completa quando as entradas até {@code index} tiverem sido entregues ao matching;
+     * uma leitura submetida ao matching depois disso as enxerga.
+     */
+    public CompletableFuture<Void> whenApplied(long index) {
+        synchronized (applyLock) {
+            if (lastApplied >= index) {
+                return CompletableFuture.completedFuture(null);
+            }
+            AppliedWaiter waiter = new AppliedWaiter(index, new CompletableFuture<>());
+            appliedWaiters.add(waiter);
+            return waiter.future();
+        }
+    }
+
+    // instante em que a maioria (contando o líder, sempre atual) confirmou por último
+    private long quorumAckMillis() {
+        long[] acks = new long[followers.size() + 1];
+        int i = 0;
+        for (FollowerProgress progress : followers.values()) {
+            synchronized (progress) {
+                acks[i++] = progress.lastAckMillis;
+            }
+        }
+        acks[i] = System.currentTimeMillis();
+        Arrays.sort(acks);
+        return acks[acks.length - (acks.length / 2 + 1)];
+    }
+
+    /**
+     * Marca como comitadas e aplicadas as entradas até {@code appliedIndex}, reconstruídas
+     * a partir do journal antes de o nó voltar ao cluster; as seguintes esperam o líder.
+     */
+    public void restore(long appliedIndex) {
+        synchronized (applyLock) {
+            lastApplied = appliedIndex;
+            commitIndex = Math.max(commitIndex, appliedIndex);
+        }
+    }
+
+    public void setLatestSnapshot(long index) {
+        this.latestSnapshot = index;
+    }
+
+    /**
+     * Seguidor: troca o estado local por um snapshot do líder, quando ele vai além do que
+     * já foi aplicado, e confirma ao líder para a replicação continuar a partir dele.
+     *
+     * @param restore substitui os livros pelos do snapshot
+     * @return {@code false} se o snapshot não acrescenta nada ao estado local
+     */
+    public boolean installSnapshot(long index, int generation, Runnable restore) {
+        synchronized (applyLock) {
+            if (index <= lastApplied) {
+                return false;
+            }
+            restore.run();
+            log.resetTo(index, generation);
+            lastApplied = index;
+            commitIndex = Math.max(commitIndex, index);
+        }
+        releaseWaiters();
+        reply(nodeAddresses.get(state.getLeaderId()), true, index);
+        return true;
+    }
+
+    /**
+     * Anexa um comando ao log (apenas no líder). O futuro completa com o resultado da
+     * aplicação local depois que a entrada for comitada pela maioria, ou falha se o nó
+     * deixar de ser o líder antes disso.
+     */
+    public CompletableFuture<List<ExecutionReport>> submit(byte[] entry) {
+        PendingCommit result = new PendingCommit();
+        int generation;
+        long index;
+        CompletableFuture<Void> durable;
+        synchronized (log) {
+            if (!isLeading()) {
+                return CompletableFuture.failedFuture(new IllegalStateException("este nó não é mais o líder"));
+            }
+            generation = leaderGeneration;
+            index = log.append(generation, entry);
+            pendingCommits.put(index, result);
+            durable = persist(index);
+        }
+        // os seguidores gravam em paralelo com o disco local
+        wakeReplicator();
+        durable.thenRun(() -> leaderDurable(generation, index));
+        return result;
+    }
+
+    /**
+     * Chamado ao vencer uma eleição: reinicia o progresso dos seguidores e anexa um no-op
+     * da nova geração, que comita junto as entradas pendentes de gerações anteriores.
+     */
+    public synchronized void becomeLeader() {
+        leaderGeneration = state.getCurrentGeneration();
+        durableIndex = 0;
+        long next = log.lastIndex() + 1;
+        for (FollowerProgress progress : followers.values()) {
+            synchronized (progress) {
+                progress.nextIndex = next;
+                progress.matchIndex = 0;
+                progress.lastSendMillis = 0;
+                progress.lastAckMillis = System.currentTimeMillis();
+                progress.sentCommit = -1;
+            }
+        }
+        int generation = leaderGeneration;
+        long noOp;
+        CompletableFuture<Void> durable;
+        synchronized (log) {
+            noOp = log.appendNoOp(generation);
+            durable = persist(noOp);
+        }
+        // o no-op em disco cobre também as entradas anteriores a ele
+        durable.thenRun(() -> leaderDurable(generation, noOp));
+        if (replicator == null) {
+            replicator = new Thread(this::replicate, "replication-" + serverId);
+            replicator.setDaemon(true);
+            replicator.start();
+        }
+        wakeReplicator();
+    }
+
+    /**
+     * Chamado ao ver uma geração mais nova sendo líder: o laço de replicação para de enviar
+     * e as entradas ainda não comitadas falham; o novo líder decide se elas ficam no log.
+     */
+    public void stepDown() {
+        // quem já passou pela checagem de submit termina de registrar a entrada antes
+        synchronized (log) {
+            failPendingCommits();
+        }
+        wakeReplicator();
+    }
+
+    /**
+     * Seguidor: confere a consistência com o log do líder, anexa o lote e aplica o que
+     * já estiver comitado. O líder e a geração já foram registrados pelo heartbeat.
+     */
+    public void handleAppendEntries(AppendEntries append) {
+        InetSocketAddress leader = nodeAddresses.get(append.getSenderId());
+        if (append.getGeneration() < state.getCurrentGeneration()) {
+            reply(leader, false, log.lastIndex());
+            return;
+        }
+        if (state.getServerRole() == ServerRole.LEADER && append.getGeneration() == state.getCurrentGeneration()) {
+            // outro líder na mesma geração: nem o log nem o commit dele entram aqui
+            rivalLeader(append);
+            return;
+        }
+        long prevIndex = append.getPrevLogIndex();
+        // entradas até o índice base vieram de um snapshot e estão comitadas, logo coincidem
+        if (prevIndex >= log.baseIndex() && log.generationAt(prevIndex) != append.getPrevLogGeneration()) {
+            // lacuna ou divergência: pede ao líder para recomeçar antes deste ponto
+            reply(leader, false, Math.min(log.lastIndex(), prevIndex - 1));
+            return;
+        }
+        long matchIndex = prevIndex + append.getEntryCount();
+        CompletableFuture<Void> durable;
+        synchronized (log) {
+            for (long index = log.appendFrom(prevIndex, append); index <= matchIndex; index++) {
+                persist(index);
+            }
+            durable = lastPersist;
+        }
+        // o líder conta o ack para comitar: ele só sai com o lote em disco
+        if (leader != null) {
+            AppendAck ack = new AppendAck(state.getCurrentGeneration(), serverId, state.getLeaderId(), true, matchIndex);
+            durable.thenRun(() -> strategy.sendMessage(ack, leader));
+        }
+        leaderCommitSeen = append.getLeaderCommit();
+        leaderContactMillis = System.currentTimeMillis();
+
+        if (raiseCommitIndex(Math.min(append.getLeaderCommit(), matchIndex))) {
+            applyCommitted();
+        }
+    }
+
+    /**
+     * Líder: outro nó mandou {@code message} como líder da geração deste. A eleição não
+     * deveria permitir isso; a mensagem é recusada, o conflito vai para o log de eventos e
+     * as leituras pelo lease param nesta geração.
+     */
+    public void rivalLeader(Message message) {
+        conflictGeneration = message.getGeneration();
+        EventLog.log(Event.LEADER_CONFLICT, serverId, message.getGeneration(), message.getSenderId());
+    }
+
+    // acks de geração maior já destituíram este nó em ElectionManager.observeGeneration
+    public void handleAppendAck(AppendAck ack) {
+        FollowerProgress progress = followers.get(ack.getSenderId());
+        if (progress == null || !isLeading() || ack.getGeneration() != leaderGeneration) {
+            return;
+        }
+        synchronized (progress) {
+            progress.lastAckMillis = System.currentTimeMillis();
+            if (ack.isSuccess()) {
+                progress.matchIndex = Math.max(progress.matchIndex, ack.getMatchIndex());
+                progress.nextIndex = Math.max(progress.nextIndex, progress.matchIndex + 1);
+            } else {
+                // abaixo do matchIndex só quando o seguidor voltou sem o log (ex.: disco novo)
+                progress.matchIndex = Math.min(progress.matchIndex, ack.getMatchIndex());
+                progress.nextIndex = ack.getMatchIndex() + 1;
+            }
+        }
+        if (ack.isSuccess()) {
+            advanceCommitIndex();
+        }
+        wakeReplicator();
+    }
+
+    // chamado sob o monitor do log, para o store receber as entradas na ordem dos índices
+    private CompletableFuture<Void> persist(long index) {
+        lastPersist = store.append(index, log.generationAt(index), log.entryAt(index));
+        return lastPersist;
+    }
+
+    private void leaderDurable(int generation, long index) {
+        synchronized (this) {
+            // uma gravação de uma liderança anterior não conta para a atual
+            if (generation != leaderGeneration || index <= durableIndex) {
+                return;
+            }
+            durableIndex = index;
+        }
+        advanceCommitIndex();
+    }
+
+    private void advanceCommitIndex() {
+        long[] matched = new long[followers.size() + 1];
+        int i = 0;
+        for (FollowerProgress progress : followers.values()) {
+            synchronized (progress) {
+                matched[i++] = progress.matchIndex;
+            }
+        }
+        matched[i] = durableIndex;
+        Arrays.sort(matched);
+        // maior índice presente na maioria dos nós
+        long majorityIndex = matched[matched.length - (matched.length / 2 + 1)];
+        // só entradas da geração atual comitam por contagem (as anteriores vão junto)
+        if (log.generationAt(majorityIndex) == leaderGeneration && raiseCommitIndex(majorityIndex)) {
+            applyCommitted();
+        }
+    }
+
+    private boolean raiseCommitIndex(long index) {
+        synchronized (applyLock) {
+            if (index <= commitIndex) {
+                return false;
+            }
+            commitIndex = index;
+            return true;
+        }
+    }
+
+    private boolean isLeading() {
+        return state.getServerRole() == ServerRole.LEADER && state.getCurrentGeneration() == leaderGeneration;
+    }
+
+    private void applyCommitted() {
+        synchronized (applyLock) {
+            long from = lastApplied;
+            while (lastApplied < commitIndex) {
+                long index = ++lastApplied;
+                byte[] entry = log.entryAt(index);
+                PendingCommit pending = pendingCommits.remove(index);
+                if (pending != null) {
+                    OrderStage.COMMIT.record(pending.submittedNanos);
+                }
+                CompletableFuture<List<ExecutionReport>> applied;
+                try {
+                    applied = applier.apply(index, log.generationAt(index), entry);
+                } catch (RuntimeException e) {
+                    applied = CompletableFuture.failedFuture(e);
+                }
+                if (pending != null) {
+                    applied.whenComplete((reports, error) -> {
+                        if (error != null) {
+                            pending.completeExceptionally(error);
+                        } else {
+                            pending.complete(reports);
+                        }
+                    });
+                }
+            }
+            if (lastApplied > from) {
+                store.commit(lastApplied);
+            }
+        }
+        releaseWaiters();
+    }
+
+    // completa fora do applyLock: a leitura que continua daqui não atrasa a aplicação
+    private void releaseWaiters() {
+        List<AppliedWaiter> ready = new ArrayList<>();
+        synchronized (applyLock) {
+            while (!appliedWaiters.isEmpty() && appliedWaiters.peek().index() <= lastApplied) {
+                ready.add(appliedWaiters.poll());
+            }
+        }
+        for (AppliedWaiter waiter : ready) {
+            waiter.future().complete(null);
+        }
+    }
+
+    private void replicate() {
+        while (true) {
+            if (isLeading()) {
+                long now = System.currentTimeMillis();
+                followers.forEach((nodeId, progress) -> replicateTo(nodeId, progress, now));
+            } else {
+                failPendingCommits();
+            }
+            synchronized (signal) {
+                try {
+                    if (!dirty) {
+                        signal.wait(isLeading() ? RETRANSMIT_MILLIS : heartbeatInterval);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                dirty = false;
+            }
+        }
+    }
+
+    private void replicateTo(int nodeId, FollowerProgress progress, long now) {
+        int generation = leaderGeneration;
+        long commit = commitIndex;
+        AppendEntries append = null;
+        InstallSnapshot install = null;
+        synchronized (progress) {
+            long lastIndex = log.lastIndex();
+            long inFlight = progress.nextIndex - progress.matchIndex - 1;
+            if (inFlight > 0 && now - progress.lastAckMillis > RETRANSMIT_MILLIS && now - progress.lastSendMillis > RETRANSMIT_MILLIS) {
+                // lotes ou acks perdidos: reenvia a partir do último índice confirmado
+                progress.nextIndex = progress.matchIndex + 1;
+                inFlight = 0;
+            }
+            if (progress.nextIndex <= log.baseIndex()) {
+                // o seguidor precisa de entradas que só existem no snapshot: o aviso também
+                // serve de heartbeat enquanto ele busca o arquivo
+                if (now - progress.lastSendMillis >= heartbeatInterval / 2) {
+                    progress.lastSendMillis = now;
+                    install = new InstallSnapshot(generation, serverId, latestSnapshot);
+                }
+            } else if (progress.nextIndex <= lastIndex && inFlight < MAX_IN_FLIGHT_ENTRIES) {
+                append = log.batch(generation, serverId, progress.nextIndex, commit, MAX_BATCH_ENTRIES, MAX_BATCH_BYTES);
+                if (append != null) {
+                    progress.nextIndex += append.getEntryCount();
+                }
+            } else if (now - progress.lastSendMillis >= heartbeatInterval / 2 || progress.sentCommit < commit) {
+                append = log.batch(generation, serverId, progress.nextIndex, commit, 0, 0);
+            }
+            if (append != null) {
+                progress.lastSendMillis = now;
+                progress.sentCommit = commit;
+            }
+        }
+        if (append != null) {
+            strategy.sendMessage(append, nodeAddresses.get(nodeId));
+        } else if (install != null) {
+            strategy.sendMessage(install, nodeAddresses.get(nodeId));
+        }
+    }
+
+    private void failPendingCommits() {
+        if (pendingCommits.isEmpty()) {
+            return;
+        }
+        IllegalStateException error = new IllegalStateException("líder destituído antes do commit; resultado indefinido");
+        pendingCommits.forEach((index, pending) -> {
+            if (pendingCommits.remove(index, pending)) {
+                pending.completeExceptionally(error);
+            }
+        });
+    }
+
+    private void reply(InetSocketAddress leader, boolean success, long matchIndex) {
+        if (leader != null) {
+            strategy.sendMessage(new AppendAck(state.getCurrentGeneration(), serverId, state.getLeaderId(), success, matchIndex), leader);
+        }
+    }
+
+    private void wakeReplicator() {
+        synchronized (signal) {
+            dirty = true;
+            signal.notify();
+        }
+    }
+
+    private record AppliedWaiter(long index, CompletableFuture<Void> future) {
+    }
+
+    // resultado de uma entrada do líder, com o instante do envio para medir a espera pelo commit
+    private static final class PendingCommit extends CompletableFuture<List<ExecutionReport>> {
+        final long submittedNanos = System.nanoTime();
+    }
+
+    private static final class FollowerProgress {
+        long nextIndex = 1;
+        long matchIndex;
+        long lastSendMillis;
+        long lastAckMillis;
+        long sentCommit = -1;
+    }
+}
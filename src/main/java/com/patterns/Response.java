@@ -2,12 +2,34 @@ package com.patterns;
 
 public class Response extends Message{
     private String responseContent; 
+    private long correlationId;
 
     public Response(MessageType type, String responseContent) {
         super(type);
         this.responseContent = responseContent;
     }
 
+    public Response(MessageType type, String responseContent, long correlationId) {
+        super(type);
+        this.responseContent = responseContent;
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * Resposta de um nó do cluster: o cabeçalho leva a geração e o líder conhecidos por
+     * quem respondeu, para o gateway acompanhar a liderança sem esperar heartbeats.
+     */
+    public Response(MessageType type, int generation, int senderId, int leaderId,
+                    String responseContent, long correlationId) {
+        super(type, generation, senderId, leaderId);
+        this.responseContent = responseContent;
+        this.correlationId = correlationId;
+    }
+
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
     public String getResponseContent() {
         return responseContent;
     }
@@ -23,6 +45,7 @@ public class Response extends Message{
                 ", generation=" + getGeneration() +
                 ", senderId=" + getSenderId() +
                 ", leaderId=" + getLeaderId() +
+                ", correlationId=" + correlationId +
                 ", responseContent='" + responseContent + '\'' +
                 '}';
     }
@@ -0,0 +1,26 @@
+package com.patterns;
+
+/**
+ * Pedido de voto com a posição do log do candidato: só recebe voto quem tem um log
+ * pelo menos tão atualizado quanto o de quem vota.
+ */
+public class VoteRequest extends Message {
+    private static final long serialVersionUID = 1L;
+
+    private final long lastLogIndex;
+    private final int lastLogGeneration;
+
+    public VoteRequest(int generation, int senderId, long lastLogIndex, int lastLogGeneration) {
+        super(MessageType.REQUEST_VOTE, generation, senderId, -1);
+        this.lastLogIndex = lastLogIndex;
+        this.lastLogGeneration = lastLogGeneration;
+    }
+
+    public long getLastLogIndex() {
+        return lastLogIndex;
+    }
+
+    public int getLastLogGeneration() {
+        return lastLogGeneration;
+    }
+}
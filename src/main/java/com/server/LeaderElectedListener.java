@@ -2,4 +2,7 @@ package com.server;
 
 public interface LeaderElectedListener {
     void onLeaderElected();
+
+    // o nó viu uma geração mais nova e deixou de ser o líder
+    void onLeadershipLost();
 }
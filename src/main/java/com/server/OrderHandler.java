@@ -1,7 +1,49 @@
 package com.server;
 
+import com.codec.OrderBatch;
+import com.codec.OrderCommand;
+import com.patterns.MessageType;
+import com.patterns.Response;
+
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
 
 public interface OrderHandler {
-    void handleOrder(String orderMessage, InetSocketAddress sender);
+    String INVALID_BATCH_ENTRY = "Erro: Solicitação inválida";
+
+    /**
+     * O comando é reutilizado pela thread de recepção; os dados devem ser copiados
+     * antes de qualquer processamento assíncrono. A resposta é enviada pelo próprio
+     * transporte, pelo mesmo canal por onde a ordem chegou.
+     */
+    CompletableFuture<Response> handleOrder(OrderCommand command, InetSocketAddress sender);
+
+    /**
+     * Um lote de ordens chegado num único frame; a resposta é uma só, com uma linha por
+     * entrada (ver {@link OrderBatch#formatResults}) e o correlationId do lote. Como o
+     * comando de {@link #handleOrder}, o lote é reutilizado pela thread de recepção.
+     * <p>
+     * O padrão trata cada entrada como uma ordem avulsa; quem puder aplicar o lote de uma
+     * vez sobrescreve.
+     */
+    default CompletableFuture<Response> handleBatch(OrderBatch batch, InetSocketAddress sender) {
+        int size = batch.size();
+        long correlationId = batch.getCorrelationId();
+        String[] results = new String[size];
+        CompletableFuture<?>[] pending = new CompletableFuture<?>[size];
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            if (!batch.isValid(i)) {
+                results[i] = INVALID_BATCH_ENTRY;
+                pending[i] = CompletableFuture.completedFuture(null);
+                continue;
+            }
+            pending[i] = handleOrder(batch.get(i), sender).handle((response, error) -> {
+                results[index] = error == null ? response.getResponseContent() : "Erro: " + error.getMessage();
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(pending).thenApply(ignored ->
+                new Response(MessageType.RESPONSE, OrderBatch.formatResults(results), correlationId));
+    }
 }
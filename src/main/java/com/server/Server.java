@@ -1,20 +1,55 @@
 package com.server;
 
-import com.model.Order;
-import com.model.OrderType;
+import com.codec.MessageCodec;
+import com.codec.MessageCodecs;
+import com.codec.OrderBatch;
+import com.codec.OrderCommand;
+import com.codec.OrderEntryDecoder;
+import com.codec.OrderEntryEncoder;
+import com.eventlog.Event;
+import com.eventlog.EventLog;
+import com.journal.Journal;
+import com.journal.JournalReplayHandler;
+import com.journal.SnapshotStore;
+import com.journal.SnapshotTransfer;
+import com.marketdata.MarketDataPublisher;
+import com.metrics.ClusterMetrics;
+import com.metrics.Metrics;
+import com.model.ExecutionReport;
+import com.model.LadderOrderBook;
+import com.model.OrderAction;
+import com.model.OrderBook;
+import com.model.PriorityQueueOrderBook;
 import com.patterns.*;
+import com.service.BookCommand;
 import com.service.MatchingEngine;
 import com.service.OrderBookService;
 import com.strategy.CommunicationStrategy;
 import com.strategy.HttpCommunicationStrategy;
+import com.strategy.MeteredCommunicationStrategy;
+import com.strategy.NioCommunicationStrategy;
 import com.strategy.TcpCommunicationStrategy;
 import com.strategy.UdpCommunicationStrategy;
 
 import java.awt.image.ImageConsumer;
+import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 public class Server implements MessageHandler, OrderHandler, FailureListener, LeaderElectedListener {
     private final MatchingEngine matchingEngine;
@@ -23,103 +58,579 @@ public class Server implements MessageHandler, OrderHandler, FailureListener, Le
     private final CommunicationStrategy strategy;
     private final ElectionManager electionManager;
     private final HeartbeatManager heartbeatManager;
+    private final ReplicationManager replicationManager;
+    private final ReplicatedLog log;
+    private final Journal journal;
+    // durante a releitura do journal os trades reproduzidos já estão gravados
+    private volatile boolean replaying;
+
+    private final SnapshotStore snapshots;
+    private final SnapshotTransfer snapshotTransfer;
+    private final ExecutorService snapshotWriter;
+    private long snapshotInterval = 100_000;
+    // último snapshot em disco; avança só depois que o arquivo foi gravado
+    private volatile long lastSnapshotIndex;
+    private volatile boolean snapshotInProgress;
 
     private final ServerState serverState;
+
+    // usados só ao aplicar entradas comitadas, que a replicação serializa
+    private final OrderEntryDecoder applyDecoder = new OrderEntryDecoder();
+    private final OrderCommand applyCommand = new OrderCommand();
+    private final OrderBatch applyBatch = new OrderBatch();
     
     
-    private static final int PORT = 9001;
+    private static final int GATEWAY_PORT = 8080;
+    private static final int METRICS_BASE_PORT = 10100;
+    // nós não preferidos esperam mais na primeira eleição do grupo
+    private static final long NON_PREFERRED_ELECTION_DELAY = 2500;
+
+    // grupo de replicação deste servidor; com um único grupo, todos os símbolos
+    private int shard;
+    private int shardCount = 1;
 
     public Server(MatchingEngine matchingEngine, int serverId,
                   Map<Integer, InetSocketAddress> nodeAddresses,
                   CommunicationStrategy strategy) {
+        this(matchingEngine, serverId, nodeAddresses, strategy, null);
+    }
+
+    /**
+     * @param journal journal local do log replicado e dos trades, reaplicado em {@link #start()};
+     *                {@code null} mantém o estado só em memória
+     */
+    public Server(MatchingEngine matchingEngine, int serverId,
+                  Map<Integer, InetSocketAddress> nodeAddresses,
+                  CommunicationStrategy strategy, Journal journal) {
         this.matchingEngine = matchingEngine;
+        this.journal = journal;
+        this.snapshots = journal == null ? null : new SnapshotStore(journal.getDirectory());
+        this.snapshotTransfer = journal == null ? null : new SnapshotTransfer(snapshots);
+        this.snapshotWriter = journal == null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
         this.serverId = serverId;
         this.nodeAddresses = nodeAddresses;
         this.strategy = strategy;
         this.serverState = new ServerState();
+        ClusterMetrics.preregister(nodeAddresses.keySet(), MessageType.values());
         
         this.heartbeatManager = new HeartbeatManager(serverId, nodeAddresses, strategy, serverState);
         
         this.electionManager = new ElectionManager(serverId, nodeAddresses, strategy, serverState);
-        
+
+        // as ordens passam pelo log replicado; os lotes de append substituem os heartbeats entre nós
+        this.log = new ReplicatedLog();
+        this.replicationManager = new ReplicationManager(serverId, nodeAddresses, strategy, serverState, log,
+                heartbeatManager.heartbeatInterval, this::apply,
+                journal == null ? ReplicationManager.LogStore.IN_MEMORY : journalStore(journal));
+        this.electionManager.setLog(log);
+        this.heartbeatManager.setSendToPeers(false);
+        if (journal != null) {
+            matchingEngine.addTradeListener(trade -> {
+                if (!replaying) {
+                    journal.appendTrade(trade);
+                }
+            });
+        }
 
         this.heartbeatManager.addFailureListener(this);
         this.electionManager.addLeaderElectedListener(this);
     }
 
+    /**
+     * Entradas aplicadas entre dois snapshots dos livros; 0 desliga os snapshots.
+     */
+    public void setSnapshotInterval(long entries) {
+        this.snapshotInterval = entries;
+    }
+
+    /**
+     * Faz deste servidor o membro {@code serverId} do grupo {@code shard}, dono dos símbolos
+     * que {@link ShardMap#shardFor} leva a ele. O nó preferido disputa a primeira eleição
+     * antes dos outros, para cada grupo ter o líder num processo diferente.
+     */
+    public void setShard(int shard, int shardCount, int preferredLeader) {
+        this.shard = shard;
+        this.shardCount = shardCount;
+        heartbeatManager.setShard(shard);
+        electionManager.setInitialDelay(preferredLeader == serverId ? 0 : NON_PREFERRED_ELECTION_DELAY);
+    }
+
     public void start() {
-        new Thread(() -> strategy.startListening(serverId + PORT, this, this)).start();
+        replayJournal();
+        int port = ShardMap.port(shard, serverId);
+        if (snapshotTransfer != null) {
+            try {
+                snapshotTransfer.serve(port + SnapshotTransfer.PORT_OFFSET);
+            } catch (IOException e) {
+                System.err.println("Erro ao abrir a porta de snapshots: " + e.getMessage());
+            }
+        }
+        new Thread(() -> strategy.startListening(port, this, this)).start();
         
         electionManager.startElectionTimeout();
     }
 
+    /**
+     * Publica o market data dos livros deste grupo; só transmite enquanto este nó for o líder.
+     */
+    public void publishMarketData(MarketDataPublisher publisher) {
+        publisher.start(matchingEngine, () -> serverState.getServerRole() == ServerRole.LEADER,
+                serverState::getCurrentGeneration);
+    }
+
+    /**
+     * Registra um endereço que passa a receber os heartbeats enquanto este nó for líder.
+     */
+    public void addObserver(InetSocketAddress observer) {
+        heartbeatManager.addObserver(observer);
+    }
+
     @Override
     public void onNodeFailure(int failedId) {
-        if(serverState.getLeaderId() == failedId){
-            electionManager.startElection();
+        // a eleição fica com o temporizador do ElectionManager, que já corre sem o contato
+        // do líder; aqui só se deixa de indicar o líder caído nos redirecionamentos
+        if (serverState.getServerRole() != ServerRole.LEADER && serverState.getLeaderId() == failedId) {
+            serverState.setLeaderId(-1);
         }
     }
     @Override
     public void onLeaderElected(){
+        replicationManager.becomeLeader();
         heartbeatManager.startSendingHeartbeats();
     }
 
+    @Override
+    public void onLeadershipLost() {
+        heartbeatManager.stopSendingHeartbeats();
+        replicationManager.stepDown();
+    }
+
     public void handleMessage(Message message, InetSocketAddress sender) {
+        ClusterMetrics.messageReceived(message.getSenderId(), message.getType());
+        // geração mais nova destitui este nó; pedidos de voto decidem isso em handleVoteRequest
+        if (message.getType() != MessageType.REQUEST_VOTE) {
+            electionManager.observeGeneration(message.getGeneration(), message.getSenderId());
+        }
         switch (message.getType()) {
             case REQUEST_VOTE:
-                System.out.println("Received request vote from " + message.getSenderId());
+                EventLog.log(Event.MESSAGE_RECEIVED, message.getType().ordinal(), message.getSenderId(), message.getGeneration());
                 electionManager.handleVoteRequest(message);
                 break;
             case VOTE:
-                System.out.println("Received vote from " + message.getSenderId());
+                EventLog.log(Event.MESSAGE_RECEIVED, message.getType().ordinal(), message.getSenderId(), message.getGeneration());
                 electionManager.handleVoteResponse(message);
                 break;
             case HEARTBEAT:
-                System.out.println("Received heartbeat from " + message.getSenderId());
+                EventLog.log(Event.MESSAGE_RECEIVED, message.getType().ordinal(), message.getSenderId(), message.getGeneration());
+                acceptLeaderContact(message);
+                break;
+            case APPEND_ENTRIES:
                 heartbeatManager.handleHeartbeat(message);
+                replicationManager.handleAppendEntries((AppendEntries) message);
+                break;
+            case APPEND_ACK:
+                replicationManager.handleAppendAck((AppendAck) message);
+                break;
+            case INSTALL_SNAPSHOT:
+                if (acceptLeaderContact(message)) {
+                    handleInstallSnapshot((InstallSnapshot) message);
+                }
                 break;
             default:
-                System.out.println("Tipo de mensagem desconhecido: " + message.getType());
+                EventLog.log(Event.UNKNOWN_MESSAGE, message.getType().ordinal(), message.getSenderId());
         }
     }
     
     @Override
-    public void handleOrder(String orderMessage, InetSocketAddress sender) {
-        System.out.println("Ordem recebida: " + orderMessage);
-        String[] parts = orderMessage.split(":", 2);
-        if (parts.length == 2 && parts[0].equals("ORDER")) {
-            Order order = parseOrder(parts[1]);
-            if (order != null) {
-                matchingEngine.processOrder(order);
-                
-                //RESPOSTA AO GATEWAY
-                String response = "Order processed: " + order;
-                strategy.sendMessage(new Response(MessageType.RESPONSE, response), sender);
+    public CompletableFuture<Response> handleOrder(OrderCommand command, InetSocketAddress sender) {
+        EventLog.log(Event.ORDER_RECEIVED, command.getAction().ordinal(),
+                command.getSide() == null ? -1 : command.getSide().ordinal(), EventLog.symbol(command.getSymbol()),
+                command.getQuantity(), command.getPriceTicks(), command.getOrderId());
+        long correlationId = command.getCorrelationId();
+        if (shardCount > 1 && ShardMap.shardFor(command.getSymbol(), shardCount) != shard) {
+            // gateway com outro número de grupos: executar aqui dividiria o livro do símbolo
+            return CompletableFuture.completedFuture(response(MessageType.RESPONSE, "Erro: Símbolo "
+                    + command.getSymbol() + " não pertence ao shard " + shard, correlationId));
+        }
+        if (command.getAction().isQuery()) {
+            return handleQuery(command, correlationId);
+        }
+        if (serverState.getServerRole() != ServerRole.LEADER) {
+            // só o líder executa; o seguidor devolve na hora a dica de quem é o líder
+            return CompletableFuture.completedFuture(redirect("", correlationId));
+        }
+        // a ordem só é executada depois de comitada no log replicado
+        ByteBuffer entry = ByteBuffer.allocate(OrderEntryDecoder.BINARY_HEADER_LENGTH + OrderEntryDecoder.MAX_SYMBOL_LENGTH);
+        command.setCorrelationId(0);
+        OrderEntryEncoder.encodeBinary(command, entry);
+        CompletableFuture<List<ExecutionReport>> execution = replicationManager.submit(Arrays.copyOf(entry.array(), entry.position()));
+
+        //RESPOSTA AO GATEWAY quando o matching terminar
+        return execution.handle((reports, error) -> {
+            String response = error == null
+                    ? "Order processed: " + reports.get(0)
+                    : "Erro ao processar ordem: " + error.getMessage();
+            return response(MessageType.RESPONSE, response, correlationId);
+        });
+    }
+
+    /**
+     * Um lote vira uma única entrada do log: um commit para todas as ordens e, ao aplicar,
+     * um despacho por livro em vez de um por ordem. As entradas inválidas ficam de fora do
+     * log e recebem o erro na sua linha da resposta.
+     */
+    @Override
+    public CompletableFuture<Response> handleBatch(OrderBatch batch, InetSocketAddress sender) {
+        long correlationId = batch.getCorrelationId();
+        int size = batch.size();
+        EventLog.log(Event.BATCH_RECEIVED, size, batch.validCount());
+        for (int i = 0; i < size; i++) {
+            String symbol = batch.get(i).getSymbol();
+            if (batch.isValid(i) && shardCount > 1 && ShardMap.shardFor(symbol, shardCount) != shard) {
+                return CompletableFuture.completedFuture(response(MessageType.RESPONSE, "Erro: Símbolo "
+                        + symbol + " não pertence ao shard " + shard, correlationId));
+            }
+        }
+        if (serverState.getServerRole() != ServerRole.LEADER) {
+            return CompletableFuture.completedFuture(redirect("", correlationId));
+        }
+        String[] results = new String[size];
+        OrderCommand[] valid = new OrderCommand[size];
+        int[] positions = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (batch.isValid(i)) {
+                OrderCommand command = batch.get(i);
+                command.setCorrelationId(0);
+                positions[count] = i;
+                valid[count++] = command;
+            } else {
+                results[i] = INVALID_BATCH_ENTRY;
+            }
+        }
+        if (count == 0) {
+            return CompletableFuture.completedFuture(response(MessageType.RESPONSE,
+                    OrderBatch.formatResults(results), correlationId));
+        }
+        ByteBuffer entry = ByteBuffer.allocate(OrderEntryEncoder.maxBatchLength(count));
+        OrderEntryEncoder.encodeBatch(valid, count, 0, entry);
+        int submitted = count;
+        return replicationManager.submit(Arrays.copyOf(entry.array(), entry.position())).handle((reports, error) -> {
+            for (int i = 0; i < submitted; i++) {
+                results[positions[i]] = error == null
+                        ? "Order processed: " + reports.get(i)
+                        : "Erro ao processar ordem: " + error.getMessage();
             }
+            return response(MessageType.RESPONSE, OrderBatch.formatResults(results), correlationId);
+        });
+    }
+
+    /**
+     * Consultas ao livro, servidas pelo estado aplicado deste nó sem passar pelo log. O
+     * cliente escolhe o atraso aceito: sem limite explícito, a leitura é linearizável e só
+     * o líder com lease a atende; com limite em milissegundos ou em entradas do log,
+     * qualquer réplica dentro dele responde. Fora do limite, a réplica devolve um
+     * {@link MessageType#REDIRECT} e o gateway repete a consulta no líder.
+     */
+    private CompletableFuture<Response> handleQuery(OrderCommand command, long correlationId) {
+        OrderAction action = command.getAction();
+        String symbol = command.getSymbol();
+        int levels = command.getQuantity();
+        long orderId = command.getOrderId();
+
+        CompletableFuture<Void> readable;
+        if (command.isLinearizableRead()) {
+            if (serverState.getServerRole() != ServerRole.LEADER) {
+                return CompletableFuture.completedFuture(redirect("", correlationId));
+            }
+            long readIndex = replicationManager.leaseReadIndex();
+            if (readIndex < 0) {
+                return CompletableFuture.completedFuture(response(MessageType.RESPONSE,
+                        "Erro: Líder sem lease da maioria; tente novamente", correlationId));
+            }
+            readable = replicationManager.whenApplied(readIndex)
+                    .orTimeout(ReplicationManager.LEASE_MILLIS, TimeUnit.MILLISECONDS);
         } else {
-            System.out.println("Formato de ordem inválido: " + orderMessage);
+            ReplicationManager.ReadPoint point = replicationManager.readPoint();
+            long lagMillis = System.currentTimeMillis() - point.asOfMillis();
+            if (command.getMaxLagEntries() >= 0) {
+                // sem notícias do líder não há como saber quantas entradas faltam
+                long lagEntries = point.commitIndex() - replicationManager.getAppliedIndex();
+                if (lagMillis >= ReplicationManager.LEADER_TIMEOUT_MILLIS || lagEntries > command.getMaxLagEntries()) {
+                    return CompletableFuture.completedFuture(stale(correlationId));
+                }
+                readable = CompletableFuture.completedFuture(null);
+            } else {
+                // o estado fica tão atual quanto o ponto de leitura depois de aplicá-lo
+                long budget = command.getMaxLagMillis() - lagMillis;
+                if (budget <= 0) {
+                    return CompletableFuture.completedFuture(stale(correlationId));
+                }
+                readable = replicationManager.whenApplied(point.commitIndex()).orTimeout(budget, TimeUnit.MILLISECONDS);
+            }
+        }
+        return readable.thenCompose(ignored -> {
+            long applied = replicationManager.getAppliedIndex();
+            CompletableFuture<String> result = switch (action) {
+                case TOP_OF_BOOK -> matchingEngine.depth(symbol, 1).thenApply(depth -> "Top of book: " + depth);
+                case DEPTH -> matchingEngine.depth(symbol, levels).thenApply(depth -> "Depth: " + depth);
+                default -> matchingEngine.orderStatus(symbol, orderId).thenApply(report -> report == null
+                        ? "Order status: ordem " + orderId + " não está no livro de " + symbol
+                        : "Order status: " + report);
+            };
+            return result.thenApply(text -> response(MessageType.RESPONSE,
+                    text + " [nó " + serverId + ", aplicado até " + applied + "]", correlationId));
+        }).exceptionally(error -> error instanceof TimeoutException || error.getCause() instanceof TimeoutException
+                ? stale(correlationId)
+                : response(MessageType.RESPONSE, "Erro na consulta: " + error.getMessage(), correlationId));
+    }
+
+    // réplica fora do limite de atraso: o líder, ou ninguém, pode atender
+    private Response stale(long correlationId) {
+        if (serverState.getServerRole() == ServerRole.LEADER) {
+            return response(MessageType.RESPONSE, "Erro: Líder sem contato recente com a maioria", correlationId);
+        }
+        return redirect("Réplica fora do limite de atraso; ", correlationId);
+    }
+
+    private Response redirect(String reason, long correlationId) {
+        int leaderId = serverState.getLeaderId();
+        String hint = leaderId == -1 ? "Erro: Nenhum líder eleito" : reason + "Redirecionar para o líder " + leaderId;
+        return response(MessageType.REDIRECT, hint, correlationId);
+    }
+
+    // respostas levam o líder e o grupo, que o gateway usa para rotear as próximas ordens
+    private Response response(MessageType type, String content, long correlationId) {
+        Response response = new Response(type, serverState.getCurrentGeneration(), serverId,
+                serverState.getLeaderId(), content, correlationId);
+        response.setShard(shard);
+        return response;
+    }
+
+    // busca o snapshot no líder pela porta de transferência e o instala ao terminar
+    // o append confere o conflito por conta própria, em ReplicationManager.handleAppendEntries
+    private boolean acceptLeaderContact(Message message) {
+        if (heartbeatManager.handleHeartbeat(message)) {
+            return true;
+        }
+        if (serverState.getServerRole() == ServerRole.LEADER && message.getGeneration() == serverState.getCurrentGeneration()) {
+            replicationManager.rivalLeader(message);
+        }
+        return false;
+    }
+
+    private void handleInstallSnapshot(InstallSnapshot install) {
+        if (install.getSnapshotIndex() <= replicationManager.getCommitIndex()) {
+            return;
+        }
+        if (snapshotTransfer == null) {
+            System.out.println("Líder oferece o snapshot " + install.getSnapshotIndex() + ", mas este nó está sem journal");
+            return;
         }
+        InetSocketAddress leader = nodeAddresses.get(install.getSenderId());
+        snapshotTransfer.fetch(new InetSocketAddress(leader.getHostString(), leader.getPort() + SnapshotTransfer.PORT_OFFSET),
+                install.getSnapshotIndex(), this::installSnapshot);
     }
 
-    private Order parseOrder(String orderDetails) {
+    // numa falha o log não avança, e o líder volta a oferecer o snapshot no próximo aviso
+    private void installSnapshot(SnapshotStore.Snapshot snapshot) {
+        boolean installed;
         try {
-            StringTokenizer tokenizer = new StringTokenizer(orderDetails.trim(), ";");
+            installed = replicationManager.installSnapshot(snapshot.index(), snapshot.generation(), () -> {
+                matchingEngine.restoreSnapshot(snapshot.body());
+                lastSnapshotIndex = snapshot.index();
+            });
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao instalar o snapshot " + snapshot.index() + ": " + e.getMessage());
+            return;
+        }
+        if (!installed) {
+            return;
+        }
+        replicationManager.setLatestSnapshot(snapshot.index());
+        try {
+            journal.deleteSegmentsThrough(snapshot.index());
+        } catch (IOException e) {
+            System.err.println("Erro ao apagar segmentos do journal: " + e.getMessage());
+        }
+        System.out.println("Snapshot " + snapshot.index() + " instalado; replicação continua a partir dele");
+    }
+
+    // entradas e commits do log replicado vão para o journal local, com o fsync em grupo
+    private static ReplicationManager.LogStore journalStore(Journal journal) {
+        return new ReplicationManager.LogStore() {
+            @Override
+            public CompletableFuture<Void> append(long index, int generation, byte[] entry) {
+                return journal.appendCommand(index, generation, entry);
+            }
 
-            if (tokenizer.countTokens() != 4) {
-                System.out.println("Formato de ordem inválido: " + orderDetails);
-                return null;
+            @Override
+            public void commit(long index) {
+                journal.appendCommit(index);
             }
+        };
+    }
+
+    // aplica a entrada comitada, que já está em disco na maioria dos nós
+    private CompletableFuture<List<ExecutionReport>> apply(long index, int generation, byte[] entry) {
+        CompletableFuture<List<ExecutionReport>> applied = execute(entry);
+        if (journal != null && snapshotInterval > 0 && index - lastSnapshotIndex >= snapshotInterval && !snapshotInProgress) {
+            takeSnapshot(index, generation);
+        }
+        return applied;
+    }
 
-            String type = tokenizer.nextToken().trim();
-            String symbol = tokenizer.nextToken().trim();
-            int quantity = Integer.parseInt(tokenizer.nextToken().trim());
-            double price = Double.parseDouble(tokenizer.nextToken().trim());
+    /**
+     * Captura os livros logo após a entrada {@code index} (a cópia roda nas threads de
+     * matching, entre dois comandos) e grava o arquivo em segundo plano. Com o snapshot
+     * em disco, os segmentos do journal que ele cobre são apagados e o log em memória
+     * descarta o que o snapshot anterior já cobria.
+     */
+    private void takeSnapshot(long index, int generation) {
+        snapshotInProgress = true;
+        long previousSnapshot = lastSnapshotIndex;
+        long started = System.nanoTime();
+        matchingEngine.captureSnapshot().thenAcceptAsync(body -> {
+            try {
+                snapshots.write(index, generation, body);
+                lastSnapshotIndex = index;
+                replicationManager.setLatestSnapshot(index);
+                // mantém em memória um intervalo de folga para seguidores pouco atrasados
+                log.compactTo(previousSnapshot);
+                int deleted = journal.deleteSegmentsThrough(index);
+                System.out.println("Snapshot " + index + " gravado (" + body.length + " bytes, "
+                        + (System.nanoTime() - started) / 1_000_000 + " ms); " + deleted + " segmentos do journal apagados");
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar snapshot " + index + ": " + e.getMessage());
+            }
+        }, snapshotWriter).whenComplete((ignored, error) -> {
+            if (error != null) {
+                System.err.println("Erro ao capturar snapshot " + index + ": " + error.getMessage());
+            }
+            snapshotInProgress = false;
+        });
+    }
+
+    /**
+     * Reconstrói o log replicado e os livros a partir do snapshot mais recente e do trecho
+     * do journal posterior a ele, antes de ouvir o cluster. Só as entradas até o último
+     * commit gravado são aplicadas; as seguintes ficam no log, para o líder confirmar ou
+     * substituir. Os trades gravados não são reaplicados: o matching os reproduz a partir
+     * dos comandos.
+     */
+    private void replayJournal() {
+        if (journal == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            SnapshotStore.Snapshot snapshot = snapshots.latest();
+            if (snapshot != null) {
+                matchingEngine.restoreSnapshot(snapshot.body());
+                log.resetTo(snapshot.index(), snapshot.generation());
+                lastSnapshotIndex = snapshot.index();
+                replicationManager.setLatestSnapshot(snapshot.index());
+                System.out.println("Snapshot " + snapshot.index() + " restaurado de " + snapshot.path());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao ler o snapshot", e);
+        }
+        long[] trades = new long[1];
+        long[] committed = {log.baseIndex()};
+        long applied;
+        AtomicLong outstanding = new AtomicLong();
+        replaying = true;
+        try {
+            journal.replay(new JournalReplayHandler() {
+                @Override
+                public void onCommand(long index, int generation, byte[] entry) {
+                    if (index <= log.baseIndex()) {
+                        // já coberto pelo snapshot
+                        return;
+                    }
+                    if (index <= log.lastIndex()) {
+                        // o líder substituiu esta entrada e as seguintes
+                        log.truncateFrom(index);
+                    } else if (index != log.lastIndex() + 1) {
+                        throw new IllegalStateException("Journal fora de sequência: índice " + index
+                                + " após " + log.lastIndex());
+                    }
+                    log.append(generation, entry);
+                }
+
+                @Override
+                public void onCommit(long index) {
+                    committed[0] = Math.max(committed[0], index);
+                }
+
+                @Override
+                public void onTrade(String symbol, long tradeSequence, long aggressorId, long passiveId,
+                                    long priceTicks, int quantity) {
+                    trades[0]++;
+                }
+            });
+            applied = Math.min(committed[0], log.lastIndex());
+            for (long index = log.baseIndex() + 1; index <= applied; index++) {
+                outstanding.incrementAndGet();
+                execute(log.entryAt(index)).whenComplete((report, error) -> outstanding.decrementAndGet());
+            }
+            // no modo com shards os comandos ainda podem estar nos ring buffers
+            while (outstanding.get() > 0) {
+                Thread.onSpinWait();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao reler o journal", e);
+        } finally {
+            replaying = false;
+        }
+        replicationManager.restore(applied);
+        serverState.setCurrentGeneration(log.lastGeneration());
+        System.out.println("Journal: " + (log.lastIndex() - log.baseIndex()) + " comandos (" + (applied - log.baseIndex())
+                + " comitados) e " + trades[0] + " trades relidos em "
+                + (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+
+    // aplica uma entrada do log ao matching engine, no líder e nos seguidores
+    private CompletableFuture<List<ExecutionReport>> execute(byte[] entry) {
+        if (entry.length == 0) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        if (entry[0] == OrderEntryDecoder.BATCH_MAGIC) {
+            return executeBatch(entry);
+        }
+        if (!applyDecoder.decode(entry, 0, entry.length, applyCommand)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Entrada de log inválida"));
+        }
+        CompletableFuture<ExecutionReport> execution = switch (applyCommand.getAction()) {
+            case NEW -> matchingEngine.processOrder(applyCommand.toOrder());
+            case CANCEL -> matchingEngine.cancelOrder(applyCommand.getSymbolId(), applyCommand.getOrderId());
+            case AMEND -> matchingEngine.amendOrder(applyCommand.getSymbolId(), applyCommand.getOrderId(),
+                    applyCommand.getQuantity(), applyCommand.getPrice());
+            default -> CompletableFuture.failedFuture(new IllegalArgumentException("Consulta no log: " + applyCommand));
+        };
+        return execution.thenApply(List::of);
+    }
 
-            return new Order(symbol, OrderType.valueOf(type), quantity, price);
-        } catch (Exception e) {
-            System.out.println("Erro ao processar ordem: " + orderDetails);
-            return null;
+    // o líder só grava no log entradas válidas; uma inválida aqui é log corrompido
+    private CompletableFuture<List<ExecutionReport>> executeBatch(byte[] entry) {
+        if (!applyDecoder.decodeBatch(entry, 0, entry.length, applyBatch) || applyBatch.validCount() != applyBatch.size()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Lote de log inválido"));
+        }
+        List<BookCommand> commands = new ArrayList<>(applyBatch.size());
+        for (int i = 0; i < applyBatch.size(); i++) {
+            OrderCommand command = applyBatch.get(i);
+            commands.add(switch (command.getAction()) {
+                case CANCEL -> BookCommand.cancel(command.getSymbolId(), command.getOrderId());
+                case AMEND -> BookCommand.amend(command.getSymbolId(), command.getOrderId(),
+                        command.getQuantity(), command.getPrice());
+                default -> BookCommand.newOrder(command.toOrder());
+            });
         }
+        return matchingEngine.processBatch(commands);
     }
     
     public static void main(String[] args) {
@@ -130,34 +641,130 @@ public class Server implements MessageHandler, OrderHandler, FailureListener, Le
 
         String protocol = args[0].toLowerCase();
         int serverId = Integer.parseInt(args[1]);
+        String gatewayProperty = System.getProperty("gateway", "none");
+        if (!protocol.equals("udp") && !gatewayProperty.equalsIgnoreCase("none")) {
+            System.out.println("O gateway encaminha ordens por UDP: use o protocolo udp ou -Dgateway=none.");
+            return;
+        }
+        int[] nodeIds = Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).distinct().sorted().toArray();
+
+        // -Dcluster.shards: grupos de replicação independentes, cada um com parte dos símbolos
+        int shardCount = Integer.getInteger("cluster.shards", 1);
+        if (shardCount < 1 || shardCount > ShardMap.MAX_SHARDS) {
+            System.out.println("cluster.shards deve estar entre 1 e " + ShardMap.MAX_SHARDS);
+            return;
+        }
+
+        // -Dcodec=java mantém a serialização Java para comparação
+        MessageCodec codec = MessageCodecs.forName(System.getProperty("codec", "binary"));
 
-        Map<Integer, InetSocketAddress> nodeAddresses = new HashMap<>();
+        // -Dorderbook=heap mantém o livro antigo para comparação
+        Supplier<OrderBook> bookFactory = switch (System.getProperty("orderbook", "ladder").toLowerCase()) {
+            case "heap" -> PriorityQueueOrderBook::new;
+            default -> LadderOrderBook::new;
+        };
+
+        System.out.println("Servidor iniciado com protocolo: " + protocol.toUpperCase());
+        System.out.println("ServerId: " + serverId);
 
-        for (int i = 1; i < args.length; i++) {
-            int nodeId = Integer.parseInt(args[i]);
-            if (nodeId != serverId) {
-                int port = nodeId + PORT;
-                nodeAddresses.put(nodeId, new InetSocketAddress("localhost", port));
+        // -Deventlog.dir=none desliga o log de eventos; EventLogReader decodifica os arquivos
+        String eventLogDir = System.getProperty("eventlog.dir", "eventlog/server-" + serverId);
+        if (!eventLogDir.equalsIgnoreCase("none")) {
+            try {
+                EventLog.start(Path.of(eventLogDir));
+            } catch (IOException e) {
+                System.err.println("Erro ao abrir o log de eventos em " + eventLogDir + ": " + e.getMessage());
             }
         }
 
-        CommunicationStrategy strategy = null;
+        // -Dmetrics.port: texto das métricas em /metrics, por padrão na 10100 + serverId; none desliga
+        Metrics.startHttpFromProperty(METRICS_BASE_PORT + serverId);
 
-        switch (protocol) {
-            case "udp" -> strategy = new UdpCommunicationStrategy();
-            case "tcp" -> strategy = new TcpCommunicationStrategy();
-            case "http" -> strategy = new HttpCommunicationStrategy();
-            default -> System.out.println("Protocolo não suportado.");
-        }
+        for (int shard = 0; shard < shardCount; shard++) {
+            Map<Integer, InetSocketAddress> nodeAddresses = new HashMap<>();
+            for (int nodeId : nodeIds) {
+                if (nodeId != serverId) {
+                    nodeAddresses.put(nodeId, new InetSocketAddress("localhost", ShardMap.port(shard, nodeId)));
+                }
+            }
 
-        MatchingEngine matchingEngine = new MatchingEngine(new OrderBookService());
-        
-        Server server = new Server(matchingEngine, serverId, nodeAddresses, strategy);
+            CommunicationStrategy strategy;
+            switch (protocol) {
+                case "udp" -> strategy = new UdpCommunicationStrategy(codec);
+                case "tcp" -> strategy = new TcpCommunicationStrategy(codec);
+                case "nio" -> strategy = new NioCommunicationStrategy(codec);
+                case "http" -> strategy = new HttpCommunicationStrategy(codec);
+                default -> {
+                    System.out.println("Protocolo não suportado.");
+                    return;
+                }
+            }
 
-        System.out.println("Servidor iniciado com protocolo: " + protocol.toUpperCase());
-        System.out.println("ServerId: " + serverId);
-        System.out.println("NodeAddresses: " + nodeAddresses);
-        
-        server.start();
+            strategy = new MeteredCommunicationStrategy(strategy, nodeAddresses);
+
+            // -Dmatching=sharded usa threads de matching por shard de símbolos
+            MatchingEngine matchingEngine;
+            if ("sharded".equalsIgnoreCase(System.getProperty("matching", "direct"))) {
+                int shards = Integer.getInteger("matching.shards", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+                int ringSize = Integer.getInteger("matching.ringSize", 4096);
+                matchingEngine = new MatchingEngine(bookFactory, shards, ringSize);
+            } else {
+                matchingEngine = new MatchingEngine(new OrderBookService(bookFactory));
+            }
+
+            // -Djournal.dir=none mantém o estado só em memória; cada grupo tem o próprio journal
+            Journal journal = null;
+            String journalDir = System.getProperty("journal.dir", "journal/server-" + serverId);
+            if (!journalDir.equalsIgnoreCase("none")) {
+                Path directory = shardCount == 1 ? Path.of(journalDir) : Path.of(journalDir, "shard-" + shard);
+                try {
+                    journal = Journal.open(directory,
+                            Integer.getInteger("journal.segmentSize", 64 * 1024 * 1024),
+                            Long.getLong("journal.fsyncMillis", 2),
+                            Integer.getInteger("journal.fsyncBytes", 1024 * 1024));
+                } catch (IOException e) {
+                    System.err.println("Erro ao abrir o journal em " + directory + ": " + e.getMessage());
+                    return;
+                }
+            }
+
+            Server server = new Server(matchingEngine, serverId, nodeAddresses, strategy, journal);
+            server.setShard(shard, shardCount, ShardMap.preferredLeader(shard, nodeIds));
+            // -Dsnapshot.interval: entradas do log entre snapshots dos livros (0 desliga)
+            server.setSnapshotInterval(Long.getLong("snapshot.interval", 100_000));
+
+            // -Dmarketdata=grupo:porta do feed L2 (o conflacionado usa a porta seguinte); none desliga.
+            // Os grupos publicam no mesmo feed: os símbolos não se repetem entre eles
+            String marketData = System.getProperty("marketdata", "239.255.0.1:9600");
+            if (!marketData.equalsIgnoreCase("none")) {
+                try {
+                    int separator = marketData.lastIndexOf(':');
+                    String name = System.getProperty("marketdata.interface");
+                    server.publishMarketData(new MarketDataPublisher(
+                            new InetSocketAddress(InetAddress.getByName(marketData.substring(0, separator)),
+                                    Integer.parseInt(marketData.substring(separator + 1))),
+                            name == null ? NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress())
+                                    : NetworkInterface.getByName(name),
+                            Long.getLong("marketdata.snapshotMillis", 1000),
+                            Long.getLong("marketdata.conflateMillis", 100)));
+                } catch (IOException e) {
+                    System.err.println("Erro ao abrir o feed de market data: " + e.getMessage());
+                }
+            }
+
+            // o gateway acompanha a liderança pelos heartbeats do líder; -Dgateway=none desliga.
+            // Ele encaminha as ordens por UDP, então só servidores udp usam um gateway
+            String gateway = System.getProperty("gateway", protocol.equals("udp") ? "localhost:" + GATEWAY_PORT : "none");
+            if (!gateway.equalsIgnoreCase("none")) {
+                int separator = gateway.lastIndexOf(':');
+                server.addObserver(new InetSocketAddress(gateway.substring(0, separator),
+                        Integer.parseInt(gateway.substring(separator + 1))));
+            }
+
+            System.out.println("Shard " + shard + "/" + shardCount + " na porta " + ShardMap.port(shard, serverId)
+                    + ", NodeAddresses: " + nodeAddresses);
+            // o temporizador de eleição ocupa a thread de start, então cada grupo sobe na própria thread
+            new Thread(server::start, "shard-" + shard).start();
+        }
     }
 }
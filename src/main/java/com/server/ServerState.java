@@ -13,8 +13,11 @@ public class ServerState {
     private volatile ServerRole serverRole = ServerRole.FOLLOWER;
     
     private final AtomicInteger leaderId = new AtomicInteger(-1);
+    // última mensagem aceita de um líder (heartbeat, append ou aviso de snapshot)
+    private volatile long leaderContactMillis;
 
-    private final Map<Integer, Integer> votedForAtGeneration = new ConcurrentHashMap<>();
+    // geração -> nó que recebeu o voto deste nó nela; no máximo um por geração
+    private final Map<Integer, Integer> votedFor = new ConcurrentHashMap<>();
     private final AtomicInteger votes = new AtomicInteger(0);
     
     public int getLeaderId() {
@@ -25,6 +28,14 @@ public class ServerState {
         this.leaderId.set(leaderId);    
     }
     
+    public long getLeaderContactMillis() {
+        return leaderContactMillis;
+    }
+
+    public void setLeaderContactMillis(long millis) {
+        this.leaderContactMillis = millis;
+    }
+
     public boolean isLeader() {
         return isLeader.get();
     }
@@ -51,11 +62,20 @@ public class ServerState {
     }
 
 
-    public Map<Integer, Integer> getVotedForAtGeneration() {
-        return votedForAtGeneration;
-    }
-    public void addVotedForAtGeneration(int nodeId, int generation) {
-        votedForAtGeneration.put(nodeId, generation);
+    /**
+     * Registra o voto deste nó em {@code generation}, se ele ainda não votou nela. Chamado
+     * com o monitor do estado, como a troca de geração.
+     *
+     * @return {@code true} se o voto é para {@code nodeId} (novo ou repetido)
+     */
+    public boolean voteFor(int generation, int nodeId) {
+        Integer previous = votedFor.putIfAbsent(generation, nodeId);
+        if (previous == null) {
+            // gerações anteriores não recebem mais votos
+            votedFor.keySet().removeIf(votedGeneration -> votedGeneration < generation);
+            return true;
+        }
+        return previous == nodeId;
     }
 
     public int getVotes() {
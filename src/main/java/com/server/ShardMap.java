@@ -0,0 +1,39 @@
+package com.server;
+
+/**
+ * Particionamento dos símbolos em grupos de replicação independentes. Cada grupo tem
+ * eleição, heartbeat, log, journal e livros próprios; os nós de um grupo conversam em
+ * portas só dele: o nó {@code i} do grupo {@code g} escuta em
+ * {@code BASE_PORT + g * PORT_STRIDE + i}. Com um único grupo as portas são as de sempre.
+ */
+public final class ShardMap {
+    public static final int BASE_PORT = 9001;
+    // até 20 nós por grupo; 25 grupos cabem antes das portas de snapshot (porta + 500)
+    public static final int PORT_STRIDE = 20;
+    public static final int MAX_SHARDS = 25;
+
+    private ShardMap() {
+    }
+
+    /**
+     * Grupo dono do símbolo. Gateway e servidores precisam usar o mesmo número de grupos.
+     */
+    public static int shardFor(String symbol, int shardCount) {
+        int h = symbol.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shardCount);
+    }
+
+    public static int port(int shard, int nodeId) {
+        return BASE_PORT + shard * PORT_STRIDE + nodeId;
+    }
+
+    /**
+     * Nó que tenta primeiro a liderança do grupo, para os líderes ficarem espalhados
+     * pelos processos em vez de concentrados no que ganhar todas as eleições.
+     *
+     * @param nodeIds ids de todos os nós do cluster, em ordem crescente
+     */
+    public static int preferredLeader(int shard, int[] nodeIds) {
+        return nodeIds[shard % nodeIds.length];
+    }
+}
@@ -0,0 +1,77 @@
+package com.service;
+
+import com.model.ExecutionReport;
+import com.model.Order;
+import com.model.OrderAction;
+import com.model.SymbolDirectory;
+
+/**
+ * Um comando de um lote aplicado por {@link MatchingEngine#processBatch}. O resultado fica
+ * no próprio comando, gravado por quem o executa e lido depois que o lote completa.
+ */
+public final class BookCommand {
+    private final OrderAction action;
+    private final Order order;
+    private final int symbolId;
+    private final long orderId;
+    private final int quantity;
+    private final double price;
+    private ExecutionReport report;
+
+    private BookCommand(OrderAction action, Order order, int symbolId, long orderId, int quantity, double price) {
+        this.action = action;
+        this.order = order;
+        this.symbolId = symbolId;
+        this.orderId = orderId;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    public static BookCommand newOrder(Order order) {
+        return new BookCommand(OrderAction.NEW, order, order.getSymbolId(), 0, 0, 0.0);
+    }
+
+    public static BookCommand cancel(int symbolId, long orderId) {
+        return new BookCommand(OrderAction.CANCEL, null, symbolId, orderId, 0, 0.0);
+    }
+
+    public static BookCommand amend(int symbolId, long orderId, int quantity, double price) {
+        return new BookCommand(OrderAction.AMEND, null, symbolId, orderId, quantity, price);
+    }
+
+    public OrderAction getAction() {
+        return action;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public String getSymbol() {
+        return SymbolDirectory.symbol(symbolId);
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public ExecutionReport getReport() {
+        return report;
+    }
+
+    void setReport(ExecutionReport report) {
+        this.report = report;
+    }
+}
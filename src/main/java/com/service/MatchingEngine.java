@@ -1,16 +1,304 @@
 package com.service;
 
+import com.model.BookListener;
+import com.model.BookSnapshot;
+import com.model.ExecutionReport;
+import com.model.MarketDepth;
 import com.model.Order;
+import com.model.OrderBook;
+import com.model.SymbolDirectory;
+import com.model.TradeListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class MatchingEngine {
     public OrderBookService orderBookService;
+    private final MatchingShard[] shards;
+    private final AtomicLong nextOrderId = new AtomicLong();
     
     public MatchingEngine(OrderBookService orderBookService) {
         this.orderBookService = orderBookService;
+        this.shards = null;
+    }
+
+    /**
+     * Modo com shards: os símbolos são distribuídos pelo id do {@link SymbolDirectory} entre
+     * {@code shardCount} threads de matching, cada uma com seus próprios livros e seu ring buffer.
+     */
+    public MatchingEngine(Supplier<OrderBook> bookFactory, int shardCount, int ringCapacity) {
+        this.shards = new MatchingShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new MatchingShard(i, new OrderBookService(bookFactory, false), ringCapacity);
+            shards[i].start();
+        }
     }
     
-    public void processOrder(Order order) {
-        orderBookService.addOrder(order);
+    public CompletableFuture<ExecutionReport> processOrder(Order order) {
+        order.setOrderId(nextOrderId.incrementAndGet());
+        if (shards == null) {
+            return CompletableFuture.completedFuture(orderBookService.addOrder(order));
+        }
+        return shards[shardFor(order.getSymbolId())].submit(order);
+    }
+
+    public CompletableFuture<ExecutionReport> cancelOrder(int symbolId, long orderId) {
+        if (shards == null) {
+            return CompletableFuture.completedFuture(orderBookService.cancelOrder(symbolId, orderId));
+        }
+        return shards[shardFor(symbolId)].submitCancel(symbolId, orderId);
+    }
+
+    public CompletableFuture<ExecutionReport> amendOrder(int symbolId, long orderId, int quantity, double price) {
+        if (shards == null) {
+            return CompletableFuture.completedFuture(orderBookService.amendOrder(symbolId, orderId, quantity, price));
+        }
+        return shards[shardFor(symbolId)].submitAmend(symbolId, orderId, quantity, price);
+    }
+
+    /**
+     * Aplica os comandos de um lote, na ordem dele, com um só despacho por livro: no modo
+     * direto, cada símbolo roda com uma única aquisição do monitor do livro; no modo com
+     * shards, cada thread de matching recebe a sua parte do lote num único slot. Os ids
+     * das ordens novas são atribuídos aqui, na ordem do lote, como em {@link #processOrder}.
+     *
+     * @return os relatórios na ordem dos comandos
+     */
+    public CompletableFuture<List<ExecutionReport>> processBatch(List<BookCommand> commands) {
+        for (BookCommand command : commands) {
+            if (command.getOrder() != null) {
+                command.getOrder().setOrderId(nextOrderId.incrementAndGet());
+            }
+        }
+        if (shards == null) {
+            orderBookService.executeBatch(commands);
+            return CompletableFuture.completedFuture(reports(commands));
+        }
+        List<List<BookCommand>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (BookCommand command : commands) {
+            byShard.get(shardFor(command.getSymbolId())).add(command);
+        }
+        List<CompletableFuture<Void>> dispatched = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            if (!byShard.get(i).isEmpty()) {
+                dispatched.add(shards[i].submitBatch(byShard.get(i)));
+            }
+        }
+        return CompletableFuture.allOf(dispatched.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> reports(commands));
+    }
+
+    private static List<ExecutionReport> reports(List<BookCommand> commands) {
+        List<ExecutionReport> reports = new ArrayList<>(commands.size());
+        for (BookCommand command : commands) {
+            reports.add(command.getReport());
+        }
+        return reports;
+    }
+
+    /**
+     * Retrato do topo do livro publicado após o último comando concluído nele. Lido por
+     * uma referência volátil: não bloqueia o matching e serve a qualquer número de
+     * threads de consulta ou monitoração.
+     */
+    public BookSnapshot getBookSnapshot(String symbol) {
+        if (shards == null) {
+            return orderBookService.bookSnapshot(symbol);
+        }
+        return shards[shardFor(symbol)].getOrderBookService().bookSnapshot(symbol);
+    }
+
+    /**
+     * Níveis agregados do livro, até {@code levels} por lado, refletindo todos os comandos
+     * submetidos antes desta chamada. No modo com shards a leitura entra na fila da thread
+     * de matching do símbolo, como um comando, e é só a leitura do retrato; quem aceita
+     * ver o último comando concluído usa {@link #getBookSnapshot} direto.
+     */
+    public CompletableFuture<MarketDepth> depth(String symbol, int levels) {
+        if (shards == null) {
+            return CompletableFuture.completedFuture(orderBookService.depth(symbol, levels));
+        }
+        return shards[shardFor(symbol)].read(service -> service.depth(symbol, levels));
+    }
+
+    /**
+     * Estado de uma ordem em repouso; completa com {@code null} se ela não estiver no livro.
+     */
+    public CompletableFuture<ExecutionReport> orderStatus(String symbol, long orderId) {
+        if (shards == null) {
+            return CompletableFuture.completedFuture(orderBookService.orderStatus(symbol, orderId));
+        }
+        return shards[shardFor(symbol)].read(service -> service.orderStatus(symbol, orderId));
+    }
+
+    /**
+     * Registra um consumidor das execuções (resposta, market data, journal).
+     * O listener roda na thread de matching e não deve bloquear.
+     */
+    public void addTradeListener(TradeListener listener) {
+        if (shards == null) {
+            orderBookService.addTradeListener(listener);
+            return;
+        }
+        for (MatchingShard shard : shards) {
+            shard.getOrderBookService().addTradeListener(listener);
+        }
+    }
+
+    /**
+     * Registra um consumidor das alterações de nível dos livros (market data).
+     * O listener roda na thread de matching e não deve bloquear.
+     */
+    public void addBookListener(BookListener listener) {
+        if (shards == null) {
+            orderBookService.addBookListener(listener);
+            return;
+        }
+        for (MatchingShard shard : shards) {
+            shard.getOrderBookService().addBookListener(listener);
+        }
+    }
+
+    /**
+     * Entrega a profundidade de todos os livros, até {@code levels} por lado, na thread
+     * que escreve em cada livro: a profundidade de um símbolo fica entre as alterações de
+     * nível publicadas antes e depois dela.
+     */
+    public CompletableFuture<Void> forEachDepth(int levels, Consumer<MarketDepth> consumer) {
+        if (shards == null) {
+            orderBookService.forEachDepth(levels, consumer);
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<?>[] done = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            done[i] = shards[i].read(service -> {
+                service.forEachDepth(levels, consumer);
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(done);
+    }
+
+    /**
+     * Captura o estado de todos os livros sem pausar o matching: cada thread de matching
+     * copia os próprios livros entre dois comandos, e o snapshot reflete exatamente os
+     * comandos submetidos antes desta chamada. No modo direto a cópia roda aqui mesmo,
+     * na thread que aplica os comandos.
+     * <pre>
+     * nextOrderId long, sectionCount int, seções de {@link OrderBookService#snapshot()}
+     * </pre>
+     */
+    public CompletableFuture<byte[]> captureSnapshot() {
+        long orderId = nextOrderId.get();
+        if (shards == null) {
+            try {
+                return CompletableFuture.completedFuture(assemble(orderId, new byte[][]{orderBookService.snapshot()}));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        CompletableFuture<?>[] sections = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            sections[i] = shards[i].snapshot();
+        }
+        return CompletableFuture.allOf(sections).thenApply(ignored -> {
+            byte[][] bytes = new byte[sections.length][];
+            for (int i = 0; i < sections.length; i++) {
+                bytes[i] = (byte[]) sections[i].join();
+            }
+            return assemble(orderId, bytes);
+        });
+    }
+
+    private static byte[] assemble(long orderId, byte[][] sections) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeLong(orderId);
+            out.writeInt(sections.length);
+            for (byte[] section : sections) {
+                out.write(section);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Substitui todos os livros pelos de um snapshot de {@link #captureSnapshot()} e espera
+     * a troca terminar. Os livros vão para o shard do símbolo na configuração atual, que
+     * pode diferir da que gravou. O chamador garante que nenhum comando seja submetido
+     * durante a troca.
+     *
+     * @throws IllegalStateException se algum shard falhar ao trocar os livros; os livros
+     *                               ficam inconsistentes até uma nova restauração
+     */
+    public void restoreSnapshot(byte[] snapshot) {
+        long orderId;
+        List<List<OrderBookService.BookState>> byShard = new ArrayList<>();
+        for (int i = 0; i < (shards == null ? 1 : shards.length); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            orderId = in.readLong();
+            int sections = in.readInt();
+            for (int s = 0; s < sections; s++) {
+                int books = in.readInt();
+                for (int b = 0; b < books; b++) {
+                    OrderBookService.BookState book = OrderBookService.readBook(in);
+                    byShard.get(shards == null ? 0 : shardFor(SymbolDirectory.id(book.symbol()))).add(book);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Snapshot inválido", e);
+        }
+        if (shards == null) {
+            orderBookService.restore(byShard.get(0));
+        } else {
+            CompletableFuture<?>[] restored = new CompletableFuture<?>[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                restored[i] = shards[i].restore(byShard.get(i));
+            }
+            try {
+                CompletableFuture.allOf(restored).join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Erro ao restaurar os livros nos shards: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        nextOrderId.set(orderId);
+    }
+
+    // ids densos se espalham sozinhos entre os shards
+    private int shardFor(int symbolId) {
+        return Math.floorMod(symbolId, shards.length);
+    }
+
+    // consultas não registram símbolos; um desconhecido cai em qualquer shard e não acha livro
+    private int shardFor(String symbol) {
+        return shardFor(SymbolDirectory.find(symbol));
+    }
+
+    public void shutdown() {
+        if (shards != null) {
+            for (MatchingShard shard : shards) {
+                shard.stop();
+            }
+        }
     }
     
 }
@@ -0,0 +1,167 @@
+package com.service;
+
+import com.metrics.OrderStage;
+import com.model.ExecutionReport;
+import com.model.Order;
+import com.model.OrderAction;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Thread de matching que é dona exclusiva dos livros dos símbolos do seu shard.
+ * Só ela escreve nos livros, então o matching roda sem locks.
+ */
+final class MatchingShard implements Runnable, OrderRingBuffer.SlotHandler {
+    private static final int SPINS_BEFORE_PARK = 1000;
+    private static final long PARK_NANOS = 1_000_000;
+
+    private final OrderBookService orderBookService;
+    private final OrderRingBuffer ringBuffer;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    MatchingShard(int shardId, OrderBookService orderBookService, int ringCapacity) {
+        this.orderBookService = orderBookService;
+        this.ringBuffer = new OrderRingBuffer(ringCapacity);
+        this.thread = new Thread(this, "matching-" + shardId);
+        this.thread.setDaemon(true);
+        this.ringBuffer.setConsumer(thread);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    OrderBookService getOrderBookService() {
+        return orderBookService;
+    }
+
+    CompletableFuture<ExecutionReport> submit(Order order) {
+        CompletableFuture<ExecutionReport> completion = new CompletableFuture<>();
+        ringBuffer.publish(OrderAction.NEW, order, order.getSymbolId(), order.getOrderId(), 0, 0.0, completion);
+        return completion;
+    }
+
+    CompletableFuture<ExecutionReport> submitCancel(int symbolId, long orderId) {
+        CompletableFuture<ExecutionReport> completion = new CompletableFuture<>();
+        ringBuffer.publish(OrderAction.CANCEL, null, symbolId, orderId, 0, 0.0, completion);
+        return completion;
+    }
+
+    CompletableFuture<ExecutionReport> submitAmend(int symbolId, long orderId, int quantity, double price) {
+        CompletableFuture<ExecutionReport> completion = new CompletableFuture<>();
+        ringBuffer.publish(OrderAction.AMEND, null, symbolId, orderId, quantity, price, completion);
+        return completion;
+    }
+
+    /**
+     * Publica a parte de um lote que cabe a este shard num único slot do ring buffer.
+     */
+    CompletableFuture<Void> submitBatch(List<BookCommand> commands) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        long publishing = System.nanoTime();
+        ringBuffer.publishTask(() -> {
+            OrderStage.QUEUE_WAIT.record(publishing);
+            try {
+                orderBookService.executeBatch(commands);
+                completion.complete(null);
+            } catch (RuntimeException e) {
+                completion.completeExceptionally(e);
+            }
+        });
+        return completion;
+    }
+
+    @Override
+    public void run() {
+        int idleSpins = 0;
+        while (running) {
+            if (ringBuffer.drain(this) > 0) {
+                idleSpins = 0;
+            } else if (++idleSpins < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else {
+                ringBuffer.parkConsumer(PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Roda uma leitura dos livros na thread de matching, depois dos comandos já submetidos.
+     */
+    <T> CompletableFuture<T> read(Function<OrderBookService, T> query) {
+        CompletableFuture<T> completion = new CompletableFuture<>();
+        ringBuffer.publishTask(() -> {
+            try {
+                completion.complete(query.apply(orderBookService));
+            } catch (RuntimeException e) {
+                completion.completeExceptionally(e);
+            }
+        });
+        return completion;
+    }
+
+    /**
+     * Snapshot dos livros do shard, copiado pela thread de matching entre dois comandos:
+     * reflete tudo o que foi submetido antes desta chamada.
+     */
+    CompletableFuture<byte[]> snapshot() {
+        CompletableFuture<byte[]> completion = new CompletableFuture<>();
+        ringBuffer.publishTask(() -> {
+            try {
+                completion.complete(orderBookService.snapshot());
+            } catch (RuntimeException e) {
+                completion.completeExceptionally(e);
+            }
+        });
+        return completion;
+    }
+
+    /**
+     * Substitui os livros do shard pelos de um snapshot, na thread de matching, depois
+     * dos comandos já submetidos.
+     */
+    CompletableFuture<Void> restore(List<OrderBookService.BookState> books) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        ringBuffer.publishTask(() -> {
+            try {
+                orderBookService.restore(books);
+                completion.complete(null);
+            } catch (RuntimeException e) {
+                completion.completeExceptionally(e);
+            }
+        });
+        return completion;
+    }
+
+    @Override
+    public void onSlot(OrderRingBuffer.Slot slot) {
+        if (slot.task != null) {
+            try {
+                slot.task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Erro em tarefa do shard: " + e.getMessage());
+            }
+            return;
+        }
+        OrderStage.QUEUE_WAIT.record(slot.publishedNanos);
+        try {
+            ExecutionReport report = switch (slot.action) {
+                case NEW -> orderBookService.addOrder(slot.order);
+                case CANCEL -> orderBookService.cancelOrder(slot.symbolId, slot.orderId);
+                case AMEND -> orderBookService.amendOrder(slot.symbolId, slot.orderId, slot.quantity, slot.price);
+                default -> throw new IllegalArgumentException("Ação sem efeito no livro: " + slot.action);
+            };
+            slot.completion.complete(report);
+        } catch (RuntimeException e) {
+            slot.completion.completeExceptionally(e);
+        }
+    }
+}
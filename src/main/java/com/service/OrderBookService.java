@@ -1,27 +1,439 @@
 package com.service;
 
+import com.metrics.OrderStage;
+import com.model.BookListener;
+import com.model.BookSnapshot;
+import com.model.ExecutionReport;
+import com.model.LadderOrderBook;
+import com.model.LevelAction;
+import com.model.MarketDepth;
 import com.model.Order;
 import com.model.OrderBook;
+import com.model.OrderStatus;
+import com.model.OrderType;
+import com.model.SymbolDirectory;
+import com.model.TradeEvent;
+import com.model.TradeListener;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * Livros de um conjunto de símbolos, num array indexado pelo id do {@link SymbolDirectory}:
+ * achar o livro de uma ordem é ler uma posição, sem hash nem comparação de Strings. O
+ * array cresce, sob o lock do serviço, quando aparece um id além do fim; como os ids são
+ * do processo inteiro, um serviço que só tem parte dos símbolos deixa posições vazias.
+ */
 public class OrderBookService {
-    private final ConcurrentHashMap<String, OrderBook> orderBooks;
+    // trocado inteiro ao crescer; cada posição é publicada com a semântica de volatile
+    private volatile AtomicReferenceArray<OrderBook> orderBooks = new AtomicReferenceArray<>(64);
+    private final Supplier<OrderBook> bookFactory;
+    private final boolean shared;
+    private volatile TradeListener[] tradeListeners = new TradeListener[0];
+    private volatile BookListener[] bookListeners = new BookListener[0];
 
     public OrderBookService() {
-        this.orderBooks = new ConcurrentHashMap<>();
+        this(LadderOrderBook::new);
     }
 
-    private OrderBook getOrderBook(String symbol) {
-        return orderBooks.computeIfAbsent(symbol, k -> new OrderBook());
+    public OrderBookService(Supplier<OrderBook> bookFactory) {
+        this(bookFactory, true);
     }
 
-    void addOrder(Order order) {
-        OrderBook orderBook = getOrderBook(order.getSymbol());
-        orderBook.addOrder(order);
-        System.out.println("ORDERS: " + orderBook.getBuyOrders());
+    /**
+     * @param shared {@code true} quando várias threads escrevem nos livros e cada
+     *               escrita precisa do monitor do livro; {@code false} quando uma única
+     *               thread de matching é dona deste serviço.
+     */
+    public OrderBookService(Supplier<OrderBook> bookFactory, boolean shared) {
+        this.bookFactory = bookFactory;
+        this.shared = shared;
+    }
+
+    private OrderBook getOrderBook(int symbolId) {
+        OrderBook orderBook = book(symbolId);
+        return orderBook != null ? orderBook : createOrderBook(symbolId);
+    }
+
+    // livro já criado, ou null; para as consultas, que não criam livros
+    private OrderBook book(int symbolId) {
+        AtomicReferenceArray<OrderBook> books = orderBooks;
+        return symbolId >= 0 && symbolId < books.length() ? books.get(symbolId) : null;
+    }
+
+    private OrderBook book(String symbol) {
+        return book(SymbolDirectory.find(symbol));
+    }
+
+    private synchronized OrderBook createOrderBook(int symbolId) {
+        if (symbolId < 0) {
+            if (SymbolDirectory.isFull()) {
+                throw new IllegalStateException("Diretório de símbolos cheio com " + SymbolDirectory.MAX_SYMBOLS
+                        + " símbolos (-Dsymbols.max): não há livro para símbolos novos");
+            }
+            throw new IllegalArgumentException("Símbolo inválido: só ASCII visível é aceito");
+        }
+        AtomicReferenceArray<OrderBook> books = orderBooks;
+        if (symbolId >= books.length()) {
+            AtomicReferenceArray<OrderBook> bigger = new AtomicReferenceArray<>(
+                    Math.max(books.length() * 2, Integer.highestOneBit(symbolId) << 1));
+            for (int i = 0; i < books.length(); i++) {
+                bigger.set(i, books.get(i));
+            }
+            orderBooks = books = bigger;
+        }
+        OrderBook orderBook = books.get(symbolId);
+        if (orderBook == null) {
+            orderBook = bookFactory.get();
+            orderBook.setTradeListener(this::publishTrade);
+            if (bookListeners.length > 0) {
+                orderBook.setBookListener(this::publishLevel);
+            }
+            books.set(symbolId, orderBook);
+        }
+        return orderBook;
+    }
+
+    public synchronized void addTradeListener(TradeListener listener) {
+        TradeListener[] listeners = Arrays.copyOf(tradeListeners, tradeListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        tradeListeners = listeners;
+    }
+
+    private void publishTrade(TradeEvent trade) {
+        for (TradeListener listener : tradeListeners) {
+            listener.onTrade(trade);
+        }
+    }
+
+    /**
+     * Registra um consumidor das alterações de nível dos livros. Só então os livros passam
+     * a acompanhar os níveis alterados por comando; deve ser chamado antes de os comandos
+     * começarem a chegar.
+     */
+    public synchronized void addBookListener(BookListener listener) {
+        BookListener[] listeners = Arrays.copyOf(bookListeners, bookListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        bookListeners = listeners;
+        AtomicReferenceArray<OrderBook> books = orderBooks;
+        for (int symbolId = 0; symbolId < books.length(); symbolId++) {
+            OrderBook orderBook = books.get(symbolId);
+            if (orderBook != null) {
+                orderBook.setBookListener(this::publishLevel);
+            }
+        }
+    }
+
+    private void publishLevel(String symbol, OrderType side, LevelAction action, long priceTicks, long quantity, int orderCount) {
+        for (BookListener listener : bookListeners) {
+            listener.onLevelUpdate(symbol, side, action, priceTicks, quantity, orderCount);
+        }
+    }
+
+    ExecutionReport addOrder(Order order) {
+        OrderBook orderBook = getOrderBook(order.getSymbolId());
+        long matching;
+        if (shared) {
+            long waiting = System.nanoTime();
+            synchronized (orderBook) {
+                matching = System.nanoTime();
+                orderBook.addOrder(order);
+            }
+            OrderStage.LOCK_WAIT.record(waiting, matching);
+        } else {
+            matching = System.nanoTime();
+            orderBook.addOrder(order);
+        }
+        OrderStage.MATCH.record(matching);
+        return ExecutionReport.of(order);
+    }
+
+    ExecutionReport cancelOrder(int symbolId, long orderId) {
+        OrderBook orderBook = getOrderBook(symbolId);
+        long matching;
+        Order cancelled;
+        if (shared) {
+            long waiting = System.nanoTime();
+            synchronized (orderBook) {
+                matching = System.nanoTime();
+                cancelled = orderBook.cancelOrder(orderId);
+            }
+            OrderStage.LOCK_WAIT.record(waiting, matching);
+        } else {
+            matching = System.nanoTime();
+            cancelled = orderBook.cancelOrder(orderId);
+        }
+        OrderStage.MATCH.record(matching);
+        return report(symbolId, orderId, cancelled);
+    }
+
+    ExecutionReport amendOrder(int symbolId, long orderId, int quantity, double price) {
+        OrderBook orderBook = getOrderBook(symbolId);
+        long matching;
+        Order amended;
+        if (shared) {
+            long waiting = System.nanoTime();
+            synchronized (orderBook) {
+                matching = System.nanoTime();
+                amended = orderBook.amendOrder(orderId, quantity, price);
+            }
+            OrderStage.LOCK_WAIT.record(waiting, matching);
+        } else {
+            matching = System.nanoTime();
+            amended = orderBook.amendOrder(orderId, quantity, price);
+        }
+        OrderStage.MATCH.record(matching);
+        return report(symbolId, orderId, amended);
+    }
+
+    /**
+     * Aplica um lote em ordem, agrupado por símbolo: os comandos de cada livro rodam com
+     * uma única aquisição do monitor dele. Entre símbolos diferentes a ordem não importa;
+     * dentro de um símbolo é a do lote.
+     */
+    void executeBatch(List<BookCommand> commands) {
+        Map<Integer, List<BookCommand>> bySymbol = new LinkedHashMap<>();
+        for (BookCommand command : commands) {
+            bySymbol.computeIfAbsent(command.getSymbolId(), symbolId -> new ArrayList<>()).add(command);
+        }
+        bySymbol.forEach(this::executeAll);
+    }
+
+    private void executeAll(int symbolId, List<BookCommand> commands) {
+        OrderBook orderBook = getOrderBook(symbolId);
+        long matching;
+        if (shared) {
+            long waiting = System.nanoTime();
+            synchronized (orderBook) {
+                matching = System.nanoTime();
+                executeAll(orderBook, commands);
+            }
+            OrderStage.LOCK_WAIT.record(waiting, matching);
+        } else {
+            matching = System.nanoTime();
+            executeAll(orderBook, commands);
+        }
+        OrderStage.MATCH.record(matching);
+    }
+
+    private static void executeAll(OrderBook orderBook, List<BookCommand> commands) {
+        for (BookCommand command : commands) {
+            command.setReport(switch (command.getAction()) {
+                case NEW -> {
+                    orderBook.addOrder(command.getOrder());
+                    yield ExecutionReport.of(command.getOrder());
+                }
+                case CANCEL -> report(command.getSymbolId(), command.getOrderId(), orderBook.cancelOrder(command.getOrderId()));
+                case AMEND -> report(command.getSymbolId(), command.getOrderId(),
+                        orderBook.amendOrder(command.getOrderId(), command.getQuantity(), command.getPrice()));
+                default -> throw new IllegalArgumentException("Ação sem efeito no livro: " + command.getAction());
+            });
+        }
+    }
+
+    /**
+     * Último retrato publicado do livro; qualquer thread pode ler, sem lock.
+     */
+    public BookSnapshot bookSnapshot(String symbol) {
+        OrderBook orderBook = book(symbol);
+        BookSnapshot snapshot = orderBook == null ? null : orderBook.getSnapshot();
+        return snapshot == null || snapshot.symbol() == null ? BookSnapshot.empty(symbol) : snapshot;
+    }
+
+    /**
+     * Níveis agregados do livro, até {@code levels} por lado. Até {@link BookSnapshot#LEVELS}
+     * vêm do retrato publicado, sem lock; além disso são lidos do livro sob o monitor, só
+     * os níveis pedidos.
+     */
+    MarketDepth depth(String symbol, int levels) {
+        OrderBook orderBook = book(symbol);
+        if (orderBook == null) {
+            return MarketDepth.empty(symbol);
+        }
+        if (levels <= BookSnapshot.LEVELS) {
+            return bookSnapshot(symbol).depth(levels);
+        }
+        if (shared) {
+            synchronized (orderBook) {
+                return depth(symbol, orderBook, levels);
+            }
+        }
+        return depth(symbol, orderBook, levels);
+    }
+
+    private static MarketDepth depth(String symbol, OrderBook orderBook, int levels) {
+        return new MarketDepth(symbol, orderBook.getDepth(OrderType.BUY, levels), orderBook.getDepth(OrderType.SELL, levels));
+    }
+
+    /**
+     * Entrega a profundidade de cada livro, até {@code levels} por lado. Deve rodar na
+     * thread que escreve nos livros; no modo compartilhado cada livro é lido sob o próprio
+     * monitor, então a profundidade fica na ordem certa entre as publicações do livro.
+     */
+    void forEachDepth(int levels, Consumer<MarketDepth> consumer) {
+        AtomicReferenceArray<OrderBook> books = orderBooks;
+        for (int symbolId = 0; symbolId < books.length(); symbolId++) {
+            OrderBook orderBook = books.get(symbolId);
+            if (orderBook == null) {
+                continue;
+            }
+            String symbol = SymbolDirectory.symbol(symbolId);
+            if (shared) {
+                synchronized (orderBook) {
+                    consumer.accept(depth(symbol, orderBook, levels));
+                }
+            } else {
+                consumer.accept(depth(symbol, orderBook, levels));
+            }
+        }
+    }
+
+    /**
+     * Estado de uma ordem em repouso, ou {@code null} se ela não estiver no livro
+     * (executada, cancelada ou inexistente).
+     */
+    ExecutionReport orderStatus(String symbol, long orderId) {
+        OrderBook orderBook = book(symbol);
+        if (orderBook == null) {
+            return null;
+        }
+        if (shared) {
+            synchronized (orderBook) {
+                Order order = orderBook.getOrder(orderId);
+                return order == null ? null : ExecutionReport.of(order);
+            }
+        }
+        Order order = orderBook.getOrder(orderId);
+        return order == null ? null : ExecutionReport.of(order);
+    }
+
+    /**
+     * Copia o estado de todos os livros para o formato binário de snapshot:
+     * {@code bookCount int} seguido de cada livro (ver {@link #writeBook}).
+     * Deve rodar na thread que escreve nos livros, entre dois comandos.
+     */
+    byte[] snapshot() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            AtomicReferenceArray<OrderBook> books = orderBooks;
+            int count = 0;
+            for (int symbolId = 0; symbolId < books.length(); symbolId++) {
+                if (books.get(symbolId) != null) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (int symbolId = 0; symbolId < books.length(); symbolId++) {
+                OrderBook orderBook = books.get(symbolId);
+                if (orderBook == null) {
+                    continue;
+                }
+                if (shared) {
+                    synchronized (orderBook) {
+                        writeBook(out, SymbolDirectory.symbol(symbolId), orderBook);
+                    }
+                } else {
+                    writeBook(out, SymbolDirectory.symbol(symbolId), orderBook);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Um livro lido de um snapshot, ainda fora do serviço.
+     */
+    record BookState(String symbol, List<Order> buyOrders, List<Order> sellOrders,
+                     long orderSequence, long tradeSequence) {
+    }
+
+    /**
+     * Lê um livro gravado por {@link #snapshot()}.
+     */
+    static BookState readBook(DataInputStream in) throws IOException {
+        String symbol = in.readUTF();
+        long orderSequence = in.readLong();
+        long tradeSequence = in.readLong();
+        List<Order> buyOrders = readOrders(in, symbol, OrderType.BUY);
+        List<Order> sellOrders = readOrders(in, symbol, OrderType.SELL);
+        return new BookState(symbol, buyOrders, sellOrders, orderSequence, tradeSequence);
+    }
+
+    /**
+     * Substitui todos os livros pelos de um snapshot. Deve rodar na thread que escreve
+     * nos livros, entre dois comandos.
+     */
+    void restore(List<BookState> books) {
+        synchronized (this) {
+            orderBooks = new AtomicReferenceArray<>(orderBooks.length());
+        }
+        for (BookState book : books) {
+            getOrderBook(SymbolDirectory.id(book.symbol())).restore(book.buyOrders(), book.sellOrders(),
+                    book.orderSequence(), book.tradeSequence());
+        }
+    }
+
+    /*
+     * livro:  symbol UTF, orderSequence long, tradeSequence long,
+     *         compras e vendas: count int + ordens na ordem de prioridade
+     * ordem:  orderId long, price double, quantity int, status byte, sequence long,
+     *         receivedAt (epochSecond long, nano int), filledQuantity int, fillCount int,
+     *         filledNotionalTicks long
+     */
+    private static void writeBook(DataOutputStream out, String symbol, OrderBook orderBook) throws IOException {
+        out.writeUTF(symbol);
+        out.writeLong(orderBook.getOrderSequence());
+        out.writeLong(orderBook.getTradeSequence());
+        writeOrders(out, orderBook.getBuyOrders());
+        writeOrders(out, orderBook.getSellOrders());
+    }
+
+    private static void writeOrders(DataOutputStream out, List<Order> orders) throws IOException {
+        out.writeInt(orders.size());
+        for (Order order : orders) {
+            out.writeLong(order.getOrderId());
+            out.writeDouble(order.getPrice());
+            out.writeInt(order.getQuantity());
+            out.writeByte(order.getStatus().ordinal());
+            out.writeLong(order.getSequence());
+            out.writeLong(order.getReceivedAt().getEpochSecond());
+            out.writeInt(order.getReceivedAt().getNano());
+            out.writeInt(order.getFilledQuantity());
+            out.writeInt(order.getFillCount());
+            out.writeLong(order.getFilledNotionalTicks());
+        }
+    }
+
+    private static List<Order> readOrders(DataInputStream in, String symbol, OrderType type) throws IOException {
+        int count = in.readInt();
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long orderId = in.readLong();
+            double price = in.readDouble();
+            Order order = new Order(symbol, type, in.readInt(), price);
+            order.setOrderId(orderId);
+            order.setStatus(OrderStatus.values()[in.readByte()]);
+            long sequence = in.readLong();
+            Instant receivedAt = Instant.ofEpochSecond(in.readLong(), in.readInt());
+            order.restore(sequence, receivedAt, in.readInt(), in.readInt(), in.readLong());
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private static ExecutionReport report(int symbolId, long orderId, Order order) {
+        return order == null ? ExecutionReport.rejected(SymbolDirectory.symbol(symbolId), orderId) : ExecutionReport.of(order);
     }
     
 }
-
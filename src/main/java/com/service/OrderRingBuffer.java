@@ -0,0 +1,136 @@
+package com.service;
+
+import com.model.ExecutionReport;
+import com.model.Order;
+import com.model.OrderAction;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffer circular limitado e pré-alocado com vários produtores (threads de escuta)
+ * e um único consumidor (a thread de matching dona do shard).
+ * Cada slot é reutilizado; a publicação é feita pelo número de sequência gravado no slot.
+ */
+final class OrderRingBuffer {
+
+    static final class Slot {
+        OrderAction action;
+        Order order;
+        int symbolId;
+        long orderId;
+        int quantity;
+        double price;
+        CompletableFuture<ExecutionReport> completion;
+        // System.nanoTime() de antes de reservar o slot, para medir a espera até o consumidor
+        long publishedNanos;
+        // tarefa a rodar na thread de matching no lugar de um comando (ex.: snapshot)
+        Runnable task;
+    }
+
+    interface SlotHandler {
+        void onSlot(Slot slot);
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLongArray published;
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLong consumeSequence = new AtomicLong();
+
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+
+    OrderRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity deve ser potência de 2: " + capacity);
+        }
+        this.slots = new Slot[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+    }
+
+    void setConsumer(Thread consumer) {
+        this.consumer = consumer;
+    }
+
+    void publish(OrderAction action, Order order, int symbolId, long orderId, int quantity, double price,
+                 CompletableFuture<ExecutionReport> completion) {
+        long publishing = System.nanoTime();
+        long sequence = claim();
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.action = action;
+        slot.order = order;
+        slot.symbolId = symbolId;
+        slot.orderId = orderId;
+        slot.quantity = quantity;
+        slot.price = price;
+        slot.completion = completion;
+        slot.publishedNanos = publishing;
+        commit(sequence);
+    }
+
+    /**
+     * Publica uma tarefa que o consumidor roda depois de todos os slots publicados antes dela.
+     */
+    void publishTask(Runnable task) {
+        long sequence = claim();
+        slots[(int) (sequence & mask)].task = task;
+        commit(sequence);
+    }
+
+    private long claim() {
+        long sequence = claimSequence.getAndIncrement();
+        // buffer cheio: o produtor espera o consumidor liberar o slot (backpressure)
+        while (sequence - consumeSequence.get() >= slots.length) {
+            Thread.onSpinWait();
+        }
+        return sequence;
+    }
+
+    private void commit(long sequence) {
+        published.set((int) (sequence & mask), sequence);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    int drain(SlotHandler handler) {
+        long next = consumeSequence.get();
+        int count = 0;
+        while (true) {
+            int index = (int) (next & mask);
+            if (published.get(index) != next) {
+                break;
+            }
+            Slot slot = slots[index];
+            handler.onSlot(slot);
+            slot.order = null;
+            slot.completion = null;
+            slot.task = null;
+            next++;
+            count++;
+            consumeSequence.lazySet(next);
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        long next = consumeSequence.get();
+        return published.get((int) (next & mask)) != next;
+    }
+
+    void parkConsumer(long nanos) {
+        consumerParked = true;
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        consumerParked = false;
+    }
+}
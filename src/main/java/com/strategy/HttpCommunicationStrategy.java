@@ -1,20 +1,247 @@
 package com.strategy;
 
+import com.codec.JavaSerializationCodec;
+import com.codec.MessageCodec;
+import com.codec.MessageCodecs;
+import com.codec.OrderBatch;
+import com.codec.OrderCommand;
+import com.codec.OrderEntryDecoder;
+import com.metrics.OrderStage;
 import com.patterns.Message;
+import com.patterns.Response;
 import com.server.MessageHandler;
 import com.server.OrderHandler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.*;
 
+/**
+ * Transporte HTTP/1.1 sobre o servidor HTTP do JDK, com uma virtual thread por requisição
+ * e conexões keep-alive.
+ *
+ * <pre>
+ * POST /order    uma ordem (texto ou binária) no corpo; responde com o resultado
+ * POST /orders   várias ordens, uma por linha; os resultados voltam em streaming
+ *                ("índice TAB resultado" por linha) na ordem em que o matching termina;
+ *                toda ordem recebe uma linha, com erro se ficar sem resposta no prazo
+ * POST /batch    um lote (BATCH:n ou binário, ver OrderEntryDecoder) tratado de uma vez;
+ *                a resposta, com as mesmas linhas, volta inteira quando o lote termina
+ * POST /message  mensagem entre nós codificada pelo MessageCodec
+ * </pre>
+ *
+ * As mensagens entre nós saem por um {@link HttpClient} compartilhado, que mantém
+ * as conexões abertas com cada par.
+ */
 public class HttpCommunicationStrategy implements CommunicationStrategy {
+    private static final int MAX_MESSAGE = 64 * 1024;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(2);
+
+    private final MessageCodec codec;
+    private final HttpClient client;
+    private final ConcurrentHashMap<InetSocketAddress, URI> messageUris = new ConcurrentHashMap<>();
+    private final ThreadLocal<ByteBuffer> sendBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_MESSAGE));
+    private HttpServer server;
+
+    public HttpCommunicationStrategy() {
+        this(new JavaSerializationCodec());
+    }
+
+    public HttpCommunicationStrategy(MessageCodec codec) {
+        this.codec = codec;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
 
     @Override
     public void sendMessage(Message message, InetSocketAddress recipient) {
-        
+        ByteBuffer buffer = sendBuffer.get();
+        buffer.clear();
+        codec.encode(message, buffer);
+        byte[] body = Arrays.copyOf(buffer.array(), buffer.position());
+
+        URI uri = messageUris.computeIfAbsent(recipient,
+                address -> URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/message"));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .exceptionally(error -> {
+                    System.err.println("Erro ao enviar mensagem para " + recipient + ": " + error.getMessage());
+                    return null;
+                });
     }
 
     @Override
-    public void startListening(int port, MessageHandler handler, OrderHandler orderHandler) {
+    public void startListening(int port, MessageHandler messageHandler, OrderHandler orderHandler) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/message", exchange -> handleMessage(exchange, messageHandler));
+            server.createContext("/order", exchange -> handleOrder(exchange, orderHandler));
+            server.createContext("/orders", exchange -> handleOrders(exchange, orderHandler));
+            server.createContext("/batch", exchange -> handleBatch(exchange, orderHandler));
+            server.start();
+            System.out.println("HTTP Server listening on port " + port);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void handleMessage(HttpExchange exchange, MessageHandler messageHandler) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            Message message = MessageCodecs.decode(codec, ByteBuffer.wrap(body));
+            messageHandler.handleMessage(message, exchange.getRemoteAddress());
+            exchange.sendResponseHeaders(204, -1);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Mensagem inválida de " + exchange.getRemoteAddress() + ": " + e.getMessage());
+            exchange.sendResponseHeaders(400, -1);
+        }
+    }
+
+    private void handleOrder(HttpExchange exchange, OrderHandler orderHandler) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            long arrival = System.nanoTime();
+            OrderCommand command = new OrderCommand();
+            boolean decoded = new OrderEntryDecoder().decode(body, 0, body.length, command);
+            OrderStage.DECODE.record(arrival);
+            if (!decoded) {
+                sendText(exchange, 400, "Erro: Solicitação inválida");
+                return;
+            }
+            Response response = orderHandler.handleOrder(command, exchange.getRemoteAddress()).join();
+            long sending = System.nanoTime();
+            sendText(exchange, 200, response.getResponseContent());
+            OrderStage.SERVER.record(arrival, OrderStage.RESPONSE.record(sending));
+        } catch (CompletionException e) {
+            sendText(exchange, 500, "Erro: " + e.getCause().getMessage());
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange, OrderHandler orderHandler) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            long arrival = System.nanoTime();
+            OrderBatch batch = new OrderBatch();
+            boolean decoded = new OrderEntryDecoder().decodeBatch(body, 0, body.length, batch);
+            OrderStage.DECODE.record(arrival);
+            if (!decoded) {
+                sendText(exchange, 400, "Erro: Lote inválido");
+                return;
+            }
+            Response response = orderHandler.handleBatch(batch, exchange.getRemoteAddress()).join();
+            long sending = System.nanoTime();
+            sendText(exchange, 200, response.getResponseContent());
+            OrderStage.SERVER.record(arrival, OrderStage.RESPONSE.record(sending));
+        } catch (CompletionException e) {
+            sendText(exchange, 500, "Erro: " + e.getCause().getMessage());
+        }
+    }
+
+    private void handleOrders(HttpExchange exchange, OrderHandler orderHandler) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            OrderEntryDecoder decoder = new OrderEntryDecoder();
+            OrderCommand command = new OrderCommand();
+            BlockingQueue<OrderResult> results = new LinkedBlockingQueue<>();
+            InetSocketAddress sender = exchange.getRemoteAddress();
+
+            int submitted = 0;
+            int start = 0;
+            for (int i = 0; i <= body.length; i++) {
+                if (i < body.length && body[i] != '\n') {
+                    continue;
+                }
+                if (i > start) {
+                    int index = submitted++;
+                    long arrival = System.nanoTime();
+                    boolean decoded = decoder.decode(body, start, i - start, command);
+                    OrderStage.DECODE.record(arrival);
+                    if (decoded) {
+                        orderHandler.handleOrder(command, sender).whenComplete((response, error) ->
+                                results.add(new OrderResult(index, error == null
+                                        ? response.getResponseContent()
+                                        : "Erro: " + error.getMessage())));
+                    } else {
+                        results.add(new OrderResult(index, "Erro: Solicitação inválida"));
+                    }
+                }
+                start = i + 1;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            boolean[] answered = new boolean[submitted];
+            for (int written = 0; written < submitted; written++) {
+                OrderResult result = results.poll(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    // o status já foi enviado: cada ordem sem resposta ganha a sua linha de erro,
+                    // para o cliente não confundir uma resposta cortada com uma completa
+                    for (int index = 0; index < submitted; index++) {
+                        if (!answered[index]) {
+                            writeLine(out, index, "Erro: Sem resposta em " + REQUEST_TIMEOUT.toMillis()
+                                    + " ms; resultado indefinido");
+                        }
+                    }
+                    break;
+                }
+                answered[result.index()] = true;
+                writeLine(out, result.index(), result.text());
+                if (results.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record OrderResult(int index, String text) {
+    }
+
+    private static void writeLine(OutputStream out, int index, String text) throws IOException {
+        out.write((index + "\t" + text + "\n").getBytes(StandardCharsets.UTF_8));
+    }
 
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
     }
 }
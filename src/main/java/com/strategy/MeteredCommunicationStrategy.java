@@ -0,0 +1,35 @@
+package com.strategy;
+
+import com.metrics.ClusterMetrics;
+import com.patterns.Message;
+import com.server.MessageHandler;
+import com.server.OrderHandler;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Conta as mensagens do cluster enviadas a cada nó antes de repassá-las à estratégia
+ * real. As respostas às ordens não passam por aqui: cada estratégia as envia direto.
+ */
+public class MeteredCommunicationStrategy implements CommunicationStrategy {
+    private final CommunicationStrategy delegate;
+    private final Map<InetSocketAddress, Integer> nodeIds = new HashMap<>();
+
+    public MeteredCommunicationStrategy(CommunicationStrategy delegate, Map<Integer, InetSocketAddress> nodeAddresses) {
+        this.delegate = delegate;
+        nodeAddresses.forEach((nodeId, address) -> nodeIds.put(address, nodeId));
+    }
+
+    @Override
+    public void sendMessage(Message message, InetSocketAddress recipient) {
+        ClusterMetrics.messageSent(nodeIds.getOrDefault(recipient, ClusterMetrics.OBSERVER), message.getType());
+        delegate.sendMessage(message, recipient);
+    }
+
+    @Override
+    public void startListening(int port, MessageHandler handler, OrderHandler orderHandler) {
+        delegate.startListening(port, handler, orderHandler);
+    }
+}
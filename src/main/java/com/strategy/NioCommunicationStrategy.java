@@ -0,0 +1,228 @@
+package com.strategy;
+
+import com.codec.BinaryMessageCodec;
+import com.codec.MessageCodec;
+import com.codec.MessageCodecs;
+import com.codec.OrderEntryDecoder;
+import com.metrics.OrderStage;
+import com.patterns.Message;
+import com.patterns.Response;
+import com.server.MessageHandler;
+import com.server.OrderHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transporte TCP sobre java.nio: poucos event loops com Selector atendem todas as
+ * conexões, em vez de uma thread por socket. Usa o mesmo framing do
+ * {@link TcpCommunicationStrategy}, então os dois transportes interoperam.
+ * Os handlers rodam na thread do event loop e não devem bloquear.
+ */
+public class NioCommunicationStrategy implements CommunicationStrategy {
+    private static final int MAX_MESSAGE = 64 * 1024;
+    private static final long RECONNECT_BACKOFF_MS = 500;
+
+    private final MessageCodec codec;
+    private final NioEventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final Map<InetSocketAddress, NioConnection> connections = new ConcurrentHashMap<>();
+    private final Map<InetSocketAddress, Long> retryAt = new ConcurrentHashMap<>();
+    private final ThreadLocal<ByteBuffer> sendBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_MESSAGE));
+
+    private volatile MessageHandler messageHandler;
+    private volatile OrderHandler orderHandler;
+
+    public NioCommunicationStrategy() {
+        this(new BinaryMessageCodec());
+    }
+
+    public NioCommunicationStrategy(MessageCodec codec) {
+        this(codec, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public NioCommunicationStrategy(MessageCodec codec, int ioThreads) {
+        this.codec = codec;
+        this.loops = new NioEventLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new NioEventLoop("nio-" + i);
+            loops[i].start();
+        }
+    }
+
+    @Override
+    public void sendMessage(Message message, InetSocketAddress recipient) {
+        NioConnection connection = connection(recipient);
+        if (connection != null) {
+            send(connection, message);
+        }
+    }
+
+    private void send(NioConnection connection, Message message) {
+        if (!connection.isFramed()) {
+            if (message instanceof Response response) {
+                byte[] line = (response.getResponseContent() + "\n").getBytes(StandardCharsets.UTF_8);
+                connection.enqueue(ByteBuffer.wrap(line));
+            }
+            return;
+        }
+
+        ByteBuffer buffer = sendBuffer.get();
+        buffer.clear();
+        buffer.position(4);
+        codec.encode(message, buffer);
+        buffer.putInt(0, buffer.position() - 4);
+        buffer.flip();
+        connection.enqueue(buffer);
+    }
+
+    private NioConnection connection(InetSocketAddress address) {
+        NioConnection connection = connections.get(address);
+        if (connection != null && connection.isOpen()) {
+            return connection;
+        }
+        Long nextAttempt = retryAt.get(address);
+        if (nextAttempt != null && System.currentTimeMillis() < nextAttempt) {
+            return null;
+        }
+        synchronized (connections) {
+            connection = connections.get(address);
+            if (connection != null && connection.isOpen()) {
+                return connection;
+            }
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                boolean connected = channel.connect(address);
+
+                NioEventLoop loop = nextLoop();
+                NioConnection created = new NioConnection(channel, address, loop, this, true);
+                connections.put(address, created);
+                int ops = connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT;
+                loop.register(channel, ops, created, created::onRegistered);
+                return created;
+            } catch (IOException e) {
+                connectFailed(address);
+                System.err.println("Erro ao conectar em " + address + ": " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void startListening(int port, MessageHandler messageHandler, OrderHandler orderHandler) {
+        this.messageHandler = messageHandler;
+        this.orderHandler = orderHandler;
+        try {
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            loops[0].register(serverChannel, SelectionKey.OP_ACCEPT, (NioEventLoop.Acceptor) this::accept, null);
+            System.out.println("NIO Server listening on port " + port + " com " + loops.length + " event loop(s)");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                InetSocketAddress remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+                NioEventLoop loop = nextLoop();
+                NioConnection connection = new NioConnection(channel, remoteAddress, loop, this, false);
+                connections.put(remoteAddress, connection);
+                loop.register(channel, SelectionKey.OP_READ, connection, connection::onRegistered);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao aceitar conexão: " + e.getMessage());
+        }
+    }
+
+    private NioEventLoop nextLoop() {
+        return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+    }
+
+    // chamado na thread do event loop com o payload copiado para o scratch do loop
+    void dispatch(NioConnection connection, byte[] data, int length) {
+        NioEventLoop loop = connection.getLoop();
+        if (OrderEntryDecoder.isBatch(data, 0, length)) {
+            OrderHandler handler = orderHandler;
+            if (handler == null) {
+                return;
+            }
+            long arrival = System.nanoTime();
+            boolean decoded = loop.orderDecoder.decodeBatch(data, 0, length, loop.batch);
+            OrderStage.DECODE.record(arrival);
+            if (decoded) {
+                handler.handleBatch(loop.batch, connection.getRemoteAddress())
+                        .thenAccept(response -> {
+                            long sending = System.nanoTime();
+                            send(connection, response);
+                            OrderStage.SERVER.record(arrival, OrderStage.RESPONSE.record(sending));
+                        });
+                OrderStage.RECEIVE.record(arrival);
+            } else {
+                System.out.println("Formato de lote inválido recebido de " + connection.getRemoteAddress());
+            }
+            return;
+        }
+        if (OrderEntryDecoder.isOrderEntry(data, 0, length)) {
+            OrderHandler handler = orderHandler;
+            if (handler == null) {
+                return;
+            }
+            long arrival = System.nanoTime();
+            boolean decoded = loop.orderDecoder.decode(data, 0, length, loop.command);
+            OrderStage.DECODE.record(arrival);
+            if (decoded) {
+                handler.handleOrder(loop.command, connection.getRemoteAddress())
+                        .thenAccept(response -> {
+                            long sending = System.nanoTime();
+                            send(connection, response);
+                            OrderStage.SERVER.record(arrival, OrderStage.RESPONSE.record(sending));
+                        });
+                OrderStage.RECEIVE.record(arrival);
+            } else {
+                System.out.println("Formato de ordem inválido recebido de " + connection.getRemoteAddress());
+            }
+            return;
+        }
+
+        MessageHandler handler = messageHandler;
+        if (handler == null) {
+            return;
+        }
+        ByteBuffer view = loop.scratchView;
+        view.limit(length).position(0);
+        handler.handleMessage(MessageCodecs.decode(codec, view), connection.getRemoteAddress());
+    }
+
+    // a conexão assíncrona falhou no event loop: mesmo intervalo de espera da falha síncrona
+    void connectFailed(InetSocketAddress address) {
+        retryAt.put(address, System.currentTimeMillis() + RECONNECT_BACKOFF_MS);
+    }
+
+    void evict(NioConnection connection) {
+        connections.remove(connection.getRemoteAddress(), connection);
+    }
+
+    public void shutdown() {
+        connections.values().forEach(NioConnection::close);
+        for (NioEventLoop loop : loops) {
+            loop.stop();
+        }
+    }
+}
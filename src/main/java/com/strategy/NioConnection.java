@@ -0,0 +1,289 @@
+package com.strategy;
+
+import com.codec.OrderEntryDecoder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conexão não bloqueante com buffers diretos de leitura e escrita. Lê frames
+ * {@code [int tamanho][payload]} (ou linhas de ordem de clientes legados), trata frames
+ * parciais entre leituras e aplica backpressure: com muitos bytes pendentes de escrita
+ * a conexão para de ler até o outro lado consumir a saída.
+ */
+final class NioConnection {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+    private static final long HIGH_WATERMARK = 1024 * 1024;
+    private static final long LOW_WATERMARK = 256 * 1024;
+
+    private final SocketChannel channel;
+    private final InetSocketAddress remoteAddress;
+    private final NioEventLoop loop;
+    private final NioCommunicationStrategy owner;
+
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private Boolean framed;
+    private boolean readPaused;
+
+    // protegidos por this: produtores de qualquer thread, escrita na thread do loop
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ArrayDeque<ByteBuffer> overflow = new ArrayDeque<>();
+    private long pendingBytes;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    NioConnection(SocketChannel channel, InetSocketAddress remoteAddress, NioEventLoop loop,
+                  NioCommunicationStrategy owner, boolean framed) {
+        this.channel = channel;
+        this.remoteAddress = remoteAddress;
+        this.loop = loop;
+        this.owner = owner;
+        this.framed = framed ? Boolean.TRUE : null;
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    NioEventLoop getLoop() {
+        return loop;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    void onRegistered(SelectionKey key) {
+        this.key = key;
+        if (channel.isConnected()) {
+            flush();
+        }
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    boolean isFramed() {
+        return framed == null || framed;
+    }
+
+    /**
+     * Enfileira bytes para envio a partir de qualquer thread.
+     */
+    void enqueue(ByteBuffer source) {
+        if (closed) {
+            return;
+        }
+        synchronized (this) {
+            int length = source.remaining();
+            if (overflow.isEmpty() && writeBuffer.remaining() >= length) {
+                writeBuffer.put(source);
+            } else {
+                ByteBuffer copy = ByteBuffer.allocate(length);
+                copy.put(source).flip();
+                overflow.add(copy);
+            }
+            pendingBytes += length;
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flush);
+        }
+    }
+
+    void onReady(SelectionKey key) {
+        try {
+            if (key.isConnectable()) {
+                boolean connected;
+                try {
+                    connected = channel.finishConnect();
+                } catch (IOException e) {
+                    owner.connectFailed(remoteAddress);
+                    throw e;
+                }
+                if (connected) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    flush();
+                }
+                return;
+            }
+            if (key.isWritable()) {
+                flush();
+            }
+            if (key.isValid() && key.isReadable()) {
+                read();
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Erro na conexão com " + remoteAddress + ": " + e.getMessage());
+            }
+            close();
+        } catch (RuntimeException e) {
+            // frame malformado ou falha no handler: cai só esta conexão, não o event loop
+            System.err.println("Mensagem inválida de " + remoteAddress + ", conexão encerrada: " + e);
+            close();
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        if (key == null || !key.isValid() || !channel.isConnected()) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                while (true) {
+                    writeBuffer.flip();
+                    pendingBytes -= channel.write(writeBuffer);
+                    writeBuffer.compact();
+                    if (writeBuffer.position() > 0 || overflow.isEmpty()) {
+                        break;
+                    }
+                    while (!overflow.isEmpty() && writeBuffer.hasRemaining()) {
+                        ByteBuffer next = overflow.peek();
+                        int limit = next.limit();
+                        next.limit(next.position() + Math.min(next.remaining(), writeBuffer.remaining()));
+                        writeBuffer.put(next);
+                        next.limit(limit);
+                        if (!next.hasRemaining()) {
+                            overflow.poll();
+                        }
+                    }
+                }
+                boolean pending = writeBuffer.position() > 0 || !overflow.isEmpty();
+                if (pendingBytes > HIGH_WATERMARK) {
+                    readPaused = true;
+                } else if (pendingBytes < LOW_WATERMARK) {
+                    readPaused = false;
+                }
+                int ops = (readPaused ? 0 : SelectionKey.OP_READ) | (pending ? SelectionKey.OP_WRITE : 0);
+                key.interestOps(ops);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao escrever para " + remoteAddress + ": " + e.getMessage());
+            close();
+        }
+    }
+
+    private void read() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            close();
+            return;
+        }
+        readBuffer.flip();
+        if (framed == null && !detectFraming()) {
+            readBuffer.compact();
+            return;
+        }
+        if (framed) {
+            readFrames();
+        } else {
+            readOrderEntries();
+        }
+        readBuffer.compact();
+    }
+
+    // primeiros bytes "ORDE" ou registro binário de ordem: cliente legado sem frames
+    private boolean detectFraming() {
+        int p = readBuffer.position();
+        if (readBuffer.remaining() >= 1 && readBuffer.get(p) == OrderEntryDecoder.BINARY_MAGIC) {
+            framed = false;
+            return true;
+        }
+        if (readBuffer.remaining() < 4) {
+            return false;
+        }
+        framed = !(readBuffer.get(p) == 'O' && readBuffer.get(p + 1) == 'R'
+                && readBuffer.get(p + 2) == 'D' && readBuffer.get(p + 3) == 'E');
+        return true;
+    }
+
+    private void readFrames() throws IOException {
+        while (readBuffer.remaining() >= 4) {
+            int start = readBuffer.position();
+            int length = readBuffer.getInt(start);
+            if (length <= 0 || length > MAX_FRAME) {
+                throw new IOException("Frame inválido: " + length);
+            }
+            if (readBuffer.remaining() < 4 + length) {
+                ensureCapacity(4 + length);
+                return;
+            }
+            dispatch(start + 4, length);
+            readBuffer.position(start + 4 + length);
+        }
+    }
+
+    private void readOrderEntries() throws IOException {
+        while (readBuffer.hasRemaining()) {
+            int start = readBuffer.position();
+            int length;
+            if (readBuffer.get(start) == OrderEntryDecoder.BINARY_MAGIC) {
+                if (readBuffer.remaining() < OrderEntryDecoder.BINARY_HEADER_LENGTH) {
+                    return;
+                }
+                length = OrderEntryDecoder.binaryLength(readBuffer.get(start + OrderEntryDecoder.SYMBOL_LENGTH_OFFSET));
+                if (readBuffer.remaining() < length) {
+                    return;
+                }
+                dispatch(start, length);
+                readBuffer.position(start + length);
+            } else {
+                int newline = -1;
+                for (int i = start; i < readBuffer.limit(); i++) {
+                    if (readBuffer.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline < 0) {
+                    if (readBuffer.remaining() == readBuffer.capacity()) {
+                        throw new IOException("Linha de ordem longa demais");
+                    }
+                    return;
+                }
+                dispatch(start, newline - start);
+                readBuffer.position(newline + 1);
+            }
+        }
+    }
+
+    private void dispatch(int offset, int length) {
+        byte[] data = loop.scratch(length);
+        readBuffer.get(offset, data, 0, length);
+        owner.dispatch(this, data, length);
+    }
+
+    private void ensureCapacity(int frameLength) {
+        if (readBuffer.capacity() < frameLength) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Integer.highestOneBit(frameLength - 1) << 1);
+            larger.put(readBuffer);
+            larger.flip();
+            readBuffer = larger;
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar conexão com " + remoteAddress + ": " + e.getMessage());
+        }
+        owner.evict(this);
+    }
+}
@@ -0,0 +1,139 @@
+package com.strategy;
+
+import com.codec.OrderBatch;
+import com.codec.OrderCommand;
+import com.codec.OrderEntryDecoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Thread de I/O com um Selector próprio. Todas as operações sobre os canais registrados
+ * nela (registro, leitura, escrita, interesse) rodam nesta thread; as demais threads
+ * entregam tarefas por {@link #execute}.
+ */
+final class NioEventLoop implements Runnable {
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // estado de decodificação compartilhado pelas conexões desta thread
+    final OrderEntryDecoder orderDecoder = new OrderEntryDecoder();
+    final OrderCommand command = new OrderCommand();
+    final OrderBatch batch = new OrderBatch();
+    byte[] scratch = new byte[64 * 1024];
+    ByteBuffer scratchView = ByteBuffer.wrap(scratch);
+
+    NioEventLoop(String name) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (!inLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    byte[] scratch(int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Integer.highestOneBit(length - 1) << 1];
+            scratchView = ByteBuffer.wrap(scratch);
+        }
+        return scratch;
+    }
+
+    void register(SelectableChannel channel, int ops, Object attachment, Consumer<SelectionKey> onRegistered) {
+        execute(() -> {
+            try {
+                SelectionKey key = channel.register(selector, ops, attachment);
+                if (onRegistered != null) {
+                    onRegistered.accept(key);
+                }
+            } catch (ClosedChannelException e) {
+                System.err.println("Canal fechado antes do registro: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                // tarefas enfileiradas pela própria thread não acordam o selector
+                runTasks();
+                if (tasks.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    Object attachment = key.attachment();
+                    if (attachment instanceof NioConnection connection) {
+                        connection.onReady(key);
+                    } else if (attachment instanceof Acceptor acceptor) {
+                        acceptor.onAcceptable((ServerSocketChannel) key.channel());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Erro no event loop " + thread.getName() + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                // o loop atende outras conexões e o acceptor: segue no ar
+                System.err.println("Erro no event loop " + thread.getName() + ": " + e);
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar selector: " + e.getMessage());
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Erro numa tarefa do event loop " + thread.getName() + ": " + e);
+            }
+        }
+    }
+
+    interface Acceptor {
+        void onAcceptable(ServerSocketChannel serverChannel);
+    }
+}
@@ -1,30 +1,108 @@
 package com.strategy;
 
+import com.codec.JavaSerializationCodec;
+import com.codec.MessageCodec;
+import com.codec.MessageCodecs;
+import com.codec.OrderBatch;
+import com.codec.OrderCommand;
+import com.codec.OrderEntryDecoder;
+import com.metrics.OrderStage;
 import com.patterns.Message;
-import com.patterns.OrderMessage;
+import com.patterns.Response;
 import com.server.MessageHandler;
 import com.server.OrderHandler;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 public class TcpCommunicationStrategy implements CommunicationStrategy {
+    private static final int MAX_MESSAGE = 64 * 1024;
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+    private static final int MAX_LINE = 1024;
+
     private ServerSocket serverSocket;
+    private final MessageCodec codec;
+    private final TcpConnectionPool pool;
+    private final ThreadLocal<ByteBuffer> sendBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_MESSAGE));
+
+    private volatile MessageHandler messageHandler;
+    private volatile OrderHandler orderHandler;
+
+    public TcpCommunicationStrategy() {
+        this(new JavaSerializationCodec());
+    }
+
+    public TcpCommunicationStrategy(MessageCodec codec) {
+        this.codec = codec;
+        this.pool = new TcpConnectionPool(this::startReader);
+    }
 
     @Override
     public void sendMessage(Message message, InetSocketAddress recipient) {
-        try (Socket socket = new Socket(recipient.getAddress(), recipient.getPort());
-             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
+        ByteBuffer buffer = sendBuffer.get();
+        buffer.clear();
+        buffer.position(4);
+        codec.encode(message, buffer);
+        buffer.putInt(0, buffer.position() - 4);
 
-            out.writeObject(message);
-            out.flush();
-        } catch (IOException e) {
-            System.err.println("Erro ao enviar mensagem: " + e.getMessage());
+        // uma nova tentativa com conexão refeita se a atual tiver caído
+        for (int attempt = 0; attempt < 2; attempt++) {
+            TcpConnection connection = null;
+            try {
+                connection = pool.acquire(recipient);
+                if (connection == null) {
+                    return;
+                }
+                write(connection, message, buffer);
+                return;
+            } catch (IOException e) {
+                if (connection != null) {
+                    pool.evict(connection);
+                }
+                if (attempt == 1 || connection == null) {
+                    System.err.println("Erro ao enviar mensagem: " + e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    // codifica aqui e deixa a escrita para a thread da conexão
+    private void reply(TcpConnection connection, Message message) {
+        byte[] bytes;
+        if (connection.isFramed()) {
+            ByteBuffer buffer = sendBuffer.get();
+            buffer.clear();
+            buffer.position(4);
+            codec.encode(message, buffer);
+            buffer.putInt(0, buffer.position() - 4);
+            bytes = Arrays.copyOf(buffer.array(), buffer.position());
+        } else if (message instanceof Response response) {
+            bytes = (response.getResponseContent() + "\n").getBytes(StandardCharsets.UTF_8);
+        } else {
+            return;
+        }
+        connection.enqueue(bytes, e -> {
+            System.err.println("Erro ao responder para " + connection.getRemoteAddress() + ": " + e.getMessage());
+            pool.evict(connection);
+        });
+    }
+
+    private static void write(TcpConnection connection, Message message, ByteBuffer frame) throws IOException {
+        if (connection.isFramed()) {
+            connection.write(frame.array(), 0, frame.position());
+        } else if (message instanceof Response response) {
+            connection.writeLine(response.getResponseContent());
         }
     }
 
     @Override
     public void startListening(int port, MessageHandler messageHandler, OrderHandler orderHandler) {
+        this.messageHandler = messageHandler;
+        this.orderHandler = orderHandler;
         try {
             serverSocket = new ServerSocket(port);
             System.out.println("TCP Server listening on port " + port);
@@ -32,8 +110,9 @@ public class TcpCommunicationStrategy implements CommunicationStrategy {
             new Thread(() -> {
                 while (!serverSocket.isClosed()) {
                     try {
-                        Socket clientSocket = serverSocket.accept();
-                        new Thread(() -> handleClientConnection(clientSocket, messageHandler, orderHandler)).start();
+                        TcpConnection connection = new TcpConnection(serverSocket.accept());
+                        pool.register(connection);
+                        startReader(connection);
                     } catch (IOException e) {
                         if (!serverSocket.isClosed()) {
                             e.printStackTrace();
@@ -46,50 +125,157 @@ public class TcpCommunicationStrategy implements CommunicationStrategy {
         }
     }
 
+    private void startReader(TcpConnection connection) {
+        new Thread(() -> readConnection(connection), "tcp-" + connection.getRemoteAddress()).start();
+    }
 
-    private void handleClientConnection(Socket clientSocket, MessageHandler messageHandler, OrderHandler orderHandler) {
+    private void readConnection(TcpConnection connection) {
         try {
-            InputStream inputStream = clientSocket.getInputStream();
-            BufferedInputStream bis = new BufferedInputStream(inputStream);
-            bis.mark(4);
-
+            DataInputStream in = connection.input();
+            in.mark(4);
             byte[] header = new byte[4];
-            bis.read(header, 0, 4);
-            bis.reset();
+            in.readFully(header);
+            in.reset();
+
+            if ((header[0] == 'O' && header[1] == 'R' && header[2] == 'D' && header[3] == 'E')
+                    || header[0] == OrderEntryDecoder.BINARY_MAGIC) {
+                connection.setFramed(false);
+                readOrderEntries(connection);
+            } else {
+                readFrames(connection);
+            }
+        } catch (EOFException e) {
+            // conexão encerrada pelo outro lado
+        } catch (IOException e) {
+            if (connection.isOpen()) {
+                System.err.println("Erro ao processar a conexão: " + e.getMessage());
+            }
+        } finally {
+            pool.evict(connection);
+        }
+    }
 
-            
-            String headerString = new String(header);
+    private void readFrames(TcpConnection connection) throws IOException {
+        DataInputStream in = connection.input();
+        OrderEntryDecoder orderDecoder = new OrderEntryDecoder();
+        OrderCommand command = new OrderCommand();
+        OrderBatch batch = new OrderBatch();
+        byte[] frame = new byte[MAX_MESSAGE];
+        ByteBuffer view = ByteBuffer.wrap(frame);
 
-            if (headerString.equals("ORDE")) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(bis));
-                String receivedString = reader.readLine();
-                InetSocketAddress remoteAddress = (InetSocketAddress) clientSocket.getRemoteSocketAddress();
+        while (true) {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_FRAME) {
+                throw new IOException("Frame inválido de " + connection.getRemoteAddress() + ": " + length);
+            }
+            if (length > frame.length) {
+                frame = new byte[length];
+                view = ByteBuffer.wrap(frame);
+            }
+            in.readFully(frame, 0, length);
 
-                if (receivedString.startsWith("ORDER")) {
-                    orderHandler.handleOrder(receivedString, remoteAddress);
-                }
+            if (OrderEntryDecoder.isBatch(frame, 0, length)) {
+                dispatchBatch(orderDecoder, frame, length, batch, connection);
+            } else if (OrderEntryDecoder.isOrderEntry(frame, 0, length)) {
+                dispatchOrder(orderDecoder, frame, length, command, connection);
             } else {
-                ObjectInputStream in = new ObjectInputStream(bis);
-                Object receivedObject = in.readObject();
-                InetSocketAddress remoteAddress = (InetSocketAddress) clientSocket.getRemoteSocketAddress();
-
-                if (receivedObject instanceof Message message) {
-                    messageHandler.handleMessage(message, remoteAddress);
-                } else {
-                    System.err.println("Tipo de mensagem não suportado: " + receivedObject.getClass().getName());
+                view.limit(length).position(0);
+                Message message = MessageCodecs.decode(codec, view);
+                MessageHandler handler = messageHandler;
+                if (handler != null) {
+                    handler.handleMessage(message, connection.getRemoteAddress());
                 }
             }
-        } catch (EOFException e) {
-            System.err.println("Conexão fechada pelo cliente.");
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Erro ao processar a conexão: " + e.getMessage());
-        } finally {
-            try {
-                clientSocket.close();
-            } catch (IOException e) {
-                System.err.println("Erro ao fechar o socket do cliente: " + e.getMessage());
+        }
+    }
+
+    // clientes legados: uma ordem por linha (ou registro binário) sem prefixo de tamanho; lotes só com frames
+    private void readOrderEntries(TcpConnection connection) throws IOException {
+        DataInputStream in = connection.input();
+        OrderEntryDecoder orderDecoder = new OrderEntryDecoder();
+        OrderCommand command = new OrderCommand();
+        byte[] entry = new byte[MAX_LINE];
+
+        while (true) {
+            int length = readOrderEntry(in, entry);
+            if (length > 0) {
+                dispatchOrder(orderDecoder, entry, length, command, connection);
+            } else if (length < 0) {
+                System.out.println("Linha com mais de " + MAX_LINE + " bytes descartada de " + connection.getRemoteAddress());
+            }
+        }
+    }
+
+    private void dispatchOrder(OrderEntryDecoder orderDecoder, byte[] data, int length, OrderCommand command,
+                               TcpConnection connection) {
+        OrderHandler handler = orderHandler;
+        if (handler == null) {
+            return;
+        }
+        long arrival = System.nanoTime();
+        boolean decoded = orderDecoder.decode(data, 0, length, command);
+        OrderStage.DECODE.record(arrival);
+        if (decoded) {
+            handler.handleOrder(command, connection.getRemoteAddress())
+                    .thenAccept(response -> {
+                        long sending = System.nanoTime();
+                        reply(connection, response);
+                        OrderStage.SERVER.record(arrival, OrderStage.RESPONSE.record(sending));
+                    });
+            OrderStage.RECEIVE.record(arrival);
+        } else {
+            System.out.println("Formato de ordem inválido recebido de " + connection.getRemoteAddress());
+        }
+    }
+
+    private void dispatchBatch(OrderEntryDecoder orderDecoder, byte[] data, int length, OrderBatch batch,
+                               TcpConnection connection) {
+        OrderHandler handler = orderHandler;
+        if (handler == null) {
+            return;
+        }
+        long arrival = System.nanoTime();
+        boolean decoded = orderDecoder.decodeBatch(data, 0, length, batch);
+        OrderStage.DECODE.record(arrival);
+        if (decoded) {
+            handler.handleBatch(batch, connection.getRemoteAddress())
+                    .thenAccept(response -> {
+                        long sending = System.nanoTime();
+                        reply(connection, response);
+                        OrderStage.SERVER.record(arrival, OrderStage.RESPONSE.record(sending));
+                    });
+            OrderStage.RECEIVE.record(arrival);
+        } else {
+            System.out.println("Formato de lote inválido recebido de " + connection.getRemoteAddress());
+        }
+    }
+
+    // texto até o fim da linha, ou o registro binário de tamanho fixo + símbolo; -1 para
+    // uma linha maior que o buffer, descartada inteira em vez de virar duas ordens
+    private static int readOrderEntry(DataInputStream in, byte[] entry) throws IOException {
+        int length = 0;
+        int first = in.read();
+        if (first < 0) {
+            throw new EOFException();
+        }
+        entry[length++] = (byte) first;
+        if ((byte) first == OrderEntryDecoder.BINARY_MAGIC) {
+            in.readFully(entry, 1, OrderEntryDecoder.BINARY_HEADER_LENGTH - 1);
+            int recordLength = OrderEntryDecoder.binaryLength(entry[OrderEntryDecoder.SYMBOL_LENGTH_OFFSET]);
+            in.readFully(entry, OrderEntryDecoder.BINARY_HEADER_LENGTH, recordLength - OrderEntryDecoder.BINARY_HEADER_LENGTH);
+            return recordLength;
+        }
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (length == entry.length) {
+                while ((b = in.read()) >= 0 && b != '\n') {
+                    // descarta o resto da linha
+                }
+                return -1;
             }
+            entry[length++] = (byte) b;
         }
+        return length;
     }
 
 }
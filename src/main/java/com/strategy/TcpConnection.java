@@ -0,0 +1,132 @@
+package com.strategy;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Conexão TCP de longa duração. Cada mensagem é um frame {@code [int tamanho][payload]},
+ * então várias mensagens compartilham o mesmo stream. Conexões de clientes legados
+ * (uma ordem em texto por linha) não usam frames e recebem a resposta como linha de texto.
+ * <p>
+ * Respostas a clientes passam por {@link #enqueue}, que entrega o frame à thread de
+ * escrita da conexão: um cliente lento não trava a thread que completou a ordem.
+ */
+final class TcpConnection implements Closeable {
+    // respostas ainda não escritas; acima disso o cliente não acompanha e a conexão cai
+    private static final int MAX_PENDING_WRITES = 4096;
+
+    private final Socket socket;
+    private final InetSocketAddress remoteAddress;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private volatile boolean framed = true;
+    // criada no primeiro enqueue: conexões de saída para outros nós escrevem direto.
+    // Lock próprio: o monitor da conexão fica preso enquanto uma escrita bloqueia
+    private final Object writerLock = new Object();
+    private ExecutorService writer;
+    private boolean closed;
+
+    TcpConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.socket.setTcpNoDelay(true);
+        this.remoteAddress = (InetSocketAddress) socket.getRemoteSocketAddress();
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    DataInputStream input() {
+        return in;
+    }
+
+    boolean isFramed() {
+        return framed;
+    }
+
+    void setFramed(boolean framed) {
+        this.framed = framed;
+    }
+
+    boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    /**
+     * @param frame bytes já com o prefixo de tamanho
+     */
+    synchronized void write(byte[] frame, int offset, int length) throws IOException {
+        out.write(frame, offset, length);
+        out.flush();
+    }
+
+    synchronized void writeLine(String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * Escreve {@code frame} (já com o prefixo de tamanho, ou a linha com {@code '\n'}) na
+     * thread de escrita da conexão, na ordem das chamadas.
+     *
+     * @param onError chamado na falha da escrita ou com a fila cheia
+     */
+    void enqueue(byte[] frame, Consumer<IOException> onError) {
+        try {
+            writer().execute(() -> {
+                try {
+                    write(frame, 0, frame.length);
+                } catch (IOException e) {
+                    onError.accept(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            onError.accept(new IOException(isOpen() ? "fila de respostas cheia" : "conexão fechada", e));
+        }
+    }
+
+    private ExecutorService writer() {
+        synchronized (writerLock) {
+            if (closed) {
+                throw new RejectedExecutionException();
+            }
+            if (writer == null) {
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(MAX_PENDING_WRITES), r -> {
+                    Thread thread = new Thread(r, "tcp-writer-" + remoteAddress);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.allowCoreThreadTimeOut(true);
+                writer = executor;
+            }
+            return writer;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (writerLock) {
+            closed = true;
+            if (writer != null) {
+                writer.shutdownNow();
+            }
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar conexão com " + remoteAddress + ": " + e.getMessage());
+        }
+    }
+}
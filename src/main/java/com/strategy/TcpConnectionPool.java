@@ -0,0 +1,92 @@
+package com.strategy;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Uma conexão por endereço remoto. Conexões caídas são descartadas e refeitas no
+ * próximo envio; depois de uma falha de conexão o endereço espera um intervalo antes
+ * de nova tentativa, para que um nó fora do ar não trave quem envia. A conexão é feita
+ * fora de qualquer lock do pool: quem envia para o mesmo endereço espera por ela, os
+ * envios para outros endereços seguem.
+ */
+final class TcpConnectionPool {
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final long RECONNECT_BACKOFF_MS = 500;
+
+    private final Map<InetSocketAddress, TcpConnection> connections = new ConcurrentHashMap<>();
+    private final Map<InetSocketAddress, Long> retryAt = new ConcurrentHashMap<>();
+    // conexões em andamento, uma por endereço
+    private final Map<InetSocketAddress, CompletableFuture<TcpConnection>> connecting = new ConcurrentHashMap<>();
+    private final Consumer<TcpConnection> onConnect;
+
+    TcpConnectionPool(Consumer<TcpConnection> onConnect) {
+        this.onConnect = onConnect;
+    }
+
+    /**
+     * @return a conexão para o endereço, ou {@code null} se ainda estiver no intervalo de espera
+     */
+    TcpConnection acquire(InetSocketAddress address) throws IOException {
+        TcpConnection connection = connections.get(address);
+        if (connection != null && connection.isOpen()) {
+            return connection;
+        }
+        Long nextAttempt = retryAt.get(address);
+        if (nextAttempt != null && System.currentTimeMillis() < nextAttempt) {
+            return null;
+        }
+        CompletableFuture<TcpConnection> pending = new CompletableFuture<>();
+        CompletableFuture<TcpConnection> inProgress = connecting.putIfAbsent(address, pending);
+        if (inProgress != null) {
+            try {
+                return inProgress.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+        try {
+            connection = connections.get(address);
+            if (connection != null && connection.isOpen()) {
+                pending.complete(connection);
+                return connection;
+            }
+            try {
+                Socket socket = new Socket();
+                socket.connect(address, CONNECT_TIMEOUT);
+                connection = new TcpConnection(socket);
+            } catch (IOException | RuntimeException e) {
+                // quem espera em inProgress precisa do erro, seja ele qual for
+                retryAt.put(address, System.currentTimeMillis() + RECONNECT_BACKOFF_MS);
+                pending.completeExceptionally(e);
+                throw e;
+            }
+            retryAt.remove(address);
+            connections.put(address, connection);
+        } finally {
+            connecting.remove(address, pending);
+        }
+        pending.complete(connection);
+        onConnect.accept(connection);
+        return connection;
+    }
+
+    /**
+     * Conexões aceitas também entram no pool, para que a resposta a um cliente
+     * volte pelo mesmo socket.
+     */
+    void register(TcpConnection connection) {
+        connections.put(connection.getRemoteAddress(), connection);
+    }
+
+    void evict(TcpConnection connection) {
+        connections.remove(connection.getRemoteAddress(), connection);
+        connection.close();
+    }
+}
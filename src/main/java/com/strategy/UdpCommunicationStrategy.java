@@ -1,7 +1,13 @@
 package com.strategy;
 
+import com.codec.JavaSerializationCodec;
+import com.codec.MessageCodec;
+import com.codec.MessageCodecs;
+import com.codec.OrderBatch;
+import com.codec.OrderCommand;
+import com.codec.OrderEntryDecoder;
+import com.metrics.OrderStage;
 import com.patterns.Message;
-import com.patterns.MessageType;
 import com.server.MessageHandler;
 import com.server.OrderHandler;
 
@@ -10,20 +16,32 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 
 public class UdpCommunicationStrategy implements CommunicationStrategy {
+    private static final int MAX_DATAGRAM = 64 * 1024;
+    private static final int RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+
     private DatagramSocket socket;
+    private final MessageCodec codec;
+    private final ThreadLocal<ByteBuffer> sendBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_DATAGRAM));
+
+    public UdpCommunicationStrategy() {
+        this(new JavaSerializationCodec());
+    }
+
+    public UdpCommunicationStrategy(MessageCodec codec) {
+        this.codec = codec;
+    }
 
     @Override
     public void sendMessage(Message message, InetSocketAddress recipient) {
         try {
-            ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-            ObjectOutputStream out = new ObjectOutputStream(byteOut);
-            out.writeObject(message);
-            byte[] data = byteOut.toByteArray();
+            ByteBuffer buffer = sendBuffer.get();
+            buffer.clear();
+            codec.encode(message, buffer);
 
-            DatagramPacket packet = new DatagramPacket(data, data.length, recipient.getAddress(), recipient.getPort());
+            DatagramPacket packet = new DatagramPacket(buffer.array(), buffer.position(), recipient.getAddress(), recipient.getPort());
             socket.send(packet);
         } catch (IOException e) {
             e.printStackTrace();
@@ -34,19 +52,54 @@ public class UdpCommunicationStrategy implements CommunicationStrategy {
     public void startListening(int port, MessageHandler messageHandler, OrderHandler orderHandler) {
         try {
             socket = new DatagramSocket(port);
+            // ordens, lotes de replicação e acks dividem a mesma thread de recepção
+            socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
             new Thread(() -> {
-                byte[] receiveBuffer = new byte[1024];
+                byte[] receiveBuffer = new byte[MAX_DATAGRAM];
+                ByteBuffer received = ByteBuffer.wrap(receiveBuffer);
+                DatagramPacket packet = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+                OrderEntryDecoder orderDecoder = new OrderEntryDecoder();
+                OrderCommand command = new OrderCommand();
+                OrderBatch batch = new OrderBatch();
                 while (!socket.isClosed()) {
                     try {
-                        DatagramPacket packet = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+                        packet.setLength(receiveBuffer.length);
                         socket.receive(packet);
+                        long arrival = System.nanoTime();
 
-                        String messageStr = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
-                        if (messageStr.startsWith("ORDER")) {
-                            orderHandler.handleOrder(messageStr, (InetSocketAddress) packet.getSocketAddress());
+                        if (OrderEntryDecoder.isBatch(receiveBuffer, 0, packet.getLength())) {
+                            boolean decoded = orderDecoder.decodeBatch(receiveBuffer, 0, packet.getLength(), batch);
+                            OrderStage.DECODE.record(arrival);
+                            if (decoded) {
+                                InetSocketAddress sender = (InetSocketAddress) packet.getSocketAddress();
+                                orderHandler.handleBatch(batch, sender)
+                                        .thenAccept(response -> {
+                                            long sending = System.nanoTime();
+                                            sendMessage(response, sender);
+                                            OrderStage.SERVER.record(arrival, OrderStage.RESPONSE.record(sending));
+                                        });
+                                OrderStage.RECEIVE.record(arrival);
+                            } else {
+                                System.out.println("Formato de lote inválido recebido de " + packet.getSocketAddress());
+                            }
+                        } else if (OrderEntryDecoder.isOrderEntry(receiveBuffer, 0, packet.getLength())) {
+                            boolean decoded = orderDecoder.decode(receiveBuffer, 0, packet.getLength(), command);
+                            OrderStage.DECODE.record(arrival);
+                            if (decoded) {
+                                InetSocketAddress sender = (InetSocketAddress) packet.getSocketAddress();
+                                orderHandler.handleOrder(command, sender)
+                                        .thenAccept(response -> {
+                                            long sending = System.nanoTime();
+                                            sendMessage(response, sender);
+                                            OrderStage.SERVER.record(arrival, OrderStage.RESPONSE.record(sending));
+                                        });
+                                OrderStage.RECEIVE.record(arrival);
+                            } else {
+                                System.out.println("Formato de ordem inválido recebido de " + packet.getSocketAddress());
+                            }
                         } else {
-                            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(packet.getData(), 0, packet.getLength()));
-                            Message message = (Message) in.readObject();
+                            received.limit(packet.getLength()).position(0);
+                            Message message = MessageCodecs.decode(codec, received);
                             messageHandler.handleMessage(message, (InetSocketAddress) packet.getSocketAddress());
                         }
                     } catch (Exception e) {
@@ -61,4 +114,4 @@ public class UdpCommunicationStrategy implements CommunicationStrategy {
         }
     }
     
-}
\ No newline at end of file
+}